@@ -2,8 +2,13 @@ package phiner.de5.net.gateway;
 
 import org.springframework.stereotype.Component;
 import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.dto.KLineSeriesLoadedDTO;
+import phiner.de5.net.gateway.indicator.IndicatorEngine;
+import phiner.de5.net.gateway.kline.BarArchive;
+import phiner.de5.net.gateway.kline.FormingBarTracker;
 import phiner.de5.net.gateway.service.RedisService;
 
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -11,9 +16,16 @@ import java.util.concurrent.ConcurrentHashMap;
 public class KLineManager {
     private final ConcurrentHashMap<String, BarDTO> lastBars = new ConcurrentHashMap<>();
     private final RedisService redisService;
+    private final FormingBarTracker formingBarTracker;
+    private final IndicatorEngine indicatorEngine;
+    private final BarArchive barArchive;
 
-    public KLineManager(RedisService redisService) {
+    public KLineManager(RedisService redisService, FormingBarTracker formingBarTracker,
+                        IndicatorEngine indicatorEngine, BarArchive barArchive) {
         this.redisService = redisService;
+        this.formingBarTracker = formingBarTracker;
+        this.indicatorEngine = indicatorEngine;
+        this.barArchive = barArchive;
     }
 
     public Set<String> getSubscribedInstruments() {
@@ -26,8 +38,46 @@ public class KLineManager {
         }
 
         lastBars.put(instrument, bar);
+        // 先停止该分桶的未收盘推送，再写入最终 K 线，避免被迟到的快照覆盖
+        formingBarTracker.onBarClosed(bar);
         redisService.addBarToKLine(bar);
+        barArchive.append(bar);
         redisService.publishBar(bar);
+        indicatorEngine.onBar(bar);
+    }
+
+    /**
+     * 写入一段历史 K 线（同一品种周期，按时间升序）：一次管道写入，不逐根推送。
+     * 流式预加载按块多次调用，整段完成后由 {@link #onHistoryLoaded} 发送一次载入通知。
+     *
+     * @return 写入的 K 线数量
+     */
+    public int writeHistoryChunk(List<BarDTO> bars) {
+        if (bars == null || bars.isEmpty()) {
+            return 0;
+        }
+
+        int written = redisService.addBarsToKLine(bars);
+        barArchive.append(bars);
+        if (written > 0) {
+            BarDTO newest = bars.get(bars.size() - 1);
+            // 实时 K 线优先，仅在尚无记录或同周期更旧时采用历史 K 线
+            lastBars.merge(newest.getInstrument(), newest, (current, loaded) ->
+                    current.getPeriod().equals(loaded.getPeriod()) && loaded.getTime() > current.getTime()
+                            ? loaded : current);
+        }
+        return written;
+    }
+
+    /**
+     * 一个品种周期的历史 K 线已全部写入，发送一次载入通知。
+     */
+    public void onHistoryLoaded(String instrument, String period, int count, long from, long to) {
+        if (instrument == null || period == null || count <= 0) {
+            return;
+        }
+        redisService.publishSeriesLoaded(new KLineSeriesLoadedDTO(instrument, period, count, from, to));
+        indicatorEngine.onHistoryLoaded(instrument, period, to);
     }
 
     public BarDTO getLastBar(String instrument) {
@@ -0,0 +1,166 @@
+package phiner.de5.net.gateway;
+
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最新报价表：按稠密品种编号存放于原始类型数组中，每个槽位由独立的顺序锁（seqlock）保护。
+ * <p>
+ * 写入方先将槽位序号置为奇数、写入各字段、再置回偶数；读取方在读取前后比较序号，
+ * 不一致或为奇数时重试。读取不加锁、不分配对象，也不会阻塞写入线程，
+ * 适合风控、盈亏、告警等内部组件以 Tick 频率轮询。
+ * <p>
+ * 同一品种通常只由其所属事件通道线程写入；序号通过 CAS 认领，偶发的并发写入也能保持一致。
+ */
+public final class QuoteBoard {
+
+    public static final int DEFAULT_CAPACITY = 512;
+
+    /**
+     * 报价快照的可复用容器，由调用方持有并反复传入 {@link #read}。
+     */
+    public static final class Quote {
+        private String instrument;
+        private long time;
+        private double bid;
+        private double ask;
+        private double bidVolume;
+        private double askVolume;
+
+        public String getInstrument() { return instrument; }
+        public long getTime() { return time; }
+        public double getBid() { return bid; }
+        public double getAsk() { return ask; }
+        public double getBidVolume() { return bidVolume; }
+        public double getAskVolume() { return askVolume; }
+    }
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final String[] instruments;
+    private final AtomicLongArray sequences;
+    private final long[] times;
+    private final double[] bids;
+    private final double[] asks;
+    private final double[] bidVolumes;
+    private final double[] askVolumes;
+
+    public QuoteBoard() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public QuoteBoard(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Quote board capacity must be at least 1: " + capacity);
+        }
+        this.instruments = new String[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.times = new long[capacity];
+        this.bids = new double[capacity];
+        this.asks = new double[capacity];
+        this.bidVolumes = new double[capacity];
+        this.askVolumes = new double[capacity];
+    }
+
+    /**
+     * 返回品种的稠密编号，首次出现时分配；表已满时返回 -1。
+     */
+    public int idOf(String instrument) {
+        Integer id = ids.get(instrument);
+        if (id != null) {
+            return id;
+        }
+        // computeIfAbsent 只锁定当前键所在的桶，不同品种可能并发分配，槽位须原子认领；表满后不再递增
+        Integer assigned = ids.computeIfAbsent(instrument, key -> {
+            int next = nextId.getAndUpdate(n -> n < instruments.length ? n + 1 : n);
+            if (next >= instruments.length) {
+                return null;
+            }
+            instruments[next] = key;
+            return next;
+        });
+        return assigned == null ? -1 : assigned;
+    }
+
+    /**
+     * 查询已分配的编号，不分配新编号；未知品种返回 -1。
+     */
+    public int indexOf(String instrument) {
+        Integer id = ids.get(instrument);
+        return id == null ? -1 : id;
+    }
+
+    public int size() {
+        return nextId.get();
+    }
+
+    /**
+     * 写入品种最新报价。表已满时返回 {@code false}。
+     */
+    public boolean update(String instrument, long time, double bid, double ask, double bidVolume, double askVolume) {
+        int id = idOf(instrument);
+        if (id < 0) {
+            return false;
+        }
+        update(id, time, bid, ask, bidVolume, askVolume);
+        return true;
+    }
+
+    public void update(int id, long time, double bid, double ask, double bidVolume, double askVolume) {
+        long sequence;
+        do {
+            sequence = sequences.get(id);
+            while ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                sequence = sequences.get(id);
+            }
+        } while (!sequences.compareAndSet(id, sequence, sequence + 1));
+
+        times[id] = time;
+        bids[id] = bid;
+        asks[id] = ask;
+        bidVolumes[id] = bidVolume;
+        askVolumes[id] = askVolume;
+
+        sequences.setRelease(id, sequence + 2);
+    }
+
+    /**
+     * 读取品种最新报价到 {@code into}。品种未知或尚无报价时返回 {@code false}。
+     */
+    public boolean read(String instrument, Quote into) {
+        int id = indexOf(instrument);
+        return id >= 0 && read(id, into);
+    }
+
+    public boolean read(int id, Quote into) {
+        while (true) {
+            long before = sequences.getAcquire(id);
+            if (before == 0) {
+                return false;
+            }
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long time = times[id];
+            double bid = bids[id];
+            double ask = asks[id];
+            double bidVolume = bidVolumes[id];
+            double askVolume = askVolumes[id];
+            VarHandle.acquireFence();
+            if (sequences.get(id) == before) {
+                into.instrument = instruments[id];
+                into.time = time;
+                into.bid = bid;
+                into.ask = ask;
+                into.bidVolume = bidVolume;
+                into.askVolume = askVolume;
+                return true;
+            }
+        }
+    }
+}
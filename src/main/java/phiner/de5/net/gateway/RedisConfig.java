@@ -41,8 +41,10 @@ public class RedisConfig {
             @NonNull OrderSubmitListener orderSubmitListener,
             @NonNull OrderModifyListener orderModifyListener,
             @NonNull OrderCancelListener orderCancelListener,
+            @NonNull OrderBatchListener orderBatchListener,
             @NonNull OrdersHistoryRequestListener ordersHistoryRequestListener,
-            @NonNull PositionsRequestListener positionsRequestListener
+            @NonNull PositionsRequestListener positionsRequestListener,
+            @NonNull KLineQueryRequestListener kLineQueryRequestListener
     ) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
@@ -52,8 +54,10 @@ public class RedisConfig {
         container.addMessageListener(orderSubmitListener, new ChannelTopic("gateway:order:submit"));
         container.addMessageListener(orderModifyListener, new ChannelTopic("gateway:order:modify"));
         container.addMessageListener(orderCancelListener, new ChannelTopic("gateway:order:cancel"));
+        container.addMessageListener(orderBatchListener, new ChannelTopic("gateway:order:batch"));
         container.addMessageListener(ordersHistoryRequestListener, new ChannelTopic("gateway:system:request:orders_history"));
         container.addMessageListener(positionsRequestListener, new ChannelTopic("gateway:system:request:positions"));
+        container.addMessageListener(kLineQueryRequestListener, new ChannelTopic("gateway:system:request:kline"));
         return container;
     }
 
@@ -4,11 +4,10 @@ import com.dukascopy.api.ITick;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 import phiner.de5.net.gateway.dto.TickDTO;
+import phiner.de5.net.gateway.kline.BarAggregator;
+import phiner.de5.net.gateway.kline.FormingBarTracker;
 import phiner.de5.net.gateway.service.ForexTickProducer;
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import phiner.de5.net.gateway.util.PriceCodec;
 
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
@@ -18,12 +17,18 @@ import org.slf4j.LoggerFactory;
 @Component
 public class TickManager {
     private static final Logger log = LoggerFactory.getLogger(TickManager.class);
-    private final Map<String, TickDTO> lastTicks = Collections.synchronizedMap(new HashMap<>());
+    private final QuoteBoard quoteBoard = new QuoteBoard();
     private final ForexTickProducer forexTickProducer;
+    private final BarAggregator barAggregator;
+    private final FormingBarTracker formingBarTracker;
     private volatile boolean enabled = false;
+    private volatile boolean quoteBoardFullLogged = false;
 
-    public TickManager(ForexTickProducer forexTickProducer) {
+    public TickManager(ForexTickProducer forexTickProducer, BarAggregator barAggregator,
+                       FormingBarTracker formingBarTracker) {
         this.forexTickProducer = forexTickProducer;
+        this.barAggregator = barAggregator;
+        this.formingBarTracker = formingBarTracker;
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -33,29 +38,42 @@ public class TickManager {
     }
 
     public void onTick(@NonNull String instrument, @NonNull ITick tick) {
-        // 更新内存中的最新 Tick (用于内部状态查询)
-        TickDTO tickDTO = new TickDTO(
-                instrument,
-                tick.getTime(),
-                tick.getAsk(),
-                tick.getBid()
-        );
-        lastTicks.put(instrument, tickDTO);
-
-        // 仅在系统就绪后向 Redis Stream 写入
+        onTick(instrument, tick.getTime(), tick.getBid(), tick.getAsk(), tick.getBidVolume(), tick.getAskVolume());
+    }
+
+    /**
+     * 原始类型版本，供事件环形缓冲区的消费线程直接调用，无需持有 ITick 引用。
+     */
+    public void onTick(@NonNull String instrument, long time, double bid, double ask, double bidVolume, double askVolume) {
+        // 更新内存中的最新报价 (用于内部状态查询)，无锁且不分配对象
+        PriceCodec codec = PriceCodec.forInstrument(instrument);
+        if (!quoteBoard.update(instrument, time, codec.round(bid), codec.round(ask), bidVolume, askVolume)
+                && !quoteBoardFullLogged) {
+            quoteBoardFullLogged = true;
+            log.warn("最新报价表已满 (容量 {})，品种 {} 的报价不会缓存", QuoteBoard.DEFAULT_CAPACITY, instrument);
+        }
+
+        // 仅在系统就绪后向 Redis Stream 写入，并参与自定义周期聚合与未收盘 K 线维护
         if (enabled) {
-            forexTickProducer.sendTickAsync(
-                    instrument,
-                    tick.getTime(),
-                    tick.getBid(),
-                    tick.getAsk(),
-                    tick.getBidVolume(),
-                    tick.getAskVolume()
-            );
+            forexTickProducer.sendTickAsync(instrument, time, bid, ask, bidVolume, askVolume);
+            barAggregator.onTick(instrument, time, bid, bidVolume);
+            formingBarTracker.onTick(instrument, time, bid, bidVolume);
         }
     }
 
+    /**
+     * 返回品种最新报价的 DTO 副本，尚无报价时返回 null。
+     * 需要以 Tick 频率轮询的调用方请直接使用 {@link #getQuoteBoard()} 并复用 {@link QuoteBoard.Quote}。
+     */
     public TickDTO getLastTick(String instrument) {
-        return lastTicks.get(instrument);
+        QuoteBoard.Quote quote = new QuoteBoard.Quote();
+        if (!quoteBoard.read(instrument, quote)) {
+            return null;
+        }
+        return new TickDTO(instrument, quote.getTime(), quote.getAsk(), quote.getBid());
+    }
+
+    public QuoteBoard getQuoteBoard() {
+        return quoteBoard;
     }
 }
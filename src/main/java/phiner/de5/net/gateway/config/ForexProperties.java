@@ -19,4 +19,9 @@ public class ForexProperties {
      * List of bar periods to process.
      */
     private List<String> periods;
+
+    /**
+     * Technical indicators computed on every closed bar, e.g. EMA:20, RSI:14, ATR:14, BB:20:2.
+     */
+    private List<String> indicators;
 }
@@ -1,8 +1,17 @@
 package phiner.de5.net.gateway.dto;
 
 import com.dukascopy.api.IBar;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import phiner.de5.net.gateway.util.PeriodUtil;
 
+/**
+ * K 线。{@code open/close/low/high} 为买价（bid）一侧；已知卖价（ask）一侧时同一条记录同时携带
+ * {@code askOpen/askClose/askLow/askHigh}，否则这些字段为 {@code null} 且不序列化。
+ * 中间价不存储，由 {@link #midOpen()} 等按需计算。
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class BarDTO {
     private final String instrument;
     private final String period;
@@ -12,22 +21,81 @@ public class BarDTO {
     private final double low;
     private final double high;
     private final double volume;
+    private final Double askOpen;
+    private final Double askClose;
+    private final Double askLow;
+    private final Double askHigh;
 
     public BarDTO(String instrument, String period, IBar bar) {
+        this(instrument, period, bar.getTime(), bar.getOpen(), bar.getClose(), bar.getLow(), bar.getHigh(),
+                bar.getVolume());
+    }
+
+    /**
+     * 由同一时间的买价与卖价 K 线组成一条记录，成交量取买价一侧。
+     */
+    public BarDTO(String instrument, String period, IBar bidBar, IBar askBar) {
+        this(instrument, period, bidBar.getTime(), bidBar.getOpen(), bidBar.getClose(), bidBar.getLow(),
+                bidBar.getHigh(), bidBar.getVolume(), askBar.getOpen(), askBar.getClose(), askBar.getLow(),
+                askBar.getHigh());
+    }
+
+    public BarDTO(String instrument, String period, long time,
+                  double open, double close, double low, double high, double volume) {
+        this(instrument, period, time, open, close, low, high, volume, null, null, null, null);
+    }
+
+    @JsonCreator
+    public BarDTO(@JsonProperty("instrument") String instrument,
+                  @JsonProperty("period") String period,
+                  @JsonProperty("time") long time,
+                  @JsonProperty("open") double open,
+                  @JsonProperty("close") double close,
+                  @JsonProperty("low") double low,
+                  @JsonProperty("high") double high,
+                  @JsonProperty("volume") double volume,
+                  @JsonProperty("askOpen") Double askOpen,
+                  @JsonProperty("askClose") Double askClose,
+                  @JsonProperty("askLow") Double askLow,
+                  @JsonProperty("askHigh") Double askHigh) {
         this.instrument = instrument;
         this.period = formatPeriod(period);
-        this.time = bar.getTime();
-        this.open = bar.getOpen();
-        this.close = bar.getClose();
-        this.low = bar.getLow();
-        this.high = bar.getHigh();
-        this.volume = bar.getVolume();
+        this.time = time;
+        this.open = open;
+        this.close = close;
+        this.low = low;
+        this.high = high;
+        this.volume = volume;
+        // 卖价四个字段同时存在才视为完整的双边记录
+        boolean complete = askOpen != null && askClose != null && askLow != null && askHigh != null;
+        this.askOpen = complete ? askOpen : null;
+        this.askClose = complete ? askClose : null;
+        this.askLow = complete ? askLow : null;
+        this.askHigh = complete ? askHigh : null;
     }
 
     private String formatPeriod(String period) {
         return PeriodUtil.format(period);
     }
 
+    /**
+     * 带上卖价一侧的新记录。
+     */
+    public BarDTO withAsk(double askOpen, double askClose, double askLow, double askHigh) {
+        return new BarDTO(instrument, period, time, open, close, low, high, volume, askOpen, askClose, askLow,
+                askHigh);
+    }
+
+    /**
+     * 是否同时携带卖价一侧。
+     */
+    public boolean hasAsk() { return askOpen != null; }
+
+    public double midOpen() { return askOpen == null ? open : (open + askOpen) / 2; }
+    public double midClose() { return askClose == null ? close : (close + askClose) / 2; }
+    public double midLow() { return askLow == null ? low : (low + askLow) / 2; }
+    public double midHigh() { return askHigh == null ? high : (high + askHigh) / 2; }
+
     // Add getters for all fields to allow for serialization
     public String getInstrument() { return instrument; }
     public String getPeriod() { return period; }
@@ -37,4 +105,8 @@ public class BarDTO {
     public double getLow() { return low; }
     public double getHigh() { return high; }
     public double getVolume() { return volume; }
+    public Double getAskOpen() { return askOpen; }
+    public Double getAskClose() { return askClose; }
+    public Double getAskLow() { return askLow; }
+    public Double getAskHigh() { return askHigh; }
 }
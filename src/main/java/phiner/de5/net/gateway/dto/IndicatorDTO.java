@@ -0,0 +1,37 @@
+package phiner.de5.net.gateway.dto;
+
+import java.util.Map;
+
+/**
+ * 一根收盘 K 线对应的指标值，键为指标名（如 {@code ema20}、{@code rsi14}、{@code bb20.upper}），
+ * 仍在预热的指标不出现在 {@code values} 中。
+ */
+public class IndicatorDTO {
+    private final String instrument;
+    private final String period;
+    private final long time;
+    private final Map<String, Double> values;
+
+    public IndicatorDTO(String instrument, String period, long time, Map<String, Double> values) {
+        this.instrument = instrument;
+        this.period = period;
+        this.time = time;
+        this.values = values;
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Map<String, Double> getValues() {
+        return values;
+    }
+}
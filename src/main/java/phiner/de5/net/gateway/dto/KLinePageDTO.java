@@ -0,0 +1,62 @@
+package phiner.de5.net.gateway.dto;
+
+import java.util.List;
+
+/**
+ * K 线查询结果的一页。同一请求的各页按顺序发布在同一响应频道，{@code last} 为 {@code true} 的页是最后一页。
+ * {@code nextCursor} 为截至本页已返回的最新 K 线时间，可作为后续请求的 {@code cursor} 继续读取更新的数据。
+ */
+public class KLinePageDTO {
+    private final String requestId;
+    private final String instrument;
+    private final String period;
+    private final int page;
+    private final boolean last;
+    private final Long nextCursor;
+    private final List<BarDTO> bars;
+    private final String error;
+
+    public KLinePageDTO(String requestId, String instrument, String period, int page, boolean last,
+                        Long nextCursor, List<BarDTO> bars, String error) {
+        this.requestId = requestId;
+        this.instrument = instrument;
+        this.period = period;
+        this.page = page;
+        this.last = last;
+        this.nextCursor = nextCursor;
+        this.bars = bars;
+        this.error = error;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public List<BarDTO> getBars() {
+        return bars;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
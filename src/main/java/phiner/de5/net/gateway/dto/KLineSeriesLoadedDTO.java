@@ -0,0 +1,46 @@
+package phiner.de5.net.gateway.dto;
+
+/**
+ * 一个品种周期的历史 K 线批量写入完成的通知，取代预加载期间逐根 K 线的推送。
+ */
+public class KLineSeriesLoadedDTO {
+    private final String instrument;
+    private final String period;
+    private final int count;
+    private final long from;
+    private final long to;
+    private final long timestamp;
+
+    public KLineSeriesLoadedDTO(String instrument, String period, int count, long from, long to) {
+        this.instrument = instrument;
+        this.period = period;
+        this.count = count;
+        this.from = from;
+        this.to = to;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,78 @@
+package phiner.de5.net.gateway.dto;
+
+import java.util.List;
+
+/**
+ * 批量下单的逐笔结果，按请求中的顺序排列，发布在 {@code gateway:order:batch:response:{requestId}}。
+ * {@code error} 为整批被拒绝的原因（此时没有任何订单被提交），否则为 {@code null}。
+ */
+public class OrderBatchResultDTO {
+
+    /**
+     * 单笔结果。{@code status}: {@code SUBMITTED} 已提交（后续状态见订单事件）、{@code FAILED} 提交时出错、
+     * {@code INVALID} 未通过校验、{@code SKIPPED} 因同批其他订单未通过校验而未提交。
+     */
+    public static class Item {
+        private final int index;
+        private final String label;
+        private final String status;
+        private final String orderId;
+        private final String error;
+
+        public Item(int index, String label, String status, String orderId, String error) {
+            this.index = index;
+            this.label = label;
+            this.status = status;
+            this.orderId = orderId;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getOrderId() {
+            return orderId;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    private final String requestId;
+    private final List<Item> results;
+    private final String error;
+    private final long timestamp;
+
+    public OrderBatchResultDTO(String requestId, List<Item> results, String error) {
+        this.requestId = requestId;
+        this.results = results;
+        this.error = error;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public List<Item> getResults() {
+        return results;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
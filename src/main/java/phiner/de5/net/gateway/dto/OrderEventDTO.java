@@ -2,6 +2,7 @@ package phiner.de5.net.gateway.dto;
 
 import com.dukascopy.api.IMessage;
 import com.dukascopy.api.IOrder;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.io.Serializable;
 import java.util.stream.Collectors;
 
@@ -35,7 +36,15 @@ public class OrderEventDTO implements Serializable {
     private final Long closeTime;
     private final double commission;
 
+    // 按 requestId 追踪的下单耗时分解，未追踪时为 null
+    private final OrderLatencyDTO latency;
+
     public OrderEventDTO(IMessage message) {
+        this(message, null);
+    }
+
+    public OrderEventDTO(IMessage message, OrderLatencyDTO latency) {
+        this.latency = latency;
         IOrder order = message.getOrder();
 
         if (order != null) {
@@ -152,6 +161,11 @@ public class OrderEventDTO implements Serializable {
         return commission;
     }
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public OrderLatencyDTO getLatency() {
+        return latency;
+    }
+
     @Override
     public String toString() {
         return "OrderEventDTO{" +
@@ -171,6 +185,7 @@ public class OrderEventDTO implements Serializable {
                 ", closePrice=" + closePrice +
                 ", closeTime=" + closeTime +
                 ", commission=" + commission +
+                ", latency=" + (latency != null ? latency.getTotalMicros() : null) +
                 '}';
     }
 }
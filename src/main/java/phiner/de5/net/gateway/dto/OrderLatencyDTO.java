@@ -0,0 +1,64 @@
+package phiner.de5.net.gateway.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 一笔下单指令在网关内各阶段的耗时（微秒），随订单事件推送。尚未到达的阶段为 {@code null}。
+ * <ul>
+ *   <li>{@code decodeMicros}: 监听器收到消息到请求解码完成</li>
+ *   <li>{@code queueMicros}: 解码完成到 JForex 策略线程开始执行任务</li>
+ *   <li>{@code submitMicros}: {@code submitOrder} 调用本身</li>
+ *   <li>{@code ackMicros}: {@code submitOrder} 返回到收到 {@code ORDER_SUBMIT_OK}</li>
+ *   <li>{@code fillMicros}: {@code ORDER_SUBMIT_OK} 到 {@code ORDER_FILL_OK}</li>
+ *   <li>{@code totalMicros}: 收到消息到 {@code ORDER_FILL_OK}</li>
+ * </ul>
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderLatencyDTO {
+    private final String requestId;
+    private final Long decodeMicros;
+    private final Long queueMicros;
+    private final Long submitMicros;
+    private final Long ackMicros;
+    private final Long fillMicros;
+    private final Long totalMicros;
+
+    public OrderLatencyDTO(String requestId, Long decodeMicros, Long queueMicros, Long submitMicros,
+                           Long ackMicros, Long fillMicros, Long totalMicros) {
+        this.requestId = requestId;
+        this.decodeMicros = decodeMicros;
+        this.queueMicros = queueMicros;
+        this.submitMicros = submitMicros;
+        this.ackMicros = ackMicros;
+        this.fillMicros = fillMicros;
+        this.totalMicros = totalMicros;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public Long getDecodeMicros() {
+        return decodeMicros;
+    }
+
+    public Long getQueueMicros() {
+        return queueMicros;
+    }
+
+    public Long getSubmitMicros() {
+        return submitMicros;
+    }
+
+    public Long getAckMicros() {
+        return ackMicros;
+    }
+
+    public Long getFillMicros() {
+        return fillMicros;
+    }
+
+    public Long getTotalMicros() {
+        return totalMicros;
+    }
+}
@@ -0,0 +1,53 @@
+package phiner.de5.net.gateway.event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 阻塞等待策略。生产者仅在消费者确实挂起时才获取锁发送信号，
+ * 因此在消费者忙碌时发布路径上没有锁竞争。
+ */
+public final class BlockingWaitStrategy implements WaitStrategy {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
+
+    @Override
+    public boolean waitFor(long sequence, EventRingBuffer ringBuffer, EventProcessor processor) throws InterruptedException {
+        if (ringBuffer.isPublished(sequence)) {
+            return true;
+        }
+        lock.lock();
+        try {
+            while (true) {
+                signalNeeded.set(true);
+                if (ringBuffer.isPublished(sequence)) {
+                    return true;
+                }
+                if (!processor.isRunning()) {
+                    return false;
+                }
+                published.awaitNanos(MAX_PARK_NANOS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        if (signalNeeded.getAndSet(false)) {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package phiner.de5.net.gateway.event;
+
+/**
+ * 纯自旋等待策略，适用于为事件处理器预留独立核心的部署环境。
+ */
+public final class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public boolean waitFor(long sequence, EventRingBuffer ringBuffer, EventProcessor processor) {
+        while (!ringBuffer.isPublished(sequence)) {
+            if (!processor.isRunning()) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        // 消费者从不挂起，无需唤醒
+    }
+}
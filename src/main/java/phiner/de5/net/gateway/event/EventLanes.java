@@ -0,0 +1,125 @@
+package phiner.de5.net.gateway.event;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按交易品种分片的事件处理通道。
+ * <p>
+ * 每个品种固定映射到一个行情通道（独立的 {@link EventRingBuffer} + {@link EventProcessor}），
+ * 因此同一品种的 Tick 与 K 线严格按发布顺序处理，而繁忙品种不会拖慢其他通道。
+ * 订单消息与账户更新走单独的订单通道，彼此之间保持全局顺序。
+ */
+public final class EventLanes {
+
+    private final EventRingBuffer[] marketLanes;
+    private final EventProcessor[] marketProcessors;
+    private final EventRingBuffer orderLane;
+    private final EventProcessor orderProcessor;
+    private final Map<String, Integer> laneAssignments = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    public EventLanes(int laneCount, int ringSize, String waitStrategy, MarketEventHandler handler) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("Event lane count must be at least 1: " + laneCount);
+        }
+        this.marketLanes = new EventRingBuffer[laneCount];
+        this.marketProcessors = new EventProcessor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            // 每个通道使用独立的等待策略实例，阻塞策略的锁与条件变量不在通道之间共享
+            marketLanes[i] = new EventRingBuffer(ringSize, WaitStrategy.fromName(waitStrategy));
+            marketProcessors[i] = new EventProcessor(marketLanes[i], handler);
+        }
+        this.orderLane = new EventRingBuffer(ringSize, WaitStrategy.fromName(waitStrategy));
+        this.orderProcessor = new EventProcessor(orderLane, handler);
+    }
+
+    public void start(String threadNamePrefix) {
+        for (int i = 0; i < marketProcessors.length; i++) {
+            marketProcessors[i].start(threadNamePrefix + "-market-" + i);
+        }
+        orderProcessor.start(threadNamePrefix + "-order");
+    }
+
+    /**
+     * 为品种分配行情通道（轮询分配，重复调用返回首次分配的结果）。
+     */
+    public int assign(String instrument) {
+        return laneAssignments.computeIfAbsent(instrument,
+                key -> Math.floorMod(nextLane.getAndIncrement(), marketLanes.length));
+    }
+
+    /**
+     * 返回品种所属的行情通道。未显式分配的品种按哈希取模，保证同一品种始终落在同一通道。
+     */
+    public EventRingBuffer laneFor(String instrument) {
+        Integer lane = laneAssignments.get(instrument);
+        if (lane == null) {
+            lane = Math.floorMod(instrument.hashCode(), marketLanes.length);
+        }
+        return marketLanes[lane];
+    }
+
+    public EventRingBuffer orderLane() {
+        return orderLane;
+    }
+
+    public int getLaneCount() {
+        return marketLanes.length;
+    }
+
+    public boolean isRunning() {
+        return orderProcessor.isRunning();
+    }
+
+    public void halt() {
+        for (EventProcessor processor : marketProcessors) {
+            processor.halt();
+        }
+        orderProcessor.halt();
+    }
+
+    /**
+     * 在总超时时间内等待所有通道排空并退出。
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (EventProcessor processor : marketProcessors) {
+            terminated &= processor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        terminated &= orderProcessor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        return terminated;
+    }
+
+    public void shutdownNow() {
+        for (EventProcessor processor : marketProcessors) {
+            processor.shutdownNow();
+        }
+        orderProcessor.shutdownNow();
+    }
+
+    /**
+     * 所有通道中尚未消费的事件总数（近似值）。
+     */
+    public long getBacklog() {
+        long backlog = orderLane.getBacklog();
+        for (EventRingBuffer lane : marketLanes) {
+            backlog += lane.getBacklog();
+        }
+        return backlog;
+    }
+
+    /**
+     * 所有通道在消费者退出后丢弃的事件总数。
+     */
+    public long getDroppedEvents() {
+        long dropped = orderLane.getDroppedEvents();
+        for (EventRingBuffer lane : marketLanes) {
+            dropped += lane.getDroppedEvents();
+        }
+        return dropped;
+    }
+}
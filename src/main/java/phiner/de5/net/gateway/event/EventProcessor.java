@@ -0,0 +1,102 @@
+package phiner.de5.net.gateway.event;
+
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 环形缓冲区的单线程消费者。
+ * 按批次读取已发布的槽位并交给 {@link MarketEventHandler}，处理完成后释放槽位供生产者复用。
+ * 调用 {@link #halt()} 后会先处理完已发布的事件再退出。
+ * 处理器抛出的任何异常或错误都只记录日志并跳过该事件，消费序号始终前进；
+ * 线程因任何原因退出时通知缓冲区，生产者不再等待。
+ */
+public final class EventProcessor implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(EventProcessor.class);
+
+    private final EventRingBuffer ringBuffer;
+    private final MarketEventHandler handler;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public EventProcessor(EventRingBuffer ringBuffer, MarketEventHandler handler) {
+        this.ringBuffer = ringBuffer;
+        this.handler = handler;
+    }
+
+    public synchronized void start(String threadName) {
+        if (thread != null) {
+            throw new IllegalStateException("Event processor already started: " + thread.getName());
+        }
+        thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void halt() {
+        running = false;
+        ringBuffer.getWaitStrategy().signalAllWhenBlocking();
+    }
+
+    /**
+     * 等待消费线程退出。
+     *
+     * @return 线程是否已在超时前退出
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        Thread current = thread;
+        if (current == null) {
+            return true;
+        }
+        current.join(Math.max(1, unit.toMillis(timeout)));
+        return !current.isAlive();
+    }
+
+    /**
+     * 强制中断消费线程，未处理的事件将被丢弃。
+     */
+    public void shutdownNow() {
+        running = false;
+        Thread current = thread;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        WaitStrategy waitStrategy = ringBuffer.getWaitStrategy();
+        long nextSequence = ringBuffer.getConsumedSequence() + 1;
+        try {
+            while (true) {
+                if (!waitStrategy.waitFor(nextSequence, ringBuffer, this)) {
+                    break;
+                }
+                long availableSequence = ringBuffer.highestPublished(nextSequence);
+                while (nextSequence <= availableSequence) {
+                    MarketEvent event = ringBuffer.get(nextSequence);
+                    try {
+                        handler.onEvent(event);
+                    } catch (Throwable e) {
+                        log.error("Error handling {} event for {}", event.getType(), event.getInstrument(), e);
+                    } finally {
+                        event.clear();
+                    }
+                    nextSequence++;
+                }
+                ringBuffer.markConsumed(availableSequence);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            ringBuffer.markConsumerStopped();
+        }
+        log.info("Event processor {} stopped at sequence {}", Thread.currentThread().getName(), nextSequence - 1);
+    }
+}
@@ -0,0 +1,131 @@
+package phiner.de5.net.gateway.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 预分配的事件环形缓冲区（Disruptor 风格）。
+ * <p>
+ * 生产者通过 {@link #next()} 认领序号、就地填充 {@link MarketEvent} 槽位后调用 {@link #publish(long)}；
+ * 单个 {@link EventProcessor} 按序号顺序消费。发布路径不加锁、不分配对象。
+ * 主要生产者是 JForex 回调线程，但心跳与历史预加载线程也会投递事件，
+ * 因此序号认领使用原子自增，每个槽位单独记录已发布的序号。
+ * 缓冲区写满时生产者短暂自旋等待消费者追上，而不是无限堆积。
+ * 消费者退出后不再等待：认领的序号照常返回，但事件不会被处理，计入 {@link #getDroppedEvents()}，
+ * 避免 JForex 回调线程永久阻塞在已停止的通道上。
+ */
+public final class EventRingBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(EventRingBuffer.class);
+
+    private final MarketEvent[] entries;
+    private final int mask;
+    private final int capacity;
+    private final AtomicLongArray published;
+    private final AtomicLong claimSequence = new AtomicLong(-1);
+    private final AtomicLong consumerSequence = new AtomicLong(-1);
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile boolean consumerRunning = true;
+    private final WaitStrategy waitStrategy;
+
+    public EventRingBuffer(int requestedCapacity, WaitStrategy waitStrategy) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2: " + requestedCapacity);
+        }
+        this.capacity = roundUpToPowerOfTwo(requestedCapacity);
+        this.mask = capacity - 1;
+        this.entries = new MarketEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new MarketEvent();
+            published.set(i, -1L);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * 认领下一个可写序号。若缓冲区已满则等待消费者释放槽位；消费者已退出时不等待，该事件被丢弃。
+     */
+    public long next() {
+        long sequence = claimSequence.incrementAndGet();
+        long wrapPoint = sequence - capacity;
+        while (wrapPoint > consumerSequence.get() && consumerRunning) {
+            LockSupport.parkNanos(1L);
+        }
+        if (!consumerRunning && droppedEvents.getAndIncrement() == 0) {
+            log.warn("Event consumer stopped, dropping events published to this ring (first at sequence {})", sequence);
+        }
+        return sequence;
+    }
+
+    public MarketEvent get(long sequence) {
+        return entries[(int) sequence & mask];
+    }
+
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == sequence;
+    }
+
+    /**
+     * 从 {@code from} 开始返回连续已发布的最大序号；若 {@code from} 尚未发布则返回 {@code from - 1}。
+     */
+    long highestPublished(long from) {
+        long claimed = claimSequence.get();
+        for (long sequence = from; sequence <= claimed; sequence++) {
+            if (!isPublished(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return claimed;
+    }
+
+    void markConsumed(long sequence) {
+        consumerSequence.set(sequence);
+    }
+
+    /**
+     * 由消费者线程在退出时调用，此后生产者不再等待槽位。
+     */
+    void markConsumerStopped() {
+        consumerRunning = false;
+    }
+
+    /**
+     * 消费者退出后被丢弃的事件数量。
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    long getConsumedSequence() {
+        return consumerSequence.get();
+    }
+
+    WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 已发布但尚未被消费的事件数量（近似值，用于监控）。
+     */
+    public long getBacklog() {
+        return Math.max(0, claimSequence.get() - consumerSequence.get());
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
@@ -0,0 +1,116 @@
+package phiner.de5.net.gateway.event;
+
+/**
+ * 环形缓冲区中的可复用事件槽。
+ * 槽位在启动时一次性预分配，生产者只复制原始类型字段，避免每个 Tick 产生 lambda / FutureTask 等对象。
+ */
+public final class MarketEvent {
+
+    public enum Type {
+        TICK,
+        BAR,
+        MESSAGE,
+        ACCOUNT
+    }
+
+    private Type type;
+    private String instrument;
+    private String period;
+    private long time;
+
+    // Tick 字段
+    private double bid;
+    private double ask;
+    private double bidVolume;
+    private double askVolume;
+
+    // Bar 字段
+    private double open;
+    private double close;
+    private double low;
+    private double high;
+    private double volume;
+    // 卖价一侧的 Bar，未知时为 NaN
+    private double askOpen;
+    private double askClose;
+    private double askLow;
+    private double askHigh;
+
+    // 订单消息 / 账户更新等低频事件直接携带 JForex 对象引用
+    private Object payload;
+
+    public void setTick(String instrument, long time, double bid, double ask, double bidVolume, double askVolume) {
+        this.type = Type.TICK;
+        this.instrument = instrument;
+        this.period = null;
+        this.time = time;
+        this.bid = bid;
+        this.ask = ask;
+        this.bidVolume = bidVolume;
+        this.askVolume = askVolume;
+        this.payload = null;
+    }
+
+    public void setBar(String instrument, String period, long time,
+                       double open, double close, double low, double high, double volume) {
+        setBar(instrument, period, time, open, close, low, high, volume, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * 同一时间的买价 Bar（{@code open..volume}）与卖价 Bar（{@code ask*}，未知时传 NaN）。
+     */
+    public void setBar(String instrument, String period, long time,
+                       double open, double close, double low, double high, double volume,
+                       double askOpen, double askClose, double askLow, double askHigh) {
+        this.type = Type.BAR;
+        this.instrument = instrument;
+        this.period = period;
+        this.time = time;
+        this.open = open;
+        this.close = close;
+        this.low = low;
+        this.high = high;
+        this.volume = volume;
+        this.askOpen = askOpen;
+        this.askClose = askClose;
+        this.askLow = askLow;
+        this.askHigh = askHigh;
+        this.payload = null;
+    }
+
+    public void setPayload(Type type, Object payload) {
+        this.type = type;
+        this.instrument = null;
+        this.period = null;
+        this.payload = payload;
+    }
+
+    /**
+     * 消费完成后释放对象引用，避免槽位长期持有已处理的消息。
+     */
+    void clear() {
+        this.type = null;
+        this.instrument = null;
+        this.period = null;
+        this.payload = null;
+    }
+
+    public Type getType() { return type; }
+    public String getInstrument() { return instrument; }
+    public String getPeriod() { return period; }
+    public long getTime() { return time; }
+    public double getBid() { return bid; }
+    public double getAsk() { return ask; }
+    public double getBidVolume() { return bidVolume; }
+    public double getAskVolume() { return askVolume; }
+    public double getOpen() { return open; }
+    public double getClose() { return close; }
+    public double getLow() { return low; }
+    public double getHigh() { return high; }
+    public double getVolume() { return volume; }
+    public double getAskOpen() { return askOpen; }
+    public double getAskClose() { return askClose; }
+    public double getAskLow() { return askLow; }
+    public double getAskHigh() { return askHigh; }
+    public Object getPayload() { return payload; }
+}
@@ -0,0 +1,10 @@
+package phiner.de5.net.gateway.event;
+
+/**
+ * 事件处理回调，由 {@link EventProcessor} 的消费线程按发布顺序调用。
+ */
+@FunctionalInterface
+public interface MarketEventHandler {
+
+    void onEvent(MarketEvent event) throws Exception;
+}
@@ -0,0 +1,44 @@
+package phiner.de5.net.gateway.event;
+
+import java.util.Locale;
+
+/**
+ * 消费者在等待下一个事件槽发布时采用的等待策略。
+ * <ul>
+ *   <li>{@code blocking}: 基于锁与条件变量挂起，CPU 占用最低（默认）。</li>
+ *   <li>{@code yielding}: 自旋若干次后让出 CPU，延迟与 CPU 占用折中。</li>
+ *   <li>{@code busy-spin}: 持续自旋，延迟最低，但会独占一个核心。</li>
+ * </ul>
+ */
+public interface WaitStrategy {
+
+    /**
+     * 等待指定序号的槽位被发布。
+     *
+     * @return {@code true} 表示槽位已可用；{@code false} 表示处理器已停止且该槽位仍未发布
+     */
+    boolean waitFor(long sequence, EventRingBuffer ringBuffer, EventProcessor processor) throws InterruptedException;
+
+    /**
+     * 生产者发布后唤醒可能处于阻塞状态的消费者。
+     */
+    void signalAllWhenBlocking();
+
+    static WaitStrategy fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return new BlockingWaitStrategy();
+        }
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "yielding":
+                return new YieldingWaitStrategy();
+            case "busy-spin":
+            case "busy_spin":
+            case "busyspin":
+                return new BusySpinWaitStrategy();
+            case "blocking":
+                return new BlockingWaitStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown event wait strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package phiner.de5.net.gateway.event;
+
+/**
+ * 先自旋再让出 CPU 的等待策略。
+ */
+public final class YieldingWaitStrategy implements WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public boolean waitFor(long sequence, EventRingBuffer ringBuffer, EventProcessor processor) {
+        int counter = SPIN_TRIES;
+        while (!ringBuffer.isPublished(sequence)) {
+            if (!processor.isRunning()) {
+                return false;
+            }
+            if (counter > 0) {
+                counter--;
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        // 消费者从不挂起，无需唤醒
+    }
+}
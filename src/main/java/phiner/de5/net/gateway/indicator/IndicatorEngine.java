@@ -0,0 +1,186 @@
+package phiner.de5.net.gateway.indicator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.config.ForexProperties;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.dto.IndicatorDTO;
+import phiner.de5.net.gateway.service.RedisService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * K 线收盘时递推计算 {@code forex.indicators} 配置的技术指标（EMA、RSI、ATR、布林带）。
+ * <p>
+ * 每个品种 × 周期维护一组 {@link StreamingIndicator} 状态，每根收盘 K 线 O(1) 更新；结果写入
+ * {@code gateway:indicator:{Instrument}:{Period}} ZSET（与 K 线相同的时间戳评分与保留条数），
+ * 并发布到同名频道。序列首次出现或历史预加载完成时，以 Redis 中已存储的 K 线重建状态并批量写入历史指标值。
+ * 早于或等于已处理时间的 K 线（重复、迟到）不再计算。
+ */
+@Slf4j
+@Component
+public class IndicatorEngine {
+
+    /**
+     * 单个品种周期的指标状态，所有访问在实例监视器内进行。
+     */
+    static final class Series {
+        private StreamingIndicator[] indicators;
+        private long lastTime = Long.MIN_VALUE;
+        private boolean built;
+
+        Series(IndicatorSpec[] specs) {
+            this.indicators = create(specs);
+        }
+
+        IndicatorDTO apply(BarDTO bar) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (StreamingIndicator indicator : indicators) {
+                indicator.update(bar.getHigh(), bar.getLow(), bar.getClose());
+                indicator.write(values);
+            }
+            lastTime = bar.getTime();
+            return new IndicatorDTO(bar.getInstrument(), bar.getPeriod(), bar.getTime(), values);
+        }
+
+        /**
+         * 以按时间降序排列的已存储 K 线中早于 {@code before} 的部分重新计算，返回已预热的历史指标值（升序）。
+         */
+        List<IndicatorDTO> rebuild(IndicatorSpec[] specs, List<BarDTO> newestFirst, long before) {
+            indicators = create(specs);
+            lastTime = Long.MIN_VALUE;
+            built = true;
+            List<IndicatorDTO> results = new ArrayList<>(newestFirst.size());
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                BarDTO bar = newestFirst.get(i);
+                if (bar.getTime() >= before) {
+                    break;
+                }
+                if (bar.getTime() <= lastTime) {
+                    continue;
+                }
+                IndicatorDTO result = apply(bar);
+                if (!result.getValues().isEmpty()) {
+                    results.add(result);
+                }
+            }
+            return results;
+        }
+
+        private static StreamingIndicator[] create(IndicatorSpec[] specs) {
+            StreamingIndicator[] indicators = new StreamingIndicator[specs.length];
+            for (int i = 0; i < specs.length; i++) {
+                indicators[i] = StreamingIndicator.create(specs[i]);
+            }
+            return indicators;
+        }
+    }
+
+    private final IndicatorSpec[] specs;
+    private final RedisService redisService;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public IndicatorEngine(ForexProperties forexProperties, RedisService redisService) {
+        this.redisService = redisService;
+        this.specs = parseSpecs(forexProperties.getIndicators());
+        if (specs.length > 0) {
+            log.info("K 线指标计算已启用: {}", Arrays.toString(specs));
+        }
+    }
+
+    static IndicatorSpec[] parseSpecs(List<String> configured) {
+        if (configured == null || configured.isEmpty()) {
+            return new IndicatorSpec[0];
+        }
+        Set<String> seen = new LinkedHashSet<>();
+        List<IndicatorSpec> parsed = new ArrayList<>();
+        for (String spec : configured) {
+            if (spec == null || spec.isBlank()) {
+                continue;
+            }
+            try {
+                IndicatorSpec indicator = IndicatorSpec.parse(spec);
+                if (seen.add(indicator.getName())) {
+                    parsed.add(indicator);
+                }
+            } catch (IllegalArgumentException e) {
+                log.error("无效的指标配置 '{}': {}", spec.trim(), e.getMessage());
+            }
+        }
+        return parsed.toArray(new IndicatorSpec[0]);
+    }
+
+    public boolean isEnabled() {
+        return specs.length > 0;
+    }
+
+    public List<IndicatorSpec> getSpecs() {
+        return List.of(specs);
+    }
+
+    /**
+     * 收盘 K 线已写入 Redis 后调用：更新该序列的指标，写入并推送本根 K 线的结果。
+     */
+    public void onBar(BarDTO bar) {
+        if (specs.length == 0 || bar.getInstrument() == null || bar.getPeriod() == null) {
+            return;
+        }
+        Series target = seriesFor(bar.getInstrument(), bar.getPeriod());
+        List<IndicatorDTO> rebuilt = null;
+        IndicatorDTO result = null;
+        synchronized (target) {
+            if (!target.built) {
+                // 序列首根实时 K 线：先以之前已存储的 K 线建立状态，避免从零预热
+                rebuilt = target.rebuild(specs, redisService.getKLine(bar.getInstrument(), bar.getPeriod()),
+                        bar.getTime());
+            }
+            if (bar.getTime() > target.lastTime) {
+                result = target.apply(bar);
+            }
+        }
+        if (rebuilt != null && !rebuilt.isEmpty()) {
+            redisService.addIndicatorValues(rebuilt);
+        }
+        if (result != null) {
+            redisService.addIndicatorValue(result);
+            redisService.publishIndicator(result);
+        }
+    }
+
+    /**
+     * 历史 K 线载入完成后调用：以已存储序列中的收盘 K 线重建状态，并批量写入历史指标值。
+     * <p>
+     * ZSET 中最新的一条可能是原地更新的未收盘 K 线，不能计入状态，否则该分桶收盘时会被当作已处理。
+     * 因此只取不晚于已载入的最后一根 {@code to} 与已处理的最后一根实时收盘 K 线的部分。
+     */
+    public void onHistoryLoaded(String instrument, String period, long to) {
+        if (specs.length == 0 || instrument == null || period == null) {
+            return;
+        }
+        Series target = seriesFor(instrument, period);
+        List<IndicatorDTO> rebuilt;
+        synchronized (target) {
+            long lastClosed = Math.max(to, target.lastTime);
+            long before = lastClosed == Long.MAX_VALUE ? Long.MAX_VALUE : lastClosed + 1;
+            rebuilt = target.rebuild(specs, redisService.getKLine(instrument, period), before);
+        }
+        int written = redisService.addIndicatorValues(rebuilt);
+        log.debug("已按历史重算 {} 的 {} 周期指标: {} 条", instrument, period, written);
+    }
+
+    private Series seriesFor(String instrument, String period) {
+        String key = instrument + ":" + period;
+        Series target = series.get(key);
+        if (target == null) {
+            target = series.computeIfAbsent(key, k -> new Series(specs));
+        }
+        return target;
+    }
+}
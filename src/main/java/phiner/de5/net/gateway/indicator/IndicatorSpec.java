@@ -0,0 +1,82 @@
+package phiner.de5.net.gateway.indicator;
+
+import java.util.Locale;
+
+/**
+ * 指标配置项，格式为 {@code 类型:长度[:倍数]}，如 {@code EMA:20}、{@code RSI:14}、{@code ATR:14}、{@code BB:20:2}。
+ * <p>
+ * 结果中的名称为小写类型加长度（{@code ema20}、{@code rsi14}）；布林带倍数不是 2 时附加倍数，如 {@code bb20x2.5}。
+ */
+public final class IndicatorSpec {
+
+    public enum Type { EMA, RSI, ATR, BB }
+
+    static final double DEFAULT_BB_MULTIPLIER = 2.0;
+
+    private final Type type;
+    private final int length;
+    private final double multiplier;
+    private final String name;
+
+    private IndicatorSpec(Type type, int length, double multiplier) {
+        this.type = type;
+        this.length = length;
+        this.multiplier = multiplier;
+        String base = type.name().toLowerCase(Locale.ROOT) + length;
+        this.name = type == Type.BB && multiplier != DEFAULT_BB_MULTIPLIER ? base + "x" + multiplier : base;
+    }
+
+    /**
+     * @throws IllegalArgumentException 格式无效时
+     */
+    public static IndicatorSpec parse(String spec) {
+        String trimmed = spec == null ? "" : spec.trim();
+        String[] parts = trimmed.split(":");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Invalid indicator: '" + spec + "'");
+        }
+        Type type;
+        int length;
+        double multiplier = DEFAULT_BB_MULTIPLIER;
+        try {
+            type = Type.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            length = Integer.parseInt(parts[1].trim());
+            if (parts.length == 3) {
+                if (type != Type.BB) {
+                    throw new IllegalArgumentException("Only BB takes a multiplier: '" + spec + "'");
+                }
+                multiplier = Double.parseDouble(parts[2].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid indicator: '" + spec + "'", e);
+        }
+        if (length < 1 || (type == Type.BB && length < 2)) {
+            throw new IllegalArgumentException("Indicator length out of range: '" + spec + "'");
+        }
+        if (!(multiplier > 0) || Double.isInfinite(multiplier)) {
+            throw new IllegalArgumentException("Invalid BB multiplier: '" + spec + "'");
+        }
+        return new IndicatorSpec(type, length, multiplier);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
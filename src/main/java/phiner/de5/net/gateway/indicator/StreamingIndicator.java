@@ -0,0 +1,221 @@
+package phiner.de5.net.gateway.indicator;
+
+import java.util.Map;
+
+/**
+ * 逐根 K 线递推的指标状态，每根收盘 K 线 O(1) 更新，只保存原始类型字段（布林带另有定长窗口数组）。
+ * <p>
+ * 预热阶段（K 线数量不足指标长度）不输出数值。实例不是线程安全的，由 {@link IndicatorEngine} 按序列加锁调用。
+ */
+abstract class StreamingIndicator {
+
+    protected final String name;
+
+    protected StreamingIndicator(String name) {
+        this.name = name;
+    }
+
+    static StreamingIndicator create(IndicatorSpec spec) {
+        return switch (spec.getType()) {
+            case EMA -> new Ema(spec.getName(), spec.getLength());
+            case RSI -> new Rsi(spec.getName(), spec.getLength());
+            case ATR -> new Atr(spec.getName(), spec.getLength());
+            case BB -> new Bollinger(spec.getName(), spec.getLength(), spec.getMultiplier());
+        };
+    }
+
+    abstract void update(double high, double low, double close);
+
+    /**
+     * 预热完成后将当前值写入 {@code out}。
+     */
+    abstract void write(Map<String, Double> out);
+
+    /**
+     * 指数移动平均，以前 N 根收盘价的简单平均作为初值。
+     */
+    static final class Ema extends StreamingIndicator {
+        private final int length;
+        private final double alpha;
+        private int count;
+        private double value;
+
+        Ema(String name, int length) {
+            super(name);
+            this.length = length;
+            this.alpha = 2.0 / (length + 1);
+        }
+
+        @Override
+        void update(double high, double low, double close) {
+            if (count < length) {
+                value += close;
+                if (++count == length) {
+                    value /= length;
+                }
+                return;
+            }
+            value += alpha * (close - value);
+        }
+
+        @Override
+        void write(Map<String, Double> out) {
+            if (count >= length) {
+                out.put(name, value);
+            }
+        }
+    }
+
+    /**
+     * Wilder 平滑的相对强弱指数，需要 N + 1 根 K 线。
+     */
+    static final class Rsi extends StreamingIndicator {
+        private final int length;
+        private int changes;
+        private boolean hasPrevious;
+        private double previousClose;
+        private double averageGain;
+        private double averageLoss;
+
+        Rsi(String name, int length) {
+            super(name);
+            this.length = length;
+        }
+
+        @Override
+        void update(double high, double low, double close) {
+            if (!hasPrevious) {
+                hasPrevious = true;
+                previousClose = close;
+                return;
+            }
+            double change = close - previousClose;
+            previousClose = close;
+            double gain = change > 0 ? change : 0;
+            double loss = change < 0 ? -change : 0;
+            if (changes < length) {
+                averageGain += gain;
+                averageLoss += loss;
+                if (++changes == length) {
+                    averageGain /= length;
+                    averageLoss /= length;
+                }
+                return;
+            }
+            averageGain = (averageGain * (length - 1) + gain) / length;
+            averageLoss = (averageLoss * (length - 1) + loss) / length;
+        }
+
+        @Override
+        void write(Map<String, Double> out) {
+            if (changes < length) {
+                return;
+            }
+            double total = averageGain + averageLoss;
+            out.put(name, total == 0 ? 50.0 : 100.0 * averageGain / total);
+        }
+    }
+
+    /**
+     * Wilder 平滑的平均真实波幅，首根 K 线的真实波幅取高低差。
+     */
+    static final class Atr extends StreamingIndicator {
+        private final int length;
+        private int count;
+        private boolean hasPrevious;
+        private double previousClose;
+        private double value;
+
+        Atr(String name, int length) {
+            super(name);
+            this.length = length;
+        }
+
+        @Override
+        void update(double high, double low, double close) {
+            double trueRange = high - low;
+            if (hasPrevious) {
+                trueRange = Math.max(trueRange, Math.max(Math.abs(high - previousClose), Math.abs(low - previousClose)));
+            }
+            hasPrevious = true;
+            previousClose = close;
+            if (count < length) {
+                value += trueRange;
+                if (++count == length) {
+                    value /= length;
+                }
+                return;
+            }
+            value = (value * (length - 1) + trueRange) / length;
+        }
+
+        @Override
+        void write(Map<String, Double> out) {
+            if (count >= length) {
+                out.put(name, value);
+            }
+        }
+    }
+
+    /**
+     * 布林带：N 根收盘价的简单平均 ± 倍数 × 总体标准差。窗口为定长环形数组，和与平方和递推维护。
+     */
+    static final class Bollinger extends StreamingIndicator {
+        // 递推的平方和会累积舍入误差，定期按窗口重算
+        private static final int RESUM_INTERVAL = 1024;
+
+        private final double[] window;
+        private final double multiplier;
+        private int count;
+        private int next;
+        private int sinceResum;
+        private double sum;
+        private double sumOfSquares;
+
+        Bollinger(String name, int length, double multiplier) {
+            super(name);
+            this.window = new double[length];
+            this.multiplier = multiplier;
+        }
+
+        @Override
+        void update(double high, double low, double close) {
+            if (count == window.length) {
+                double evicted = window[next];
+                sum -= evicted;
+                sumOfSquares -= evicted * evicted;
+            } else {
+                count++;
+            }
+            window[next] = close;
+            next = (next + 1) % window.length;
+            sum += close;
+            sumOfSquares += close * close;
+            if (++sinceResum >= RESUM_INTERVAL) {
+                resum();
+            }
+        }
+
+        @Override
+        void write(Map<String, Double> out) {
+            if (count < window.length) {
+                return;
+            }
+            double mean = sum / count;
+            double deviation = Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+            out.put(name + ".mid", mean);
+            out.put(name + ".upper", mean + multiplier * deviation);
+            out.put(name + ".lower", mean - multiplier * deviation);
+        }
+
+        private void resum() {
+            sinceResum = 0;
+            sum = 0;
+            sumOfSquares = 0;
+            for (int i = 0; i < count; i++) {
+                sum += window[i];
+                sumOfSquares += window[i] * window[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package phiner.de5.net.gateway.kline;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.KLineManager;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.util.PeriodUtil;
+import phiner.de5.net.gateway.util.PriceCodec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地 Tick → K 线聚合引擎，用于 JForex {@code Period} 之外的自定义周期（秒级、非标准分钟/小时、Tick 数 K 线）。
+ * <p>
+ * 每个品种 × 周期持有一个原始类型累加器，Tick 路径上只做比较与赋值；K 线收盘后经
+ * {@link KLineManager#onBar} 写入 Redis 并推送，与 JForex 原生 K 线走同一条路径。
+ * 价格取买价（与 JForex 推送的 Bid K 线一致），成交量累加买方成交量。
+ * <p>
+ * 同一品种的 Tick 只由其所属事件通道线程投递，累加器无需加锁。
+ * 时间周期的 K 线在下一分桶的首个 Tick 到达时收盘。
+ */
+@Slf4j
+@Component
+public class BarAggregator {
+
+    static final class Accumulator {
+        final CustomPeriod period;
+        boolean active;
+        long start;
+        int ticks;
+        double open;
+        double high;
+        double low;
+        double close;
+        double volume;
+
+        Accumulator(CustomPeriod period) {
+            this.period = period;
+        }
+
+        void begin(long time, double price, double tickVolume) {
+            active = true;
+            start = time;
+            ticks = 1;
+            open = price;
+            high = price;
+            low = price;
+            close = price;
+            volume = tickVolume;
+        }
+
+        void add(double price, double tickVolume) {
+            ticks++;
+            if (price > high) {
+                high = price;
+            }
+            if (price < low) {
+                low = price;
+            }
+            close = price;
+            volume += tickVolume;
+        }
+    }
+
+    private final KLineManager kLineManager;
+    private final CustomPeriod[] periods;
+    private final Map<String, Accumulator[]> accumulators = new ConcurrentHashMap<>();
+
+    public BarAggregator(KLineManager kLineManager,
+                         @Value("${gateway.kline.custom-periods:}") String customPeriods) {
+        this.kLineManager = kLineManager;
+        this.periods = parsePeriods(customPeriods);
+        if (periods.length > 0) {
+            log.info("本地 K 线聚合已启用，自定义周期: {}", Arrays.toString(periods));
+        }
+    }
+
+    static CustomPeriod[] parsePeriods(String customPeriods) {
+        if (customPeriods == null || customPeriods.isBlank()) {
+            return new CustomPeriod[0];
+        }
+        Set<String> seen = new LinkedHashSet<>();
+        List<CustomPeriod> parsed = new ArrayList<>();
+        for (String spec : customPeriods.split(",")) {
+            String trimmed = spec.trim();
+            if (trimmed.isEmpty() || !seen.add(trimmed)) {
+                continue;
+            }
+            if (PeriodUtil.isStandard(trimmed)) {
+                // 标准周期已由 JForex 推送，本地再聚合会写入同一个 K 线键
+                log.warn("自定义周期 '{}' 与 JForex 标准周期重复，已忽略，请通过 FOREX_PERIODS 配置", trimmed);
+                continue;
+            }
+            try {
+                parsed.add(CustomPeriod.parse(trimmed));
+            } catch (IllegalArgumentException e) {
+                log.error("无效的自定义周期配置 '{}': {}", trimmed, e.getMessage());
+            }
+        }
+        return parsed.toArray(new CustomPeriod[0]);
+    }
+
+    public boolean isEnabled() {
+        return periods.length > 0;
+    }
+
+    public List<CustomPeriod> getPeriods() {
+        return List.of(periods);
+    }
+
+    public void onTick(String instrument, long time, double bid, double bidVolume) {
+        if (periods.length == 0) {
+            return;
+        }
+        Accumulator[] slots = accumulators.get(instrument);
+        if (slots == null) {
+            slots = accumulators.computeIfAbsent(instrument, key -> createAccumulators());
+        }
+        for (Accumulator accumulator : slots) {
+            if (accumulator.period.isTickBased()) {
+                onTickCountBar(instrument, accumulator, time, bid, bidVolume);
+            } else {
+                onTimeBar(instrument, accumulator, time, bid, bidVolume);
+            }
+        }
+    }
+
+    private void onTimeBar(String instrument, Accumulator accumulator, long time, double bid, double bidVolume) {
+        long bucket = accumulator.period.bucketStart(time);
+        if (!accumulator.active) {
+            accumulator.begin(bucket, bid, bidVolume);
+        } else if (bucket > accumulator.start) {
+            emit(instrument, accumulator);
+            accumulator.begin(bucket, bid, bidVolume);
+        } else {
+            // 同一分桶（或乱序到达的旧 Tick）并入当前 K 线
+            accumulator.add(bid, bidVolume);
+        }
+    }
+
+    private void onTickCountBar(String instrument, Accumulator accumulator, long time, double bid, double bidVolume) {
+        if (!accumulator.active) {
+            accumulator.begin(time, bid, bidVolume);
+        } else {
+            accumulator.add(bid, bidVolume);
+        }
+        if (accumulator.ticks >= accumulator.period.getTickCount()) {
+            emit(instrument, accumulator);
+            accumulator.active = false;
+        }
+    }
+
+    private void emit(String instrument, Accumulator accumulator) {
+        PriceCodec codec = PriceCodec.forInstrument(instrument);
+        BarDTO bar = new BarDTO(instrument, accumulator.period.getLabel(), accumulator.start,
+                codec.round(accumulator.open), codec.round(accumulator.close),
+                codec.round(accumulator.low), codec.round(accumulator.high), accumulator.volume);
+        try {
+            kLineManager.onBar(instrument, bar);
+        } catch (Exception e) {
+            log.error("发布自定义周期 K 线失败 [{} {}]: {}", instrument, accumulator.period, e.getMessage(), e);
+        }
+    }
+
+    private Accumulator[] createAccumulators() {
+        Accumulator[] slots = new Accumulator[periods.length];
+        for (int i = 0; i < periods.length; i++) {
+            slots[i] = new Accumulator(periods[i]);
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,398 @@
+package phiner.de5.net.gateway.kline;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.dto.BarDTO;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地 K 线归档（{@code gateway.kline.archive.enabled=true}），保存超出 Redis 存储上限的深度历史。
+ * <p>
+ * 每个品种周期一个目录 {@code {dir}/{Instrument}/{Period}/}，六个列文件
+ * （time、open、high、low、close、volume）与四个卖价列文件（askOpen、askHigh、askLow、askClose，
+ * 单边 K 线记为 0），每个文件为 16 字节头（魔数、版本、根数）加定长 8 字节记录，通过内存映射读写。
+ * 根数以前六列为准，卖价列缺失时按全 0 补齐。记录按时间升序排列：已存在的时间戳原位覆盖，
+ * 新的时间戳按序插入。实时 K 线通常先于重启后的补缺与内部缺口回填写入，较早的 K 线因此需要插入而不是跳过；
+ * 一批插入从尾部向前一次归并完成，其后的记录只移动一次。容量不足时按倍数扩展映射。
+ * <p>
+ * 同一序列的读写在序列对象上串行化；根数在所有列写完后才更新，进程中断时未计入的记录在下次打开时被忽略。
+ * 插入过程中中断可能使已计入的记录不再有序，打开时从第一处乱序截断并记录警告。
+ */
+@Slf4j
+@Component
+public class BarArchive {
+
+    static final int MAGIC = 0x47574B41; // "GWKA"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 8;
+    static final String[] COLUMNS = {"time", "open", "high", "low", "close", "volume",
+            "askOpen", "askHigh", "askLow", "askClose"};
+    /** 决定根数的列数，其后为可选的卖价列。 */
+    private static final int CORE_COLUMNS = 6;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final long MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES;
+
+    /**
+     * 一个品种周期的列文件。
+     */
+    static final class Series {
+        private final FileChannel[] channels = new FileChannel[COLUMNS.length];
+        private final MappedByteBuffer[] columns = new MappedByteBuffer[COLUMNS.length];
+        private long capacity;
+        private int count;
+        private boolean failed;
+    }
+
+    private final boolean enabled;
+    private final Path root;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public BarArchive(@Value("${gateway.kline.archive.enabled:false}") boolean enabled,
+                      @Value("${gateway.kline.archive.dir:data/kline-archive}") String dir) {
+        this.enabled = enabled;
+        this.root = Paths.get(dir);
+        if (enabled) {
+            log.info("K 线本地归档已启用: {}", root.toAbsolutePath());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void append(BarDTO bar) {
+        if (enabled && bar != null) {
+            append(List.of(bar));
+        }
+    }
+
+    /**
+     * 归档同一品种周期的 K 线。
+     *
+     * @return 写入（追加、插入或覆盖）的根数
+     */
+    public int append(List<BarDTO> bars) {
+        if (!enabled || bars == null || bars.isEmpty()) {
+            return 0;
+        }
+        String instrument = bars.get(0).getInstrument();
+        String period = bars.get(0).getPeriod();
+        Series target = open(instrument, period, true);
+        if (target == null) {
+            return 0;
+        }
+        synchronized (target) {
+            try {
+                int count = target.count;
+                int overwritten = 0;
+                TreeMap<Long, BarDTO> inserts = new TreeMap<>();
+                for (BarDTO bar : bars) {
+                    int index = search(target.columns[0], count, bar.getTime());
+                    if (index >= 0) {
+                        writeRecord(target, index, bar);
+                        overwritten++;
+                    } else {
+                        inserts.put(bar.getTime(), bar);
+                    }
+                }
+                if (inserts.isEmpty()) {
+                    return overwritten;
+                }
+                long insertBefore = count > 0 ? target.columns[0].getLong(offset(count - 1)) : Long.MIN_VALUE;
+                if (inserts.firstKey() < insertBefore) {
+                    log.info("BarArchive: Inserting {} bars of {} {} from {} before the archive tail",
+                            inserts.headMap(insertBefore).size(), instrument, period, inserts.firstKey());
+                }
+                ensureCapacity(target, (long) count + inserts.size());
+                mergeFromTail(target, count, inserts);
+                count += inserts.size();
+                for (MappedByteBuffer column : target.columns) {
+                    column.putLong(8, count);
+                }
+                target.count = count;
+                return overwritten + inserts.size();
+            } catch (IOException | RuntimeException e) {
+                log.warn("BarArchive: Failed to append {} bars to {} {}: {}", bars.size(), instrument, period, e.getMessage());
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 将按时间升序的新记录并入已有的 {@code count} 条记录：从合并后的末尾向前写，
+     * 每条已有记录最多移动一次，插入位置之前的记录不动。
+     */
+    private static void mergeFromTail(Series target, int count, TreeMap<Long, BarDTO> inserts) {
+        int existing = count - 1;
+        int write = count + inserts.size() - 1;
+        for (BarDTO bar : inserts.descendingMap().values()) {
+            while (existing >= 0 && target.columns[0].getLong(offset(existing)) > bar.getTime()) {
+                copyRecord(target, existing--, write--);
+            }
+            writeRecord(target, write--, bar);
+        }
+    }
+
+    private static void copyRecord(Series target, int from, int to) {
+        int source = offset(from);
+        int destination = offset(to);
+        for (MappedByteBuffer column : target.columns) {
+            column.putLong(destination, column.getLong(source));
+        }
+    }
+
+    /**
+     * 时间在 {@code [from, to]} 内的前 {@code limit} 根 K 线，按时间升序。
+     */
+    public List<BarDTO> range(String instrument, String period, long from, long to, int limit) {
+        if (!enabled || limit <= 0 || from > to) {
+            return Collections.emptyList();
+        }
+        Series target = open(instrument, period, false);
+        if (target == null) {
+            return Collections.emptyList();
+        }
+        synchronized (target) {
+            int start = lowerBound(target.columns[0], target.count, from);
+            List<BarDTO> bars = new ArrayList<>(Math.min(limit, Math.max(0, target.count - start)));
+            for (int i = start; i < target.count && bars.size() < limit; i++) {
+                long time = target.columns[0].getLong(offset(i));
+                if (time > to) {
+                    break;
+                }
+                bars.add(readRecord(target, i, instrument, period, time));
+            }
+            return bars;
+        }
+    }
+
+    /**
+     * 不晚于 {@code to} 的最新 {@code count} 根 K 线中最早一根的时间；没有时返回 {@code null}。
+     * 查询服务据此把“最新 N 根”转为分页的时间范围读取。
+     */
+    public Long firstTimeOfLatest(String instrument, String period, long to, int count) {
+        if (!enabled || count <= 0) {
+            return null;
+        }
+        Series target = open(instrument, period, false);
+        if (target == null) {
+            return null;
+        }
+        synchronized (target) {
+            int end = to == Long.MAX_VALUE ? target.count : lowerBound(target.columns[0], target.count, to + 1);
+            if (end == 0) {
+                return null;
+            }
+            return target.columns[0].getLong(offset(Math.max(0, end - count)));
+        }
+    }
+
+    /**
+     * 已归档的根数，序列不存在时为 0。
+     */
+    public int size(String instrument, String period) {
+        Series target = enabled ? open(instrument, period, false) : null;
+        if (target == null) {
+            return 0;
+        }
+        synchronized (target) {
+            return target.count;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Series target : series.values()) {
+            synchronized (target) {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    try {
+                        if (target.columns[i] != null) {
+                            target.columns[i].force();
+                        }
+                        if (target.channels[i] != null) {
+                            target.channels[i].close();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("BarArchive: Failed to close column {}: {}", COLUMNS[i], e.getMessage());
+                    }
+                }
+                target.failed = true;
+            }
+        }
+        series.clear();
+    }
+
+    /**
+     * 打开（必要时创建）序列的列文件；{@code create=false} 时序列目录不存在则返回 {@code null}。
+     */
+    private Series open(String instrument, String period, boolean create) {
+        if (instrument == null || period == null) {
+            return null;
+        }
+        Path directory = root.resolve(fileName(instrument)).resolve(fileName(period));
+        if (!create && !series.containsKey(instrument + ":" + period) && !Files.isDirectory(directory)) {
+            return null;
+        }
+        Series target = series.computeIfAbsent(instrument + ":" + period, key -> new Series());
+        synchronized (target) {
+            if (target.failed) {
+                return null;
+            }
+            if (target.columns[0] != null) {
+                return target;
+            }
+            try {
+                Files.createDirectories(directory);
+                long count = Long.MAX_VALUE;
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    target.channels[i] = FileChannel.open(directory.resolve(COLUMNS[i] + ".col"),
+                            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    long records = Math.max(0, (target.channels[i].size() - HEADER_BYTES) / RECORD_BYTES);
+                    target.columns[i] = map(target.channels[i], Math.max(INITIAL_CAPACITY, records));
+                    long stored = header(target.columns[i], directory, COLUMNS[i]);
+                    if (i < CORE_COLUMNS) {
+                        count = Math.min(count, stored);
+                    }
+                }
+                target.capacity = (target.columns[0].capacity() - HEADER_BYTES) / RECORD_BYTES;
+                // 各列根数不一致时（写入中断）以最小值为准
+                count = Math.min(count, target.capacity);
+                int ordered = orderedPrefix(target.columns[0], (int) count);
+                if (ordered < count) {
+                    log.warn("BarArchive: Archive of {} {} is out of order at record {} of {} (interrupted insert), "
+                            + "truncating", instrument, period, ordered, count);
+                    count = ordered;
+                }
+                target.count = (int) count;
+                for (MappedByteBuffer column : target.columns) {
+                    column.putLong(8, count);
+                }
+                return target;
+            } catch (IOException | RuntimeException e) {
+                target.failed = true;
+                log.warn("BarArchive: Failed to open archive of {} {}: {}", instrument, period, e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private static long header(MappedByteBuffer column, Path directory, String name) throws IOException {
+        int magic = column.getInt(0);
+        if (magic == 0) {
+            column.putInt(0, MAGIC);
+            column.putInt(4, VERSION);
+            column.putLong(8, 0);
+            return 0;
+        }
+        if (magic != MAGIC || column.getInt(4) != VERSION) {
+            throw new IOException("Unsupported archive column " + directory.resolve(name));
+        }
+        return column.getLong(8);
+    }
+
+    private static void ensureCapacity(Series target, long needed) throws IOException {
+        if (needed <= target.capacity) {
+            return;
+        }
+        if (needed > MAX_CAPACITY) {
+            throw new IOException("Archive series is full");
+        }
+        long capacity = Math.min(MAX_CAPACITY, Math.max(needed, target.capacity * 2));
+        for (int i = 0; i < COLUMNS.length; i++) {
+            target.columns[i] = map(target.channels[i], capacity);
+        }
+        target.capacity = capacity;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long capacity) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + capacity * RECORD_BYTES);
+    }
+
+    private static void writeRecord(Series target, int index, BarDTO bar) {
+        int offset = offset(index);
+        target.columns[1].putDouble(offset, bar.getOpen());
+        target.columns[2].putDouble(offset, bar.getHigh());
+        target.columns[3].putDouble(offset, bar.getLow());
+        target.columns[4].putDouble(offset, bar.getClose());
+        target.columns[5].putDouble(offset, bar.getVolume());
+        boolean withAsk = bar.hasAsk();
+        target.columns[6].putDouble(offset, withAsk ? bar.getAskOpen() : 0);
+        target.columns[7].putDouble(offset, withAsk ? bar.getAskHigh() : 0);
+        target.columns[8].putDouble(offset, withAsk ? bar.getAskLow() : 0);
+        target.columns[9].putDouble(offset, withAsk ? bar.getAskClose() : 0);
+        target.columns[0].putLong(offset, bar.getTime());
+    }
+
+    private static BarDTO readRecord(Series target, int index, String instrument, String period, long time) {
+        int offset = offset(index);
+        boolean withAsk = target.columns[6].getDouble(offset) != 0;
+        return new BarDTO(instrument, period, time,
+                target.columns[1].getDouble(offset),
+                target.columns[4].getDouble(offset),
+                target.columns[3].getDouble(offset),
+                target.columns[2].getDouble(offset),
+                target.columns[5].getDouble(offset),
+                withAsk ? target.columns[6].getDouble(offset) : null,
+                withAsk ? target.columns[9].getDouble(offset) : null,
+                withAsk ? target.columns[8].getDouble(offset) : null,
+                withAsk ? target.columns[7].getDouble(offset) : null);
+    }
+
+    /**
+     * 时间严格递增的最长前缀的长度。
+     */
+    private static int orderedPrefix(MappedByteBuffer times, int count) {
+        for (int i = 1; i < count; i++) {
+            if (times.getLong(offset(i)) <= times.getLong(offset(i - 1))) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 第一个时间不早于 {@code time} 的下标。
+     */
+    private static int lowerBound(MappedByteBuffer times, int count, long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times.getLong(offset(mid)) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int search(MappedByteBuffer times, int count, long time) {
+        int index = lowerBound(times, count, time);
+        return index < count && times.getLong(offset(index)) == time ? index : -1;
+    }
+
+    private static int offset(int index) {
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    static String fileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
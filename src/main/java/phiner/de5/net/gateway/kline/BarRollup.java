@@ -0,0 +1,337 @@
+package phiner.de5.net.gateway.kline;
+
+import com.dukascopy.api.Period;
+import lombok.extern.slf4j.Slf4j;
+import phiner.de5.net.gateway.KLineManager;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.util.PeriodUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 由基础周期（默认 1 分钟）的收盘 K 线逐级汇总出更高周期的 K 线，取代向 JForex 单独获取这些周期。
+ * <p>
+ * 日内周期按 UTC 对齐（与 JForex 一致）；日线、周线的起点由 {@link BarStartResolver}
+ * （即 {@code IHistory.getBarStart}）给出，遵循 JForex 的日线偏移与周起始设置。
+ * 当某根基础 K 线之后的下一根已属于新的分桶时，当前分桶即收盘并立即写出，无需等待下一根 K 线到达。
+ * <p>
+ * 从分桶中途开始累加（进程刚启动、或历史区间的首个分桶）的 K 线在收盘时会用 Redis 中已存储的
+ * 基础 K 线重建，保证开盘价与高低点完整。实时路径由所属事件通道线程调用，同一品种无需加锁。
+ */
+@Slf4j
+public final class BarRollup {
+
+    /**
+     * 周期分桶起点，通常为 {@code IHistory::getBarStart}。
+     */
+    @FunctionalInterface
+    public interface BarStartResolver {
+        long barStart(Period period, long time) throws Exception;
+    }
+
+    static final class Accumulator {
+        final int target;
+        boolean active;
+        boolean partial;
+        long start;
+        long lastTime;
+        double open;
+        double high;
+        double low;
+        double close;
+        double volume;
+        // 分桶内每根基础 K 线都带卖价时才汇总卖价一侧
+        boolean ask;
+        double askOpen;
+        double askHigh;
+        double askLow;
+        double askClose;
+
+        Accumulator(int target) {
+            this.target = target;
+        }
+
+        void begin(long bucket, BarDTO bar) {
+            active = true;
+            partial = bar.getTime() != bucket;
+            start = bucket;
+            lastTime = bar.getTime();
+            open = bar.getOpen();
+            high = bar.getHigh();
+            low = bar.getLow();
+            close = bar.getClose();
+            volume = bar.getVolume();
+            ask = bar.hasAsk();
+            if (ask) {
+                askOpen = bar.getAskOpen();
+                askHigh = bar.getAskHigh();
+                askLow = bar.getAskLow();
+                askClose = bar.getAskClose();
+            }
+        }
+
+        void add(BarDTO bar) {
+            lastTime = bar.getTime();
+            if (bar.getHigh() > high) {
+                high = bar.getHigh();
+            }
+            if (bar.getLow() < low) {
+                low = bar.getLow();
+            }
+            close = bar.getClose();
+            volume += bar.getVolume();
+            ask &= bar.hasAsk();
+            if (ask) {
+                askHigh = Math.max(askHigh, bar.getAskHigh());
+                askLow = Math.min(askLow, bar.getAskLow());
+                askClose = bar.getAskClose();
+            }
+        }
+    }
+
+    private final Period base;
+    private final String baseLabel;
+    private final Period[] targets;
+    private final String[] labels;
+    private final BarStartResolver resolver;
+    private final KLineManager kLineManager;
+    private final RedisService redisService;
+    private final Map<String, Accumulator[]> live = new ConcurrentHashMap<>();
+
+    public BarRollup(Period base, Collection<Period> targets, BarStartResolver resolver,
+                     KLineManager kLineManager, RedisService redisService) {
+        this.base = base;
+        this.baseLabel = PeriodUtil.format(base.toString());
+        this.targets = targets.stream()
+                .sorted(Comparator.comparingLong(Period::getInterval))
+                .toArray(Period[]::new);
+        this.labels = new String[this.targets.length];
+        for (int i = 0; i < this.targets.length; i++) {
+            labels[i] = PeriodUtil.format(this.targets[i].toString());
+        }
+        this.resolver = resolver;
+        this.kLineManager = kLineManager;
+        this.redisService = redisService;
+    }
+
+    /**
+     * 可由 {@code base} 精确汇总的周期：时长为基础周期的整数倍且不超过周线。
+     * 日线、周线的起点可能有整点偏移，要求基础周期不超过 1 小时。
+     */
+    public static List<Period> derivable(Period base, Collection<Period> periods) {
+        List<Period> derived = new ArrayList<>();
+        long baseInterval = base.getInterval();
+        for (Period period : periods) {
+            long interval = period.getInterval();
+            if (period == base || baseInterval <= 0 || interval <= baseInterval || interval % baseInterval != 0
+                    || interval > Period.WEEKLY.getInterval()) {
+                continue;
+            }
+            if (interval >= Period.DAILY.getInterval() && baseInterval > Period.ONE_HOUR.getInterval()) {
+                continue;
+            }
+            derived.add(period);
+        }
+        return derived;
+    }
+
+    public Period getBasePeriod() {
+        return base;
+    }
+
+    public String getBaseLabel() {
+        return baseLabel;
+    }
+
+    public List<Period> getDerivedPeriods() {
+        return List.of(targets);
+    }
+
+    /**
+     * 实时路径：基础周期 K 线已写入后调用，收盘的高周期 K 线经 {@link KLineManager#onBar} 写出并推送。
+     */
+    public void onBaseBar(String instrument, BarDTO bar) {
+        Accumulator[] accumulators = live.get(instrument);
+        if (accumulators == null) {
+            accumulators = live.computeIfAbsent(instrument, key -> newAccumulators());
+        }
+        List<BarDTO> closed = new ArrayList<>(2);
+        for (Accumulator accumulator : accumulators) {
+            feed(instrument, accumulator, bar, closed);
+            for (BarDTO derived : closed) {
+                kLineManager.onBar(instrument, derived);
+            }
+            closed.clear();
+        }
+    }
+
+    /**
+     * 为一次历史预加载创建独立的汇总状态，与实时累加器互不影响。
+     */
+    public HistoryRollup newHistory(String instrument) {
+        return new HistoryRollup(instrument);
+    }
+
+    /**
+     * 历史预加载的汇总：基础 K 线块写入后调用 {@link #accept}，每个请求区间结束时调用 {@link #endRange}，
+     * 丢弃尚未收盘的分桶（由实时路径接续）；全部结束后 {@link #finish} 为每个高周期发送一次载入通知。
+     */
+    public final class HistoryRollup {
+        private final String instrument;
+        private final Accumulator[] accumulators = newAccumulators();
+        private final int[] counts = new int[targets.length];
+        private final long[] firstTimes = new long[targets.length];
+        private final long[] lastTimes = new long[targets.length];
+
+        HistoryRollup(String instrument) {
+            this.instrument = instrument;
+            Arrays.fill(firstTimes, Long.MAX_VALUE);
+            Arrays.fill(lastTimes, Long.MIN_VALUE);
+        }
+
+        public void accept(List<BarDTO> baseBars) {
+            List<List<BarDTO>> closed = new ArrayList<>(targets.length);
+            for (int i = 0; i < targets.length; i++) {
+                closed.add(new ArrayList<>());
+            }
+            for (BarDTO bar : baseBars) {
+                for (Accumulator accumulator : accumulators) {
+                    feed(instrument, accumulator, bar, closed.get(accumulator.target));
+                }
+            }
+            for (int target = 0; target < targets.length; target++) {
+                List<BarDTO> bars = closed.get(target);
+                if (bars.isEmpty()) {
+                    continue;
+                }
+                int written = kLineManager.writeHistoryChunk(bars);
+                if (written > 0) {
+                    counts[target] += written;
+                    firstTimes[target] = Math.min(firstTimes[target], bars.get(0).getTime());
+                    lastTimes[target] = Math.max(lastTimes[target], bars.get(bars.size() - 1).getTime());
+                }
+            }
+        }
+
+        public void endRange() {
+            for (Accumulator accumulator : accumulators) {
+                accumulator.active = false;
+            }
+        }
+
+        public void finish() {
+            for (int i = 0; i < targets.length; i++) {
+                if (counts[i] > 0) {
+                    kLineManager.onHistoryLoaded(instrument, labels[i], counts[i], firstTimes[i], lastTimes[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将一根基础 K 线并入累加器，因此收盘的高周期 K 线按时间顺序加入 {@code out}。
+     */
+    private void feed(String instrument, Accumulator accumulator, BarDTO bar, List<BarDTO> out) {
+        Period target = targets[accumulator.target];
+        long bucket;
+        long nextBucket;
+        try {
+            bucket = bucketStart(target, bar.getTime());
+            nextBucket = bucketStart(target, bar.getTime() + base.getInterval());
+        } catch (Exception e) {
+            log.warn("无法计算 {} 的 {} 周期分桶: {}", instrument, labels[accumulator.target], e.getMessage());
+            return;
+        }
+
+        if (accumulator.active && bucket != accumulator.start) {
+            if (bucket < accumulator.start) {
+                // 早于当前分桶的迟到 K 线，已无法并入
+                return;
+            }
+            // 中间存在缺口（如周末），上一分桶以已有数据收盘
+            out.add(close(instrument, accumulator));
+        }
+        if (!accumulator.active) {
+            accumulator.begin(bucket, bar);
+        } else {
+            accumulator.add(bar);
+        }
+        if (nextBucket != bucket) {
+            out.add(close(instrument, accumulator));
+        }
+    }
+
+    private BarDTO close(String instrument, Accumulator accumulator) {
+        accumulator.active = false;
+        String label = labels[accumulator.target];
+        if (accumulator.partial) {
+            BarDTO rebuilt = rebuild(instrument, label, accumulator);
+            if (rebuilt != null) {
+                return rebuilt;
+            }
+        }
+        BarDTO bar = new BarDTO(instrument, label, accumulator.start, accumulator.open, accumulator.close,
+                accumulator.low, accumulator.high, accumulator.volume);
+        return accumulator.ask
+                ? bar.withAsk(accumulator.askOpen, accumulator.askClose, accumulator.askLow, accumulator.askHigh)
+                : bar;
+    }
+
+    /**
+     * 以 Redis 中已存储的基础 K 线重建从中途开始累加的分桶。
+     */
+    private BarDTO rebuild(String instrument, String label, Accumulator accumulator) {
+        int expected = (int) Math.min(Integer.MAX_VALUE,
+                (accumulator.lastTime - accumulator.start) / base.getInterval() + 1);
+        List<BarDTO> bars = redisService.getKLineRange(instrument, baseLabel, accumulator.start,
+                accumulator.lastTime, expected);
+        if (bars.isEmpty()) {
+            return null;
+        }
+        BarDTO first = bars.get(0);
+        double high = first.getHigh();
+        double low = first.getLow();
+        double volume = 0;
+        boolean ask = true;
+        double askHigh = Double.NEGATIVE_INFINITY;
+        double askLow = Double.POSITIVE_INFINITY;
+        for (BarDTO bar : bars) {
+            high = Math.max(high, bar.getHigh());
+            low = Math.min(low, bar.getLow());
+            volume += bar.getVolume();
+            ask &= bar.hasAsk();
+            if (ask) {
+                askHigh = Math.max(askHigh, bar.getAskHigh());
+                askLow = Math.min(askLow, bar.getAskLow());
+            }
+        }
+        BarDTO last = bars.get(bars.size() - 1);
+        BarDTO rebuilt = new BarDTO(instrument, label, accumulator.start, first.getOpen(), last.getClose(),
+                low, high, volume);
+        return ask ? rebuilt.withAsk(first.getAskOpen(), last.getAskClose(), askLow, askHigh) : rebuilt;
+    }
+
+    private long bucketStart(Period target, long time) throws Exception {
+        long interval = target.getInterval();
+        if (interval < Period.DAILY.getInterval()) {
+            // 日内周期按 UTC 纪元对齐，不必调用 JForex
+            return time - Math.floorMod(time, interval);
+        }
+        return resolver.barStart(target, time);
+    }
+
+    private Accumulator[] newAccumulators() {
+        Accumulator[] accumulators = new Accumulator[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            accumulators[i] = new Accumulator(i);
+        }
+        return accumulators;
+    }
+}
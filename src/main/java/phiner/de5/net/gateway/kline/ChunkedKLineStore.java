@@ -0,0 +1,431 @@
+package phiner.de5.net.gateway.kline;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.util.PriceCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分块列式 K 线存储（{@code gateway.kline.storage.layout=chunked}）。
+ * <p>
+ * 每个品种周期一个 Hash：{@code gateway:kline:chunks:{Instrument}:{Period}}，字段为块内首根 K 线的时间戳（十进制），
+ * 值为 {@link KLineChunkCodec} 编码的块（默认每块 256 根）。新 K 线追加到最新的块，写满后开启新块，
+ * 因此日常写入只重写最新一块；回补到较早时间的 K 线只重写所在的块。
+ * 总根数超出存储上限时整块删除最旧的块，保留的根数不少于上限、最多多出一块。
+ * <p>
+ * 每个序列的块索引（起始时间与根数）与最新一块的内容保存在内存中，首次访问时以一次 {@code HGETALL} 载入；
+ * 网关是唯一写入方。同一序列的读写在序列对象上串行化。
+ */
+@Slf4j
+@Component
+public class ChunkedKLineStore {
+
+    static final String KEY_PREFIX = "gateway:kline:chunks";
+    static final int DEFAULT_CHUNK_SIZE = 256;
+
+    /**
+     * 单个序列的块索引。
+     */
+    static final class Series {
+        private final TreeMap<Long, Integer> chunks = new TreeMap<>();
+        private List<BarDTO> tail = new ArrayList<>();
+        private int total;
+        private boolean loaded;
+    }
+
+    private final RedisTemplate<String, byte[]> redisTemplateBytes;
+    private final int storageLimit;
+    private final int chunkSize;
+    private final boolean enabled;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public ChunkedKLineStore(@Qualifier("redisTemplateBytes") RedisTemplate<String, byte[]> redisTemplateBytes,
+                             @Value("${gateway.kline.storage-limit}") int storageLimit,
+                             @Value("${gateway.kline.storage.layout:zset}") String layout,
+                             @Value("${gateway.kline.storage.chunk-size:256}") int chunkSize) {
+        this.redisTemplateBytes = redisTemplateBytes;
+        this.storageLimit = Math.max(1, storageLimit);
+        this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        String normalized = layout == null ? "" : layout.trim().toLowerCase();
+        this.enabled = "chunked".equals(normalized);
+        if (enabled) {
+            log.info("K 线使用分块列式存储，每块 {} 根", this.chunkSize);
+        } else if (!normalized.isEmpty() && !"zset".equals(normalized)) {
+            log.warn("未知的 K 线存储格式 '{}'，使用 zset", layout);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 写入或覆盖同一品种周期的 K 线（任意顺序，同一时间戳以后出现的为准）。
+     *
+     * @return 写入的 K 线数量，失败时为 0
+     */
+    public int write(List<BarDTO> bars) {
+        if (bars.isEmpty()) {
+            return 0;
+        }
+        String instrument = bars.get(0).getInstrument();
+        String period = bars.get(0).getPeriod();
+        String key = key(instrument, period);
+        List<BarDTO> incoming = new ArrayList<>(bars);
+        incoming.sort(Comparator.comparingLong(BarDTO::getTime));
+
+        Series target = seriesFor(key);
+        synchronized (target) {
+            try {
+                load(target, key, instrument, period);
+                // 按所属块分组；早于第一块的并入第一块，尚无块时归入新块
+                NavigableMap<Long, List<BarDTO>> groups = new TreeMap<>();
+                for (BarDTO bar : incoming) {
+                    Long start = target.chunks.floorKey(bar.getTime());
+                    if (start == null) {
+                        start = target.chunks.isEmpty() ? Long.MIN_VALUE : target.chunks.firstKey();
+                    }
+                    groups.computeIfAbsent(start, k -> new ArrayList<>()).add(bar);
+                }
+
+                Map<String, byte[]> puts = new LinkedHashMap<>();
+                List<Object> deletes = new ArrayList<>();
+                int scale = PriceCodec.forInstrument(instrument).getTickScale();
+                for (Map.Entry<Long, List<BarDTO>> group : groups.entrySet()) {
+                    long start = group.getKey();
+                    boolean isTail = target.chunks.isEmpty() || start == target.chunks.lastKey();
+                    List<BarDTO> existing;
+                    if (start == Long.MIN_VALUE) {
+                        existing = Collections.emptyList();
+                    } else if (isTail) {
+                        existing = target.tail;
+                    } else {
+                        existing = readChunk(key, start, instrument, period);
+                    }
+                    List<BarDTO> merged = merge(existing, group.getValue());
+                    // 最新一块从前往后切分（余下的部分继续接收新 K 线），较早的块从后往前切分
+                    List<List<BarDTO>> pieces = split(merged, isTail);
+                    if (start != Long.MIN_VALUE) {
+                        target.total -= target.chunks.remove(start);
+                    }
+                    for (List<BarDTO> piece : pieces) {
+                        long pieceStart = piece.get(0).getTime();
+                        target.chunks.put(pieceStart, piece.size());
+                        target.total += piece.size();
+                        puts.put(field(pieceStart), KLineChunkCodec.encode(piece, scale));
+                    }
+                    if (start != Long.MIN_VALUE && !target.chunks.containsKey(start)) {
+                        // 早于第一块的 K 线并入后块的起点前移，旧字段作废
+                        deletes.add(field(start));
+                    }
+                    if (isTail) {
+                        target.tail = new ArrayList<>(pieces.get(pieces.size() - 1));
+                    }
+                }
+                while (target.chunks.size() > 1 && target.total - target.chunks.firstEntry().getValue() >= storageLimit) {
+                    Map.Entry<Long, Integer> oldest = target.chunks.pollFirstEntry();
+                    target.total -= oldest.getValue();
+                    String field = field(oldest.getKey());
+                    puts.remove(field);
+                    deletes.add(field);
+                }
+
+                HashOperations<String, String, byte[]> hash = redisTemplateBytes.opsForHash();
+                if (!puts.isEmpty()) {
+                    hash.putAll(key, puts);
+                }
+                if (!deletes.isEmpty()) {
+                    hash.delete(key, deletes.toArray());
+                }
+                return incoming.size();
+            } catch (Exception e) {
+                // 内存索引可能与 Redis 不一致，下次访问时重新载入
+                target.loaded = false;
+                log.warn("ChunkedKLineStore: Failed to write {} bars into {}: {}", incoming.size(), key, e.getMessage());
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 完整序列，按时间升序。
+     */
+    public List<BarDTO> readAll(String instrument, String period) {
+        String key = key(instrument, period);
+        List<Long> starts;
+        Series target = seriesFor(key);
+        synchronized (target) {
+            if (!tryLoad(target, key, instrument, period)) {
+                return Collections.emptyList();
+            }
+            starts = new ArrayList<>(target.chunks.keySet());
+        }
+        List<BarDTO> bars = new ArrayList<>();
+        for (byte[] chunk : fetch(key, starts)) {
+            bars.addAll(KLineChunkCodec.decode(chunk, instrument, period));
+        }
+        return bars;
+    }
+
+    /**
+     * 时间在 {@code [from, to]} 内的前 {@code limit} 根 K 线，按时间升序；只读取与区间重叠的块。
+     */
+    public List<BarDTO> range(String instrument, String period, long from, long to, int limit) {
+        if (limit <= 0 || from > to) {
+            return Collections.emptyList();
+        }
+        String key = key(instrument, period);
+        List<Long> starts = new ArrayList<>();
+        Series target = seriesFor(key);
+        synchronized (target) {
+            if (!tryLoad(target, key, instrument, period) || target.chunks.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Long first = target.chunks.floorKey(from);
+            long counted = 0;
+            for (Map.Entry<Long, Integer> chunk
+                    : target.chunks.subMap(first == null ? Long.MIN_VALUE : first, true, to, true).entrySet()) {
+                starts.add(chunk.getKey());
+                // 首块可能有一部分早于 from，不计入
+                if (chunk.getKey() >= from) {
+                    counted += chunk.getValue();
+                }
+                if (counted >= limit) {
+                    break;
+                }
+            }
+        }
+        List<BarDTO> bars = new ArrayList<>(Math.min(limit, starts.size() * chunkSize));
+        for (byte[] chunk : fetch(key, starts)) {
+            for (BarDTO bar : KLineChunkCodec.decode(chunk, instrument, period)) {
+                if (bar.getTime() >= from && bar.getTime() <= to && bars.size() < limit) {
+                    bars.add(bar);
+                }
+            }
+        }
+        return bars;
+    }
+
+    /**
+     * 时间不晚于 {@code to} 的最新 {@code count} 根 K 线，按时间升序；从最新的块向前读取所需的块。
+     */
+    public List<BarDTO> latest(String instrument, String period, long to, int count) {
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        String key = key(instrument, period);
+        List<Long> starts = new ArrayList<>();
+        Series target = seriesFor(key);
+        synchronized (target) {
+            if (!tryLoad(target, key, instrument, period)) {
+                return Collections.emptyList();
+            }
+            long counted = 0;
+            boolean newest = true;
+            for (Map.Entry<Long, Integer> chunk : target.chunks.headMap(to, true).descendingMap().entrySet()) {
+                starts.add(0, chunk.getKey());
+                // 最新的块可能有一部分晚于 to，不计入
+                if (!newest) {
+                    counted += chunk.getValue();
+                }
+                newest = false;
+                if (counted >= count) {
+                    break;
+                }
+            }
+        }
+        List<BarDTO> bars = new ArrayList<>();
+        for (byte[] chunk : fetch(key, starts)) {
+            for (BarDTO bar : KLineChunkCodec.decode(chunk, instrument, period)) {
+                if (bar.getTime() <= to) {
+                    bars.add(bar);
+                }
+            }
+        }
+        return bars.size() > count ? new ArrayList<>(bars.subList(bars.size() - count, bars.size())) : bars;
+    }
+
+    /**
+     * 已存储 K 线的时间戳（升序），只解码时间列。
+     */
+    public long[] times(String instrument, String period) {
+        String key = key(instrument, period);
+        List<Long> starts;
+        Series target = seriesFor(key);
+        synchronized (target) {
+            if (!tryLoad(target, key, instrument, period)) {
+                return new long[0];
+            }
+            starts = new ArrayList<>(target.chunks.keySet());
+        }
+        List<long[]> columns = new ArrayList<>(starts.size());
+        int total = 0;
+        for (byte[] chunk : fetch(key, starts)) {
+            long[] times = KLineChunkCodec.decodeTimes(chunk);
+            columns.add(times);
+            total += times.length;
+        }
+        long[] times = new long[total];
+        int position = 0;
+        for (long[] column : columns) {
+            System.arraycopy(column, 0, times, position, column.length);
+            position += column.length;
+        }
+        return times;
+    }
+
+    private boolean tryLoad(Series target, String key, String instrument, String period) {
+        try {
+            load(target, key, instrument, period);
+            return true;
+        } catch (Exception e) {
+            log.warn("ChunkedKLineStore: Failed to load chunk index for {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    private void load(Series target, String key, String instrument, String period) {
+        if (target.loaded) {
+            return;
+        }
+        HashOperations<String, String, byte[]> hash = redisTemplateBytes.opsForHash();
+        Map<String, byte[]> stored = hash.entries(key);
+        target.chunks.clear();
+        target.total = 0;
+        target.tail = new ArrayList<>();
+        byte[] newest = null;
+        for (Map.Entry<String, byte[]> entry : stored.entrySet()) {
+            try {
+                long start = Long.parseLong(entry.getKey());
+                int count = KLineChunkCodec.count(entry.getValue());
+                target.chunks.put(start, count);
+                target.total += count;
+                if (start == target.chunks.lastKey()) {
+                    newest = entry.getValue();
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("ChunkedKLineStore: Ignoring unreadable chunk {} in {}: {}", entry.getKey(), key, e.getMessage());
+            }
+        }
+        if (newest != null) {
+            target.tail = new ArrayList<>(KLineChunkCodec.decode(newest, instrument, period));
+        }
+        target.loaded = true;
+    }
+
+    private List<BarDTO> readChunk(String key, long start, String instrument, String period) {
+        HashOperations<String, String, byte[]> hash = redisTemplateBytes.opsForHash();
+        byte[] chunk = hash.get(key, field(start));
+        return chunk == null ? Collections.emptyList() : KLineChunkCodec.decode(chunk, instrument, period);
+    }
+
+    /**
+     * 以一次 {@code HMGET} 读取指定的块，按给定顺序返回，缺失的块跳过。
+     */
+    private List<byte[]> fetch(String key, List<Long> starts) {
+        if (starts.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> fields = new ArrayList<>(starts.size());
+        for (Long start : starts) {
+            fields.add(field(start));
+        }
+        try {
+            HashOperations<String, String, byte[]> hash = redisTemplateBytes.opsForHash();
+            List<byte[]> chunks = hash.multiGet(key, fields);
+            List<byte[]> present = new ArrayList<>(chunks.size());
+            for (byte[] chunk : chunks) {
+                if (chunk != null) {
+                    present.add(chunk);
+                }
+            }
+            return present;
+        } catch (Exception e) {
+            log.warn("ChunkedKLineStore: Failed to read chunks of {}: {}", key, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 合并两段升序 K 线，时间戳相同时以 {@code incoming} 为准。
+     */
+    static List<BarDTO> merge(List<BarDTO> existing, List<BarDTO> incoming) {
+        List<BarDTO> merged = new ArrayList<>(existing.size() + incoming.size());
+        int i = 0;
+        int j = 0;
+        while (i < existing.size() || j < incoming.size()) {
+            if (j == incoming.size()) {
+                merged.add(existing.get(i++));
+            } else if (i == existing.size()) {
+                addOrReplace(merged, incoming.get(j++));
+            } else if (existing.get(i).getTime() < incoming.get(j).getTime()) {
+                merged.add(existing.get(i++));
+            } else {
+                if (existing.get(i).getTime() == incoming.get(j).getTime()) {
+                    i++;
+                }
+                addOrReplace(merged, incoming.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    private static void addOrReplace(List<BarDTO> merged, BarDTO bar) {
+        int last = merged.size() - 1;
+        if (last >= 0 && merged.get(last).getTime() == bar.getTime()) {
+            merged.set(last, bar);
+        } else {
+            merged.add(bar);
+        }
+    }
+
+    List<List<BarDTO>> split(List<BarDTO> bars, boolean fromStart) {
+        List<List<BarDTO>> pieces = new ArrayList<>();
+        if (bars.size() <= chunkSize) {
+            pieces.add(bars);
+            return pieces;
+        }
+        int remainder = bars.size() % chunkSize;
+        int position = 0;
+        if (!fromStart && remainder > 0) {
+            pieces.add(bars.subList(0, remainder));
+            position = remainder;
+        }
+        while (position < bars.size()) {
+            int end = Math.min(bars.size(), position + chunkSize);
+            pieces.add(bars.subList(position, end));
+            position = end;
+        }
+        return pieces;
+    }
+
+    private Series seriesFor(String key) {
+        Series target = series.get(key);
+        if (target == null) {
+            target = series.computeIfAbsent(key, k -> new Series());
+        }
+        return target;
+    }
+
+    static String key(String instrument, String period) {
+        return KEY_PREFIX + ":" + instrument + ":" + period;
+    }
+
+    private static String field(long start) {
+        return Long.toString(start);
+    }
+}
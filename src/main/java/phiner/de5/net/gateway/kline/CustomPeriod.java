@@ -0,0 +1,82 @@
+package phiner.de5.net.gateway.kline;
+
+import phiner.de5.net.gateway.util.PeriodUtil;
+
+/**
+ * 本地聚合的自定义 K 线周期。
+ * <p>
+ * 时间周期（{@code 10s}、{@code 2m}、{@code 3h}、{@code 1d}）按 UTC 纪元对齐分桶；
+ * Tick 周期（{@code 100t}）每累计指定数量的 Tick 收一根 K 线，K 线时间为首个 Tick 的时间。
+ */
+public final class CustomPeriod {
+
+    private final String label;
+    private final long durationMillis;
+    private final int tickCount;
+
+    private CustomPeriod(String label, long durationMillis, int tickCount) {
+        this.label = label;
+        this.durationMillis = durationMillis;
+        this.tickCount = tickCount;
+    }
+
+    /**
+     * 解析短格式周期，如 {@code 10s}、{@code 2m}、{@code 3h}、{@code 1d}、{@code 500t}。
+     *
+     * @throws IllegalArgumentException 格式无效时
+     */
+    public static CustomPeriod parse(String spec) {
+        String label = spec == null ? "" : spec.trim();
+        if (!PeriodUtil.isCustom(label)) {
+            throw new IllegalArgumentException("Invalid custom period: '" + spec + "'");
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(label.substring(0, label.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid custom period: '" + spec + "'", e);
+        }
+        char unit = label.charAt(label.length() - 1);
+        return switch (unit) {
+            case 's' -> new CustomPeriod(label, amount * 1_000L, 0);
+            case 'm' -> new CustomPeriod(label, amount * 60_000L, 0);
+            case 'h' -> new CustomPeriod(label, amount * 3_600_000L, 0);
+            case 'd' -> new CustomPeriod(label, amount * 86_400_000L, 0);
+            case 't' -> {
+                if (amount > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Tick count too large: '" + spec + "'");
+                }
+                yield new CustomPeriod(label, 0, (int) amount);
+            }
+            default -> throw new IllegalArgumentException("Invalid custom period: '" + spec + "'");
+        };
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isTickBased() {
+        return tickCount > 0;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * 时间周期下包含 {@code time} 的分桶起始时间。
+     */
+    public long bucketStart(long time) {
+        return time - Math.floorMod(time, durationMillis);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
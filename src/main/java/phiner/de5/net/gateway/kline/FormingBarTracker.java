@@ -0,0 +1,252 @@
+package phiner.de5.net.gateway.kline;
+
+import com.dukascopy.api.Period;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.config.ForexProperties;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.util.PeriodUtil;
+import phiner.de5.net.gateway.util.PriceCodec;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 维护每个品种 × 周期当前未收盘（forming）的 K 线，并以节流方式推送。
+ * <p>
+ * 事件通道线程在每个 Tick 上更新累加器；后台发布线程每隔 {@code publish-interval-ms}
+ * 将有变化的 K 线写回 K 线 ZSET（按时间戳覆盖同一成员）并发布到
+ * {@code gateway:kline:forming:{Instrument}:{Period}}，无变化时不发布。
+ * <p>
+ * 收盘 K 线经 {@link #onBarClosed(BarDTO)} 通知后，对应分桶不再被发布，
+ * 避免迟到的快照覆盖 ZSET 中的最终 K 线。写 Redis 时不持有 K 线的监视器，事件通道线程不会等待网络 I/O；
+ * 写出期间该分桶恰好收盘时，写完后补写一次收盘 K 线。覆盖 JForex 标准周期（不超过日线，按 UTC 对齐）
+ * 与 {@code gateway.kline.custom-periods} 中的时间周期。
+ */
+@Slf4j
+@Component
+public class FormingBarTracker {
+
+    static final class FormingBar {
+        final String period;
+        final long durationMillis;
+        boolean active;
+        boolean dirty;
+        long closedThrough = Long.MIN_VALUE;
+        BarDTO lastClosed;
+        long start;
+        double open;
+        double high;
+        double low;
+        double close;
+        double volume;
+
+        FormingBar(String period, long durationMillis) {
+            this.period = period;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    private static final long MAX_DURATION_MILLIS = Period.DAILY.getInterval();
+
+    private final RedisService redisService;
+    private final boolean enabled;
+    private final long publishIntervalMillis;
+    private final Map<String, Long> periods;
+    private final Map<String, FormingBar[]> bars = new ConcurrentHashMap<>();
+    private ScheduledExecutorService publisher;
+
+    public FormingBarTracker(RedisService redisService,
+                             ForexProperties forexProperties,
+                             @Value("${gateway.kline.forming.enabled:true}") boolean enabled,
+                             @Value("${gateway.kline.forming.publish-interval-ms:250}") long publishIntervalMillis,
+                             @Value("${gateway.kline.custom-periods:}") String customPeriods) {
+        this.redisService = redisService;
+        this.publishIntervalMillis = Math.max(10, publishIntervalMillis);
+        this.periods = resolvePeriods(forexProperties.getPeriods(), customPeriods);
+        this.enabled = enabled && !periods.isEmpty();
+    }
+
+    /**
+     * 周期短格式 → 时长。周线、月线的起点依赖交易日历，不做本地维护。
+     */
+    static Map<String, Long> resolvePeriods(List<String> standardPeriods, String customPeriods) {
+        Map<String, Long> resolved = new LinkedHashMap<>();
+        if (standardPeriods != null) {
+            for (String name : standardPeriods) {
+                try {
+                    Period period = Period.valueOf(name.trim());
+                    if (period.getInterval() > 0 && period.getInterval() <= MAX_DURATION_MILLIS) {
+                        resolved.put(PeriodUtil.format(period.toString()), period.getInterval());
+                    }
+                } catch (IllegalArgumentException e) {
+                    // 无效周期已由 TradingStrategy 报告
+                }
+            }
+        }
+        for (CustomPeriod custom : BarAggregator.parsePeriods(customPeriods)) {
+            if (!custom.isTickBased()) {
+                resolved.put(custom.getLabel(), custom.getDurationMillis());
+            }
+        }
+        return resolved;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "forming-bar-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::publishDirtySafely, publishIntervalMillis, publishIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("未收盘 K 线推送已启用: periods={}, interval={}ms", periods.keySet(), publishIntervalMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (publisher != null) {
+            publisher.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void onTick(String instrument, long time, double bid, double bidVolume) {
+        if (!enabled) {
+            return;
+        }
+        FormingBar[] series = bars.get(instrument);
+        if (series == null) {
+            series = bars.computeIfAbsent(instrument, key -> createSeries());
+        }
+        for (FormingBar bar : series) {
+            long bucket = time - Math.floorMod(time, bar.durationMillis);
+            synchronized (bar) {
+                if (bucket <= bar.closedThrough) {
+                    continue;
+                }
+                if (!bar.active || bucket > bar.start) {
+                    bar.active = true;
+                    bar.start = bucket;
+                    bar.open = bid;
+                    bar.high = bid;
+                    bar.low = bid;
+                    bar.close = bid;
+                    bar.volume = bidVolume;
+                } else if (bucket == bar.start) {
+                    if (bid > bar.high) {
+                        bar.high = bid;
+                    }
+                    if (bid < bar.low) {
+                        bar.low = bid;
+                    }
+                    bar.close = bid;
+                    bar.volume += bidVolume;
+                } else {
+                    continue;
+                }
+                bar.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * 收盘 K 线已写入存储：停止推送该分桶及更早的未收盘 K 线。
+     */
+    public void onBarClosed(BarDTO closed) {
+        if (!enabled) {
+            return;
+        }
+        FormingBar[] series = bars.get(closed.getInstrument());
+        if (series == null) {
+            return;
+        }
+        for (FormingBar bar : series) {
+            if (!bar.period.equals(closed.getPeriod())) {
+                continue;
+            }
+            synchronized (bar) {
+                if (closed.getTime() >= bar.closedThrough) {
+                    bar.closedThrough = closed.getTime();
+                    bar.lastClosed = closed;
+                }
+                if (bar.active && bar.start <= closed.getTime()) {
+                    bar.active = false;
+                    bar.dirty = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 写出并发布所有有变化的未收盘 K 线。
+     * <p>
+     * 只在监视器内复制快照，写 Redis 与发布在锁外进行。收盘通知先于收盘 K 线落盘
+     * （见 {@code KLineManager}），因此写完后若发现该分桶已收盘，快照可能晚于收盘 K 线落盘，
+     * 此时不再发布并补写收盘 K 线。
+     */
+    void publishDirty() {
+        for (Map.Entry<String, FormingBar[]> entry : bars.entrySet()) {
+            String instrument = entry.getKey();
+            PriceCodec codec = PriceCodec.forInstrument(instrument);
+            for (FormingBar bar : entry.getValue()) {
+                BarDTO snapshot;
+                synchronized (bar) {
+                    if (!bar.dirty || !bar.active) {
+                        continue;
+                    }
+                    bar.dirty = false;
+                    snapshot = new BarDTO(instrument, bar.period, bar.start,
+                            codec.round(bar.open), codec.round(bar.close),
+                            codec.round(bar.low), codec.round(bar.high), bar.volume);
+                }
+                redisService.addBarToKLine(snapshot);
+
+                boolean closed;
+                BarDTO repair = null;
+                synchronized (bar) {
+                    closed = snapshot.getTime() <= bar.closedThrough;
+                    if (closed && bar.lastClosed != null && bar.lastClosed.getTime() == snapshot.getTime()) {
+                        repair = bar.lastClosed;
+                    }
+                }
+                if (!closed) {
+                    redisService.publishFormingBar(snapshot);
+                } else if (repair != null) {
+                    redisService.addBarToKLine(repair);
+                }
+            }
+        }
+    }
+
+    private void publishDirtySafely() {
+        try {
+            publishDirty();
+        } catch (Exception e) {
+            log.warn("推送未收盘 K 线失败: {}", e.getMessage());
+        }
+    }
+
+    private FormingBar[] createSeries() {
+        List<FormingBar> series = new ArrayList<>(periods.size());
+        periods.forEach((period, duration) -> series.add(new FormingBar(period, duration)));
+        return series.toArray(new FormingBar[0]);
+    }
+}
@@ -0,0 +1,357 @@
+package phiner.de5.net.gateway.kline;
+
+import com.dukascopy.api.Filter;
+import com.dukascopy.api.IHistory;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.LoadingDataListener;
+import com.dukascopy.api.LoadingProgressListener;
+import com.dukascopy.api.OfferSide;
+import com.dukascopy.api.Period;
+import lombok.extern.slf4j.Slf4j;
+import phiner.de5.net.gateway.KLineManager;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.util.PeriodUtil;
+import phiner.de5.net.gateway.util.PriceCodec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 基于 {@link IHistory#readBars} 的并行流式历史 K 线预加载器。
+ * <p>
+ * 每个品种 × 周期提交一个异步读取任务，并发数由信号量限制；K 线经 {@link LoadingDataListener}
+ * 回调逐根到达，每累计 {@code chunkSize} 根即批量写入 Redis，内存占用与存储上限无关。
+ * 每个序列完成后在 {@code gateway:info} 上发布进度，并发送一次载入完成通知。
+ * <p>
+ * 增量模式下先读取 Redis 中已存储的时间戳，由 {@link PreloadPlan} 计算缺失区间，
+ * 只请求最新部分、内部缺口与不足存储上限的较早部分；各区间在同一并发许可内依次请求。
+ * <p>
+ * 启用本地汇总时，基础周期的每个块写入后交给 {@link BarRollup} 汇总出高周期 K 线，
+ * 这些高周期不再单独向 JForex 请求。
+ * <p>
+ * K 线以买价（BID）为准，与实时 {@code onBar} 一致。双边模式下每个区间再按时间切分为
+ * 最多 {@code chunkSize} 根 K 线的窗口，每个窗口先读取买价并暂存，再读取同一窗口的卖价，
+ * 按时间合并为一条双边记录后写入。暂存的买价不超过一个块，内存占用同样与存储上限无关，
+ * 代价是每个窗口需要两次历史请求。
+ */
+@Slf4j
+public class HistoryPreloader {
+
+    static final int DEFAULT_CHUNK_SIZE = 500;
+    // 按根数回溯不感知周末过滤，多取一部分，超出存储上限的部分由写入时的修剪去掉
+    private static final double WEEKEND_ALLOWANCE = 1.4;
+
+    private final IHistory history;
+    private final KLineManager kLineManager;
+    private final RedisService redisService;
+    private final int storageLimit;
+    private final int chunkSize;
+    private final boolean incremental;
+    private final boolean dualSide;
+    private final Semaphore permits;
+    private final BarRollup barRollup;
+    private final BooleanSupplier running;
+
+    /**
+     * @param dualSide  是否同时读取卖价并写入双边记录
+     * @param barRollup 基础周期的本地汇总，为 {@code null} 时不汇总
+     */
+    public HistoryPreloader(IHistory history, KLineManager kLineManager, RedisService redisService,
+                            int storageLimit, int concurrency, boolean incremental, boolean dualSide,
+                            BarRollup barRollup, BooleanSupplier running) {
+        this(history, kLineManager, redisService, storageLimit, concurrency, DEFAULT_CHUNK_SIZE, incremental,
+                dualSide, barRollup, running);
+    }
+
+    HistoryPreloader(IHistory history, KLineManager kLineManager, RedisService redisService,
+                     int storageLimit, int concurrency, int chunkSize, boolean incremental, boolean dualSide,
+                     BarRollup barRollup, BooleanSupplier running) {
+        this.history = history;
+        this.kLineManager = kLineManager;
+        this.redisService = redisService;
+        this.storageLimit = storageLimit;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.incremental = incremental;
+        this.dualSide = dualSide;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.barRollup = barRollup;
+        this.running = running;
+    }
+
+    /**
+     * 预加载所有品种 × 周期，阻塞直到全部完成或超时。
+     *
+     * @param now 服务器当前时间，以其上一根完整 K 线作为加载终点
+     * @return 是否在超时前全部完成
+     */
+    public boolean preload(Collection<Instrument> instruments, Collection<Period> periods, long now,
+                           long timeout, TimeUnit unit) throws InterruptedException {
+        int total = instruments.size() * periods.size();
+        CountDownLatch done = new CountDownLatch(total);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger requests = new AtomicInteger();
+        long startedAt = System.currentTimeMillis();
+
+        for (Instrument instrument : instruments) {
+            for (Period period : periods) {
+                if (!running.getAsBoolean()) {
+                    done.countDown();
+                    continue;
+                }
+                permits.acquire();
+                SeriesLoader loader = new SeriesLoader(instrument, period, () -> {
+                    permits.release();
+                    done.countDown();
+                }, completed, requests, total);
+                if (!loader.start(now)) {
+                    permits.release();
+                    done.countDown();
+                }
+            }
+        }
+
+        boolean finished = done.await(timeout, unit);
+        String summary = String.format("历史 K 线预加载%s: %d/%d 个序列, %d 次历史请求, 耗时 %dms",
+                finished ? "完成" : "超时", completed.get(), total, requests.get(),
+                System.currentTimeMillis() - startedAt);
+        log.info(summary);
+        redisService.publishInfo(summary);
+        return finished;
+    }
+
+    /**
+     * 单个品种周期的流式加载任务：依次请求各缺失区间，累计到一个块即写入，
+     * 全部区间结束时写出剩余部分并发送载入通知。
+     */
+    final class SeriesLoader implements LoadingDataListener, LoadingProgressListener {
+        private final Instrument instrument;
+        private final Period period;
+        private final String instrumentName;
+        private final String periodName;
+        private final PriceCodec codec;
+        private final Runnable onDone;
+        private final AtomicInteger completed;
+        private final AtomicInteger requests;
+        private final int total;
+        private final BarRollup.HistoryRollup rollup;
+        private List<long[]> ranges = List.of();
+        private int nextRange;
+        private long[] currentRange;
+        // 当前请求的时间窗口，与下一个窗口的起点；非双边模式下窗口即整个区间
+        private long[] currentWindow;
+        private long windowFrom;
+        // 双边模式下当前窗口已读取、等待与卖价合并的买价 K 线；读取卖价阶段为 askPhase
+        private List<BarDTO> pendingBid;
+        private int pendingIndex;
+        private boolean askPhase;
+        private List<BarDTO> chunk;
+        private int written;
+        private long firstTime = Long.MAX_VALUE;
+        private long lastTime = Long.MIN_VALUE;
+        private boolean allLoaded = true;
+        private boolean finished;
+
+        SeriesLoader(Instrument instrument, Period period, Runnable onDone, AtomicInteger completed,
+                     AtomicInteger requests, int total) {
+            this.instrument = instrument;
+            this.period = period;
+            this.instrumentName = instrument.toString();
+            this.periodName = PeriodUtil.format(period.toString());
+            this.codec = PriceCodec.forInstrument(instrumentName);
+            this.onDone = onDone;
+            this.completed = completed;
+            this.requests = requests;
+            this.total = total;
+            this.chunk = new ArrayList<>(chunkSize);
+            this.rollup = barRollup != null && barRollup.getBasePeriod().equals(period)
+                    ? barRollup.newHistory(instrumentName)
+                    : null;
+        }
+
+        /**
+         * 计算待请求区间并发出第一个请求。返回 {@code false} 表示未能开始，由调用方释放许可。
+         */
+        synchronized boolean start(long now) {
+            try {
+                long to = history.getPreviousBarStart(period, now);
+                int lookback = (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(storageLimit * WEEKEND_ALLOWANCE));
+                long fullFrom = history.getTimeForNBarsBack(period, to, lookback);
+                long[] stored = incremental ? redisService.getKLineTimes(instrumentName, periodName) : new long[0];
+                ranges = PreloadPlan.ranges(stored, period.getInterval(), fullFrom, to, storageLimit);
+                log.info("历史预加载: {} 的 {} 周期已存储 {} 根，需请求 {} 个区间 [{} - {}]",
+                        instrumentName, periodName, stored.length, ranges.size(), fullFrom, to);
+            } catch (Exception e) {
+                log.error("历史预加载: 无法请求 {} 的 {} 周期历史数据", instrumentName, periodName, e);
+                return false;
+            }
+            requestNext();
+            return true;
+        }
+
+        @Override
+        public synchronized void newBar(Instrument instrument, Period period, OfferSide side, long time,
+                                        double open, double close, double low, double high, double volume) {
+            if (finished) {
+                return;
+            }
+            BarDTO bar = new BarDTO(instrumentName, periodName, time, codec.round(open), codec.round(close),
+                    codec.round(low), codec.round(high), volume);
+            if (pendingBid == null) {
+                add(bar);
+            } else if (!askPhase) {
+                pendingBid.add(bar);
+            } else {
+                // 先写出更早的、没有对应卖价的买价 K 线，没有对应买价的卖价 K 线丢弃
+                while (pendingIndex < pendingBid.size() && pendingBid.get(pendingIndex).getTime() < time) {
+                    add(pendingBid.get(pendingIndex++));
+                }
+                if (pendingIndex < pendingBid.size() && pendingBid.get(pendingIndex).getTime() == time) {
+                    add(pendingBid.get(pendingIndex++).withAsk(bar.getOpen(), bar.getClose(), bar.getLow(),
+                            bar.getHigh()));
+                }
+            }
+        }
+
+        private void add(BarDTO bar) {
+            chunk.add(bar);
+            firstTime = Math.min(firstTime, bar.getTime());
+            lastTime = Math.max(lastTime, bar.getTime());
+            if (chunk.size() >= chunkSize) {
+                flushChunk();
+            }
+        }
+
+        @Override
+        public void newTick(Instrument instrument, long time, double ask, double bid, double askVol, double bidVol) {
+            // 只请求 K 线，不会收到 Tick
+        }
+
+        @Override
+        public void dataLoaded(long start, long end, long currentPosition, String information) {
+            // 进度按序列粒度发布，这里不逐段上报
+        }
+
+        @Override
+        public synchronized void loadingFinished(boolean allDataLoaded, long start, long end, long currentPosition) {
+            if (finished) {
+                return;
+            }
+            allLoaded &= allDataLoaded;
+            if (pendingBid != null && !askPhase) {
+                // 买价读取完毕，继续读取同一窗口的卖价；已停止或请求失败时只写入买价
+                askPhase = true;
+                if (running.getAsBoolean() && request(OfferSide.ASK, currentWindow)) {
+                    return;
+                }
+            }
+            try {
+                if (pendingBid != null) {
+                    while (pendingIndex < pendingBid.size()) {
+                        add(pendingBid.get(pendingIndex++));
+                    }
+                    pendingBid = null;
+                }
+                flushChunk();
+            } catch (Exception e) {
+                log.error("历史预加载: 写入 {} 的 {} 周期历史数据时出错", instrumentName, periodName, e);
+            }
+            if (rollup != null && windowFrom > currentRange[1]) {
+                // 区间之间可能不连续，未收盘的分桶不跨区间累加；同一区间内的窗口首尾相接，继续累加
+                rollup.endRange();
+            }
+            requestNext();
+        }
+
+        @Override
+        public boolean stopJob() {
+            return !running.getAsBoolean();
+        }
+
+        /**
+         * 发出下一个窗口的请求；没有剩余区间或已停止时结束该序列。
+         */
+        private void requestNext() {
+            while (running.getAsBoolean()) {
+                if (currentRange == null || windowFrom > currentRange[1]) {
+                    if (nextRange >= ranges.size()) {
+                        break;
+                    }
+                    currentRange = ranges.get(nextRange++);
+                    windowFrom = currentRange[0];
+                }
+                long windowTo = currentRange[1];
+                long interval = period.getInterval();
+                if (dualSide && interval > 0) {
+                    // 窗口首尾相接、互不重叠，每个窗口最多 chunkSize 根
+                    windowTo = Math.min(windowTo, windowFrom + chunkSize * interval - 1);
+                }
+                currentWindow = new long[] {windowFrom, windowTo};
+                windowFrom = windowTo + 1;
+                pendingBid = dualSide ? new ArrayList<>(chunkSize) : null;
+                pendingIndex = 0;
+                askPhase = false;
+                if (request(OfferSide.BID, currentWindow)) {
+                    return;
+                }
+            }
+            if (nextRange < ranges.size() || (currentRange != null && windowFrom <= currentRange[1])) {
+                allLoaded = false;
+            }
+            finish();
+        }
+
+        private boolean request(OfferSide side, long[] range) {
+            try {
+                requests.incrementAndGet();
+                history.readBars(instrument, period, side, Filter.WEEKENDS, range[0], range[1], this, this);
+                return true;
+            } catch (Exception e) {
+                allLoaded = false;
+                log.error("历史预加载: 请求 {} 的 {} 周期 [{} - {}] {} 失败", instrumentName, periodName,
+                        range[0], range[1], side, e);
+                return false;
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            try {
+                if (written > 0) {
+                    kLineManager.onHistoryLoaded(instrumentName, periodName, written, firstTime, lastTime);
+                }
+                if (rollup != null) {
+                    rollup.finish();
+                }
+                int done = completed.incrementAndGet();
+                String progress = String.format("历史 K 线预加载进度 %d/%d: %s %s 共 %d 根%s",
+                        done, total, instrumentName, periodName, written, allLoaded ? "" : " (未完整加载)");
+                log.info(progress);
+                redisService.publishInfo(progress);
+            } catch (Exception e) {
+                log.error("历史预加载: 完成 {} 的 {} 周期时出错", instrumentName, periodName, e);
+            } finally {
+                chunk = null;
+                onDone.run();
+            }
+        }
+
+        private void flushChunk() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            written += kLineManager.writeHistoryChunk(chunk);
+            if (rollup != null) {
+                // 基础 K 线已写入，分桶中途开始时可据此重建
+                rollup.accept(chunk);
+            }
+            chunk = new ArrayList<>(chunkSize);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package phiner.de5.net.gateway.kline;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.dto.BarDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内 K 线缓存：每个品种 × 周期一个环形缓冲区，按时间升序存放原始类型的 OHLCV 列，
+ * 以及卖价一侧的 OHLC 列（单边 K 线为 NaN）。
+ * <p>
+ * 容量与 {@code gateway.kline.storage-limit} 一致，写满后淘汰最旧的 K 线，与 Redis ZSET 的修剪保持同步。
+ * 所有写入 K 线 ZSET 的路径（实时 K 线、未收盘快照、历史预加载）同时写入缓存；同一时间戳覆盖。
+ * <p>
+ * 缓存只在序列“预热”后才作为读取来源：首次读取时由调用方从 Redis 载入完整序列并经
+ * {@link #seed} 合并（只补齐缺少的时间戳，不覆盖已缓存的更新数据），之后的读取不再访问 Redis。
+ */
+@Component
+public class KLineCache {
+
+    /**
+     * 列式读取结果的可复用容器，由调用方持有并反复传入 {@link #read}，数据按时间升序排列。
+     */
+    public static final class Columns {
+        private long[] times = new long[0];
+        private double[] open = new double[0];
+        private double[] high = new double[0];
+        private double[] low = new double[0];
+        private double[] close = new double[0];
+        private double[] volume = new double[0];
+        private double[] askOpen = new double[0];
+        private double[] askHigh = new double[0];
+        private double[] askLow = new double[0];
+        private double[] askClose = new double[0];
+        private int size;
+
+        public int size() { return size; }
+        public long[] getTimes() { return times; }
+        public double[] getOpen() { return open; }
+        public double[] getHigh() { return high; }
+        public double[] getLow() { return low; }
+        public double[] getClose() { return close; }
+        public double[] getVolume() { return volume; }
+        /** 卖价列，单边 K 线为 NaN。 */
+        public double[] getAskOpen() { return askOpen; }
+        public double[] getAskHigh() { return askHigh; }
+        public double[] getAskLow() { return askLow; }
+        public double[] getAskClose() { return askClose; }
+
+        private void ensureCapacity(int capacity) {
+            if (times.length < capacity) {
+                times = new long[capacity];
+                open = new double[capacity];
+                high = new double[capacity];
+                low = new double[capacity];
+                close = new double[capacity];
+                volume = new double[capacity];
+                askOpen = new double[capacity];
+                askHigh = new double[capacity];
+                askLow = new double[capacity];
+                askClose = new double[capacity];
+            }
+        }
+    }
+
+    /**
+     * 单个序列的环形缓冲区。逻辑下标 0 为最旧的 K 线，所有访问在实例监视器内进行。
+     */
+    static final class Series {
+        private final String instrument;
+        private final String period;
+        private final long[] times;
+        private final double[] open;
+        private final double[] high;
+        private final double[] low;
+        private final double[] close;
+        private final double[] volume;
+        private final double[] askOpen;
+        private final double[] askHigh;
+        private final double[] askLow;
+        private final double[] askClose;
+        private int head;
+        private int size;
+        private boolean warm;
+
+        Series(String instrument, String period, int capacity) {
+            this.instrument = instrument;
+            this.period = period;
+            this.times = new long[capacity];
+            this.open = new double[capacity];
+            this.high = new double[capacity];
+            this.low = new double[capacity];
+            this.close = new double[capacity];
+            this.volume = new double[capacity];
+            this.askOpen = new double[capacity];
+            this.askHigh = new double[capacity];
+            this.askLow = new double[capacity];
+            this.askClose = new double[capacity];
+        }
+
+        synchronized void put(BarDTO bar, boolean replace) {
+            long time = bar.getTime();
+            int capacity = times.length;
+            if (size == 0 || time > times[slot(size - 1)]) {
+                // 常见路径：追加最新 K 线
+                if (size == capacity) {
+                    head = (head + 1) % capacity;
+                    size--;
+                }
+                write(slot(size), bar);
+                size++;
+                return;
+            }
+            int index = search(time);
+            if (index >= 0) {
+                if (replace) {
+                    write(slot(index), bar);
+                }
+                return;
+            }
+            int insertAt = -index - 1;
+            if (size == capacity) {
+                if (insertAt == 0) {
+                    // 比缓存中最旧的还旧，写满时直接丢弃（与 ZSET 修剪结果一致）
+                    return;
+                }
+                head = (head + 1) % capacity;
+                size--;
+                insertAt--;
+            }
+            for (int i = size; i > insertAt; i--) {
+                copy(slot(i - 1), slot(i));
+            }
+            write(slot(insertAt), bar);
+            size++;
+        }
+
+        synchronized int read(int count, Columns into) {
+            int n = Math.min(count, size);
+            into.ensureCapacity(n);
+            int first = size - n;
+            for (int i = 0; i < n; i++) {
+                int slot = slot(first + i);
+                into.times[i] = times[slot];
+                into.open[i] = open[slot];
+                into.high[i] = high[slot];
+                into.low[i] = low[slot];
+                into.close[i] = close[slot];
+                into.volume[i] = volume[slot];
+                into.askOpen[i] = askOpen[slot];
+                into.askHigh[i] = askHigh[slot];
+                into.askLow[i] = askLow[slot];
+                into.askClose[i] = askClose[slot];
+            }
+            into.size = n;
+            return n;
+        }
+
+        /**
+         * 最新的 {@code count} 根 K 线，按时间降序（与 Redis 读取顺序一致）。
+         */
+        synchronized List<BarDTO> newestFirst(int count) {
+            int n = Math.min(count, size);
+            List<BarDTO> bars = new ArrayList<>(n);
+            for (int i = size - 1; i >= size - n; i--) {
+                bars.add(toBar(slot(i)));
+            }
+            return bars;
+        }
+
+        /**
+         * 时间在 {@code [from, to]} 内的前 {@code limit} 根 K 线，按时间升序。
+         */
+        synchronized List<BarDTO> range(long from, long to, int limit) {
+            int start = lowerBound(from);
+            List<BarDTO> bars = new ArrayList<>(Math.max(0, Math.min(limit, size - start)));
+            for (int i = start; i < size && bars.size() < limit; i++) {
+                int slot = slot(i);
+                if (times[slot] > to) {
+                    break;
+                }
+                bars.add(toBar(slot));
+            }
+            return bars;
+        }
+
+        /**
+         * 时间不晚于 {@code to} 的最新 {@code count} 根 K 线，按时间升序。
+         */
+        synchronized List<BarDTO> latest(long to, int count) {
+            int end = upperBound(to);
+            int first = Math.max(0, end - count);
+            List<BarDTO> bars = new ArrayList<>(end - first);
+            for (int i = first; i < end; i++) {
+                bars.add(toBar(slot(i)));
+            }
+            return bars;
+        }
+
+        synchronized boolean isWarm() {
+            return warm;
+        }
+
+        synchronized void markWarm() {
+            warm = true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int slot(int index) {
+            return (head + index) % times.length;
+        }
+
+        private int search(long time) {
+            int lowIndex = 0;
+            int highIndex = size - 1;
+            while (lowIndex <= highIndex) {
+                int mid = (lowIndex + highIndex) >>> 1;
+                long midTime = times[slot(mid)];
+                if (midTime < time) {
+                    lowIndex = mid + 1;
+                } else if (midTime > time) {
+                    highIndex = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lowIndex + 1);
+        }
+
+        private int lowerBound(long time) {
+            int index = search(time);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private int upperBound(long time) {
+            int index = search(time);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        private BarDTO toBar(int slot) {
+            if (Double.isNaN(askOpen[slot])) {
+                return new BarDTO(instrument, period, times[slot], open[slot], close[slot], low[slot], high[slot],
+                        volume[slot]);
+            }
+            return new BarDTO(instrument, period, times[slot], open[slot], close[slot], low[slot], high[slot],
+                    volume[slot], askOpen[slot], askClose[slot], askLow[slot], askHigh[slot]);
+        }
+
+        private void write(int slot, BarDTO bar) {
+            times[slot] = bar.getTime();
+            open[slot] = bar.getOpen();
+            high[slot] = bar.getHigh();
+            low[slot] = bar.getLow();
+            close[slot] = bar.getClose();
+            volume[slot] = bar.getVolume();
+            boolean withAsk = bar.hasAsk();
+            askOpen[slot] = withAsk ? bar.getAskOpen() : Double.NaN;
+            askHigh[slot] = withAsk ? bar.getAskHigh() : Double.NaN;
+            askLow[slot] = withAsk ? bar.getAskLow() : Double.NaN;
+            askClose[slot] = withAsk ? bar.getAskClose() : Double.NaN;
+        }
+
+        private void copy(int from, int to) {
+            times[to] = times[from];
+            open[to] = open[from];
+            high[to] = high[from];
+            low[to] = low[from];
+            close[to] = close[from];
+            volume[to] = volume[from];
+            askOpen[to] = askOpen[from];
+            askHigh[to] = askHigh[from];
+            askLow[to] = askLow[from];
+            askClose[to] = askClose[from];
+        }
+    }
+
+    private final int capacity;
+    private final boolean enabled;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public KLineCache(@Value("${gateway.kline.storage-limit}") int capacity,
+                      @Value("${gateway.kline.cache.enabled:true}") boolean enabled) {
+        this.capacity = Math.max(1, capacity);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 写入或覆盖一根 K 线。
+     */
+    public void put(BarDTO bar) {
+        if (!enabled || bar.getInstrument() == null || bar.getPeriod() == null) {
+            return;
+        }
+        seriesFor(bar.getInstrument(), bar.getPeriod()).put(bar, true);
+    }
+
+    /**
+     * 写入或覆盖同一品种周期的一批 K 线。
+     */
+    public void putAll(List<BarDTO> bars) {
+        if (!enabled || bars.isEmpty()) {
+            return;
+        }
+        BarDTO first = bars.get(0);
+        if (first.getInstrument() == null || first.getPeriod() == null) {
+            return;
+        }
+        Series target = seriesFor(first.getInstrument(), first.getPeriod());
+        for (BarDTO bar : bars) {
+            target.put(bar, true);
+        }
+    }
+
+    /**
+     * 以 Redis 中的完整序列预热缓存：只补齐缓存中没有的时间戳，然后标记为可读。
+     */
+    public void seed(String instrument, String period, List<BarDTO> bars) {
+        if (!enabled) {
+            return;
+        }
+        Series target = seriesFor(instrument, period);
+        for (BarDTO bar : bars) {
+            target.put(bar, false);
+        }
+        target.markWarm();
+    }
+
+    /**
+     * 序列是否已预热，可不经 Redis 直接读取。
+     */
+    public boolean isWarm(String instrument, String period) {
+        Series target = enabled ? series.get(key(instrument, period)) : null;
+        return target != null && target.isWarm();
+    }
+
+    /**
+     * 最新的 {@code count} 根 K 线，按时间降序；序列未预热时返回 {@code null}。
+     */
+    public List<BarDTO> getBars(String instrument, String period, int count) {
+        Series target = warmSeries(instrument, period);
+        if (target == null) {
+            return null;
+        }
+        return count <= 0 ? Collections.emptyList() : target.newestFirst(count);
+    }
+
+    /**
+     * 时间在 {@code [from, to]} 内的前 {@code limit} 根 K 线（升序）；序列未预热时返回 {@code null}。
+     */
+    public List<BarDTO> range(String instrument, String period, long from, long to, int limit) {
+        Series target = warmSeries(instrument, period);
+        if (target == null) {
+            return null;
+        }
+        return limit <= 0 || from > to ? Collections.emptyList() : target.range(from, to, limit);
+    }
+
+    /**
+     * 时间不晚于 {@code to} 的最新 {@code count} 根 K 线（升序）；序列未预热时返回 {@code null}。
+     */
+    public List<BarDTO> latest(String instrument, String period, long to, int count) {
+        Series target = warmSeries(instrument, period);
+        if (target == null) {
+            return null;
+        }
+        return count <= 0 ? Collections.emptyList() : target.latest(to, count);
+    }
+
+    /**
+     * 将最新的 {@code count} 根 K 线按时间升序复制到 {@code into}，返回实际复制的数量。
+     * 序列未知时返回 0；不要求已预热，调用方据此只能得到进程启动以来写入的部分。
+     */
+    public int read(String instrument, String period, int count, Columns into) {
+        Series target = enabled ? series.get(key(instrument, period)) : null;
+        if (target == null || count <= 0) {
+            into.size = 0;
+            return 0;
+        }
+        return target.read(count, into);
+    }
+
+    public int size(String instrument, String period) {
+        Series target = series.get(key(instrument, period));
+        return target == null ? 0 : target.size();
+    }
+
+    private Series warmSeries(String instrument, String period) {
+        Series target = enabled ? series.get(key(instrument, period)) : null;
+        return target != null && target.isWarm() ? target : null;
+    }
+
+    private Series seriesFor(String instrument, String period) {
+        String key = key(instrument, period);
+        Series target = series.get(key);
+        if (target == null) {
+            target = series.computeIfAbsent(key, k -> new Series(instrument, period, capacity));
+        }
+        return target;
+    }
+
+    private static String key(String instrument, String period) {
+        return instrument + ":" + period;
+    }
+}
@@ -0,0 +1,320 @@
+package phiner.de5.net.gateway.kline;
+
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.util.FixedPointAscii;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分块 K 线存储的块编解码器：一块为按时间升序的若干根 K 线，按列存放并做差分编码。
+ * <p>
+ * 布局见 docs/gateway_api.md：版本字节、价格精度字节、varint 根数，随后依次为时间列
+ * （首个时间戳 varint，之后为与上一根的差值 varint）与开、高、低、收、量五列（首值与后续差值均为 zigzag varint）。
+ * 价格以 10^scale 的整数单位存储，成交量固定为 10^6 单位（与 Tick Stream 二进制格式一致）。
+ * 某根 K 线的价格无法按精度精确表示时，该块的价格列改为原始 IEEE 754 double（精度字节为 {@link #RAW_PRICES}）。
+ * 块内有双边 K 线时版本为 {@link #VERSION_ASK}，量列之后追加卖价存在位图与卖价开、高、低、收四列
+ * （只含有卖价的 K 线，值为与买价之差的 zigzag varint）。品种与周期由键名给出，不写入块内。
+ */
+public final class KLineChunkCodec {
+
+    /** 块格式版本号，布局变更时递增。 */
+    static final byte VERSION = 1;
+    /** 带卖价列的块格式版本号。 */
+    static final byte VERSION_ASK = 2;
+    /** 精度字节取此值时价格列为 8 字节大端 double。 */
+    static final int RAW_PRICES = 0xFF;
+    static final int VOLUME_SCALE = 6;
+    private static final int MAX_SCALE = 12;
+
+    private KLineChunkCodec() {
+    }
+
+    /**
+     * 编码一块 K 线（须按时间升序且时间戳不重复）。
+     *
+     * @param scale 品种报价精度（小数位数）
+     */
+    public static byte[] encode(List<BarDTO> bars, int scale) {
+        int count = bars.size();
+        boolean exact = scale >= 0 && scale <= MAX_SCALE;
+        boolean withAsk = false;
+        for (int i = 0; i < count; i++) {
+            BarDTO bar = bars.get(i);
+            withAsk |= bar.hasAsk();
+            exact = exact && fits(bar.getOpen(), scale) && fits(bar.getHigh(), scale)
+                    && fits(bar.getLow(), scale) && fits(bar.getClose(), scale)
+                    && (!bar.hasAsk() || fits(bar.getAskOpen(), scale) && fits(bar.getAskHigh(), scale)
+                    && fits(bar.getAskLow(), scale) && fits(bar.getAskClose(), scale));
+        }
+        // 每根最多 1 个时间 varint + 8 个价格（varint 或 8 字节）+ 1 个量 varint + 1 位存在位图
+        byte[] buffer = new byte[3 + 10 + count * (10 + 8 * 10 + 10 + 1)];
+        int position = 0;
+        buffer[position++] = withAsk ? VERSION_ASK : VERSION;
+        buffer[position++] = (byte) (exact ? scale : RAW_PRICES);
+        position = writeVarLong(buffer, position, count);
+
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long time = bars.get(i).getTime();
+            position = writeVarLong(buffer, position, i == 0 ? time : time - previous);
+            previous = time;
+        }
+        for (int column = 0; column < 4; column++) {
+            long previousUnits = 0;
+            for (int i = 0; i < count; i++) {
+                double price = price(bars.get(i), column);
+                if (exact) {
+                    long units = FixedPointAscii.toUnits(price, scale);
+                    position = writeVarLong(buffer, position, zigZag(units - previousUnits));
+                    previousUnits = units;
+                } else {
+                    position = writeLong(buffer, position, Double.doubleToRawLongBits(price));
+                }
+            }
+        }
+        long previousVolume = 0;
+        for (int i = 0; i < count; i++) {
+            long units = volumeUnits(bars.get(i).getVolume());
+            position = writeVarLong(buffer, position, zigZag(units - previousVolume));
+            previousVolume = units;
+        }
+        if (withAsk) {
+            for (int i = 0; i < count; i++) {
+                if (bars.get(i).hasAsk()) {
+                    buffer[position + (i >>> 3)] |= (byte) (1 << (i & 7));
+                }
+            }
+            position += (count + 7) >>> 3;
+            for (int column = 0; column < 4; column++) {
+                for (int i = 0; i < count; i++) {
+                    BarDTO bar = bars.get(i);
+                    if (!bar.hasAsk()) {
+                        continue;
+                    }
+                    double ask = askPrice(bar, column);
+                    if (exact) {
+                        long spread = FixedPointAscii.toUnits(ask, scale) - FixedPointAscii.toUnits(price(bar, column), scale);
+                        position = writeVarLong(buffer, position, zigZag(spread));
+                    } else {
+                        position = writeLong(buffer, position, Double.doubleToRawLongBits(ask));
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * 解码一块 K 线，按时间升序。
+     *
+     * @throws IllegalArgumentException 版本未知或数据截断时
+     */
+    public static List<BarDTO> decode(byte[] chunk, String instrument, String period) {
+        Reader reader = header(chunk);
+        int count = reader.count;
+        long[] times = new long[count];
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            time = i == 0 ? reader.varLong() : time + reader.varLong();
+            times[i] = time;
+        }
+        double[][] prices = new double[4][count];
+        double unitsPerPrice = reader.scale == RAW_PRICES ? 0 : FixedPointAscii.powerOfTen(reader.scale);
+        for (int column = 0; column < 4; column++) {
+            long units = 0;
+            for (int i = 0; i < count; i++) {
+                if (reader.scale == RAW_PRICES) {
+                    prices[column][i] = Double.longBitsToDouble(reader.fixedLong());
+                } else {
+                    units += unZigZag(reader.varLong());
+                    prices[column][i] = units / unitsPerPrice;
+                }
+            }
+        }
+        double unitsPerVolume = FixedPointAscii.powerOfTen(VOLUME_SCALE);
+        double[] volumes = new double[count];
+        long volumeUnits = 0;
+        for (int i = 0; i < count; i++) {
+            volumeUnits += unZigZag(reader.varLong());
+            volumes[i] = volumeUnits / unitsPerVolume;
+        }
+        boolean[] present = new boolean[count];
+        double[][] asks = null;
+        if (reader.version == VERSION_ASK) {
+            byte[] bitmap = reader.bytes((count + 7) >>> 3);
+            for (int i = 0; i < count; i++) {
+                present[i] = (bitmap[i >>> 3] & (1 << (i & 7))) != 0;
+            }
+            asks = new double[4][count];
+            for (int column = 0; column < 4; column++) {
+                for (int i = 0; i < count; i++) {
+                    if (!present[i]) {
+                        continue;
+                    }
+                    if (reader.scale == RAW_PRICES) {
+                        asks[column][i] = Double.longBitsToDouble(reader.fixedLong());
+                    } else {
+                        long bidUnits = Math.round(prices[column][i] * unitsPerPrice);
+                        asks[column][i] = (bidUnits + unZigZag(reader.varLong())) / unitsPerPrice;
+                    }
+                }
+            }
+        }
+        List<BarDTO> bars = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (present[i]) {
+                bars.add(new BarDTO(instrument, period, times[i], prices[0][i], prices[3][i], prices[2][i],
+                        prices[1][i], volumes[i], asks[0][i], asks[3][i], asks[2][i], asks[1][i]));
+            } else {
+                bars.add(new BarDTO(instrument, period, times[i], prices[0][i], prices[3][i], prices[2][i],
+                        prices[1][i], volumes[i]));
+            }
+        }
+        return bars;
+    }
+
+    /**
+     * 只解码时间列。
+     */
+    public static long[] decodeTimes(byte[] chunk) {
+        Reader reader = header(chunk);
+        long[] times = new long[reader.count];
+        long time = 0;
+        for (int i = 0; i < times.length; i++) {
+            time = i == 0 ? reader.varLong() : time + reader.varLong();
+            times[i] = time;
+        }
+        return times;
+    }
+
+    /**
+     * 块内 K 线根数，只读取头部。
+     */
+    public static int count(byte[] chunk) {
+        return header(chunk).count;
+    }
+
+    private static Reader header(byte[] chunk) {
+        if (chunk == null || chunk.length < 3 || (chunk[0] != VERSION && chunk[0] != VERSION_ASK)) {
+            throw new IllegalArgumentException("Unsupported K-line chunk");
+        }
+        Reader reader = new Reader(chunk, 2);
+        reader.version = chunk[0];
+        reader.scale = chunk[1] & 0xFF;
+        if (reader.scale != RAW_PRICES && reader.scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Unsupported price scale in K-line chunk: " + reader.scale);
+        }
+        long count = reader.varLong();
+        if (count < 0 || count > chunk.length) {
+            throw new IllegalArgumentException("Corrupt K-line chunk");
+        }
+        reader.count = (int) count;
+        return reader;
+    }
+
+    private static double price(BarDTO bar, int column) {
+        return switch (column) {
+            case 0 -> bar.getOpen();
+            case 1 -> bar.getHigh();
+            case 2 -> bar.getLow();
+            default -> bar.getClose();
+        };
+    }
+
+    private static double askPrice(BarDTO bar, int column) {
+        return switch (column) {
+            case 0 -> bar.getAskOpen();
+            case 1 -> bar.getAskHigh();
+            case 2 -> bar.getAskLow();
+            default -> bar.getAskClose();
+        };
+    }
+
+    private static boolean fits(double price, int scale) {
+        long units = FixedPointAscii.toUnits(price, scale);
+        return units != Long.MIN_VALUE && units / (double) FixedPointAscii.powerOfTen(scale) == price;
+    }
+
+    private static long volumeUnits(double volume) {
+        long units = FixedPointAscii.toUnits(volume, VOLUME_SCALE);
+        // 非有限值无法用整数表示，按 0 写入
+        return units == Long.MIN_VALUE ? 0 : units;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 无符号 LEB128 编码，每字节低 7 位为数据，最高位表示后续还有字节。
+     */
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int writeLong(byte[] buffer, int position, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+        return position;
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private int version;
+        private int scale;
+        private int count;
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        long varLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("Truncated K-line chunk");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in K-line chunk");
+        }
+
+        byte[] bytes(int length) {
+            if (position + length > data.length) {
+                throw new IllegalArgumentException("Truncated K-line chunk");
+            }
+            byte[] value = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return value;
+        }
+
+        long fixedLong() {
+            if (position + 8 > data.length) {
+                throw new IllegalArgumentException("Truncated K-line chunk");
+            }
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package phiner.de5.net.gateway.kline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 根据 Redis 中已存储的 K 线时间戳，计算预加载仍需向 JForex 请求的时间区间。
+ * <p>
+ * 区间按优先级排列：
+ * <ol>
+ *   <li>最新部分：从已存储的最新 K 线（可能是停机前未收盘的快照，需重新获取）到最近一根完整 K 线；</li>
+ *   <li>内部缺口：相邻两根已存储 K 线之间，按周期网格应存在、且不落在周末休市窗口内的 K 线；</li>
+ *   <li>较早部分：已存储数量不足存储上限时，补齐更早的历史。</li>
+ * </ol>
+ * 周末窗口取保守范围（UTC 周五 21:00 至周日 23:00），夏令时切换前后的 K 线不视为缺口；
+ * 节假日休市产生的空档会被当作缺口重复请求，但只是一次空结果的小请求。
+ */
+public final class PreloadPlan {
+
+    /** 单个序列最多单独请求的缺口数，超出后合并为一个覆盖所有缺口的区间。 */
+    static final int MAX_GAP_RANGES = 16;
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long MAX_GAP_DETECTION_INTERVAL = 4 * HOUR;
+
+    private PreloadPlan() {
+    }
+
+    /**
+     * @param stored       已存储 K 线时间戳（升序），可为空
+     * @param interval     周期时长（毫秒）
+     * @param fullFrom     完整加载时的起始时间，早于它的区间会被裁剪
+     * @param to           最近一根完整 K 线的起始时间
+     * @param storageLimit 存储上限
+     * @return 需请求的闭区间 {@code [from, to]} 列表
+     */
+    public static List<long[]> ranges(long[] stored, long interval, long fullFrom, long to, int storageLimit) {
+        List<long[]> ranges = new ArrayList<>();
+        if (stored == null || stored.length == 0 || interval <= 0) {
+            addRange(ranges, fullFrom, to, fullFrom);
+            return ranges;
+        }
+
+        long oldest = stored[0];
+        long newest = stored[stored.length - 1];
+        addRange(ranges, Math.min(newest, to), to, fullFrom);
+
+        // 日线及以上的起点依赖交易日历配置，不按网格检测缺口
+        if (interval <= MAX_GAP_DETECTION_INTERVAL) {
+            List<long[]> gaps = new ArrayList<>();
+            for (int i = 1; i < stored.length; i++) {
+                long previous = stored[i - 1];
+                long current = Math.min(stored[i], to + interval);
+                if (current - previous > interval && hasTradingBar(previous + interval, current - interval, interval)) {
+                    gaps.add(new long[] {previous + interval, current - interval});
+                }
+            }
+            if (gaps.size() > MAX_GAP_RANGES) {
+                addRange(ranges, gaps.get(0)[0], gaps.get(gaps.size() - 1)[1], fullFrom);
+            } else {
+                for (long[] gap : gaps) {
+                    addRange(ranges, gap[0], gap[1], fullFrom);
+                }
+            }
+        }
+
+        if (stored.length < storageLimit) {
+            addRange(ranges, fullFrom, oldest - interval, fullFrom);
+        }
+        return ranges;
+    }
+
+    /**
+     * 网格区间 {@code [from, to]} 内是否至少有一根完全落在交易时段内的 K 线。
+     * 遇到第一根即返回，最多遍历一个周末的长度。
+     */
+    static boolean hasTradingBar(long from, long to, long interval) {
+        for (long time = from; time <= to; time += interval) {
+            if (!isWeekend(time) && !isWeekend(time + interval - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否处于周末休市窗口（UTC 周五 21:00 至周日 23:00）。
+     */
+    static boolean isWeekend(long time) {
+        long day = Math.floorDiv(time, DAY);
+        long hour = Math.floorMod(time, DAY) / HOUR;
+        // 1970-01-01 为周四；0 = 周一 … 6 = 周日
+        int dayOfWeek = (int) Math.floorMod(day + 3, 7);
+        return switch (dayOfWeek) {
+            case 4 -> hour >= 21;
+            case 5 -> true;
+            case 6 -> hour < 23;
+            default -> false;
+        };
+    }
+
+    private static void addRange(List<long[]> ranges, long from, long to, long fullFrom) {
+        long start = Math.max(from, fullFrom);
+        if (start <= to) {
+            ranges.add(new long[] {start, to});
+        }
+    }
+}
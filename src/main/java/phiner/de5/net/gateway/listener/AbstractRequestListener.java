@@ -26,10 +26,19 @@ public abstract class AbstractRequestListener<T> implements MessageListener {
 
     @Override
     public void onMessage(Message message, byte[] pattern) {
+        handle(message.getBody());
+    }
+
+    /**
+     * 解码并执行一条 Msgpack 请求，Pub/Sub 与订单指令 Stream 共用。
+     * 返回时任务已交给策略线程（或已发布错误），异常不会抛出。
+     */
+    public void handle(byte[] body) {
+        long receivedNanos = System.nanoTime();
         try {
-            T request = MsgpackUtil.decode(message.getBody(), requestType);
+            T request = MsgpackUtil.decode(body, requestType);
             if (request != null) {
-                executeRequest(request);
+                executeRequest(request, receivedNanos);
             }
         } catch (Exception e) {
             redisService.publishError("Failed to process " + operationName + " request: " + e.getMessage());
@@ -39,5 +48,12 @@ public abstract class AbstractRequestListener<T> implements MessageListener {
 
     protected abstract void executeRequest(T request);
 
+    /**
+     * 需要追踪耗时的请求覆盖此方法，{@code receivedNanos} 为解码前的 {@link System#nanoTime()}。
+     */
+    protected void executeRequest(T request, long receivedNanos) {
+        executeRequest(request);
+    }
+
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AbstractRequestListener.class);
 }
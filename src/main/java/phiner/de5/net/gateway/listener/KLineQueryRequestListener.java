@@ -0,0 +1,25 @@
+package phiner.de5.net.gateway.listener;
+
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.request.KLineQueryRequest;
+import phiner.de5.net.gateway.service.KLineQueryService;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.strategy.TradingStrategy;
+
+@Component
+public class KLineQueryRequestListener extends AbstractRequestListener<KLineQueryRequest> {
+
+    private final KLineQueryService kLineQueryService;
+
+    public KLineQueryRequestListener(TradingStrategy tradingStrategy, RedisService redisService,
+                                     KLineQueryService kLineQueryService) {
+        super(tradingStrategy, redisService, KLineQueryRequest.class, "K-line query");
+        this.kLineQueryService = kLineQueryService;
+    }
+
+    @Override
+    protected void executeRequest(KLineQueryRequest request) {
+        // K 线查询只读取 Redis 与内存缓存，不经过 JForex 线程
+        kLineQueryService.handle(request);
+    }
+}
@@ -0,0 +1,24 @@
+package phiner.de5.net.gateway.listener;
+
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.request.BatchOrderRequest;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.strategy.TradingStrategy;
+
+@Component
+public class OrderBatchListener extends AbstractRequestListener<BatchOrderRequest> {
+
+    public OrderBatchListener(TradingStrategy tradingStrategy, RedisService redisService) {
+        super(tradingStrategy, redisService, BatchOrderRequest.class, "order batch");
+    }
+
+    @Override
+    protected void executeRequest(BatchOrderRequest request) {
+        tradingStrategy.submitOrderBatch(request);
+    }
+
+    @Override
+    protected void executeRequest(BatchOrderRequest request, long receivedNanos) {
+        tradingStrategy.submitOrderBatch(request, receivedNanos);
+    }
+}
@@ -0,0 +1,292 @@
+package phiner.de5.net.gateway.listener;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.stereotype.Component;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.strategy.TradingStrategy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单指令 Stream 消费者，作为 Pub/Sub 订单频道之外的可靠入口。
+ * <p>
+ * 客户端向 {@code gateway:order:stream} 追加条目（字段 {@code type} 为
+ * {@code open/submit/modify/close/cancel/batch}，字段 {@code d} 为与对应 Pub/Sub 频道相同的 Msgpack 请求体），
+ * 网关以消费组 {@code XREADGROUP} 按批读取，逐条交给对应监听器提交到 JForex 策略线程后，
+ * 整批一次 {@code XACK}。网关重启或读取中断时未确认的条目留在待处理列表中，
+ * 启动后先重新处理本消费者的待处理条目，再认领其他消费者空闲超过阈值的条目。
+ * <p>
+ * 投递语义为至少一次：确认前崩溃的批次会被再次执行，客户端应使用唯一的订单 label 去重。
+ */
+@Slf4j
+@Component
+public class OrderStreamConsumer {
+
+    static final String FIELD_TYPE = "type";
+    static final String FIELD_DATA = "d";
+
+    private static final String BUSY_GROUP = "BUSYGROUP";
+    private static final long IDLE_SLEEP_MS = 500;
+    private static final long LOG_THROTTLE_MS = 5000;
+
+    private final RedisTemplate<String, byte[]> redisTemplateBytes;
+    private final TradingStrategy tradingStrategy;
+    private final RedisService redisService;
+    private final Map<String, AbstractRequestListener<?>> handlers;
+
+    @Value("${gateway.orders.stream.enabled:false}")
+    private boolean enabled;
+
+    @Value("${gateway.orders.stream.key:gateway:order:stream}")
+    private String streamKey;
+
+    @Value("${gateway.orders.stream.group:gateway}")
+    private String group;
+
+    @Value("${gateway.orders.stream.consumer:gateway-1}")
+    private String consumerName;
+
+    @Value("${gateway.orders.stream.batch-size:64}")
+    private int batchSize;
+
+    @Value("${gateway.orders.stream.block-ms:1000}")
+    private long blockMillis;
+
+    @Value("${gateway.orders.stream.reclaim-min-idle-ms:60000}")
+    private long reclaimMinIdleMillis;
+
+    private volatile Thread worker;
+    private volatile boolean running;
+    private boolean groupReady;
+    private boolean reclaimed;
+    private long lastErrorLogTime;
+
+    public OrderStreamConsumer(@Qualifier("redisTemplateBytes") RedisTemplate<String, byte[]> redisTemplateBytes,
+                               TradingStrategy tradingStrategy,
+                               RedisService redisService,
+                               OrderOpenListener orderOpenListener,
+                               OrderSubmitListener orderSubmitListener,
+                               OrderModifyListener orderModifyListener,
+                               OrderCloseListener orderCloseListener,
+                               OrderCancelListener orderCancelListener,
+                               OrderBatchListener orderBatchListener) {
+        this.redisTemplateBytes = redisTemplateBytes;
+        this.tradingStrategy = tradingStrategy;
+        this.redisService = redisService;
+        this.handlers = Map.of(
+                "open", orderOpenListener,
+                "submit", orderSubmitListener,
+                "modify", orderModifyListener,
+                "close", orderCloseListener,
+                "cancel", orderCancelListener,
+                "batch", orderBatchListener);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || worker != null) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::run, "order-stream-consumer");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+        log.info("订单指令 Stream 已启用: key={}, group={}, consumer={}, batchSize={}",
+                streamKey, group, consumerName, batchSize);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // 策略未就绪时不读取，避免条目被确认却因上下文未初始化而被拒绝
+                if (!tradingStrategy.isTradingReady()) {
+                    TimeUnit.MILLISECONDS.sleep(IDLE_SLEEP_MS);
+                    continue;
+                }
+                if (!groupReady) {
+                    ensureGroup();
+                }
+                if (!reclaimed) {
+                    int reclaimedCount = reclaimPending();
+                    reclaimed = true;
+                    if (reclaimedCount > 0) {
+                        log.info("订单指令 Stream 重新处理了 {} 条未确认条目", reclaimedCount);
+                    }
+                }
+                pollOnce();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // 可能是 Redis 重启后消费组丢失，下一轮重新创建
+                groupReady = false;
+                long now = System.currentTimeMillis();
+                if (now - lastErrorLogTime > LOG_THROTTLE_MS) {
+                    lastErrorLogTime = now;
+                    log.error("读取订单指令 Stream 失败: {}", e.getMessage());
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(IDLE_SLEEP_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 创建消费组（不存在时同时创建 Stream）。首次创建时从 Stream 当前末尾开始，
+     * 消费组建立之前写入的历史指令不会被执行。
+     */
+    void ensureGroup() {
+        try {
+            streamOps().createGroup(streamKey, ReadOffset.latest(), group);
+            log.info("已创建订单指令消费组: key={}, group={}", streamKey, group);
+        } catch (Exception e) {
+            if (!isBusyGroup(e)) {
+                throw e;
+            }
+        }
+        groupReady = true;
+    }
+
+    private static boolean isBusyGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(BUSY_GROUP)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 阻塞读取一批新条目并处理，返回处理条数。
+     */
+    int pollOnce() {
+        List<MapRecord<String, String, byte[]>> records = streamOps().read(
+                Consumer.from(group, consumerName),
+                StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(Math.max(1, blockMillis))),
+                StreamOffset.create(streamKey, ReadOffset.lastConsumed()));
+        return dispatch(records);
+    }
+
+    /**
+     * 重新处理未确认的条目：先是本消费者上次运行已读取未确认的，
+     * 再认领其他消费者空闲超过 {@code reclaim-min-idle-ms} 的。返回处理条数。
+     */
+    int reclaimPending() {
+        StreamOperations<String, String, byte[]> ops = streamOps();
+        int total = 0;
+        while (true) {
+            List<MapRecord<String, String, byte[]>> own = ops.read(
+                    Consumer.from(group, consumerName),
+                    StreamReadOptions.empty().count(batchSize),
+                    StreamOffset.create(streamKey, ReadOffset.from("0")));
+            int handled = dispatch(own);
+            if (handled == 0) {
+                break;
+            }
+            total += handled;
+        }
+
+        Range<String> range = Range.unbounded();
+        while (true) {
+            PendingMessages page = ops.pending(streamKey, group, range, batchSize);
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            List<RecordId> stale = new ArrayList<>();
+            String lastId = null;
+            for (PendingMessage message : page) {
+                lastId = message.getIdAsString();
+                if (!consumerName.equals(message.getConsumerName())
+                        && message.getElapsedTimeSinceLastDelivery().toMillis() >= reclaimMinIdleMillis) {
+                    stale.add(message.getId());
+                }
+            }
+            if (!stale.isEmpty()) {
+                total += dispatch(ops.claim(streamKey, group, consumerName,
+                        Duration.ofMillis(reclaimMinIdleMillis), stale.toArray(RecordId[]::new)));
+            }
+            if (page.size() < batchSize) {
+                break;
+            }
+            range = Range.rightUnbounded(Range.Bound.exclusive(lastId));
+        }
+        return total;
+    }
+
+    /**
+     * 逐条交给监听器后整批确认。无法识别的条目发布错误后同样确认，避免反复投递。
+     */
+    private int dispatch(List<MapRecord<String, String, byte[]>> records) {
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        RecordId[] ids = new RecordId[records.size()];
+        int count = 0;
+        for (MapRecord<String, String, byte[]> record : records) {
+            dispatch(record);
+            ids[count++] = record.getId();
+        }
+        streamOps().acknowledge(streamKey, group, ids);
+        return count;
+    }
+
+    private void dispatch(MapRecord<String, String, byte[]> record) {
+        Map<String, byte[]> fields = record.getValue();
+        byte[] type = fields != null ? fields.get(FIELD_TYPE) : null;
+        byte[] body = fields != null ? fields.get(FIELD_DATA) : null;
+        String typeName = type != null ? new String(type, StandardCharsets.UTF_8) : null;
+        AbstractRequestListener<?> handler = typeName != null ? handlers.get(typeName) : null;
+        if (handler == null || body == null) {
+            log.warn("忽略无效的订单指令条目 {}: type={}", record.getId(), typeName);
+            redisService.publishError("Invalid order stream entry " + record.getId() + ": type=" + typeName);
+            return;
+        }
+        handler.handle(body);
+    }
+
+    private StreamOperations<String, String, byte[]> streamOps() {
+        return redisTemplateBytes.opsForStream();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = worker;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        try {
+            // 进行中的阻塞读取最多等待 block-ms 后返回
+            thread.join(Math.max(1, blockMillis) + TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+    }
+}
@@ -16,4 +16,9 @@ public class OrderSubmitListener extends AbstractRequestListener<SubmitOrderRequ
     protected void executeRequest(SubmitOrderRequest request) {
         tradingStrategy.submitOrder(request);
     }
+
+    @Override
+    protected void executeRequest(SubmitOrderRequest request, long receivedNanos) {
+        tradingStrategy.submitOrder(request, receivedNanos);
+    }
 }
@@ -0,0 +1,19 @@
+package phiner.de5.net.gateway.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 一组下单指令，整体校验后在同一个 JForex 策略线程任务中依次提交。
+ */
+@Data
+@NoArgsConstructor
+public class BatchOrderRequest {
+    @JsonProperty("requestId")
+    private String requestId;
+    @JsonProperty("orders")
+    private List<SubmitOrderRequest> orders;
+}
@@ -0,0 +1,30 @@
+package phiner.de5.net.gateway.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * K 线查询请求。
+ * <ul>
+ *   <li>只给 {@code count}（不给 {@code from}）：返回不晚于 {@code to} 的最新 {@code count} 根；</li>
+ *   <li>给 {@code from} 和/或 {@code to}：返回该时间范围内的 K 线，{@code count} 限制总数；</li>
+ *   <li>{@code cursor}：只返回时间晚于它的 K 线，取上次响应的 {@code nextCursor} 即可增量读取；</li>
+ *   <li>{@code source}：{@code redis}（默认）读取 K 线缓存，{@code archive} 读取本地归档的深度历史。</li>
+ * </ul>
+ * 时间均为毫秒时间戳（K 线起始时间），结果按时间升序分页返回。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KLineQueryRequest {
+    private String requestId;
+    private String instrument;
+    private String period;
+    private Long from;
+    private Long to;
+    private Integer count;
+    private Long cursor;
+    private Integer pageSize;
+    private String source;
+}
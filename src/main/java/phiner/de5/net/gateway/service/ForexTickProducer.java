@@ -1,26 +1,40 @@
 package phiner.de5.net.gateway.service;
 
+import io.lettuce.core.RedisClient;
 import io.lettuce.core.XAddArgs;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.stereotype.Service;
+import phiner.de5.net.gateway.util.LongHistogram;
+import phiner.de5.net.gateway.util.PriceCodec;
 
 import java.nio.charset.StandardCharsets;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.HashMap;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 高性能外汇 Tick 生产者，使用 Redis Stream 存储实时数据。
  * 基于 Spring 托管的 Lettuce 连接工厂，实现异步非阻塞写入、自动容量修剪。
  * 已优化为基于 byte[] 的底层模式，彻底解决编解码器冲突与 GC 频率问题。
+ * <p>
+ * 默认使用独立的 Lettuce 连接并关闭自动刷新：XADD 命令先在连接内缓冲，
+ * 累计达到 {@code batch-size} 条或距批次开始超过 {@code flush-interval-us} 微秒时一次性写出，
+ * 将每个 Tick 一次网络写入合并为每批一次。无法建立独立连接时回退到共享连接的逐条写入。
+ * <p>
+ * 可选的合并模式（{@code gateway.ticks.conflation.enabled}）：未完成的 XADD 超过
+ * {@code max-in-flight} 时不再排队，而是在 {@link TickConflator} 中为每个品种只保留最新报价，
+ * 待写入积压回落后再补发，消费方始终拿到最新价格而不是不断增长的历史积压。
  */
 @Slf4j
 @Service
@@ -31,26 +45,54 @@ public class ForexTickProducer {
     @Value("${gateway.ticks.stream.max-len:30000}")
     private int maxStreamLength;
 
+    @Value("${gateway.ticks.stream.format:text}")
+    private String streamFormat;
+
+    @Value("${gateway.ticks.stream.batch-size:64}")
+    private int batchSize;
+
+    @Value("${gateway.ticks.stream.flush-interval-us:200}")
+    private long flushIntervalMicros;
+
+    @Value("${gateway.ticks.conflation.enabled:false}")
+    private boolean conflationEnabled;
+
+    @Value("${gateway.ticks.conflation.max-in-flight:10000}")
+    private int maxInFlight;
+
+    @Value("${gateway.ticks.conflation.slots:256}")
+    private int conflationSlots;
+
     @Value("${spring.data.redis.host:localhost}")
     private String activeRedisHost;
 
     // 切换至字节数组模式，以兼容 Spring Data Redis 的默认 ByteArrayCodec
     private RedisAsyncCommands<byte[], byte[]> asyncCommands;
     private XAddArgs xAddArgs;
+
+    // 批量刷新模式下的独立连接（关闭自动刷新），由本类负责关闭
+    private StatefulRedisConnection<byte[], byte[]> dedicatedConnection;
+    private volatile boolean manualFlush;
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+    private final LongHistogram flushSizes = new LongHistogram();
+    private volatile Thread flusherThread;
+    private volatile boolean flusherRunning;
+    private volatile boolean flusherIdle;
+
+    // 已发出但尚未收到应答的 XADD 数量，合并模式以此判断写入是否积压
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private TickConflator conflator;
     
-    // 预分配常用字段键，避免在每秒数千次的 Tick 循环中产生不必要的 byte[] 分配
-    private static final byte[] FIELD_T = "t".getBytes(StandardCharsets.UTF_8);
-    private static final byte[] FIELD_B = "b".getBytes(StandardCharsets.UTF_8);
-    private static final byte[] FIELD_A = "a".getBytes(StandardCharsets.UTF_8);
-    private static final byte[] FIELD_BV = "bv".getBytes(StandardCharsets.UTF_8);
-    private static final byte[] FIELD_AV = "av".getBytes(StandardCharsets.UTF_8);
-    
-    // 价格格式化：固定 5 位小数，防止科学计数法和精度丢失。使用 US 符号确保小数点为 '.'
-    private static final DecimalFormat PRICE_FORMAT = new DecimalFormat("0.00000", DecimalFormatSymbols.getInstance(Locale.US));
-    
-    private long lastErrorLogTime = 0;
+    // 按品种缓存预编码的 Stream Key，避免每个 Tick 做字符串拼接与 getBytes
+    private final Map<String, byte[]> streamKeys = new ConcurrentHashMap<>();
+    private boolean binaryFormat;
+
+    private volatile long lastErrorLogTime = 0;
     private static final long LOG_THROTTLE_MS = 5000;
     private static final String STREAM_KEY_PREFIX = "gateway:ticks:stream:";
+    private static final String BACKPRESSURE_WARNING = "Redis 写入积压，Tick 进入合并模式，仅保留各品种最新报价";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long STATS_LOG_INTERVAL_MS = 60_000;
 
     public ForexTickProducer(RedisConnectionFactory connectionFactory) {
         this.connectionFactory = connectionFactory;
@@ -58,6 +100,65 @@ public class ForexTickProducer {
 
     @PostConstruct
     public void init() {
+        this.binaryFormat = resolveBinaryFormat(streamFormat);
+        if (conflationEnabled) {
+            this.conflator = new TickConflator(conflationSlots);
+            log.info("Tick 合并模式已启用: maxInFlight={}, slots={}", maxInFlight, conflationSlots);
+        }
+        if (batchSize > 1 && openDedicatedConnection()) {
+            this.xAddArgs = new XAddArgs().maxlen(maxStreamLength).approximateTrimming(true);
+            startFlusher();
+            log.info("ForexTickProducer 已建立独立的批量写入连接: batchSize={}, flushInterval={}us",
+                    batchSize, flushIntervalMicros);
+            return;
+        }
+        initSharedConnection();
+        if (conflator != null) {
+            // 逐条写入模式没有批量刷新，但仍需要后台线程补发暂存报价
+            startFlusher();
+        }
+    }
+
+    private static boolean resolveBinaryFormat(String format) {
+        if (format == null || format.isBlank() || "text".equalsIgnoreCase(format.trim())) {
+            return false;
+        }
+        if ("binary".equalsIgnoreCase(format.trim())) {
+            log.info("Tick Stream 使用紧凑二进制条目格式 (字段 d, 版本 {})", TickStreamEncoder.BINARY_VERSION);
+            return true;
+        }
+        log.warn("未知的 Tick Stream 格式 [{}]，使用默认文本格式", format);
+        return false;
+    }
+
+    /**
+     * 通过连接工厂持有的 RedisClient 建立独立的字节数组连接，并关闭自动刷新。
+     * 共享连接仍由 Spring 管理，不能修改其刷新模式，否则会影响 RedisTemplate 上的其他命令。
+     */
+    private boolean openDedicatedConnection() {
+        if (!(connectionFactory instanceof LettuceConnectionFactory lettuceFactory)) {
+            log.warn("RedisConnectionFactory 不是 LettuceConnectionFactory，Tick 写入回退为逐条刷新");
+            return false;
+        }
+        try {
+            log.info("ForexTickProducer 正在为 Tick Stream 建立独立连接: {}", activeRedisHost);
+            if (!(lettuceFactory.getNativeClient() instanceof RedisClient redisClient)) {
+                log.warn("当前 Redis 部署模式不支持独立连接，Tick 写入回退为逐条刷新");
+                return false;
+            }
+            StatefulRedisConnection<byte[], byte[]> connection = redisClient.connect(ByteArrayCodec.INSTANCE);
+            connection.setAutoFlushCommands(false);
+            this.dedicatedConnection = connection;
+            this.asyncCommands = connection.async();
+            this.manualFlush = true;
+            return true;
+        } catch (Exception e) {
+            log.warn("建立 Tick Stream 独立连接失败，回退为共享连接: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void initSharedConnection() {
         org.springframework.data.redis.connection.RedisConnection conn = null;
         try {
             log.info("ForexTickProducer 正在尝试连接 Redis: {}", activeRedisHost);
@@ -111,6 +212,7 @@ public class ForexTickProducer {
     /**
      * 异步发送 Tick 数据到对应的品种 Stream。
      * 已优化为原生 byte[] 模式，彻底解决泛型冲突并保持极致吞吐。
+     * 可被多个事件通道线程并发调用：Stream Key 来自共享缓存，字段编码使用线程私有的 {@link TickStreamEncoder}。
      */
     public void sendTickAsync(String symbol, long timestamp, double bid, double ask, double bidVol, double askVol) {
         if (asyncCommands == null) {
@@ -118,21 +220,214 @@ public class ForexTickProducer {
             return;
         }
 
-        byte[] streamKey = (STREAM_KEY_PREFIX + symbol).getBytes(StandardCharsets.UTF_8);
-        
-        // 构建 Map<byte[], byte[]>。使用预分配的 Key 并通过手动转换 Value 确保编解码正确。
-        Map<byte[], byte[]> data = new HashMap<>(5);
-        data.put(FIELD_T, String.valueOf(timestamp).getBytes(StandardCharsets.UTF_8));
-        data.put(FIELD_B, PRICE_FORMAT.format(bid).getBytes(StandardCharsets.UTF_8));
-        data.put(FIELD_A, PRICE_FORMAT.format(ask).getBytes(StandardCharsets.UTF_8));
-        data.put(FIELD_BV, String.valueOf(bidVol).getBytes(StandardCharsets.UTF_8));
-        data.put(FIELD_AV, String.valueOf(askVol).getBytes(StandardCharsets.UTF_8));
+        if (conflator != null) {
+            sendConflated(symbol, timestamp, bid, ask, bidVol, askVol);
+            return;
+        }
+        writeTick(symbol, timestamp, bid, ask, bidVol, askVol);
+    }
 
+    /**
+     * 合并模式下的发送路径。同一品种的暂存、覆盖与写入都在其槽位监视器内完成，保证不会乱序。
+     */
+    private void sendConflated(String symbol, long timestamp, double bid, double ask, double bidVol, double askVol) {
+        TickConflator.Slot slot = conflator.slotFor(symbol);
+        if (slot == null) {
+            writeTick(symbol, timestamp, bid, ask, bidVol, askVol);
+            return;
+        }
+        synchronized (slot) {
+            if (isBackpressured()) {
+                conflator.defer(slot, timestamp, bid, ask, bidVol, askVol);
+                throttledLogWarn(BACKPRESSURE_WARNING);
+                return;
+            }
+            // 新报价直接写出，暂存的旧报价已无意义
+            conflator.supersede(slot);
+            writeTick(symbol, timestamp, bid, ask, bidVol, askVol);
+        }
+        if (conflator.hasPending()) {
+            drainConflated();
+        }
+    }
+
+    /**
+     * 补发合并槽位中暂存的最新报价，写入再次积压时停止。
+     */
+    void drainConflated() {
+        TickConflator current = conflator;
+        if (current == null) {
+            return;
+        }
+        int count = current.getSlotCount();
+        for (int i = 0; i < count && current.hasPending(); i++) {
+            TickConflator.Slot slot = current.getSlot(i);
+            if (isBackpressured()) {
+                return;
+            }
+            synchronized (slot) {
+                if (slot.pending) {
+                    writeTick(slot.symbol, slot.time, slot.bid, slot.ask, slot.bidVolume, slot.askVolume);
+                    current.markSent(slot);
+                }
+            }
+        }
+    }
+
+    private boolean isBackpressured() {
+        return inFlight.get() >= maxInFlight;
+    }
+
+    private void writeTick(String symbol, long timestamp, double bid, double ask, double bidVol, double askVol) {
+        byte[] streamKey = streamKeys.computeIfAbsent(symbol, ForexTickProducer::encodeStreamKey);
+        TickStreamEncoder encoder = TickStreamEncoder.forCurrentThread();
+        int priceScale = PriceCodec.forInstrument(symbol).getTickScale();
+        Map<byte[], byte[]> data = binaryFormat
+                ? encoder.encodeBinary(timestamp, bid, ask, bidVol, askVol, priceScale)
+                : encoder.encode(timestamp, bid, ask, bidVol, askVol, priceScale);
+
+        inFlight.incrementAndGet();
         asyncCommands.xadd(streamKey, xAddArgs, data)
-                .exceptionally(ex -> {
-                    throttledLogWarn("写入 Redis Stream 失败 [" + symbol + "]: " + ex.getMessage());
+                .handle((id, ex) -> {
+                    onWriteComplete();
+                    if (ex != null) {
+                        throttledLogWarn("写入 Redis Stream 失败 [" + symbol + "]: " + ex.getMessage());
+                    }
                     return null;
                 });
+
+        if (manualFlush) {
+            // 先入队再计数：被计入的命令一定已在连接缓冲区中，刷新时不会遗漏
+            int pending = pendingCommands.incrementAndGet();
+            if (pending >= batchSize) {
+                flushPending();
+            } else if (pending == 1 && flusherIdle) {
+                LockSupport.unpark(flusherThread);
+            }
+        }
+    }
+
+    private void onWriteComplete() {
+        int remaining = inFlight.decrementAndGet();
+        // 积压回落到阈值一半时唤醒刷新线程补发暂存报价，避免行情停止后最新价格滞留在槽位中。
+        // 此处运行在 Lettuce 的 IO 线程上，不能在这里获取槽位监视器或发出新的写入
+        if (conflator != null && remaining == maxInFlight / 2 && conflator.hasPending()) {
+            Thread thread = flusherThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * 将连接缓冲区中累计的命令一次性写出，并记录本批大小。可被任意线程调用。
+     */
+    void flushPending() {
+        int batch = pendingCommands.getAndSet(0);
+        if (batch > 0) {
+            asyncCommands.flushCommands();
+            flushSizes.record(batch);
+        }
+    }
+
+    private void startFlusher() {
+        flusherRunning = true;
+        Thread thread = new Thread(this::runFlusher, "tick-stream-flusher");
+        thread.setDaemon(true);
+        flusherThread = thread;
+        thread.start();
+    }
+
+    /**
+     * 时间预算刷新：批次开始后最多等待一个刷新间隔，保证低频时段的 Tick 也能及时写出。
+     * 空闲时挂起，由批次中的第一条命令或写入积压回落时的应答回调唤醒。
+     * 合并模式下暂存报价的补发也在本线程完成。
+     */
+    private void runFlusher() {
+        long budgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, flushIntervalMicros));
+        long nextStatsLog = System.currentTimeMillis() + STATS_LOG_INTERVAL_MS;
+        while (flusherRunning) {
+            if (pendingCommands.get() == 0) {
+                flusherIdle = true;
+                if (pendingCommands.get() == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                flusherIdle = false;
+            } else {
+                LockSupport.parkNanos(budgetNanos);
+                flushPending();
+            }
+            if (conflator != null && conflator.hasPending()) {
+                drainConflated();
+                flushPending();
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextStatsLog) {
+                logFlushStats();
+                nextStatsLog = now + STATS_LOG_INTERVAL_MS;
+            }
+        }
+        flushPending();
+    }
+
+    private void logFlushStats() {
+        if (flushSizes.getCount() > 0) {
+            log.info("Tick Stream 批量刷新统计: flushes={}, mean={}, p50={}, p99={}, max={}",
+                    flushSizes.getCount(), String.format("%.1f", flushSizes.getMean()),
+                    flushSizes.valueAtPercentile(50), flushSizes.valueAtPercentile(99), flushSizes.getMax());
+            flushSizes.reset();
+        }
+        if (conflator != null) {
+            log.info("Tick 合并统计: deferred={}, conflated={}, pending={}, in-flight={}",
+                    conflator.getDeferredTickCount(), conflator.getConflatedTickCount(),
+                    conflator.getPendingCount(), inFlight.get());
+        }
+    }
+
+    /**
+     * 合并模式的计数器；未启用合并模式时返回 {@code null}。
+     */
+    public TickConflator getConflator() {
+        return conflator;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * 每次刷新写出的命令数分布（当前统计窗口）。
+     */
+    public LongHistogram getFlushSizeHistogram() {
+        return flushSizes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = flusherThread;
+        if (thread != null) {
+            flusherRunning = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (manualFlush) {
+            flushPending();
+        }
+        if (dedicatedConnection != null) {
+            try {
+                dedicatedConnection.close();
+            } catch (Exception e) {
+                log.debug("关闭 Tick Stream 独立连接时发生异常: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static byte[] encodeStreamKey(String symbol) {
+        return (STREAM_KEY_PREFIX + symbol).getBytes(StandardCharsets.UTF_8);
     }
 
     private void throttledLogWarn(String message) {
@@ -149,4 +444,28 @@ public class ForexTickProducer {
     void setAsyncCommandsForTest(RedisAsyncCommands<byte[], byte[]> asyncCommands) {
         this.asyncCommands = asyncCommands;
     }
+
+    /**
+     * 在单元测试中启用批量刷新模式（不启动后台刷新线程）
+     */
+    void setAsyncCommandsForTest(RedisAsyncCommands<byte[], byte[]> asyncCommands, int batchSize) {
+        this.asyncCommands = asyncCommands;
+        this.batchSize = batchSize;
+        this.manualFlush = batchSize > 1;
+    }
+
+    /**
+     * 在单元测试中切换 Stream 条目格式
+     */
+    void setStreamFormatForTest(String format) {
+        this.binaryFormat = resolveBinaryFormat(format);
+    }
+
+    /**
+     * 在单元测试中启用合并模式
+     */
+    void enableConflationForTest(int maxInFlight, int slots) {
+        this.maxInFlight = maxInFlight;
+        this.conflator = new TickConflator(slots);
+    }
 }
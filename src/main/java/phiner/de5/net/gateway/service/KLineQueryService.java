@@ -0,0 +1,184 @@
+package phiner.de5.net.gateway.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.dto.KLinePageDTO;
+import phiner.de5.net.gateway.kline.BarArchive;
+import phiner.de5.net.gateway.request.KLineQueryRequest;
+import phiner.de5.net.gateway.util.PeriodUtil;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 处理 {@code gateway:system:request:kline} 的 K 线查询，结果分页发布到
+ * {@code gateway:kline:response:{requestId}}。
+ * <p>
+ * 时间范围查询逐页读取（每页一次 {@code ZRANGEBYSCORE ... LIMIT} 或内存缓存读取），
+ * 不会一次性载入整个序列；单个请求最多返回存储上限数量的 K 线。
+ * {@code source=archive} 时从本地归档读取，不受存储上限约束，“最新 N 根”也按时间范围逐页读取。
+ */
+@Slf4j
+@Service
+public class KLineQueryService {
+
+    static final int DEFAULT_PAGE_SIZE = 500;
+    static final int MAX_PAGE_SIZE = 5000;
+
+    static final String SOURCE_REDIS = "redis";
+    static final String SOURCE_ARCHIVE = "archive";
+
+    private final RedisService redisService;
+    private final BarArchive barArchive;
+    private final int maxBars;
+
+    public KLineQueryService(RedisService redisService, BarArchive barArchive,
+                             @Value("${gateway.kline.storage-limit}") int klineStorageLimit) {
+        this.redisService = redisService;
+        this.barArchive = barArchive;
+        this.maxBars = Math.max(1, klineStorageLimit);
+    }
+
+    public void handle(@NonNull KLineQueryRequest request) {
+        String requestId = request.getRequestId();
+        if (requestId == null || requestId.isBlank()) {
+            log.warn("K-line query ignored: missing requestId");
+            redisService.publishError("K-line query rejected: requestId is required");
+            return;
+        }
+        String instrument = request.getInstrument();
+        String period = request.getPeriod() == null ? null : PeriodUtil.format(request.getPeriod().trim());
+        String error = validate(request, instrument, period);
+        if (error != null) {
+            log.warn("K-line query {} rejected: {}", requestId, error);
+            redisService.publishKLinePage(
+                    new KLinePageDTO(requestId, instrument, period, 0, true, request.getCursor(),
+                            Collections.emptyList(), error),
+                    requestId);
+            return;
+        }
+
+        int pageSize = request.getPageSize() == null
+                ? DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(MAX_PAGE_SIZE, request.getPageSize()));
+        boolean archive = SOURCE_ARCHIVE.equalsIgnoreCase(source(request));
+        int limit;
+        if (archive) {
+            limit = request.getCount() == null ? Integer.MAX_VALUE : request.getCount();
+        } else {
+            limit = request.getCount() == null ? maxBars : Math.min(maxBars, request.getCount());
+        }
+        long lower = request.getFrom() == null ? Long.MIN_VALUE : request.getFrom();
+        if (request.getCursor() != null && request.getCursor() != Long.MAX_VALUE) {
+            lower = Math.max(lower, request.getCursor() + 1);
+        }
+        long upper = request.getTo() == null ? Long.MAX_VALUE : request.getTo();
+
+        if (archive) {
+            if (request.getFrom() == null && request.getCount() != null) {
+                // 归档可能很长，先定位最新 N 根的起点，再按时间范围逐页读取；没有数据时区间为空
+                Long first = barArchive.firstTimeOfLatest(instrument, period, upper, limit);
+                lower = Math.max(lower, first == null ? upper : first);
+            }
+            publishRange(requestId, instrument, period, lower, upper, limit, pageSize, request.getCursor(), true);
+        } else if (request.getFrom() == null && request.getCount() != null) {
+            publishLatest(requestId, instrument, period, lower, upper, limit, pageSize, request.getCursor());
+        } else {
+            publishRange(requestId, instrument, period, lower, upper, limit, pageSize, request.getCursor(), false);
+        }
+    }
+
+    private static String source(KLineQueryRequest request) {
+        return request.getSource() == null || request.getSource().isBlank()
+                ? SOURCE_REDIS
+                : request.getSource().trim();
+    }
+
+    private String validate(KLineQueryRequest request, String instrument, String period) {
+        if (instrument == null || instrument.isBlank()) {
+            return "instrument is required";
+        }
+        if (period == null || period.isBlank()) {
+            return "period is required";
+        }
+        if (request.getCount() != null && request.getCount() <= 0) {
+            return "count must be positive";
+        }
+        if (request.getFrom() != null && request.getTo() != null && request.getFrom() > request.getTo()) {
+            return "from must not be after to";
+        }
+        String source = source(request);
+        if (SOURCE_ARCHIVE.equalsIgnoreCase(source)) {
+            if (!barArchive.isEnabled()) {
+                return "K-line archive is disabled";
+            }
+        } else if (!SOURCE_REDIS.equalsIgnoreCase(source)) {
+            return "source must be redis or archive";
+        }
+        return null;
+    }
+
+    /**
+     * 时间范围查询：逐页读取，每页多取一根判断是否还有后续。
+     */
+    private void publishRange(String requestId, String instrument, String period, long lower, long upper,
+                              int limit, int pageSize, Long cursor, boolean archive) {
+        int remaining = limit;
+        int page = 0;
+        Long nextCursor = cursor;
+        boolean last;
+        do {
+            int take = Math.min(pageSize, remaining);
+            List<BarDTO> bars;
+            if (lower > upper) {
+                bars = Collections.emptyList();
+            } else if (archive) {
+                bars = barArchive.range(instrument, period, lower, upper, take + 1);
+            } else {
+                bars = redisService.getKLineRange(instrument, period, lower, upper, take + 1);
+            }
+            last = bars.size() <= take || take == remaining;
+            if (bars.size() > take) {
+                bars = bars.subList(0, take);
+            }
+            if (!bars.isEmpty()) {
+                long newest = bars.get(bars.size() - 1).getTime();
+                nextCursor = newest;
+                lower = newest + 1;
+                remaining -= bars.size();
+            }
+            redisService.publishKLinePage(
+                    new KLinePageDTO(requestId, instrument, period, page++, last, nextCursor, bars, null), requestId);
+        } while (!last);
+    }
+
+    /**
+     * 最新 N 根查询：结果数量受存储上限约束，一次读取后分页发布。
+     */
+    private void publishLatest(String requestId, String instrument, String period, long lower, long upper,
+                               int count, int pageSize, Long cursor) {
+        List<BarDTO> bars = lower > upper
+                ? Collections.emptyList()
+                : redisService.getLatestKLine(instrument, period, upper, count);
+        int start = 0;
+        while (start < bars.size() && bars.get(start).getTime() < lower) {
+            start++;
+        }
+        int page = 0;
+        Long nextCursor = cursor;
+        do {
+            int end = Math.min(bars.size(), start + pageSize);
+            List<BarDTO> chunk = bars.subList(start, end);
+            if (!chunk.isEmpty()) {
+                nextCursor = chunk.get(chunk.size() - 1).getTime();
+            }
+            redisService.publishKLinePage(
+                    new KLinePageDTO(requestId, instrument, period, page++, end >= bars.size(), nextCursor, chunk, null),
+                    requestId);
+            start = end;
+        } while (start < bars.size());
+    }
+}
@@ -1,15 +1,24 @@
 package phiner.de5.net.gateway.service;
 
 import com.dukascopy.api.IMessage;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 import phiner.de5.net.gateway.MsgpackUtil;
@@ -17,12 +26,19 @@ import phiner.de5.net.gateway.dto.AccountStatusDTO;
 import phiner.de5.net.gateway.dto.BarDTO;
 import phiner.de5.net.gateway.dto.ErrorDTO;
 import phiner.de5.net.gateway.dto.GatewayStatusDTO;
+import phiner.de5.net.gateway.dto.IndicatorDTO;
 import phiner.de5.net.gateway.dto.InstrumentInfoDTO;
+import phiner.de5.net.gateway.dto.KLinePageDTO;
+import phiner.de5.net.gateway.dto.KLineSeriesLoadedDTO;
+import phiner.de5.net.gateway.dto.OrderBatchResultDTO;
 import phiner.de5.net.gateway.dto.OrderEventDTO;
+import phiner.de5.net.gateway.dto.OrderLatencyDTO;
 import phiner.de5.net.gateway.dto.OrderHistoryDTO;
 import phiner.de5.net.gateway.dto.OrdersHistoryResponseDTO;
 import phiner.de5.net.gateway.dto.PositionDTO;
 import phiner.de5.net.gateway.dto.TickDTO;
+import phiner.de5.net.gateway.kline.ChunkedKLineStore;
+import phiner.de5.net.gateway.kline.KLineCache;
 import phiner.de5.net.gateway.util.PeriodUtil;
 
 import lombok.extern.slf4j.Slf4j;
@@ -35,20 +51,58 @@ public class RedisService {
   private int klineStorageLimit;
 
   private static final String KLINE_KEY_PREFIX = "gateway:kline";
+  private static final String KLINE_LOADED_CHANNEL = "gateway:kline:loaded";
+  private static final String INDICATOR_KEY_PREFIX = "gateway:indicator";
+  // 单条 ZADD 携带的成员上限，避免单个命令过大阻塞 Redis
+  private static final int BULK_ZADD_CHUNK = 1000;
   private static final String POSITIONS_HASH_KEY = "gateway:positions:active";
   private static final String POSITIONS_UPDATED_CHANNEL = "gateway:positions:updated";
   private static final String HISTORY_HASH_KEY = "gateway:orders:history";
   private static final String HISTORY_UPDATED_CHANNEL = "gateway:orders:history:updated";
   private static final String HISTORY_COVERAGE_HASH_KEY = "gateway:history:coverage";
 
+  /**
+   * K 线原子写入脚本：旧版 List 迁移、同一时间戳替换与容量修剪在一次调用内完成，
+   * 读取方不会看到 K 线短暂缺失。Spring 按 SHA1 以 EVALSHA 调用，服务端未缓存时自动回退为 EVAL。
+   * KEYS[1] = K 线键，ARGV[1] = BarDTO 编码，ARGV[2] = 时间戳 (score)，ARGV[3] = 保留条数。
+   */
+  static final RedisScript<Long> UPSERT_BAR_SCRIPT = new DefaultRedisScript<>(
+      "local keyType = redis.call('TYPE', KEYS[1])\n"
+          + "if type(keyType) == 'table' then keyType = keyType['ok'] end\n"
+          + "if keyType == 'list' then redis.call('DEL', KEYS[1]) end\n"
+          + "redis.call('ZREMRANGEBYSCORE', KEYS[1], ARGV[2], ARGV[2])\n"
+          + "redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])\n"
+          + "return redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -(tonumber(ARGV[3]) + 1))\n",
+      Long.class);
+
+  /**
+   * 只返回 K 线 ZSET 的分数（时间戳，升序），以逗号分隔的 ASCII 文本一次返回，不传输 K 线内容；
+   * 非 ZSET（旧版 List 或不存在）返回空串。
+   */
+  static final RedisScript<byte[]> KLINE_TIMES_SCRIPT = new DefaultRedisScript<>(
+      "local keyType = redis.call('TYPE', KEYS[1])\n"
+          + "if type(keyType) == 'table' then keyType = keyType['ok'] end\n"
+          + "if keyType ~= 'zset' then return '' end\n"
+          + "local entries = redis.call('ZRANGE', KEYS[1], 0, -1, 'WITHSCORES')\n"
+          + "local scores = {}\n"
+          + "for i = 2, #entries, 2 do scores[#scores + 1] = entries[i] end\n"
+          + "return table.concat(scores, ',')\n",
+      byte[].class);
+
   private final RedisTemplate<String, byte[]> redisTemplateBytes;
   private final RedisTemplate<String, String> redisTemplateString;
+  private final KLineCache kLineCache;
+  private final ChunkedKLineStore chunkedKLineStore;
 
   public RedisService(
       @Qualifier("redisTemplateBytes") @NonNull RedisTemplate<String, byte[]> redisTemplateBytes,
-      @Qualifier("redisTemplateString") @NonNull RedisTemplate<String, String> redisTemplateString) {
+      @Qualifier("redisTemplateString") @NonNull RedisTemplate<String, String> redisTemplateString,
+      @NonNull KLineCache kLineCache,
+      @NonNull ChunkedKLineStore chunkedKLineStore) {
     this.redisTemplateBytes = redisTemplateBytes;
     this.redisTemplateString = redisTemplateString;
+    this.kLineCache = kLineCache;
+    this.chunkedKLineStore = chunkedKLineStore;
   }
 
   public void addBarToKLine(@NonNull BarDTO bar) {
@@ -57,6 +111,12 @@ public class RedisService {
       return;
     }
 
+    if (chunkedKLineStore.isEnabled()) {
+      kLineCache.put(bar);
+      chunkedKLineStore.write(Collections.singletonList(bar));
+      return;
+    }
+
     String redisKey =
         String.format(
             "%s:%s:%s",
@@ -68,29 +128,194 @@ public class RedisService {
       return;
     }
 
+    kLineCache.put(bar);
     try {
-      // 迁移逻辑：如果 Key 存在且不是 ZSET 类型（旧的 List），则删除
-      org.springframework.data.redis.connection.DataType dataType = redisTemplateBytes.type(redisKey);
-      if (dataType == org.springframework.data.redis.connection.DataType.LIST) {
-          log.info("RedisService: Detected legacy List type for {}, deleting for ZSET migration", redisKey);
-          redisTemplateBytes.delete(redisKey);
+      // 迁移（旧 List 类型删除）、按时间戳去重替换、保留最新 N 条，均在脚本内原子完成，仅一次往返
+      redisTemplateBytes.execute(UPSERT_BAR_SCRIPT, Collections.singletonList(redisKey),
+          barData, asciiBytes(bar.getTime()), asciiBytes(klineStorageLimit));
+    } catch (Exception e) {
+      log.warn("RedisService: Failed to write bar to ZSET key {}: {}", redisKey, e.getMessage());
+    }
+  }
+
+  /**
+   * 批量写入同一品种周期的历史 K 线（用于预加载），一次管道往返完成：
+   * 在 MULTI/EXEC 中先移除本批次各时间戳上的旧成员，再以多成员 ZADD 写入，最后统一修剪；
+   * 事务成功后才写入内存缓存。不逐根推送，调用方在写入完成后发送一次 {@link #publishSeriesLoaded} 通知。
+   *
+   * @return 实际写入的 K 线数量
+   */
+  public int addBarsToKLine(@NonNull List<BarDTO> bars) {
+    if (bars.isEmpty()) {
+      return 0;
+    }
+    BarDTO first = bars.get(0);
+    if (first.getInstrument() == null || first.getPeriod() == null) {
+      log.error("RedisService: Cannot bulk load bars with a null instrument/period.");
+      return 0;
+    }
+    if (chunkedKLineStore.isEnabled()) {
+      int written = chunkedKLineStore.write(bars);
+      if (written > 0) {
+        kLineCache.putAll(bars);
       }
+      return written;
+    }
+    String redisKey = String.format("%s:%s:%s", KLINE_KEY_PREFIX, first.getInstrument(), first.getPeriod());
+    byte[] rawKey = redisKey.getBytes(StandardCharsets.UTF_8);
+
+    Set<Tuple> tuples = new LinkedHashSet<>(bars.size() * 2);
+    for (BarDTO bar : bars) {
+      byte[] barData = MsgpackUtil.encode(bar);
+      if (barData == null) {
+        log.warn("RedisService: Skipping bar at {} for {} that failed to serialize", bar.getTime(), redisKey);
+        continue;
+      }
+      tuples.add(Tuple.of(barData, (double) bar.getTime()));
+    }
+    if (tuples.isEmpty()) {
+      return 0;
+    }
 
-      double score = bar.getTime();
-      // 1. 明确去重：移除同一时间戳的旧数据（防止成员内容微变导致产生多个条目）
-      redisTemplateBytes.opsForZSet().removeRangeByScore(redisKey, score, score);
-      // 2. 添加新数据
-      redisTemplateBytes.opsForZSet().add(redisKey, barData, score);
-      // 3. 这里的 ZSET 是按 score 升序排列的，我们需要保留最高分（最新）的 N 条，移除较低分（最老）的数据
-      // 移除从 0 到 -(limit+1) 范围的元素
-      redisTemplateBytes.opsForZSet().removeRange(redisKey, 0, -(klineStorageLimit + 1));
-      
+    try {
+      // 与单根写入脚本一致：旧版 List 类型无法直接 ZADD，先行清理
+      if (redisTemplateBytes.type(redisKey) == DataType.LIST) {
+        log.info("RedisService: Detected legacy List type for {}, deleting for ZSET migration", redisKey);
+        redisTemplateBytes.delete(redisKey);
+      }
+      redisTemplateBytes.executePipelined((RedisCallback<Object>) connection -> {
+        writeBarsInTransaction(connection, rawKey, tuples);
+        return null;
+      });
+      // 事务成功后才更新内存缓存，避免缓存中出现 Redis 没有的 K 线
+      kLineCache.putAll(bars);
+      return tuples.size();
     } catch (Exception e) {
-      log.warn("RedisService: Failed to write bar to ZSET key {}: {}", redisKey, e.getMessage());
+      log.warn("RedisService: Failed to bulk load {} bars into {}: {}", tuples.size(), redisKey, e.getMessage());
+      return 0;
+    }
+  }
+
+  /**
+   * 写入一根 K 线的指标值，与 K 线 ZSET 相同：按时间戳替换并保留最新 N 条。
+   */
+  public void addIndicatorValue(@NonNull IndicatorDTO indicator) {
+    String redisKey = String.format("%s:%s:%s", INDICATOR_KEY_PREFIX, indicator.getInstrument(), indicator.getPeriod());
+    byte[] data = MsgpackUtil.encode(indicator);
+    if (data == null) {
+      return;
+    }
+    try {
+      redisTemplateBytes.execute(UPSERT_BAR_SCRIPT, Collections.singletonList(redisKey),
+          data, asciiBytes(indicator.getTime()), asciiBytes(klineStorageLimit));
+    } catch (Exception e) {
+      log.warn("RedisService: Failed to write indicators to ZSET key {}: {}", redisKey, e.getMessage());
+    }
+  }
+
+  /**
+   * 批量写入同一品种周期按历史重算的指标值（升序），一次管道往返，覆盖相同时间戳的旧值。
+   *
+   * @return 实际写入的条数
+   */
+  public int addIndicatorValues(@NonNull List<IndicatorDTO> indicators) {
+    if (indicators.isEmpty()) {
+      return 0;
+    }
+    IndicatorDTO first = indicators.get(0);
+    String redisKey = String.format("%s:%s:%s", INDICATOR_KEY_PREFIX, first.getInstrument(), first.getPeriod());
+    byte[] rawKey = redisKey.getBytes(StandardCharsets.UTF_8);
+    Set<Tuple> tuples = new LinkedHashSet<>(indicators.size() * 2);
+    for (IndicatorDTO indicator : indicators) {
+      byte[] data = MsgpackUtil.encode(indicator);
+      if (data != null) {
+        tuples.add(Tuple.of(data, (double) indicator.getTime()));
+      }
+    }
+    if (tuples.isEmpty()) {
+      return 0;
+    }
+    try {
+      redisTemplateBytes.executePipelined((RedisCallback<Object>) connection -> {
+        writeBarsInTransaction(connection, rawKey, tuples);
+        return null;
+      });
+      return tuples.size();
+    } catch (Exception e) {
+      log.warn("RedisService: Failed to bulk load {} indicator values into {}: {}", tuples.size(), redisKey,
+          e.getMessage());
+      return 0;
+    }
+  }
+
+  private void writeBarsInTransaction(RedisConnection connection, byte[] rawKey, Set<Tuple> tuples) {
+    connection.multi();
+    // 只删除本批次将要替换的时间戳，区间内其他已存储的 K 线保持不变
+    for (Tuple tuple : tuples) {
+      connection.zSetCommands().zRemRangeByScore(rawKey, tuple.getScore(), tuple.getScore());
+    }
+    Set<Tuple> chunk = new LinkedHashSet<>();
+    for (Tuple tuple : tuples) {
+      chunk.add(tuple);
+      if (chunk.size() == BULK_ZADD_CHUNK) {
+        connection.zSetCommands().zAdd(rawKey, chunk);
+        chunk = new LinkedHashSet<>();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      connection.zSetCommands().zAdd(rawKey, chunk);
+    }
+    connection.zSetCommands().zRemRange(rawKey, 0, -(klineStorageLimit + 1));
+    connection.exec();
+  }
+
+  private static byte[] asciiBytes(long value) {
+    return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * 读取已存储 K 线的时间戳（升序），供增量预加载计算缺失区间。读取失败时返回空数组（按全量加载处理）。
+   */
+  public long[] getKLineTimes(@NonNull String instrument, @NonNull String period) {
+    if (chunkedKLineStore.isEnabled()) {
+      return chunkedKLineStore.times(instrument, period);
+    }
+    String redisKey = String.format("%s:%s:%s", KLINE_KEY_PREFIX, instrument, period);
+    try {
+      byte[] payload = redisTemplateBytes.execute(KLINE_TIMES_SCRIPT, Collections.singletonList(redisKey));
+      if (payload == null || payload.length == 0) {
+        return new long[0];
+      }
+      String[] scores = new String(payload, StandardCharsets.US_ASCII).split(",");
+      long[] times = new long[scores.length];
+      for (int i = 0; i < times.length; i++) {
+        times[i] = (long) Double.parseDouble(scores[i]);
+      }
+      return times;
+    } catch (Exception e) {
+      log.warn("RedisService: Failed to read stored bar times for {}: {}", redisKey, e.getMessage());
+      return new long[0];
     }
   }
 
+  /**
+   * 读取完整 K 线序列（按时间降序）。缓存已预热时直接从内存返回；否则从 Redis ZSET 读取并预热缓存。
+   */
   public List<BarDTO> getKLine(@NonNull String instrument, @NonNull String period) {
+    List<BarDTO> cached = kLineCache.getBars(instrument, period, kLineCache.getCapacity());
+    if (cached != null) {
+      return cached;
+    }
+    if (chunkedKLineStore.isEnabled()) {
+      List<BarDTO> bars = chunkedKLineStore.readAll(instrument, period);
+      Collections.reverse(bars);
+      // 整块淘汰会多保留不足一块的较早 K 线，对外仍只返回存储上限数量
+      if (bars.size() > klineStorageLimit) {
+        bars = new java.util.ArrayList<>(bars.subList(0, klineStorageLimit));
+      }
+      kLineCache.seed(instrument, period, bars);
+      return bars;
+    }
     String redisKey =
         String.format("%s:%s:%s", KLINE_KEY_PREFIX, instrument, period);
     try {
@@ -100,16 +325,69 @@ public class RedisService {
       if (barDataList == null || barDataList.isEmpty()) {
         return Collections.emptyList();
       }
-      return barDataList.stream()
-          .map(data -> MsgpackUtil.decode(data, BarDTO.class))
-          .filter(Objects::nonNull)
-          .collect(Collectors.toList());
+      List<BarDTO> bars = decodeBars(barDataList);
+      kLineCache.seed(instrument, period, bars);
+      return bars;
     } catch (Exception e) {
       log.error("RedisService: Error while reading K-line from Redis ZSET for key '{}': {}", redisKey, e.getMessage());
       return Collections.emptyList();
     }
   }
 
+  /**
+   * 时间在 {@code [from, to]} 内的前 {@code limit} 根 K 线（升序）。缓存已预热时从内存读取，否则使用
+   * {@code ZRANGEBYSCORE ... LIMIT}，只传输所需的成员。
+   */
+  public List<BarDTO> getKLineRange(@NonNull String instrument, @NonNull String period, long from, long to, int limit) {
+    List<BarDTO> cached = kLineCache.range(instrument, period, from, to, limit);
+    if (cached != null) {
+      return cached;
+    }
+    if (chunkedKLineStore.isEnabled()) {
+      return chunkedKLineStore.range(instrument, period, from, to, limit);
+    }
+    String redisKey = String.format("%s:%s:%s", KLINE_KEY_PREFIX, instrument, period);
+    try {
+      return decodeBars(redisTemplateBytes.opsForZSet().rangeByScore(redisKey, from, to, 0, limit));
+    } catch (Exception e) {
+      log.error("RedisService: Error while querying K-line range for key '{}': {}", redisKey, e.getMessage());
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * 时间不晚于 {@code to} 的最新 {@code count} 根 K 线（升序）。缓存未预热时使用 {@code ZREVRANGEBYSCORE ... LIMIT}。
+   */
+  public List<BarDTO> getLatestKLine(@NonNull String instrument, @NonNull String period, long to, int count) {
+    List<BarDTO> cached = kLineCache.latest(instrument, period, to, count);
+    if (cached != null) {
+      return cached;
+    }
+    if (chunkedKLineStore.isEnabled()) {
+      return chunkedKLineStore.latest(instrument, period, to, count);
+    }
+    String redisKey = String.format("%s:%s:%s", KLINE_KEY_PREFIX, instrument, period);
+    try {
+      List<BarDTO> bars = decodeBars(
+          redisTemplateBytes.opsForZSet().reverseRangeByScore(redisKey, Double.NEGATIVE_INFINITY, to, 0, count));
+      Collections.reverse(bars);
+      return bars;
+    } catch (Exception e) {
+      log.error("RedisService: Error while querying latest K-line for key '{}': {}", redisKey, e.getMessage());
+      return Collections.emptyList();
+    }
+  }
+
+  private static List<BarDTO> decodeBars(Set<byte[]> barData) {
+    if (barData == null || barData.isEmpty()) {
+      return new java.util.ArrayList<>();
+    }
+    return barData.stream()
+        .map(data -> MsgpackUtil.decode(data, BarDTO.class))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
   private <T> void publishToChannel(String channel, T data) {
     try {
       byte[] encoded = MsgpackUtil.encode(data);
@@ -139,9 +417,44 @@ public class RedisService {
     publishToChannel(channel, bar);
   }
 
+  /**
+   * 推送未收盘 K 线的节流更新，与收盘 K 线频道分开，避免订阅方误当作已收盘数据。
+   */
+  public void publishFormingBar(@NonNull BarDTO bar) {
+    if (bar.getInstrument() == null || bar.getPeriod() == null) {
+      log.error("RedisService: Cannot publish forming bar with null instrument/period.");
+      return;
+    }
+    String channel = String.format("gateway:kline:forming:%s:%s", bar.getInstrument(), bar.getPeriod());
+    publishToChannel(channel, bar);
+  }
+
+  public void publishIndicator(@NonNull IndicatorDTO indicator) {
+    String channel = String.format("%s:%s:%s", INDICATOR_KEY_PREFIX, indicator.getInstrument(), indicator.getPeriod());
+    publishToChannel(channel, indicator);
+  }
+
+  public void publishSeriesLoaded(@NonNull KLineSeriesLoadedDTO loaded) {
+    publishToChannel(KLINE_LOADED_CHANNEL, loaded);
+  }
+
+  public void publishKLinePage(@NonNull KLinePageDTO page, @NonNull String requestId) {
+    String channel = String.format("gateway:kline:response:%s", requestId);
+    publishToChannel(channel, page);
+  }
+
   public void publishOrderEvent(@NonNull IMessage message) {
+    publishOrderEvent(message, null);
+  }
+
+  public void publishOrderBatchResult(@NonNull OrderBatchResultDTO result, @NonNull String requestId) {
+    String channel = String.format("gateway:order:batch:response:%s", requestId);
+    publishToChannel(channel, result);
+  }
+
+  public void publishOrderEvent(@NonNull IMessage message, OrderLatencyDTO latency) {
     String channel = "gateway:order:event";
-    OrderEventDTO eventDTO = new OrderEventDTO(message);
+    OrderEventDTO eventDTO = new OrderEventDTO(message, latency);
     publishToChannel(channel, eventDTO);
   }
 
@@ -0,0 +1,137 @@
+package phiner.de5.net.gateway.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按品种合并待发送 Tick 的固定槽位表。
+ * <p>
+ * Redis 写入积压时每个品种只保留最新一笔未发送的报价，后到的 Tick 直接覆盖旧值，
+ * 内存占用由槽位数量决定，不会随积压增长。槽位在首次使用时分配且不再回收；
+ * 槽位表写满后新品种返回 {@code null}，由调用方按原路径直接写入。
+ * <p>
+ * 槽位字段的读写必须在该槽位的监视器内进行（见 {@link ForexTickProducer}），
+ * 以保证同一品种的延迟报价与直接写入之间不会乱序。
+ */
+public final class TickConflator {
+
+    static final class Slot {
+        final String symbol;
+        long time;
+        double bid;
+        double ask;
+        double bidVolume;
+        double askVolume;
+        boolean pending;
+
+        Slot(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private final Slot[] slots;
+    private final Map<String, Slot> slotIndex = new ConcurrentHashMap<>();
+    private final AtomicInteger slotCount = new AtomicInteger();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong deferredTicks = new AtomicLong();
+    private final AtomicLong conflatedTicks = new AtomicLong();
+
+    public TickConflator(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Conflation slot capacity must be at least 1: " + capacity);
+        }
+        this.slots = new Slot[capacity];
+    }
+
+    /**
+     * 返回品种对应的槽位，槽位表已满时返回 {@code null}。
+     */
+    Slot slotFor(String symbol) {
+        Slot slot = slotIndex.get(symbol);
+        if (slot != null) {
+            return slot;
+        }
+        return slotIndex.computeIfAbsent(symbol, key -> {
+            int index = slotCount.get();
+            if (index >= slots.length) {
+                return null;
+            }
+            Slot created = new Slot(key);
+            slots[index] = created;
+            // computeIfAbsent 对同一 Map 串行执行，发布计数前槽位已写入数组
+            slotCount.set(index + 1);
+            return created;
+        });
+    }
+
+    /**
+     * 将报价暂存到槽位。调用方须持有槽位监视器。
+     */
+    void defer(Slot slot, long time, double bid, double ask, double bidVolume, double askVolume) {
+        if (slot.pending) {
+            conflatedTicks.incrementAndGet();
+        } else {
+            slot.pending = true;
+            pendingCount.incrementAndGet();
+        }
+        slot.time = time;
+        slot.bid = bid;
+        slot.ask = ask;
+        slot.bidVolume = bidVolume;
+        slot.askVolume = askVolume;
+        deferredTicks.incrementAndGet();
+    }
+
+    /**
+     * 丢弃槽位中尚未发送的报价（已被更新的报价取代）。调用方须持有槽位监视器。
+     */
+    void supersede(Slot slot) {
+        if (slot.pending) {
+            slot.pending = false;
+            pendingCount.decrementAndGet();
+            conflatedTicks.incrementAndGet();
+        }
+    }
+
+    /**
+     * 标记槽位中的报价已发送。调用方须持有槽位监视器。
+     */
+    void markSent(Slot slot) {
+        if (slot.pending) {
+            slot.pending = false;
+            pendingCount.decrementAndGet();
+        }
+    }
+
+    int getSlotCount() {
+        return slotCount.get();
+    }
+
+    Slot getSlot(int index) {
+        return slots[index];
+    }
+
+    public boolean hasPending() {
+        return pendingCount.get() > 0;
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * 因积压而进入槽位暂存的 Tick 总数。
+     */
+    public long getDeferredTickCount() {
+        return deferredTicks.get();
+    }
+
+    /**
+     * 被更新报价覆盖、最终未写入 Redis 的 Tick 总数。
+     */
+    public long getConflatedTickCount() {
+        return conflatedTicks.get();
+    }
+}
@@ -0,0 +1,118 @@
+package phiner.de5.net.gateway.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import phiner.de5.net.gateway.util.FixedPointAscii;
+
+/**
+ * Tick Stream 条目编码器，每个写入线程持有一个实例（见 {@link #forCurrentThread()}）。
+ * <p>
+ * 数字直接以定点 ASCII 写入线程私有的暂存区，字段 Map 在每次调用间复用（替换已有键不会分配节点）。
+ * Lettuce 在 xadd 调用时同步拷贝 Map 条目，但要等到事件循环写出命令时才读取值数组，
+ * 因此每个字段值仍需拷贝为独立的精确长度 byte[]，这是该路径上唯一保留的分配。
+ * <p>
+ * 二进制格式（{@link #encodeBinary}）只写一个字段 {@code d}，布局见 docs/gateway_api.md：
+ * 版本字节、价格精度字节，随后依次为 varint 时间戳与 zigzag varint 编码的
+ * 买价、点差（卖价 - 买价）、买量、卖量，价格以 10^scale 的整数单位存储，成交量固定为 10^6 单位。
+ */
+public final class TickStreamEncoder {
+
+    // 预分配常用字段键，避免在每秒数千次的 Tick 循环中产生不必要的 byte[] 分配
+    static final byte[] FIELD_T = "t".getBytes(StandardCharsets.UTF_8);
+    static final byte[] FIELD_B = "b".getBytes(StandardCharsets.UTF_8);
+    static final byte[] FIELD_A = "a".getBytes(StandardCharsets.UTF_8);
+    static final byte[] FIELD_BV = "bv".getBytes(StandardCharsets.UTF_8);
+    static final byte[] FIELD_AV = "av".getBytes(StandardCharsets.UTF_8);
+    static final byte[] FIELD_D = "d".getBytes(StandardCharsets.UTF_8);
+
+    /** 二进制条目格式版本号，布局变更时递增。 */
+    static final byte BINARY_VERSION = 1;
+    // 版本 + 精度 + 1 个 varint(≤10 字节) + 4 个 zigzag varint
+    private static final int BINARY_MAX_LENGTH = 2 + 5 * 10;
+
+    /** 成交量最多保留 6 位小数并去掉末尾 0。 */
+    static final int VOLUME_SCALE = 6;
+
+    private static final ThreadLocal<TickStreamEncoder> ENCODERS = ThreadLocal.withInitial(TickStreamEncoder::new);
+
+    private final byte[] scratch = new byte[FixedPointAscii.MAX_LENGTH];
+    // LinkedHashMap 保证字段顺序稳定为 t, b, a, bv, av
+    private final Map<byte[], byte[]> fields = new LinkedHashMap<>(8);
+    private final byte[] binaryScratch = new byte[BINARY_MAX_LENGTH];
+    private final Map<byte[], byte[]> binaryFields = new LinkedHashMap<>(2);
+
+    TickStreamEncoder() {
+        fields.put(FIELD_T, null);
+        fields.put(FIELD_B, null);
+        fields.put(FIELD_A, null);
+        fields.put(FIELD_BV, null);
+        fields.put(FIELD_AV, null);
+        binaryFields.put(FIELD_D, null);
+    }
+
+    public static TickStreamEncoder forCurrentThread() {
+        return ENCODERS.get();
+    }
+
+    /**
+     * 编码一条 Tick，价格按品种精度 {@code priceScale}（见 {@link phiner.de5.net.gateway.util.PriceCodec}）补齐小数位。
+     * 返回的 Map 归当前线程所有，仅在下一次调用前有效。
+     */
+    public Map<byte[], byte[]> encode(long timestamp, double bid, double ask, double bidVol, double askVol,
+                                      int priceScale) {
+        fields.put(FIELD_T, copy(FixedPointAscii.writeLong(scratch, 0, timestamp)));
+        fields.put(FIELD_B, copy(FixedPointAscii.writeFixed(scratch, 0, bid, priceScale)));
+        fields.put(FIELD_A, copy(FixedPointAscii.writeFixed(scratch, 0, ask, priceScale)));
+        fields.put(FIELD_BV, copy(FixedPointAscii.writeDecimal(scratch, 0, bidVol, VOLUME_SCALE)));
+        fields.put(FIELD_AV, copy(FixedPointAscii.writeDecimal(scratch, 0, askVol, VOLUME_SCALE)));
+        return fields;
+    }
+
+    /**
+     * 以紧凑二进制格式编码一条 Tick，价格按 {@code priceScale} 位小数换算为整数单位。
+     * 返回的 Map 归当前线程所有，仅在下一次调用前有效。
+     */
+    public Map<byte[], byte[]> encodeBinary(long timestamp, double bid, double ask, double bidVol, double askVol,
+                                            int priceScale) {
+        long bidUnits = units(bid, priceScale);
+        long askUnits = units(ask, priceScale);
+        int position = 0;
+        binaryScratch[position++] = BINARY_VERSION;
+        binaryScratch[position++] = (byte) priceScale;
+        position = writeVarLong(binaryScratch, position, timestamp);
+        position = writeVarLong(binaryScratch, position, zigZag(bidUnits));
+        position = writeVarLong(binaryScratch, position, zigZag(askUnits - bidUnits));
+        position = writeVarLong(binaryScratch, position, zigZag(units(bidVol, VOLUME_SCALE)));
+        position = writeVarLong(binaryScratch, position, zigZag(units(askVol, VOLUME_SCALE)));
+        binaryFields.put(FIELD_D, Arrays.copyOf(binaryScratch, position));
+        return binaryFields;
+    }
+
+    private static long units(double value, int scale) {
+        long units = FixedPointAscii.toUnits(value, scale);
+        // 非有限值无法用整数表示，按 0 写入
+        return units == Long.MIN_VALUE ? 0 : units;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * 无符号 LEB128 编码，每字节低 7 位为数据，最高位表示后续还有字节。
+     */
+    static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private byte[] copy(int length) {
+        return Arrays.copyOf(scratch, length);
+    }
+}
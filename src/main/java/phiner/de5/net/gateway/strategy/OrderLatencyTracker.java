@@ -0,0 +1,229 @@
+package phiner.de5.net.gateway.strategy;
+
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+import lombok.extern.slf4j.Slf4j;
+import phiner.de5.net.gateway.dto.OrderLatencyDTO;
+import phiner.de5.net.gateway.util.LongHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 {@code requestId} 追踪下单指令在网关内的端到端耗时。
+ * <p>
+ * 监听器收到消息、解码完成、策略线程开始执行、{@code submitOrder} 返回时各记一次单调时钟
+ * ({@link System#nanoTime()})；提交前按订单 label 登记，JForex 回调 {@code ORDER_SUBMIT_OK} /
+ * {@code ORDER_FILL_OK} 时由 label 找回同一条记录补齐时间戳。每个阶段的耗时记入各自的
+ * {@link LongHistogram}，并由 {@link #breakdown(IMessage)} 生成随订单事件推送的分解。
+ * <p>
+ * 时间戳字段由不同线程写入与读取，均为 volatile；回调与事件通道之间的先后由环形缓冲区保证。
+ */
+@Slf4j
+public final class OrderLatencyTracker {
+
+    /**
+     * 耗时阶段，含义见 {@link OrderLatencyDTO}。
+     */
+    public enum Stage { DECODE, QUEUE, SUBMIT, ACK, FILL, TOTAL }
+
+    /**
+     * 一笔指令的各阶段时间戳（纳秒，0 表示尚未到达）。
+     */
+    public static final class Trace {
+        final String requestId;
+        final long received;
+        final long decoded;
+        volatile long dequeued;
+        volatile long submitted;
+        volatile long submitOk;
+        volatile long fillOk;
+
+        Trace(String requestId, long received, long decoded) {
+            this.requestId = requestId;
+            this.received = received;
+            this.decoded = decoded;
+        }
+    }
+
+    static final int MAX_TRACES = 4096;
+    private static final long TRACE_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long STATS_LOG_INTERVAL_MS = 60_000;
+
+    private final Map<String, Trace> tracesByLabel = new ConcurrentHashMap<>();
+    private final LongHistogram[] histograms = new LongHistogram[Stage.values().length];
+    private volatile long nextStatsLog = System.currentTimeMillis() + STATS_LOG_INTERVAL_MS;
+
+    public OrderLatencyTracker() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LongHistogram();
+        }
+    }
+
+    /**
+     * 开始追踪一笔指令；没有 {@code requestId} 时不追踪，返回 {@code null}。
+     */
+    public Trace begin(String requestId, long receivedNanos, long decodedNanos) {
+        if (requestId == null || requestId.isEmpty()) {
+            return null;
+        }
+        return new Trace(requestId, receivedNanos, decodedNanos);
+    }
+
+    /**
+     * 任务开始在 JForex 策略线程上执行。
+     */
+    public void dequeued(Trace trace) {
+        if (trace != null) {
+            trace.dequeued = System.nanoTime();
+        }
+    }
+
+    /**
+     * 以订单 label 登记，须在 {@code submitOrder} 之前调用，以免回调先于登记到达。
+     * 未完成的记录超过上限时先清理过期记录，仍然已满则不再登记。
+     */
+    public void bind(Trace trace, String label) {
+        if (trace == null || label == null) {
+            return;
+        }
+        if (tracesByLabel.size() >= MAX_TRACES) {
+            long now = System.nanoTime();
+            tracesByLabel.values().removeIf(stale -> now - stale.received > TRACE_TTL_NANOS);
+            if (tracesByLabel.size() >= MAX_TRACES) {
+                return;
+            }
+        }
+        tracesByLabel.put(label, trace);
+    }
+
+    /**
+     * 撤销登记（{@code submitOrder} 抛出异常时）。
+     */
+    public void unbind(Trace trace, String label) {
+        if (trace != null && label != null) {
+            tracesByLabel.remove(label, trace);
+        }
+    }
+
+    /**
+     * {@code submitOrder} 已返回。
+     */
+    public void submitted(Trace trace) {
+        if (trace != null) {
+            trace.submitted = System.nanoTime();
+        }
+    }
+
+    /**
+     * 在 JForex 回调线程上记录订单确认与成交时间，并计入各阶段直方图。
+     */
+    public void onMessage(IMessage message) {
+        Trace trace = traceOf(message);
+        if (trace == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        IMessage.Type type = message.getType();
+        if (type == IMessage.Type.ORDER_SUBMIT_OK && trace.submitOk == 0) {
+            trace.submitOk = now;
+            record(Stage.DECODE, trace.received, trace.decoded);
+            record(Stage.QUEUE, trace.decoded, trace.dequeued);
+            record(Stage.SUBMIT, trace.dequeued, trace.submitted);
+            record(Stage.ACK, trace.submitted, now);
+        } else if (type == IMessage.Type.ORDER_FILL_OK && trace.fillOk == 0) {
+            trace.fillOk = now;
+            record(Stage.FILL, trace.submitOk, now);
+            record(Stage.TOTAL, trace.received, now);
+        }
+    }
+
+    /**
+     * 订单事件对应的耗时分解；未被追踪的订单或其他事件类型返回 {@code null}。
+     * 成交、被拒或未成交即关闭（挂单撤销）后结束追踪。
+     */
+    public OrderLatencyDTO breakdown(IMessage message) {
+        Trace trace = traceOf(message);
+        if (trace == null) {
+            return null;
+        }
+        IMessage.Type type = message.getType();
+        if (type == IMessage.Type.ORDER_SUBMIT_OK) {
+            return new OrderLatencyDTO(trace.requestId, micros(trace.received, trace.decoded),
+                    micros(trace.decoded, trace.dequeued), micros(trace.dequeued, trace.submitted),
+                    micros(trace.submitted, trace.submitOk), null, null);
+        }
+        if (type == IMessage.Type.ORDER_FILL_OK) {
+            tracesByLabel.remove(message.getOrder().getLabel(), trace);
+            return new OrderLatencyDTO(trace.requestId, micros(trace.received, trace.decoded),
+                    micros(trace.decoded, trace.dequeued), micros(trace.dequeued, trace.submitted),
+                    micros(trace.submitted, trace.submitOk), micros(trace.submitOk, trace.fillOk),
+                    micros(trace.received, trace.fillOk));
+        }
+        if (type == IMessage.Type.ORDER_CLOSE_OK || type == IMessage.Type.ORDER_CLOSE_REJECTED) {
+            // 成交后已结束追踪，能匹配到的只有未成交就被关闭的挂单
+            tracesByLabel.remove(message.getOrder().getLabel(), trace);
+            return new OrderLatencyDTO(trace.requestId, micros(trace.received, trace.decoded),
+                    micros(trace.decoded, trace.dequeued), micros(trace.dequeued, trace.submitted),
+                    micros(trace.submitted, trace.submitOk), null, null);
+        }
+        if (type == IMessage.Type.ORDER_SUBMIT_REJECTED || type == IMessage.Type.ORDER_FILL_REJECTED) {
+            tracesByLabel.remove(message.getOrder().getLabel(), trace);
+            return new OrderLatencyDTO(trace.requestId, micros(trace.received, trace.decoded),
+                    micros(trace.decoded, trace.dequeued), micros(trace.dequeued, trace.submitted),
+                    null, null, null);
+        }
+        return null;
+    }
+
+    private Trace traceOf(IMessage message) {
+        IOrder order = message.getOrder();
+        if (order == null || order.getLabel() == null || tracesByLabel.isEmpty()) {
+            return null;
+        }
+        return tracesByLabel.get(order.getLabel());
+    }
+
+    private void record(Stage stage, long from, long to) {
+        if (from != 0 && to != 0) {
+            histograms[stage.ordinal()].record(to - from);
+        }
+    }
+
+    private static Long micros(long from, long to) {
+        return from != 0 && to != 0 ? TimeUnit.NANOSECONDS.toMicros(to - from) : null;
+    }
+
+    /**
+     * 指定阶段的耗时分布（纳秒，当前统计窗口）。
+     */
+    public LongHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    int getTracedOrderCount() {
+        return tracesByLabel.size();
+    }
+
+    /**
+     * 距上次输出超过统计间隔时打印各阶段分位数并开始新的统计窗口。
+     */
+    public void logStatsIfDue() {
+        long now = System.currentTimeMillis();
+        if (now < nextStatsLog) {
+            return;
+        }
+        nextStatsLog = now + STATS_LOG_INTERVAL_MS;
+        for (Stage stage : Stage.values()) {
+            LongHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.getCount() > 0) {
+                log.info("下单耗时 {}: count={}, p50={}us, p99={}us, max={}us", stage, histogram.getCount(),
+                        TimeUnit.NANOSECONDS.toMicros(histogram.valueAtPercentile(50)),
+                        TimeUnit.NANOSECONDS.toMicros(histogram.valueAtPercentile(99)),
+                        TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+                histogram.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package phiner.de5.net.gateway.strategy;
+
+import com.dukascopy.api.IEngine;
+import com.dukascopy.api.Instrument;
+import phiner.de5.net.gateway.QuoteBoard;
+import phiner.de5.net.gateway.dto.ErrorDTO;
+import phiner.de5.net.gateway.request.MarketOrderType;
+import phiner.de5.net.gateway.request.OpenMarketOrderRequest;
+import phiner.de5.net.gateway.request.SubmitOrderRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 下单前置校验，在监听器线程上拒绝明显无效的指令，不占用 JForex 策略线程。
+ * <p>
+ * 品种元数据（最小交易量）在订阅时由 {@link #register(Instrument)} 载入内存表，
+ * 止损/止盈方向按 {@link QuoteBoard} 中的最新报价判断（挂单按委托价）。
+ * 可以解析但未订阅的品种只校验指令与数量，其余交给 JForex 判断；没有报价时跳过方向校验。
+ * 校验不加锁，除拒绝时构造的 {@link ErrorDTO} 外不分配对象。
+ */
+public final class PreTradeValidator {
+
+    /**
+     * 订阅品种的交易规则。
+     */
+    static final class InstrumentRule {
+        final String name;
+        // JForex 下单数量以百万为单位，getMinTradeAmount 为基础货币单位
+        final double minAmount;
+
+        InstrumentRule(String name, double minAmount) {
+            this.name = name;
+            this.minAmount = minAmount;
+        }
+    }
+
+    private static final double UNITS_PER_LOT = 1_000_000d;
+
+    private final Map<String, InstrumentRule> rules = new ConcurrentHashMap<>();
+    private final QuoteBoard quoteBoard;
+    private final ThreadLocal<QuoteBoard.Quote> quotes = ThreadLocal.withInitial(QuoteBoard.Quote::new);
+
+    /**
+     * @param quoteBoard 最新报价表，为 {@code null} 时不做止损/止盈方向校验
+     */
+    public PreTradeValidator(QuoteBoard quoteBoard) {
+        this.quoteBoard = quoteBoard;
+    }
+
+    /**
+     * 载入品种规则（订阅时调用），重复注册覆盖旧值。
+     */
+    public void register(Instrument instrument) {
+        String name = instrument.toString();
+        rules.put(name, new InstrumentRule(name, instrument.getMinTradeAmount() / UNITS_PER_LOT));
+    }
+
+    public boolean isRegistered(String instrument) {
+        return instrument != null && rules.containsKey(instrument);
+    }
+
+    /**
+     * 校验结果，通过时返回 {@code null}。
+     */
+    public ErrorDTO validate(OpenMarketOrderRequest request) {
+        if (request.getOrderType() == null) {
+            // 缺少方向时不能默认为卖出，否则止损/止盈会按错误的一侧校验
+            return reject("INVALID_ORDER_TYPE", "orderType is required (BUY or SELL)",
+                    request.getInstrument(), request.getLabel(), "Open Market Order");
+        }
+        IEngine.OrderCommand command = request.getOrderType() == MarketOrderType.BUY
+                ? IEngine.OrderCommand.BUY : IEngine.OrderCommand.SELL;
+        return check(request.getInstrument(), command, request.getAmount(), null,
+                request.getStopLossPrice(), request.getTakeProfitPrice(), request.getLabel(), "Open Market Order");
+    }
+
+    /**
+     * @param label 错误中回显的订单 label（批量下单时为补全后的 label）
+     */
+    public ErrorDTO validate(SubmitOrderRequest request, String label) {
+        IEngine.OrderCommand command;
+        try {
+            command = IEngine.OrderCommand.valueOf(request.getOrderCommand());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return reject("INVALID_ORDER_COMMAND", "Invalid orderCommand: " + request.getOrderCommand(),
+                    request.getInstrument(), label, "Submit Order");
+        }
+        return check(request.getInstrument(), command, request.getAmount(), request.getPrice(),
+                request.getStopLossPrice(), request.getTakeProfitPrice(), label, "Submit Order");
+    }
+
+    private ErrorDTO check(String instrument, IEngine.OrderCommand command, Double amount, Double price,
+                           Double stopLossPrice, Double takeProfitPrice, String label, String context) {
+        InstrumentRule rule = instrument != null ? rules.get(instrument) : null;
+        if (rule == null && (instrument == null || instrument.isEmpty() || Instrument.fromString(instrument) == null)) {
+            return reject("UNKNOWN_INSTRUMENT", "Invalid instrument: " + instrument, instrument, label, context);
+        }
+        if (amount == null || !(amount > 0)) {
+            return reject("INVALID_AMOUNT", "amount must be positive: " + amount, instrument, label, context);
+        }
+        if (rule == null) {
+            return null;
+        }
+        if (amount < rule.minAmount) {
+            return reject("AMOUNT_BELOW_MINIMUM", "amount " + amount + " is below the minimum " + rule.minAmount
+                    + " for " + rule.name, instrument, label, context);
+        }
+
+        double reference;
+        boolean market = command == IEngine.OrderCommand.BUY || command == IEngine.OrderCommand.SELL;
+        if (!market && price != null && price > 0) {
+            reference = price;
+        } else {
+            QuoteBoard.Quote quote = quotes.get();
+            if (quoteBoard == null || !quoteBoard.read(rule.name, quote)) {
+                return null;
+            }
+            // 多单按买价平仓，空单按卖价平仓
+            reference = command.isLong() ? quote.getBid() : quote.getAsk();
+        }
+        double stopLoss = stopLossPrice != null ? stopLossPrice : 0.0;
+        double takeProfit = takeProfitPrice != null ? takeProfitPrice : 0.0;
+        boolean isLong = command.isLong();
+        if (stopLoss > 0 && (isLong ? stopLoss >= reference : stopLoss <= reference)) {
+            return reject("INVALID_STOP_LOSS", "stopLossPrice " + stopLoss + " is on the wrong side of "
+                    + reference + " for a " + (isLong ? "long" : "short") + " order", instrument, label, context);
+        }
+        if (takeProfit > 0 && (isLong ? takeProfit <= reference : takeProfit >= reference)) {
+            return reject("INVALID_TAKE_PROFIT", "takeProfitPrice " + takeProfit + " is on the wrong side of "
+                    + reference + " for a " + (isLong ? "long" : "short") + " order", instrument, label, context);
+        }
+        return null;
+    }
+
+    private static ErrorDTO reject(String code, String message, String instrument, String label, String context) {
+        ErrorDTO error = ErrorDTO.validationError(code, message, context + " [" + instrument + "]");
+        error.setInstrument(instrument);
+        error.setLabel(label);
+        return error;
+    }
+}
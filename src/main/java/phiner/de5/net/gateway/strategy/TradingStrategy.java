@@ -1,6 +1,7 @@
 package phiner.de5.net.gateway.strategy;
 
 import com.dukascopy.api.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -21,9 +22,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import phiner.de5.net.gateway.config.ForexProperties;
 import phiner.de5.net.gateway.util.PeriodUtil;
+import phiner.de5.net.gateway.util.PriceCodec;
 import phiner.de5.net.gateway.KLineManager;
 import phiner.de5.net.gateway.TickManager;
 import phiner.de5.net.gateway.dto.*;
+import phiner.de5.net.gateway.event.EventLanes;
+import phiner.de5.net.gateway.event.EventRingBuffer;
+import phiner.de5.net.gateway.event.MarketEvent;
+import phiner.de5.net.gateway.kline.BarRollup;
+import phiner.de5.net.gateway.kline.HistoryPreloader;
 import phiner.de5.net.gateway.request.*;
 import phiner.de5.net.gateway.service.RedisService;
 import lombok.extern.slf4j.Slf4j;
@@ -35,7 +42,7 @@ public class TradingStrategy implements IStrategy {
 
   private IContext context;
   private ExecutorService executor; // 原始执行器，可能用于订单相关操作
-  private ExecutorService eventProcessor; // 用于异步处理 JForex 事件的新执行器
+  private EventLanes eventLanes; // 按品种分片的事件通道，JForex 回调线程只做原始字段拷贝
   private ScheduledExecutorService syncScheduler; // 用于持仓同步的延时执行器
   private ScheduledFuture<?> syncFuture; // 维护当前的延时任务
   private ScheduledFuture<?> historySyncFuture; // 维护历史同步的延时任务
@@ -48,6 +55,10 @@ public class TradingStrategy implements IStrategy {
   private final java.util.concurrent.atomic.AtomicLong historySyncStartTime = new java.util.concurrent.atomic.AtomicLong(Long.MAX_VALUE);
   private final java.util.concurrent.atomic.AtomicLong historySyncEndTime = new java.util.concurrent.atomic.AtomicLong(0);
   private final Set<Period> configuredPeriods = new HashSet<>();
+  private final Set<Period> derivedPeriods = new HashSet<>(); // 由基础周期本地汇总、不再向 JForex 获取的周期
+  private volatile BarRollup barRollup;
+  private final OrderLatencyTracker latencyTracker = new OrderLatencyTracker();
+  private final PreTradeValidator preTradeValidator;
   private final TickManager tickManager;
   private final KLineManager kLineManager;
   private final RedisService redisService;
@@ -56,15 +67,47 @@ public class TradingStrategy implements IStrategy {
   @Value("${gateway.kline.storage-limit}")
   private int klineStorageLimit;
 
+  @Value("${gateway.kline.preload.concurrency:4}")
+  private int historyPreloadConcurrency;
+
+  @Value("${gateway.kline.preload.incremental:true}")
+  private boolean historyPreloadIncremental;
+
+  @Value("${gateway.kline.dual-side:true}")
+  private boolean klineDualSide;
+
+  @Value("${gateway.kline.derive.enabled:false}")
+  private boolean deriveEnabled;
+
+  @Value("${gateway.kline.derive.base:ONE_MIN}")
+  private String deriveBasePeriod;
+
+  @Value("${gateway.orders.batch.max-size:100}")
+  private int orderBatchMaxSize;
+
   @Value("${gateway.heartbeat.fixed-rate}")
   private long heartbeatRate;
 
+  @Value("${gateway.events.ring-size:65536}")
+  private int eventRingSize;
+
+  @Value("${gateway.events.wait-strategy:blocking}")
+  private String eventWaitStrategy;
+
+  @Value("${gateway.events.lanes:0}")
+  private int eventLaneCount;
+
+  private static final int DEFAULT_EVENT_RING_SIZE = 65536;
+  private static final int DEFAULT_PRELOAD_CONCURRENCY = 4;
+  private static final long PRELOAD_TIMEOUT_MINUTES = 30;
+
   public TradingStrategy(
       TickManager tickManager, KLineManager kLineManager, RedisService redisService, ForexProperties forexProperties) {
     this.tickManager = tickManager;
     this.kLineManager = kLineManager;
     this.redisService = redisService;
     this.forexProperties = forexProperties;
+    this.preTradeValidator = new PreTradeValidator(tickManager != null ? tickManager.getQuoteBoard() : null);
   }
 
   @Override
@@ -80,8 +123,16 @@ public class TradingStrategy implements IStrategy {
     if (this.executor == null) {
         this.executor = Executors.newSingleThreadExecutor();
     }
-    // 初始化事件处理器，用于异步处理报价、K线和消息
-    this.eventProcessor = Executors.newSingleThreadExecutor();
+    // 初始化按品种分片的事件通道，用于异步处理报价、K线和消息
+    int lanes = resolveEventLaneCount();
+    this.eventLanes = new EventLanes(
+        lanes,
+        eventRingSize > 0 ? eventRingSize : DEFAULT_EVENT_RING_SIZE,
+        eventWaitStrategy,
+        this::handleEvent);
+    this.eventLanes.start("jforex-events");
+    log.info("事件通道已就绪: marketLanes={}, ringSize={}, waitStrategy={}", lanes,
+        eventLanes.orderLane().getCapacity(), eventWaitStrategy != null ? eventWaitStrategy : "blocking");
     // 初始化防抖同步调度器
     if (this.syncScheduler == null) {
         this.syncScheduler = Executors.newSingleThreadScheduledExecutor();
@@ -112,6 +163,12 @@ public class TradingStrategy implements IStrategy {
             .collect(Collectors.toSet());
 
         if (!instrumentsToSubscribe.isEmpty()) {
+          // 先分配通道再加入订阅集合：onTick 只转发已订阅品种，否则分配前到达的行情会落入哈希通道
+          for (Instrument instrument : instrumentsToSubscribe) {
+            eventLanes.assign(instrument.toString());
+            PriceCodec.register(instrument);
+            preTradeValidator.register(instrument);
+          }
           this.subscribedInstruments.addAll(instrumentsToSubscribe);
           log.info("正在订阅产品: {}", this.subscribedInstruments);
           context.setSubscribedInstruments(this.subscribedInstruments, true);
@@ -156,6 +213,9 @@ public class TradingStrategy implements IStrategy {
             log.error(error);
             throw new RuntimeException(error);
         }
+        if (deriveEnabled) {
+            setupBarRollup();
+        }
         String periods = periodsToProcess.stream()
             .map(p -> PeriodUtil.format(p.toString()))
             .collect(Collectors.joining(", "));
@@ -182,38 +242,18 @@ public class TradingStrategy implements IStrategy {
               }
               log.info("异步历史预加载器: 订阅已在 {}ms 内确认。开始获取历史数据。", System.currentTimeMillis() - startWait);
               IHistory history = context.getHistory();
-              log.info("异步历史预加载器: klineStorageLimit: {}, contextTime: {}", klineStorageLimit, context.getTime());
-              for (Instrument instrument : this.subscribedInstruments) {
-                String instrumentName = instrument.toString();
-                for (Period period : this.configuredPeriods) {
-                  try {
-                    String shortPeriod = PeriodUtil.format(period.toString());
-                    log.info("异步历史预加载器: 正在请求 {} 的 {} ({}) 周期历史数据", instrumentName, shortPeriod, period);
-                    // 计算获取范围：取上一个完整 Bar 的结束时间作为基准
-                    long to = history.getPreviousBarStart(period, context.getTime());
-                    
-                    // 向服务获取最新指定数量（klineStorageLimit）的历史 K 线，并过滤掉周末
-                    List<IBar> bars = history.getBars(instrument, period, OfferSide.ASK, Filter.WEEKENDS, klineStorageLimit, to, 0);
-                    
-                    if (bars != null && !bars.isEmpty()) {
-                        log.info("异步历史预加载器: 收到 {} 的 {} 周期共 {} 条历史记录", instrumentName, shortPeriod, bars.size());
-                        if (instrumentName != null) {
-                            for (IBar bar : bars) {
-                                BarDTO barDTO = new BarDTO(instrumentName, period.toString(), bar);
-                                // 使用顺序事件处理器处理 K线
-                                eventProcessor.submit(() -> kLineManager.onBar(instrumentName, barDTO));
-                            }
-                        }
-                    } else if (bars != null) {
-                        log.warn("异步历史预加载器: 未收到 {} 的 {} 周期历史数据（请求数量: {}）", instrumentName, shortPeriod, klineStorageLimit);
-                    } else {
-                        log.warn("异步历史预加载器: 收到 {} 的 {} 周期数据为 null", instrumentName, shortPeriod);
-                    }
-                  } catch (Exception e) {
-                    log.error("异步历史预加载器: 无法预加载 {} 的 {} 周期历史数据", instrumentName, period, e);
-                  }
-                }
-              }
+              int concurrency = historyPreloadConcurrency > 0 ? historyPreloadConcurrency : DEFAULT_PRELOAD_CONCURRENCY;
+              log.info("异步历史预加载器: klineStorageLimit: {}, concurrency: {}, contextTime: {}",
+                  klineStorageLimit, concurrency, context.getTime());
+              // readBars 以回调方式流式返回，按块写入 Redis；多个品种周期并行加载，增量模式只请求缺失区间
+              // 本地汇总的周期不单独请求，由基础周期的历史块汇总得出
+              Set<Period> fetchedPeriods = new HashSet<>(this.configuredPeriods);
+              fetchedPeriods.removeAll(this.derivedPeriods);
+              HistoryPreloader preloader = new HistoryPreloader(
+                  history, kLineManager, redisService, klineStorageLimit, concurrency, historyPreloadIncremental,
+                  klineDualSide, this.barRollup, this::isEventProcessorRunning);
+              preloader.preload(this.subscribedInstruments, fetchedPeriods, context.getTime(),
+                  PRELOAD_TIMEOUT_MINUTES, TimeUnit.MINUTES);
             } catch (Exception e) {
               log.error("异步历史预加载器遇到通用错误", e);
             }
@@ -234,8 +274,17 @@ public class TradingStrategy implements IStrategy {
   public void onTick(Instrument instrument, ITick tick) {
     if (instrument != null && tick != null && subscribedInstruments.contains(instrument)) {
       String instrumentName = instrument.toString();
-      if (instrumentName != null && eventProcessor != null && !eventProcessor.isShutdown()) {
-        eventProcessor.submit(() -> tickManager.onTick(instrumentName, tick));
+      if (instrumentName != null && isEventProcessorRunning()) {
+        long time = tick.getTime();
+        double bid = tick.getBid();
+        double ask = tick.getAsk();
+        double bidVolume = tick.getBidVolume();
+        double askVolume = tick.getAskVolume();
+
+        EventRingBuffer lane = eventLanes.laneFor(instrumentName);
+        long sequence = lane.next();
+        lane.get(sequence).setTick(instrumentName, time, bid, ask, bidVolume, askVolume);
+        lane.publish(sequence);
       }
     }
   }
@@ -246,78 +295,198 @@ public class TradingStrategy implements IStrategy {
         && period != null
         && bidBar != null
         && subscribedInstruments.contains(instrument)
-        && configuredPeriods.contains(period)) {
+        && configuredPeriods.contains(period)
+        && !derivedPeriods.contains(period)) {
       String instrumentName = instrument.toString();
       String periodName = PeriodUtil.format(period.toString());
       
-      if (instrumentName != null && periodName != null && eventProcessor != null && !eventProcessor.isShutdown()) {
-        eventProcessor.submit(() -> {
-            BarDTO barDTO = new BarDTO(instrumentName, periodName, bidBar);
-            kLineManager.onBar(instrumentName, barDTO);
-        });
+      if (instrumentName != null && periodName != null && isEventProcessorRunning()) {
+        publishBarEvent(instrumentName, periodName, bidBar, klineDualSide ? askBar : null);
       }
     }
   }
 
   @Override
   public void onMessage(IMessage message) {
-    if (message != null && eventProcessor != null && !eventProcessor.isShutdown()) {
-      eventProcessor.submit(() -> {
-          redisService.publishOrderEvent(message);
-          try {
-            IOrder order = message.getOrder();
-            IMessage.Type type = message.getType();
-            if (order != null && (type == IMessage.Type.ORDER_FILL_OK || 
-                                  type == IMessage.Type.ORDER_CLOSE_OK || 
-                                  type == IMessage.Type.ORDER_CHANGED_OK)) {
-              boolean skipSync = false;
-              // 异步逻辑：如果 SL 修改成功且存在待处理的 TP 修改，则通过策略线程触发它
-               if (type == IMessage.Type.ORDER_CHANGED_OK) {
-                   Double targetTP = pendingTakeProfits.remove(order.getId());
-                   if (targetTP != null) {
-                       log.info("SL modification confirmed for {}, now applying pending TP: {}", order.getLabel(), targetTP);
-                       // 必须通过 context.executeTask 将 TP 修改提交到 JForex 策略线程执行，
-                       // 直接在 eventProcessor 线程中调用 order.setTakeProfitPrice 会抛出 "Incorrect thread" 错误。
-                       context.executeTask(() -> {
-                           try {
-                               order.setTakeProfitPrice(targetTP);
-                               log.info("Successfully applied pending TP {} for order {}", targetTP, order.getLabel());
-                           } catch (Exception e) {
-                               log.error("Failed to apply pending TP for order {}: {}", order.getLabel(), e.getMessage());
-                           }
-                           return null;
-                       });
-                       skipSync = true; // 状态感知：TP 修改的 ORDER_CHANGED_OK 事件到来时会再次触发同步
-                   }
-               }
-
-              if (!skipSync) {
-                  log.info("Order event {} for {}, scheduling debounced position sync", type, order.getLabel());
-                  scheduleDebouncedPositionSync();
-              }
-            }
-          } catch (Exception e) {
-            log.error("Error processing order message for position sync", e);
-          }
-      });
+    if (message != null) {
+      // 在回调线程上记录确认/成交时间，不计入事件通道排队
+      latencyTracker.onMessage(message);
+    }
+    if (message != null && isEventProcessorRunning()) {
+      publishPayloadEvent(MarketEvent.Type.MESSAGE, message);
     }
   }
 
   @Override
   public void onAccount(IAccount account) {
-    if (account != null && eventProcessor != null && !eventProcessor.isShutdown()) {
-      eventProcessor.submit(() -> {
-          double balance = account.getBalance();
-          double equity = account.getEquity();
-          double baseEquity = account.getBaseEquity();
-          double margin = account.getUsedMargin();
-          double unrealizedPL = equity - baseEquity;
-          
-          redisService.publishAccountStatus(balance, equity, baseEquity, margin, unrealizedPL);
-      });
+    if (account != null && isEventProcessorRunning()) {
+      publishPayloadEvent(MarketEvent.Type.ACCOUNT, account);
     }
   }
 
+  /**
+   * 本地汇总高周期 K 线：基础周期加入处理列表，能由其整除汇总的配置周期改为本地生成。
+   */
+  private void setupBarRollup() {
+    Period base;
+    try {
+      base = Period.valueOf(deriveBasePeriod.trim());
+    } catch (IllegalArgumentException e) {
+      redisService.publishError("K 线汇总的基础周期名称无效: " + deriveBasePeriod);
+      return;
+    }
+    List<Period> derivable = BarRollup.derivable(base, this.configuredPeriods);
+    if (derivable.isEmpty()) {
+      log.info("K 线本地汇总: 没有可由 {} 汇总的周期", PeriodUtil.format(base.toString()));
+      return;
+    }
+    this.configuredPeriods.add(base);
+    this.derivedPeriods.addAll(derivable);
+    this.barRollup = new BarRollup(base, derivable,
+        (period, time) -> context.getHistory().getBarStart(period, time), kLineManager, redisService);
+    String derived = derivable.stream()
+        .map(p -> PeriodUtil.format(p.toString()))
+        .collect(Collectors.joining(", "));
+    log.info("K 线本地汇总: 由 {} 汇总 {}", PeriodUtil.format(base.toString()), derived);
+    redisService.publishInfo("K 线本地汇总: 由 " + PeriodUtil.format(base.toString()) + " 汇总 " + derived);
+  }
+
+  /**
+   * 策略已启动且未停止，此时提交的订单任务才会进入 JForex 策略线程。
+   */
+  public boolean isTradingReady() {
+    return context != null && isEventProcessorRunning();
+  }
+
+  private boolean isEventProcessorRunning() {
+    return eventLanes != null && eventLanes.isRunning();
+  }
+
+  /**
+   * 行情通道数：显式配置优先，否则取 CPU 核数与配置品种数中的较小值。
+   */
+  private int resolveEventLaneCount() {
+    if (eventLaneCount > 0) {
+      return eventLaneCount;
+    }
+    int instrumentCount = forexProperties != null && forexProperties.getInstruments() != null
+        ? forexProperties.getInstruments().size() : 1;
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), instrumentCount));
+  }
+
+  private void publishBarEvent(String instrumentName, String periodName, IBar bidBar, IBar askBar) {
+    long time = bidBar.getTime();
+    double open = bidBar.getOpen();
+    double close = bidBar.getClose();
+    double low = bidBar.getLow();
+    double high = bidBar.getHigh();
+    double volume = bidBar.getVolume();
+    // 卖价一侧随同一事件传递，缺失或时间不一致时只记录买价
+    boolean withAsk = askBar != null && askBar.getTime() == time;
+    double askOpen = withAsk ? askBar.getOpen() : Double.NaN;
+    double askClose = withAsk ? askBar.getClose() : Double.NaN;
+    double askLow = withAsk ? askBar.getLow() : Double.NaN;
+    double askHigh = withAsk ? askBar.getHigh() : Double.NaN;
+
+    EventRingBuffer lane = eventLanes.laneFor(instrumentName);
+    long sequence = lane.next();
+    lane.get(sequence).setBar(instrumentName, periodName, time, open, close, low, high, volume,
+        askOpen, askClose, askLow, askHigh);
+    lane.publish(sequence);
+  }
+
+  private void publishPayloadEvent(MarketEvent.Type type, Object payload) {
+    // 订单消息与账户更新共用订单通道，保持二者之间的全局顺序
+    EventRingBuffer lane = eventLanes.orderLane();
+    long sequence = lane.next();
+    lane.get(sequence).setPayload(type, payload);
+    lane.publish(sequence);
+  }
+
+  /**
+   * 事件消费线程的分发入口。各通道线程并发调用，同一通道内按发布顺序逐个处理。
+   */
+  private void handleEvent(MarketEvent event) {
+    switch (event.getType()) {
+      case TICK:
+        tickManager.onTick(event.getInstrument(), event.getTime(), event.getBid(), event.getAsk(),
+            event.getBidVolume(), event.getAskVolume());
+        break;
+      case BAR:
+        // 按品种报价精度规整 OHLC，存储与推送的价格不带浮点尾差
+        PriceCodec codec = PriceCodec.forInstrument(event.getInstrument());
+        boolean withAsk = !Double.isNaN(event.getAskOpen());
+        BarDTO barDTO = new BarDTO(event.getInstrument(), event.getPeriod(), event.getTime(),
+            codec.round(event.getOpen()), codec.round(event.getClose()),
+            codec.round(event.getLow()), codec.round(event.getHigh()), event.getVolume(),
+            withAsk ? codec.round(event.getAskOpen()) : null, withAsk ? codec.round(event.getAskClose()) : null,
+            withAsk ? codec.round(event.getAskLow()) : null, withAsk ? codec.round(event.getAskHigh()) : null);
+        kLineManager.onBar(event.getInstrument(), barDTO);
+        BarRollup rollup = barRollup;
+        if (rollup != null && rollup.getBaseLabel().equals(event.getPeriod())) {
+          rollup.onBaseBar(event.getInstrument(), barDTO);
+        }
+        break;
+      case MESSAGE:
+        processOrderMessage((IMessage) event.getPayload());
+        break;
+      case ACCOUNT:
+        processAccountUpdate((IAccount) event.getPayload());
+        break;
+      default:
+        log.warn("Unknown event type in ring buffer: {}", event.getType());
+    }
+  }
+
+  private void processOrderMessage(IMessage message) {
+      redisService.publishOrderEvent(message, latencyTracker.breakdown(message));
+      try {
+        IOrder order = message.getOrder();
+        IMessage.Type type = message.getType();
+        if (order != null && (type == IMessage.Type.ORDER_FILL_OK || 
+                              type == IMessage.Type.ORDER_CLOSE_OK || 
+                              type == IMessage.Type.ORDER_CHANGED_OK)) {
+          boolean skipSync = false;
+          // 异步逻辑：如果 SL 修改成功且存在待处理的 TP 修改，则通过策略线程触发它
+           if (type == IMessage.Type.ORDER_CHANGED_OK) {
+               Double targetTP = pendingTakeProfits.remove(order.getId());
+               if (targetTP != null) {
+                   log.info("SL modification confirmed for {}, now applying pending TP: {}", order.getLabel(), targetTP);
+                   // 必须通过 context.executeTask 将 TP 修改提交到 JForex 策略线程执行，
+                   // 直接在事件通道线程中调用 order.setTakeProfitPrice 会抛出 "Incorrect thread" 错误。
+                   context.executeTask(() -> {
+                       try {
+                           order.setTakeProfitPrice(targetTP);
+                           log.info("Successfully applied pending TP {} for order {}", targetTP, order.getLabel());
+                       } catch (Exception e) {
+                           log.error("Failed to apply pending TP for order {}: {}", order.getLabel(), e.getMessage());
+                       }
+                       return null;
+                   });
+                   skipSync = true; // 状态感知：TP 修改的 ORDER_CHANGED_OK 事件到来时会再次触发同步
+               }
+           }
+
+          if (!skipSync) {
+              log.info("Order event {} for {}, scheduling debounced position sync", type, order.getLabel());
+              scheduleDebouncedPositionSync();
+          }
+        }
+      } catch (Exception e) {
+        log.error("Error processing order message for position sync", e);
+      }
+  }
+
+  private void processAccountUpdate(IAccount account) {
+      double balance = account.getBalance();
+      double equity = account.getEquity();
+      double baseEquity = account.getBaseEquity();
+      double margin = account.getUsedMargin();
+      double unrealizedPL = equity - baseEquity;
+      
+      redisService.publishAccountStatus(balance, equity, baseEquity, margin, unrealizedPL);
+  }
+
   @Override
   public void onStop() {
     log.info("TradingStrategy stopping. Shutting down executors...");
@@ -332,14 +501,15 @@ public class TradingStrategy implements IStrategy {
             Thread.currentThread().interrupt();
         }
     }
-    if (eventProcessor != null) {
-        eventProcessor.shutdown();
+    if (eventLanes != null) {
+        eventLanes.halt();
         try {
-            if (!eventProcessor.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
-                eventProcessor.shutdownNow();
+            if (!eventLanes.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
+                log.warn("Event lanes did not drain within 5s, {} events discarded", eventLanes.getBacklog());
+                eventLanes.shutdownNow();
             }
         } catch (InterruptedException e) {
-            eventProcessor.shutdownNow();
+            eventLanes.shutdownNow();
             Thread.currentThread().interrupt();
         }
     }
@@ -381,6 +551,11 @@ public class TradingStrategy implements IStrategy {
           log.warn("Failed to fetch account info during heartbeat", e);
       }
     }
+    latencyTracker.logStatsIfDue();
+  }
+
+  public OrderLatencyTracker getLatencyTracker() {
+    return latencyTracker;
   }
 
   public void setExecutor(ExecutorService executor) {
@@ -392,6 +567,9 @@ public class TradingStrategy implements IStrategy {
   }
 
   public void executeMarketOrder(OpenMarketOrderRequest request) {
+        if (rejectedBeforeSubmit(preTradeValidator.validate(request))) {
+            return;
+        }
         runTask(() -> {
         Instrument instrument = parseInstrument(request.getInstrument());
         if (instrument == null) {
@@ -432,7 +610,19 @@ public class TradingStrategy implements IStrategy {
     }
 
     public void submitOrder(SubmitOrderRequest request) {
+        submitOrder(request, System.nanoTime());
+    }
+
+    /**
+     * @param receivedNanos 监听器收到消息时的 {@link System#nanoTime()}，用于按 requestId 追踪耗时
+     */
+    public void submitOrder(SubmitOrderRequest request, long receivedNanos) {
+        if (rejectedBeforeSubmit(preTradeValidator.validate(request, request.getLabel()))) {
+            return;
+        }
+        OrderLatencyTracker.Trace trace = latencyTracker.begin(request.getRequestId(), receivedNanos, System.nanoTime());
         runTask(() -> {
+            latencyTracker.dequeued(trace);
             Instrument instrument = parseInstrument(request.getInstrument());
             if (instrument == null) {
                 log.error("Invalid instrument in order request: {}", request.getInstrument());
@@ -442,14 +632,41 @@ public class TradingStrategy implements IStrategy {
             IEngine.OrderCommand command = IEngine.OrderCommand.valueOf(request.getOrderCommand());
             String finalLabel = sanitizeLabel((request.getLabel() != null && !request.getLabel().isEmpty()) ? request.getLabel() : getNewLabel());
 
-            double stopLossPrice = request.getStopLossPrice() != null ? request.getStopLossPrice() : 0.0;
-            double takeProfitPrice = request.getTakeProfitPrice() != null ? request.getTakeProfitPrice() : 0.0;
-            double amount = request.getAmount() != null ? request.getAmount() : 0.0;
-            double price = request.getPrice() != null ? request.getPrice() : 0.0;
-            double slippage = request.getSlippage() != null ? request.getSlippage() : 0.0;
+            submitOnStrategyThread(request, instrument, command, finalLabel, trace);
+            return null;
+        }, "Submit Order [" + request.getInstrument() + "]");
+    }
+
+    /**
+     * 下单前置校验未通过时在调用线程上发布错误，返回 {@code true}；指令不会进入策略线程。
+     */
+    private boolean rejectedBeforeSubmit(ErrorDTO error) {
+        if (error == null) {
+            return false;
+        }
+        log.warn("Order rejected before submit: {} - {}", error.getCode(), error.getMessage());
+        redisService.publishError("Order rejected: " + error.getMessage());
+        redisService.publishStructuredError(error);
+        return true;
+    }
 
-            context.getEngine().submitOrder(
-                    finalLabel,
+    /**
+     * 在 JForex 策略线程上提交一笔订单，并按 label 登记耗时追踪。
+     */
+    private IOrder submitOnStrategyThread(SubmitOrderRequest request, Instrument instrument,
+                                          IEngine.OrderCommand command, String label,
+                                          OrderLatencyTracker.Trace trace) throws JFException {
+        double stopLossPrice = request.getStopLossPrice() != null ? request.getStopLossPrice() : 0.0;
+        double takeProfitPrice = request.getTakeProfitPrice() != null ? request.getTakeProfitPrice() : 0.0;
+        double amount = request.getAmount() != null ? request.getAmount() : 0.0;
+        double price = request.getPrice() != null ? request.getPrice() : 0.0;
+        double slippage = request.getSlippage() != null ? request.getSlippage() : 0.0;
+
+        latencyTracker.bind(trace, label);
+        IOrder order;
+        try {
+            order = context.getEngine().submitOrder(
+                    label,
                     instrument,
                     command,
                     amount,
@@ -460,8 +677,120 @@ public class TradingStrategy implements IStrategy {
                     0L,
                     request.getComments()
             );
+        } catch (JFException | RuntimeException e) {
+            // 提交失败时 label 可能属于已有订单，不能让其后续事件匹配到本次追踪
+            latencyTracker.unbind(trace, label);
+            throw e;
+        }
+        latencyTracker.submitted(trace);
+        return order;
+    }
+
+    public void submitOrderBatch(BatchOrderRequest request) {
+        submitOrderBatch(request, System.nanoTime());
+    }
+
+    /**
+     * 批量下单：先在调用线程上整体校验，任一笔不合法则整批拒绝、不提交任何订单；
+     * 全部合法时在同一个策略线程任务中依次提交，逐笔结果发布到
+     * {@code gateway:order:batch:response:{requestId}}。单笔提交失败不影响其余订单。
+     */
+    public void submitOrderBatch(BatchOrderRequest request, long receivedNanos) {
+        String requestId = request.getRequestId();
+        if (requestId == null || requestId.isEmpty()) {
+            log.error("Order batch rejected: missing requestId");
+            redisService.publishError("Order batch rejected: requestId is required");
+            return;
+        }
+        List<SubmitOrderRequest> orders = request.getOrders();
+        if (orders == null || orders.isEmpty() || orders.size() > orderBatchMaxSize) {
+            String error = "orders must contain 1 to " + orderBatchMaxSize + " items";
+            redisService.publishOrderBatchResult(new OrderBatchResultDTO(requestId, List.of(), error), requestId);
+            return;
+        }
+
+        int size = orders.size();
+        Instrument[] instruments = new Instrument[size];
+        IEngine.OrderCommand[] commands = new IEngine.OrderCommand[size];
+        String[] labels = new String[size];
+        String[] errors = new String[size];
+        Set<String> seenLabels = new HashSet<>();
+        String batchLabel = getNewLabel();
+        boolean valid = true;
+        for (int i = 0; i < size; i++) {
+            SubmitOrderRequest order = orders.get(i);
+            // 同一毫秒内提交的订单不能共用默认 label，按序号区分
+            labels[i] = order != null && order.getLabel() != null && !order.getLabel().isEmpty()
+                ? sanitizeLabel(order.getLabel()) : batchLabel + "_" + i;
+            errors[i] = validateBatchItem(order, labels[i], seenLabels, instruments, commands, i);
+            valid &= errors[i] == null;
+        }
+        if (!valid) {
+            List<OrderBatchResultDTO.Item> rejected = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                rejected.add(new OrderBatchResultDTO.Item(i, labels[i], errors[i] != null ? "INVALID" : "SKIPPED",
+                    null, errors[i]));
+            }
+            log.warn("Order batch {} rejected: {} of {} orders invalid", requestId,
+                Arrays.stream(errors).filter(Objects::nonNull).count(), size);
+            redisService.publishOrderBatchResult(
+                new OrderBatchResultDTO(requestId, rejected, "Batch rejected: invalid orders"), requestId);
+            return;
+        }
+
+        if (context == null) {
+            // runTask 只发布通用错误，批量请求方需要在结果频道上收到逐笔失败
+            String error = "JForex Context is not initialized";
+            log.error("Order batch {} failed: {}", requestId, error);
+            List<OrderBatchResultDTO.Item> failed = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                failed.add(new OrderBatchResultDTO.Item(i, labels[i], "FAILED", null, error));
+            }
+            redisService.publishOrderBatchResult(new OrderBatchResultDTO(requestId, failed, error), requestId);
+            return;
+        }
+
+        long decodedNanos = System.nanoTime();
+        OrderLatencyTracker.Trace[] traces = new OrderLatencyTracker.Trace[size];
+        for (int i = 0; i < size; i++) {
+            traces[i] = latencyTracker.begin(orders.get(i).getRequestId(), receivedNanos, decodedNanos);
+        }
+        runTask(() -> {
+            List<OrderBatchResultDTO.Item> results = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                latencyTracker.dequeued(traces[i]);
+                try {
+                    IOrder order = submitOnStrategyThread(orders.get(i), instruments[i], commands[i], labels[i], traces[i]);
+                    results.add(new OrderBatchResultDTO.Item(i, labels[i], "SUBMITTED",
+                        order != null ? order.getId() : null, null));
+                } catch (Exception e) {
+                    log.error("Order batch {} item {} ({}) failed: {}", requestId, i, labels[i], e.getMessage());
+                    results.add(new OrderBatchResultDTO.Item(i, labels[i], "FAILED", null, e.getMessage()));
+                }
+            }
+            redisService.publishOrderBatchResult(new OrderBatchResultDTO(requestId, results, null), requestId);
             return null;
-        }, "Submit Order [" + request.getInstrument() + "]");
+        }, "Order Batch [" + requestId + ", " + size + " orders]");
+    }
+
+    private String validateBatchItem(SubmitOrderRequest order, String label, Set<String> seenLabels,
+                                     Instrument[] instruments, IEngine.OrderCommand[] commands, int index) {
+        if (order == null) {
+            return "order is required";
+        }
+        ErrorDTO error = preTradeValidator.validate(order, label);
+        if (error != null) {
+            return error.getMessage();
+        }
+        instruments[index] = parseInstrument(order.getInstrument());
+        if (instruments[index] == null) {
+            return "Invalid instrument: " + order.getInstrument();
+        }
+        commands[index] = IEngine.OrderCommand.valueOf(order.getOrderCommand());
+        if (!seenLabels.add(label)) {
+            return "Duplicate label in batch: " + label;
+        }
+        return null;
     }
 
     public void modifyOrder(ModifyOrderRequest request) {
@@ -688,7 +1017,16 @@ public class TradingStrategy implements IStrategy {
   }
 
   public void subscribeToInstrument(Instrument instrument) {
-    if (context != null && subscribedInstruments.add(instrument)) {
+    if (context == null || subscribedInstruments.contains(instrument)) {
+      return;
+    }
+    // 通道分配与品种元数据先于订阅生效，保证同一品种的行情始终落在同一通道
+    if (eventLanes != null) {
+      eventLanes.assign(instrument.toString());
+    }
+    PriceCodec.register(instrument);
+    preTradeValidator.register(instrument);
+    if (subscribedInstruments.add(instrument)) {
       context.setSubscribedInstruments(subscribedInstruments, true);
     }
   }
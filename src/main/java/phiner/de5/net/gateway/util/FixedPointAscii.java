@@ -0,0 +1,129 @@
+package phiner.de5.net.gateway.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 将数值直接写成 ASCII 字节的定点格式化工具，用于替代 DecimalFormat / String.valueOf。
+ * 所有方法写入调用方提供的缓冲区并返回新的写入位置，不产生任何中间对象。
+ */
+public final class FixedPointAscii {
+
+    /** long 最多 19 位数字，加符号位，再预留小数点。 */
+    public static final int MAX_LENGTH = 24;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        long value = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = value;
+            value *= 10;
+        }
+    }
+
+    private FixedPointAscii() {}
+
+    public static long powerOfTen(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+
+    /**
+     * 写入十进制整数。
+     */
+    public static int writeLong(byte[] buffer, int position, long value) {
+        if (value == Long.MIN_VALUE) {
+            return writeFallback(buffer, position, Long.toString(value));
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = digitCount(value);
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * 按固定小数位写入（四舍五入），例如 scale=5 时 1.1 写为 {@code 1.10000}。
+     */
+    public static int writeFixed(byte[] buffer, int position, double value, int scale) {
+        long units = toUnits(value, scale);
+        if (units == Long.MIN_VALUE) {
+            return writeFallback(buffer, position, String.valueOf(value));
+        }
+        return writeUnits(buffer, position, units, scale, false);
+    }
+
+    /**
+     * 按最多 {@code maxScale} 位小数写入并去掉末尾多余的 0，至少保留一位小数，
+     * 与 {@link String#valueOf(double)} 的常规输出（如 {@code 2.5}、{@code 1.0}）保持一致。
+     */
+    public static int writeDecimal(byte[] buffer, int position, double value, int maxScale) {
+        long units = toUnits(value, maxScale);
+        if (units == Long.MIN_VALUE) {
+            return writeFallback(buffer, position, String.valueOf(value));
+        }
+        return writeUnits(buffer, position, units, maxScale, true);
+    }
+
+    /**
+     * 将价格换算为最小价格单位的整数（value * 10^scale，四舍五入）。
+     * 非有限值或超出 long 范围时返回 {@link Long#MIN_VALUE}。
+     */
+    public static long toUnits(double value, int scale) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Long.MIN_VALUE;
+        }
+        double scaled = value * POWERS_OF_TEN[scale];
+        if (Math.abs(scaled) >= 9.0E18) {
+            return Long.MIN_VALUE;
+        }
+        return Math.round(scaled);
+    }
+
+    private static int writeUnits(byte[] buffer, int position, long units, int scale, boolean trimZeros) {
+        if (units < 0) {
+            buffer[position++] = '-';
+            units = -units;
+        }
+        if (scale == 0) {
+            return writeLong(buffer, position, units);
+        }
+        long divisor = POWERS_OF_TEN[scale];
+        position = writeLong(buffer, position, units / divisor);
+        long fraction = units % divisor;
+        int fractionDigits = scale;
+        if (trimZeros) {
+            while (fractionDigits > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                fractionDigits--;
+            }
+        }
+        buffer[position++] = '.';
+        int end = position + fractionDigits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + (fraction % 10));
+            fraction /= 10;
+        }
+        return end;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (digits < 19 && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static int writeFallback(byte[] buffer, int position, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        int length = Math.min(bytes.length, buffer.length - position);
+        System.arraycopy(bytes, 0, buffer, position, length);
+        return position + length;
+    }
+}
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * 统一的周期格式化工具类，将 JForex 各种形式的周期字符串转换为短格式（如 5m, 1h, 1d）。
@@ -14,6 +15,9 @@ public class PeriodUtil {
 
     private static final Map<String, String> MAPPING = new HashMap<>();
 
+    // 本地聚合的自定义周期短格式，如 10s、2m、3h、100t（按 Tick 数）
+    private static final Pattern CUSTOM_PERIOD = Pattern.compile("[1-9]\\d*[smhdt]");
+
     static {
         // JForex Enum Names (常量名)
         MAPPING.put("ONE_MIN", "1m");
@@ -81,7 +85,25 @@ public class PeriodUtil {
             return cleaned.replace(" Hour", "h");
         }
         
+        if (isCustom(cleaned)) {
+            return cleaned;
+        }
+
         log.warn("Unmapped period string detected: '{}'. Recommending check of docs/gateway_api.md.", period);
         return period;
     }
+
+    /**
+     * 是否为 JForex 标准周期的短格式（如 5m、1h、1d）。
+     */
+    public static boolean isStandard(String shortName) {
+        return MAPPING.containsValue(shortName);
+    }
+
+    /**
+     * 是否符合自定义周期的短格式（数字 + s/m/h/d/t）。
+     */
+    public static boolean isCustom(String shortName) {
+        return shortName != null && CUSTOM_PERIOD.matcher(shortName).matches();
+    }
 }
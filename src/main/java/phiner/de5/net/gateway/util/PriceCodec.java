@@ -0,0 +1,114 @@
+package phiner.de5.net.gateway.util;
+
+import com.dukascopy.api.Instrument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按品种报价精度进行定点换算与格式化的编解码器。
+ * <p>
+ * 精度取自 JForex {@link Instrument#getTickScale()}（最小报价单位的小数位数）与 {@link Instrument#getPipScale()}，
+ * 在订阅时通过 {@link #register(Instrument)} 预先载入；热路径上的 {@link #forInstrument(String)} 只是一次 Map 查找。
+ * 未注册的品种首次查询时按名称解析，无法识别时使用 {@link #DEFAULT}（5 位小数）。
+ */
+public final class PriceCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceCodec.class);
+
+    /** 未知品种使用的默认精度，与历史上固定的 {@code 0.00000} 格式一致。 */
+    public static final PriceCodec DEFAULT = new PriceCodec("DEFAULT", 5, 4);
+
+    private static final Map<String, PriceCodec> CODECS = new ConcurrentHashMap<>();
+
+    private final String instrument;
+    private final int tickScale;
+    private final int pipScale;
+    private final double unitsPerPrice;
+
+    PriceCodec(String instrument, int tickScale, int pipScale) {
+        if (tickScale < 0 || tickScale > 12) {
+            throw new IllegalArgumentException("Unsupported tick scale for " + instrument + ": " + tickScale);
+        }
+        this.instrument = instrument;
+        this.tickScale = tickScale;
+        this.pipScale = pipScale;
+        this.unitsPerPrice = FixedPointAscii.powerOfTen(tickScale);
+    }
+
+    /**
+     * 注册品种的编解码器（订阅时调用），重复注册返回已有实例。
+     */
+    public static PriceCodec register(Instrument instrument) {
+        return CODECS.computeIfAbsent(instrument.toString(), key -> of(instrument));
+    }
+
+    /**
+     * 返回品种的编解码器，品种名格式与 {@link Instrument#toString()} 一致（如 {@code EUR/USD}）。
+     */
+    public static PriceCodec forInstrument(String instrument) {
+        PriceCodec codec = CODECS.get(instrument);
+        if (codec != null) {
+            return codec;
+        }
+        return CODECS.computeIfAbsent(instrument, PriceCodec::resolve);
+    }
+
+    private static PriceCodec resolve(String name) {
+        Instrument instrument = null;
+        try {
+            instrument = Instrument.fromString(name);
+        } catch (Exception e) {
+            log.debug("解析品种 '{}' 的报价精度失败: {}", name, e.getMessage());
+        }
+        if (instrument == null) {
+            log.warn("无法识别品种 '{}'，使用默认报价精度 {} 位小数", name, DEFAULT.tickScale);
+            return DEFAULT;
+        }
+        return of(instrument);
+    }
+
+    private static PriceCodec of(Instrument instrument) {
+        return new PriceCodec(instrument.toString(), instrument.getTickScale(), instrument.getPipScale());
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public int getTickScale() {
+        return tickScale;
+    }
+
+    public int getPipScale() {
+        return pipScale;
+    }
+
+    /**
+     * 价格换算为最小报价单位的整数（四舍五入）。非有限值返回 {@link Long#MIN_VALUE}。
+     */
+    public long toUnits(double price) {
+        return FixedPointAscii.toUnits(price, tickScale);
+    }
+
+    public double fromUnits(long units) {
+        return units / unitsPerPrice;
+    }
+
+    /**
+     * 将价格规整到品种的报价精度，去掉浮点运算带来的尾差（如 {@code 1.0500800000000001}）。
+     */
+    public double round(double price) {
+        long units = toUnits(price);
+        return units == Long.MIN_VALUE ? price : fromUnits(units);
+    }
+
+    /**
+     * 以品种精度写入定点 ASCII，返回新的写入位置。
+     */
+    public int write(byte[] buffer, int position, double price) {
+        return FixedPointAscii.writeFixed(buffer, position, price, tickScale);
+    }
+}
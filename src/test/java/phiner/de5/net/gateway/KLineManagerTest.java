@@ -3,17 +3,25 @@ package phiner.de5.net.gateway;
 import com.dukascopy.api.IBar;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.dto.KLineSeriesLoadedDTO;
+import phiner.de5.net.gateway.indicator.IndicatorEngine;
+import phiner.de5.net.gateway.kline.BarArchive;
+import phiner.de5.net.gateway.kline.FormingBarTracker;
 import phiner.de5.net.gateway.service.RedisService;
 
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -22,6 +30,15 @@ public class KLineManagerTest {
     @Mock
     private RedisService redisService;
 
+    @Mock
+    private FormingBarTracker formingBarTracker;
+
+    @Mock
+    private IndicatorEngine indicatorEngine;
+
+    @Mock
+    private BarArchive barArchive;
+
     @Mock
     private IBar iBar;
 
@@ -51,8 +68,11 @@ public class KLineManagerTest {
 
         // Then
         assertEquals(bar, kLineManager.getLastBar(instrument));
+        verify(formingBarTracker).onBarClosed(bar);
         verify(redisService).addBarToKLine(bar);
         verify(redisService).publishBar(bar);
+        verify(indicatorEngine).onBar(bar);
+        verify(barArchive).append(bar);
     }
 
     @Test
@@ -93,4 +113,44 @@ public class KLineManagerTest {
         assertNotNull(lastBar);
         assertEquals(bar, lastBar);
     }
+
+    @Test
+    public void testWriteHistoryChunk_bulkWriteWithoutPerBarPublish() {
+        BarDTO first = new BarDTO("EUR/USD", "5m", 1_000L, 1.1, 1.2, 1.0, 1.3, 10);
+        BarDTO last = new BarDTO("EUR/USD", "5m", 301_000L, 1.2, 1.3, 1.1, 1.4, 12);
+        List<BarDTO> bars = List.of(first, last);
+        when(redisService.addBarsToKLine(bars)).thenReturn(2);
+
+        assertEquals(2, kLineManager.writeHistoryChunk(bars));
+        verify(barArchive).append(bars);
+
+        verify(redisService, never()).publishBar(any());
+        verify(redisService, never()).publishSeriesLoaded(any());
+        verify(indicatorEngine, never()).onBar(any());
+        assertEquals(last, kLineManager.getLastBar("EUR/USD"));
+    }
+
+    @Test
+    public void testWriteHistoryChunk_doesNotReplaceNewerLiveBar() {
+        BarDTO live = new BarDTO("EUR/USD", "5m", 601_000L, 1.2, 1.3, 1.1, 1.4, 5);
+        kLineManager.onBar("EUR/USD", live);
+        List<BarDTO> bars = List.of(new BarDTO("EUR/USD", "5m", 301_000L, 1.2, 1.3, 1.1, 1.4, 12));
+        when(redisService.addBarsToKLine(bars)).thenReturn(1);
+
+        kLineManager.writeHistoryChunk(bars);
+
+        assertEquals(live, kLineManager.getLastBar("EUR/USD"));
+    }
+
+    @Test
+    public void testOnHistoryLoaded_singleNotification() {
+        kLineManager.onHistoryLoaded("EUR/USD", "5m", 2, 1_000L, 301_000L);
+
+        ArgumentCaptor<KLineSeriesLoadedDTO> captor = ArgumentCaptor.forClass(KLineSeriesLoadedDTO.class);
+        verify(redisService).publishSeriesLoaded(captor.capture());
+        assertEquals(2, captor.getValue().getCount());
+        assertEquals(1_000L, captor.getValue().getFrom());
+        assertEquals(301_000L, captor.getValue().getTo());
+        verify(indicatorEngine).onHistoryLoaded("EUR/USD", "5m", 301_000L);
+    }
 }
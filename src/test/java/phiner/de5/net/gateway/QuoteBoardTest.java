@@ -0,0 +1,113 @@
+package phiner.de5.net.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuoteBoardTest {
+
+    @Test
+    public void testUpdateAndRead() {
+        QuoteBoard board = new QuoteBoard(4);
+        QuoteBoard.Quote quote = new QuoteBoard.Quote();
+
+        assertFalse(board.read("EUR/USD", quote));
+
+        board.update("EUR/USD", 1000L, 1.1, 1.2, 2.5, 1.5);
+
+        assertTrue(board.read("EUR/USD", quote));
+        assertEquals("EUR/USD", quote.getInstrument());
+        assertEquals(1000L, quote.getTime());
+        assertEquals(1.1, quote.getBid());
+        assertEquals(1.2, quote.getAsk());
+        assertEquals(2.5, quote.getBidVolume());
+        assertEquals(1.5, quote.getAskVolume());
+    }
+
+    @Test
+    public void testDenseIdsAndCapacity() {
+        QuoteBoard board = new QuoteBoard(2);
+
+        assertEquals(0, board.idOf("EUR/USD"));
+        assertEquals(1, board.idOf("GBP/USD"));
+        assertEquals(0, board.idOf("EUR/USD"));
+        assertEquals(-1, board.idOf("USD/JPY"));
+        assertFalse(board.update("USD/JPY", 1L, 150.0, 150.01, 1, 1));
+        assertEquals(2, board.size());
+    }
+
+    @Test
+    public void testConcurrentNewInstrumentsGetDistinctSlots() throws InterruptedException {
+        int threads = 8;
+        int perThread = 32;
+        QuoteBoard board = new QuoteBoard(threads * perThread - 1);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    board.idOf("I" + (offset + i));
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // 超出容量的那一个品种分配失败，其余品种各占一个槽位
+        Set<Integer> slots = new HashSet<>();
+        int rejected = 0;
+        for (int i = 0; i < threads * perThread; i++) {
+            int id = board.indexOf("I" + i);
+            if (id < 0) {
+                rejected++;
+            } else {
+                assertTrue(slots.add(id), "slot " + id + " shared");
+            }
+        }
+        assertEquals(1, rejected);
+        assertEquals(threads * perThread - 1, board.size());
+    }
+
+    @Test
+    public void testReaderNeverSeesTornQuote() throws InterruptedException {
+        QuoteBoard board = new QuoteBoard(1);
+        int id = board.idOf("EUR/USD");
+        board.update(id, 0L, 0, 1, 0, 0);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            QuoteBoard.Quote quote = new QuoteBoard.Quote();
+            while (running.get()) {
+                board.read(id, quote);
+                if (quote.getAsk() != quote.getBid() + 1 || quote.getTime() != (long) quote.getBid()) {
+                    failure.set("torn read: time=" + quote.getTime() + " bid=" + quote.getBid() + " ask=" + quote.getAsk());
+                    return;
+                }
+            }
+        });
+        reader.start();
+        for (int i = 1; i <= 200_000; i++) {
+            board.update(id, i, i, i + 1, 0, 0);
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+    }
+}
@@ -8,6 +8,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import phiner.de5.net.gateway.dto.TickDTO;
+import phiner.de5.net.gateway.kline.BarAggregator;
+import phiner.de5.net.gateway.kline.FormingBarTracker;
 import phiner.de5.net.gateway.service.ForexTickProducer;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.verify;
@@ -18,6 +20,12 @@ public class TickManagerTest {
     @Mock
     private ForexTickProducer forexTickProducer;
 
+    @Mock
+    private BarAggregator barAggregator;
+
+    @Mock
+    private FormingBarTracker formingBarTracker;
+
     @Mock
     private ITick tick;
 
@@ -62,6 +70,9 @@ public class TickManagerTest {
                 askVol
         );
 
+        verify(barAggregator).onTick(instrument.toString(), currentTime, bid, bidVol);
+        verify(formingBarTracker).onTick(instrument.toString(), currentTime, bid, bidVol);
+
         // 验证内存缓存是否更新
         TickDTO lastTick = tickManager.getLastTick(instrument.toString());
         assertEquals(currentTime, lastTick.getTime());
@@ -0,0 +1,70 @@
+package phiner.de5.net.gateway.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventLanesTest {
+
+    @Test
+    public void testRoundRobinAssignmentIsStable() {
+        EventLanes lanes = new EventLanes(2, 16, "blocking", event -> { });
+
+        assertEquals(0, lanes.assign("EUR/USD"));
+        assertEquals(1, lanes.assign("XAU/USD"));
+        assertEquals(0, lanes.assign("USD/JPY"));
+        // 重复分配返回首次结果
+        assertEquals(1, lanes.assign("XAU/USD"));
+
+        assertSame(lanes.laneFor("EUR/USD"), lanes.laneFor("USD/JPY"));
+        assertNotSame(lanes.laneFor("EUR/USD"), lanes.laneFor("XAU/USD"));
+        assertNotSame(lanes.laneFor("EUR/USD"), lanes.orderLane());
+    }
+
+    @Test
+    public void testPerInstrumentOrderingAcrossLanes() throws Exception {
+        String[] instruments = {"EUR/USD", "GBP/USD", "USD/JPY", "XAU/USD"};
+        int perInstrument = 5_000;
+        Map<String, Long> lastTime = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(instruments.length * perInstrument);
+
+        EventLanes lanes = new EventLanes(3, 64, "yielding", event -> {
+            Long previous = lastTime.put(event.getInstrument(), event.getTime());
+            if (previous != null && previous >= event.getTime()) {
+                outOfOrder.incrementAndGet();
+            }
+            done.countDown();
+        });
+        for (String instrument : instruments) {
+            lanes.assign(instrument);
+        }
+        lanes.start("test-lanes");
+
+        for (int i = 0; i < perInstrument; i++) {
+            for (String instrument : instruments) {
+                EventRingBuffer lane = lanes.laneFor(instrument);
+                long sequence = lane.next();
+                lane.get(sequence).setTick(instrument, i, 1.0, 1.1, 0, 0);
+                lane.publish(sequence);
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        lanes.halt();
+        assertTrue(lanes.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, outOfOrder.get());
+        for (String instrument : instruments) {
+            assertEquals(Long.valueOf(perInstrument - 1L), lastTime.get(instrument));
+        }
+    }
+}
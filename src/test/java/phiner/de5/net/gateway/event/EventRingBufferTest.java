@@ -0,0 +1,161 @@
+package phiner.de5.net.gateway.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventRingBufferTest {
+
+    @Test
+    public void testCapacityRoundedUpToPowerOfTwo() {
+        EventRingBuffer ringBuffer = new EventRingBuffer(1000, new BlockingWaitStrategy());
+        assertEquals(1024, ringBuffer.getCapacity());
+    }
+
+    @Test
+    public void testUnknownWaitStrategyRejected() {
+        assertThrows(IllegalArgumentException.class, () -> WaitStrategy.fromName("sleeping"));
+        assertTrue(WaitStrategy.fromName(null) instanceof BlockingWaitStrategy);
+        assertTrue(WaitStrategy.fromName("busy-spin") instanceof BusySpinWaitStrategy);
+    }
+
+    @Test
+    public void testEventsConsumedInOrderWithBlockingStrategy() throws Exception {
+        assertOrderedDelivery(new BlockingWaitStrategy());
+    }
+
+    @Test
+    public void testEventsConsumedInOrderWithYieldingStrategy() throws Exception {
+        assertOrderedDelivery(new YieldingWaitStrategy());
+    }
+
+    @Test
+    public void testEventsConsumedInOrderWithBusySpinStrategy() throws Exception {
+        assertOrderedDelivery(new BusySpinWaitStrategy());
+    }
+
+    @Test
+    public void testHaltDrainsPublishedEvents() throws Exception {
+        EventRingBuffer ringBuffer = new EventRingBuffer(64, new BlockingWaitStrategy());
+        List<Long> received = Collections.synchronizedList(new ArrayList<>());
+        EventProcessor processor = new EventProcessor(ringBuffer, event -> {
+            Thread.sleep(1);
+            received.add(event.getTime());
+        });
+        processor.start("test-drain");
+
+        for (int i = 0; i < 20; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setTick("EUR/USD", i, 1.0, 1.1, 0, 0);
+            ringBuffer.publish(sequence);
+        }
+        processor.halt();
+
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(processor.isRunning());
+        assertEquals(20, received.size());
+    }
+
+    @Test
+    public void testPayloadReleasedAfterHandling() throws Exception {
+        EventRingBuffer ringBuffer = new EventRingBuffer(4, new BlockingWaitStrategy());
+        CountDownLatch handled = new CountDownLatch(1);
+        EventProcessor processor = new EventProcessor(ringBuffer, event -> handled.countDown());
+        processor.start("test-release");
+
+        long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).setPayload(MarketEvent.Type.MESSAGE, new Object());
+        ringBuffer.publish(sequence);
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        processor.halt();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        assertNull(ringBuffer.get(sequence).getPayload());
+    }
+
+    @Test
+    public void testHandlerErrorDoesNotStopConsumer() throws Exception {
+        EventRingBuffer ringBuffer = new EventRingBuffer(4, new BlockingWaitStrategy());
+        CountDownLatch done = new CountDownLatch(8);
+        EventProcessor processor = new EventProcessor(ringBuffer, event -> {
+            done.countDown();
+            if (event.getTime() == 0) {
+                throw new AssertionError("handler failure");
+            }
+        });
+        processor.start("test-error");
+
+        // 容量 4 而发布 8 个事件：若出错后序号停止前进，生产者会一直等待
+        for (int i = 0; i < 8; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setTick("EUR/USD", i, 1.0, 1.1, 0, 0);
+            ringBuffer.publish(sequence);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(processor.isRunning());
+        processor.halt();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testProducerDoesNotWaitOnStoppedConsumer() throws Exception {
+        EventRingBuffer ringBuffer = new EventRingBuffer(2, new BlockingWaitStrategy());
+        EventProcessor processor = new EventProcessor(ringBuffer, event -> { });
+        processor.start("test-stopped");
+        processor.halt();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                long sequence = ringBuffer.next();
+                ringBuffer.get(sequence).setTick("EUR/USD", i, 1.0, 1.1, 0, 0);
+                ringBuffer.publish(sequence);
+            }
+        });
+        producer.start();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertFalse(producer.isAlive());
+        assertEquals(5, ringBuffer.getDroppedEvents());
+    }
+
+    private void assertOrderedDelivery(WaitStrategy waitStrategy) throws Exception {
+        // 容量远小于事件数，覆盖环绕与生产者等待路径
+        EventRingBuffer ringBuffer = new EventRingBuffer(16, waitStrategy);
+        int total = 10_000;
+        long[] lastTime = {-1};
+        int[] outOfOrder = {0};
+        CountDownLatch done = new CountDownLatch(total);
+        EventProcessor processor = new EventProcessor(ringBuffer, event -> {
+            if (event.getTime() <= lastTime[0]) {
+                outOfOrder[0]++;
+            }
+            lastTime[0] = event.getTime();
+            done.countDown();
+        });
+        processor.start("test-ordered");
+
+        for (int i = 0; i < total; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setTick("EUR/USD", i, 1.0, 1.1, 0, 0);
+            ringBuffer.publish(sequence);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        processor.halt();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, outOfOrder[0]);
+        assertEquals(total - 1, lastTime[0]);
+    }
+}
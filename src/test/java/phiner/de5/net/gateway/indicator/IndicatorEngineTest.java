@@ -0,0 +1,139 @@
+package phiner.de5.net.gateway.indicator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import phiner.de5.net.gateway.config.ForexProperties;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.dto.IndicatorDTO;
+import phiner.de5.net.gateway.service.RedisService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IndicatorEngineTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Mock
+    private RedisService redisService;
+
+    private IndicatorEngine engine(String... indicators) {
+        ForexProperties properties = new ForexProperties();
+        properties.setIndicators(List.of(indicators));
+        return new IndicatorEngine(properties, redisService);
+    }
+
+    private static BarDTO bar(long minute, double close) {
+        return new BarDTO("EUR/USD", "1m", minute * MINUTE, close, close, close, close, 1.0);
+    }
+
+    /**
+     * 按时间降序排列的已存储 K 线。
+     */
+    private static List<BarDTO> stored(int... closes) {
+        List<BarDTO> bars = new ArrayList<>();
+        for (int i = closes.length - 1; i >= 0; i--) {
+            bars.add(bar(i, closes[i]));
+        }
+        return bars;
+    }
+
+    @Test
+    public void testFirstLiveBarBuildsStateFromStoredBars() {
+        // 已存储 0..3 分钟，第 3 分钟即当前这根（已先写入 Redis）
+        when(redisService.getKLine("EUR/USD", "1m")).thenReturn(stored(1, 2, 3, 4));
+        IndicatorEngine engine = engine("EMA:2");
+
+        engine.onBar(bar(3, 4));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<IndicatorDTO>> history = ArgumentCaptor.forClass(List.class);
+        verify(redisService).addIndicatorValues(history.capture());
+        assertEquals(List.of(MINUTE, 2 * MINUTE), history.getValue().stream().map(IndicatorDTO::getTime).toList());
+        assertEquals(1.5, history.getValue().get(0).getValues().get("ema2"), 1e-9);
+
+        ArgumentCaptor<IndicatorDTO> live = ArgumentCaptor.forClass(IndicatorDTO.class);
+        verify(redisService).addIndicatorValue(live.capture());
+        verify(redisService).publishIndicator(live.getValue());
+        // EMA(2): 1.5 -> 2.5 -> 3.5
+        assertEquals(3.5, live.getValue().getValues().get("ema2"), 1e-9);
+        assertEquals(3 * MINUTE, live.getValue().getTime());
+    }
+
+    @Test
+    public void testLateOrDuplicateBarIsIgnored() {
+        when(redisService.getKLine("EUR/USD", "1m")).thenReturn(List.of());
+        IndicatorEngine engine = engine("EMA:1");
+
+        engine.onBar(bar(5, 1));
+        engine.onBar(bar(5, 2));
+        engine.onBar(bar(4, 3));
+        engine.onBar(bar(6, 4));
+
+        ArgumentCaptor<IndicatorDTO> captor = ArgumentCaptor.forClass(IndicatorDTO.class);
+        verify(redisService, times(2)).publishIndicator(captor.capture());
+        assertEquals(List.of(5 * MINUTE, 6 * MINUTE), captor.getAllValues().stream().map(IndicatorDTO::getTime).toList());
+        verify(redisService, times(1)).getKLine(anyString(), anyString());
+        verify(redisService, never()).addIndicatorValues(anyList());
+    }
+
+    @Test
+    public void testHistoryLoadedRebuildsFromFullSeries() {
+        when(redisService.getKLine("EUR/USD", "1m")).thenReturn(stored(1, 2, 3));
+        IndicatorEngine engine = engine("RSI:1", "RSI:1", "BOGUS:3");
+
+        engine.onHistoryLoaded("EUR/USD", "1m", 2 * MINUTE);
+        engine.onBar(bar(3, 2));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<IndicatorDTO>> history = ArgumentCaptor.forClass(List.class);
+        verify(redisService).addIndicatorValues(history.capture());
+        assertEquals(2, history.getValue().size());
+        assertEquals(100.0, history.getValue().get(1).getValues().get("rsi1"), 1e-9);
+
+        ArgumentCaptor<IndicatorDTO> live = ArgumentCaptor.forClass(IndicatorDTO.class);
+        verify(redisService).publishIndicator(live.capture());
+        assertEquals(0.0, live.getValue().getValues().get("rsi1"), 1e-9);
+        assertEquals(1, live.getValue().getValues().size());
+    }
+
+    @Test
+    public void testHistoryLoadedSkipsFormingBar() {
+        // 历史载入到第 1 分钟，第 2 分钟是原地更新的未收盘 K 线
+        when(redisService.getKLine("EUR/USD", "1m")).thenReturn(stored(1, 2, 9));
+        IndicatorEngine engine = engine("EMA:1");
+
+        engine.onHistoryLoaded("EUR/USD", "1m", MINUTE);
+        engine.onBar(bar(2, 3));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<IndicatorDTO>> history = ArgumentCaptor.forClass(List.class);
+        verify(redisService).addIndicatorValues(history.capture());
+        assertEquals(List.of(0L, MINUTE), history.getValue().stream().map(IndicatorDTO::getTime).toList());
+
+        // 该分桶收盘时按最终 K 线计算并推送
+        ArgumentCaptor<IndicatorDTO> live = ArgumentCaptor.forClass(IndicatorDTO.class);
+        verify(redisService).publishIndicator(live.capture());
+        assertEquals(2 * MINUTE, live.getValue().getTime());
+        assertEquals(3.0, live.getValue().getValues().get("ema1"), 1e-9);
+    }
+
+    @Test
+    public void testDisabledWithoutConfiguredIndicators() {
+        IndicatorEngine engine = engine();
+
+        engine.onBar(bar(1, 1));
+        engine.onHistoryLoaded("EUR/USD", "1m", MINUTE);
+
+        assertFalse(engine.isEnabled());
+        verifyNoInteractions(redisService);
+    }
+}
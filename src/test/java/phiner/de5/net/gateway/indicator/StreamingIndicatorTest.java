@@ -0,0 +1,122 @@
+package phiner.de5.net.gateway.indicator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingIndicatorTest {
+
+    private static final double EPS = 1e-9;
+
+    private static double[] closes(int n) {
+        double[] closes = new double[n];
+        for (int i = 0; i < n; i++) {
+            closes[i] = 1.1 + 0.01 * Math.sin(i * 0.7) + 0.0001 * i;
+        }
+        return closes;
+    }
+
+    private static Map<String, Double> feed(StreamingIndicator indicator, double[] closes, int count) {
+        for (int i = 0; i < count; i++) {
+            indicator.update(closes[i] + 0.002, closes[i] - 0.003, closes[i]);
+        }
+        Map<String, Double> out = new HashMap<>();
+        indicator.write(out);
+        return out;
+    }
+
+    @Test
+    public void testEmaSeedsWithSimpleAverage() {
+        double[] closes = closes(30);
+        StreamingIndicator ema = StreamingIndicator.create(IndicatorSpec.parse("EMA:5"));
+
+        assertTrue(feed(ema, closes, 4).isEmpty());
+
+        ema = StreamingIndicator.create(IndicatorSpec.parse("EMA:5"));
+        double expected = 0;
+        for (int i = 0; i < 5; i++) {
+            expected += closes[i] / 5;
+        }
+        double alpha = 2.0 / 6;
+        for (int i = 5; i < 30; i++) {
+            expected = alpha * closes[i] + (1 - alpha) * expected;
+        }
+        assertEquals(expected, feed(ema, closes, 30).get("ema5"), EPS);
+    }
+
+    @Test
+    public void testRsiExtremesAndWarmUp() {
+        StreamingIndicator rsi = StreamingIndicator.create(IndicatorSpec.parse("RSI:3"));
+        double[] rising = {1.0, 1.1, 1.2};
+        assertTrue(feed(rsi, rising, 3).isEmpty());
+        rsi.update(1.3, 1.3, 1.3);
+        Map<String, Double> out = new HashMap<>();
+        rsi.write(out);
+        assertEquals(100.0, out.get("rsi3"), EPS);
+
+        StreamingIndicator flat = StreamingIndicator.create(IndicatorSpec.parse("RSI:3"));
+        assertEquals(50.0, feed(flat, new double[] {1, 1, 1, 1, 1}, 5).get("rsi3"), EPS);
+    }
+
+    @Test
+    public void testRsiWilderSmoothing() {
+        double[] closes = {44.34, 44.09, 44.15, 43.61, 44.33, 44.83, 45.10};
+        StreamingIndicator rsi = StreamingIndicator.create(IndicatorSpec.parse("RSI:3"));
+
+        double gain = 0.06 / 3;
+        double loss = (0.25 + 0.54) / 3;
+        for (int i = 4; i < closes.length; i++) {
+            double change = closes[i] - closes[i - 1];
+            gain = (gain * 2 + Math.max(change, 0)) / 3;
+            loss = (loss * 2 + Math.max(-change, 0)) / 3;
+        }
+        assertEquals(100 - 100 / (1 + gain / loss), feed(rsi, closes, closes.length).get("rsi3"), 1e-6);
+    }
+
+    @Test
+    public void testAtrUsesTrueRange() {
+        StreamingIndicator atr = StreamingIndicator.create(IndicatorSpec.parse("ATR:2"));
+        atr.update(1.2, 1.0, 1.1);   // TR 0.2
+        atr.update(1.5, 1.3, 1.4);   // TR max(0.2, 0.4, 0.2) = 0.4
+        atr.update(1.45, 1.35, 1.4); // TR 0.1
+        Map<String, Double> out = new HashMap<>();
+        atr.write(out);
+
+        assertEquals((0.3 * 1 + 0.1) / 2, out.get("atr2"), EPS);
+    }
+
+    @Test
+    public void testBollingerMatchesWindowStatistics() {
+        double[] closes = closes(3000);
+        StreamingIndicator bb = StreamingIndicator.create(IndicatorSpec.parse("BB:20:2.5"));
+        Map<String, Double> out = feed(bb, closes, closes.length);
+
+        double mean = 0;
+        for (int i = closes.length - 20; i < closes.length; i++) {
+            mean += closes[i] / 20;
+        }
+        double variance = 0;
+        for (int i = closes.length - 20; i < closes.length; i++) {
+            variance += (closes[i] - mean) * (closes[i] - mean) / 20;
+        }
+        double deviation = Math.sqrt(variance);
+        assertEquals(mean, out.get("bb20x2.5.mid"), EPS);
+        assertEquals(mean + 2.5 * deviation, out.get("bb20x2.5.upper"), 1e-7);
+        assertEquals(mean - 2.5 * deviation, out.get("bb20x2.5.lower"), 1e-7);
+    }
+
+    @Test
+    public void testSpecParsing() {
+        assertEquals("ema20", IndicatorSpec.parse(" ema:20 ").getName());
+        assertEquals("bb20", IndicatorSpec.parse("BB:20:2").getName());
+        assertEquals(IndicatorSpec.Type.ATR, IndicatorSpec.parse("ATR:14").getType());
+        assertThrows(IllegalArgumentException.class, () -> IndicatorSpec.parse("EMA"));
+        assertThrows(IllegalArgumentException.class, () -> IndicatorSpec.parse("MACD:12"));
+        assertThrows(IllegalArgumentException.class, () -> IndicatorSpec.parse("RSI:0"));
+        assertThrows(IllegalArgumentException.class, () -> IndicatorSpec.parse("RSI:14:2"));
+        assertThrows(IllegalArgumentException.class, () -> IndicatorSpec.parse("BB:20:-1"));
+    }
+}
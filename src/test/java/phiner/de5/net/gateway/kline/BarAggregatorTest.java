@@ -0,0 +1,105 @@
+package phiner.de5.net.gateway.kline;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import phiner.de5.net.gateway.KLineManager;
+import phiner.de5.net.gateway.dto.BarDTO;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BarAggregatorTest {
+
+    @Mock
+    private KLineManager kLineManager;
+
+    private ArgumentCaptor<BarDTO> barCaptor;
+
+    @BeforeEach
+    public void setUp() {
+        barCaptor = ArgumentCaptor.forClass(BarDTO.class);
+    }
+
+    @Test
+    public void testTimeBarClosesOnNextBucket() {
+        BarAggregator aggregator = new BarAggregator(kLineManager, "10s");
+
+        aggregator.onTick("EUR/USD", 20_100L, 1.10000, 1.0);
+        aggregator.onTick("EUR/USD", 23_000L, 1.10020, 2.0);
+        aggregator.onTick("EUR/USD", 25_000L, 1.09990, 0.5);
+        aggregator.onTick("EUR/USD", 29_999L, 1.10010, 1.5);
+        verify(kLineManager, never()).onBar(any(), any());
+
+        aggregator.onTick("EUR/USD", 30_000L, 1.10050, 1.0);
+
+        verify(kLineManager).onBar(eq("EUR/USD"), barCaptor.capture());
+        BarDTO bar = barCaptor.getValue();
+        assertEquals("10s", bar.getPeriod());
+        assertEquals(20_000L, bar.getTime());
+        assertEquals(1.10000, bar.getOpen());
+        assertEquals(1.10020, bar.getHigh());
+        assertEquals(1.09990, bar.getLow());
+        assertEquals(1.10010, bar.getClose());
+        assertEquals(5.0, bar.getVolume(), 1e-9);
+    }
+
+    @Test
+    public void testTickCountBar() {
+        BarAggregator aggregator = new BarAggregator(kLineManager, "3t");
+
+        aggregator.onTick("EUR/USD", 1_000L, 1.1, 1.0);
+        aggregator.onTick("EUR/USD", 1_500L, 1.3, 1.0);
+        aggregator.onTick("EUR/USD", 1_700L, 1.2, 1.0);
+        aggregator.onTick("EUR/USD", 1_900L, 1.4, 1.0);
+
+        verify(kLineManager, times(1)).onBar(eq("EUR/USD"), barCaptor.capture());
+        BarDTO bar = barCaptor.getValue();
+        assertEquals("3t", bar.getPeriod());
+        assertEquals(1_000L, bar.getTime());
+        assertEquals(1.1, bar.getOpen());
+        assertEquals(1.3, bar.getHigh());
+        assertEquals(1.2, bar.getClose());
+        assertEquals(3.0, bar.getVolume(), 1e-9);
+    }
+
+    @Test
+    public void testInstrumentsAggregateIndependently() {
+        BarAggregator aggregator = new BarAggregator(kLineManager, "2m");
+
+        aggregator.onTick("EUR/USD", 0L, 1.1, 1.0);
+        aggregator.onTick("USD/JPY", 60_000L, 150.1, 1.0);
+        aggregator.onTick("EUR/USD", 120_000L, 1.2, 1.0);
+
+        verify(kLineManager).onBar(eq("EUR/USD"), barCaptor.capture());
+        verify(kLineManager, never()).onBar(eq("USD/JPY"), any());
+        assertEquals(0L, barCaptor.getValue().getTime());
+    }
+
+    @Test
+    public void testParsePeriodsSkipsStandardAndInvalid() {
+        List<CustomPeriod> periods = new BarAggregator(kLineManager, "10s, 5m, 2m, bogus, 100t, 10s").getPeriods();
+
+        assertEquals(List.of("10s", "2m", "100t"), periods.stream().map(CustomPeriod::getLabel).toList());
+        assertTrue(periods.get(2).isTickBased());
+        assertEquals(120_000L, periods.get(1).getDurationMillis());
+    }
+
+    @Test
+    public void testDisabledWithoutCustomPeriods() {
+        BarAggregator aggregator = new BarAggregator(kLineManager, "");
+
+        aggregator.onTick("EUR/USD", 1L, 1.1, 1.0);
+
+        assertFalse(aggregator.isEnabled());
+        verifyNoInteractions(kLineManager);
+    }
+}
@@ -0,0 +1,157 @@
+package phiner.de5.net.gateway.kline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import phiner.de5.net.gateway.dto.BarDTO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BarArchiveTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final List<BarArchive> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(BarArchive::close);
+    }
+
+    private BarArchive archive(boolean enabled) {
+        BarArchive archive = new BarArchive(enabled, dir.toString());
+        opened.add(archive);
+        return archive;
+    }
+
+    private static BarDTO bar(int minute, double close) {
+        return new BarDTO("EUR/USD", "1m", T0 + minute * MINUTE, 1.1, close, 1.0, 1.2, 2.5);
+    }
+
+    private static List<BarDTO> bars(int from, int to) {
+        List<BarDTO> bars = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            bars.add(bar(i, 1.1 + i * 0.00001));
+        }
+        return bars;
+    }
+
+    private static List<Long> times(List<BarDTO> bars) {
+        return bars.stream().map(BarDTO::getTime).toList();
+    }
+
+    @Test
+    public void testAppendAndRangeRead() {
+        BarArchive archive = archive(true);
+
+        assertEquals(10, archive.append(bars(0, 9)));
+
+        List<BarDTO> range = archive.range("EUR/USD", "1m", T0 + 3 * MINUTE, T0 + 5 * MINUTE, 100);
+        assertEquals(List.of(T0 + 3 * MINUTE, T0 + 4 * MINUTE, T0 + 5 * MINUTE), times(range));
+        BarDTO first = range.get(0);
+        assertEquals(1.1, first.getOpen());
+        assertEquals(1.2, first.getHigh());
+        assertEquals(1.0, first.getLow());
+        assertEquals(1.1 + 3 * 0.00001, first.getClose());
+        assertEquals(2.5, first.getVolume());
+        assertEquals("EUR/USD", first.getInstrument());
+        assertEquals("1m", first.getPeriod());
+
+        assertEquals(2, archive.range("EUR/USD", "1m", Long.MIN_VALUE, Long.MAX_VALUE, 2).size());
+        assertTrue(archive.range("EUR/USD", "5m", Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    public void testExistingTimesAreOverwrittenAndOlderGapsInserted() {
+        BarArchive archive = archive(true);
+        archive.append(List.of(bar(0, 1.1), bar(2, 1.1), bar(4, 1.1)));
+
+        archive.append(bar(4, 1.4));
+        assertEquals(2, archive.append(List.of(bar(1, 1.3), bar(2, 1.2))));
+
+        List<BarDTO> stored = archive.range("EUR/USD", "1m", Long.MIN_VALUE, Long.MAX_VALUE, 100);
+        assertEquals(List.of(T0, T0 + MINUTE, T0 + 2 * MINUTE, T0 + 4 * MINUTE), times(stored));
+        assertEquals(1.3, stored.get(1).getClose());
+        assertEquals(1.2, stored.get(2).getClose());
+        assertEquals(1.4, stored.get(3).getClose());
+    }
+
+    @Test
+    public void testBackfillAfterLiveBarsIsKeptInOrder() {
+        BarArchive archive = archive(true);
+        archive.append(bars(0, 4));
+        // 重启后实时 K 线先到，随后预加载补齐停机期间与更早的内部缺口
+        archive.append(bar(20, 1.5));
+        archive.append(bar(21, 1.5));
+        List<BarDTO> backfill = bars(5, 19);
+        backfill.add(bar(21, 1.6));
+        assertEquals(16, archive.append(backfill));
+        archive.close();
+
+        BarArchive reopened = archive(true);
+        List<BarDTO> stored = reopened.range("EUR/USD", "1m", Long.MIN_VALUE, Long.MAX_VALUE, 100);
+        assertEquals(times(bars(0, 21)), times(stored));
+        assertEquals(1.6, stored.get(21).getClose());
+    }
+
+    @Test
+    public void testAskSideIsStoredWithTheBar() {
+        BarArchive archive = archive(true);
+        archive.append(List.of(bar(0, 1.1), bar(1, 1.1).withAsk(1.1002, 1.1003, 1.0002, 1.2002)));
+
+        List<BarDTO> stored = archive.range("EUR/USD", "1m", Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        assertFalse(stored.get(0).hasAsk());
+        assertEquals(1.1002, stored.get(1).getAskOpen().doubleValue());
+        assertEquals(1.1003, stored.get(1).getAskClose().doubleValue());
+        assertEquals(1.0002, stored.get(1).getAskLow().doubleValue());
+        assertEquals(1.2002, stored.get(1).getAskHigh().doubleValue());
+    }
+
+    @Test
+    public void testGrowsAndSurvivesReopen() {
+        BarArchive archive = archive(true);
+        archive.append(bars(0, 4999));
+        archive.append(bars(5000, 5009));
+        archive.close();
+
+        BarArchive reopened = archive(true);
+        assertEquals(5010, reopened.size("EUR/USD", "1m"));
+        reopened.append(bar(5010, 1.5));
+
+        List<BarDTO> tail = reopened.range("EUR/USD", "1m", T0 + 5008 * MINUTE, Long.MAX_VALUE, 10);
+        assertEquals(List.of(T0 + 5008 * MINUTE, T0 + 5009 * MINUTE, T0 + 5010 * MINUTE), times(tail));
+        assertTrue(Files.isRegularFile(dir.resolve("EUR_USD").resolve("1m").resolve("close.col")));
+    }
+
+    @Test
+    public void testFirstTimeOfLatest() {
+        BarArchive archive = archive(true);
+        archive.append(bars(0, 9));
+
+        assertEquals(Long.valueOf(T0 + 7 * MINUTE), archive.firstTimeOfLatest("EUR/USD", "1m", Long.MAX_VALUE, 3));
+        assertEquals(Long.valueOf(T0 + 3 * MINUTE), archive.firstTimeOfLatest("EUR/USD", "1m", T0 + 5 * MINUTE, 3));
+        assertEquals(Long.valueOf(T0), archive.firstTimeOfLatest("EUR/USD", "1m", T0 + 5 * MINUTE, 100));
+        assertNull(archive.firstTimeOfLatest("EUR/USD", "1m", T0 - 1, 3));
+    }
+
+    @Test
+    public void testDisabledArchiveWritesNothing() throws IOException {
+        BarArchive archive = archive(false);
+
+        assertEquals(0, archive.append(bars(0, 3)));
+        assertTrue(archive.range("EUR/USD", "1m", Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package phiner.de5.net.gateway.kline;
+
+import com.dukascopy.api.Period;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import phiner.de5.net.gateway.KLineManager;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.service.RedisService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BarRollupTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long T0 = 1000 * DAY;
+
+    @Mock
+    private KLineManager kLineManager;
+
+    @Mock
+    private RedisService redisService;
+
+    private static BarDTO minuteBar(long time, double open, double close, double low, double high) {
+        return new BarDTO("EUR/USD", "1m", time, open, close, low, high, 1.0);
+    }
+
+    private BarRollup fiveMinutes() {
+        return new BarRollup(Period.ONE_MIN, List.of(Period.FIVE_MINS),
+                (period, time) -> time - Math.floorMod(time, period.getInterval()), kLineManager, redisService);
+    }
+
+    @Test
+    public void testLiveBucketClosesOnItsLastBaseBar() {
+        BarRollup rollup = fiveMinutes();
+        double[] highs = {1.12, 1.15, 1.13, 1.11, 1.14};
+        for (int i = 0; i < 5; i++) {
+            rollup.onBaseBar("EUR/USD", minuteBar(T0 + i * MINUTE, 1.10 + i * 0.01, 1.11 + i * 0.01, 1.09, highs[i]));
+        }
+
+        ArgumentCaptor<BarDTO> captor = ArgumentCaptor.forClass(BarDTO.class);
+        verify(kLineManager, times(1)).onBar(eq("EUR/USD"), captor.capture());
+        BarDTO derived = captor.getValue();
+        assertEquals("5m", derived.getPeriod());
+        assertEquals(T0, derived.getTime());
+        assertEquals(1.10, derived.getOpen(), 1e-9);
+        assertEquals(1.15, derived.getClose(), 1e-9);
+        assertEquals(1.15, derived.getHigh(), 1e-9);
+        assertEquals(1.09, derived.getLow(), 1e-9);
+        assertEquals(5.0, derived.getVolume(), 1e-9);
+        verifyNoInteractions(redisService);
+    }
+
+    @Test
+    public void testAskSideIsRolledUpOnlyWhenEveryBaseBarHasIt() {
+        BarRollup rollup = fiveMinutes();
+        for (int i = 0; i < 5; i++) {
+            rollup.onBaseBar("EUR/USD", minuteBar(T0 + i * MINUTE, 1.10, 1.11, 1.09, 1.12)
+                    .withAsk(1.1002 + i * 0.001, 1.1102 + i * 0.001, 1.0902 - i * 0.001, 1.1202 + i * 0.001));
+        }
+        for (int i = 5; i < 10; i++) {
+            BarDTO bar = minuteBar(T0 + i * MINUTE, 1.10, 1.11, 1.09, 1.12);
+            rollup.onBaseBar("EUR/USD", i == 7 ? bar : bar.withAsk(1.1002, 1.1102, 1.0902, 1.1202));
+        }
+
+        ArgumentCaptor<BarDTO> captor = ArgumentCaptor.forClass(BarDTO.class);
+        verify(kLineManager, times(2)).onBar(eq("EUR/USD"), captor.capture());
+        BarDTO first = captor.getAllValues().get(0);
+        assertEquals(1.1002, first.getAskOpen(), 1e-9);
+        assertEquals(1.1142, first.getAskClose(), 1e-9);
+        assertEquals(1.0862, first.getAskLow(), 1e-9);
+        assertEquals(1.1242, first.getAskHigh(), 1e-9);
+        assertFalse(captor.getAllValues().get(1).hasAsk());
+    }
+
+    @Test
+    public void testPartialBucketIsRebuiltFromStoredBaseBars() {
+        List<BarDTO> stored = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            stored.add(minuteBar(T0 + i * MINUTE, 1.0 + i, 1.5 + i, 0.5, 2.0 + i));
+        }
+        when(redisService.getKLineRange("EUR/USD", "1m", T0, T0 + 4 * MINUTE, 5)).thenReturn(stored);
+
+        BarRollup rollup = fiveMinutes();
+        // 进程在分桶中途启动，只见到后两根
+        rollup.onBaseBar("EUR/USD", minuteBar(T0 + 3 * MINUTE, 4.0, 4.5, 0.5, 5.0));
+        rollup.onBaseBar("EUR/USD", minuteBar(T0 + 4 * MINUTE, 5.0, 5.5, 0.5, 6.0));
+
+        ArgumentCaptor<BarDTO> captor = ArgumentCaptor.forClass(BarDTO.class);
+        verify(kLineManager).onBar(eq("EUR/USD"), captor.capture());
+        assertEquals(T0, captor.getValue().getTime());
+        assertEquals(1.0, captor.getValue().getOpen(), 1e-9);
+        assertEquals(5.5, captor.getValue().getClose(), 1e-9);
+        assertEquals(5.0, captor.getValue().getVolume(), 1e-9);
+    }
+
+    @Test
+    public void testHistoryGapClosesBucketAndWritesChunk() {
+        when(kLineManager.writeHistoryChunk(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        BarRollup.HistoryRollup history = fiveMinutes().newHistory("EUR/USD");
+        List<BarDTO> chunk = new ArrayList<>();
+        chunk.add(minuteBar(T0, 1.0, 1.1, 0.9, 1.2));
+        chunk.add(minuteBar(T0 + MINUTE, 1.1, 1.3, 1.0, 1.4));
+        // 缺口之后的完整分桶
+        for (int i = 10; i < 15; i++) {
+            chunk.add(minuteBar(T0 + i * MINUTE, 2.0, 2.1, 1.9, 2.2));
+        }
+        history.accept(chunk);
+        history.finish();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BarDTO>> captor = ArgumentCaptor.forClass(List.class);
+        verify(kLineManager).writeHistoryChunk(captor.capture());
+        List<BarDTO> written = captor.getValue();
+        assertEquals(2, written.size());
+        assertEquals(T0, written.get(0).getTime());
+        assertEquals(1.3, written.get(0).getClose(), 1e-9);
+        assertEquals(T0 + 10 * MINUTE, written.get(1).getTime());
+        verify(kLineManager).onHistoryLoaded("EUR/USD", "5m", 2, T0, T0 + 10 * MINUTE);
+        verify(kLineManager, never()).onBar(anyString(), any());
+    }
+
+    @Test
+    public void testHistoryEndRangeDropsOpenBucket() {
+        BarRollup.HistoryRollup history = fiveMinutes().newHistory("EUR/USD");
+        history.accept(List.of(minuteBar(T0, 1.0, 1.1, 0.9, 1.2), minuteBar(T0 + MINUTE, 1.1, 1.2, 1.0, 1.3)));
+        history.endRange();
+        history.finish();
+
+        verify(kLineManager, never()).writeHistoryChunk(anyList());
+        verify(kLineManager, never()).onHistoryLoaded(anyString(), anyString(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testDailyBucketUsesResolver() {
+        when(redisService.getKLineRange(anyString(), anyString(), anyLong(), anyLong(), anyInt())).thenReturn(List.of());
+        // 日线从 UTC 22:00 开始
+        BarRollup rollup = new BarRollup(Period.ONE_HOUR, List.of(Period.DAILY),
+                (period, time) -> time - Math.floorMod(time - 22 * HOUR, DAY), kLineManager, redisService);
+
+        rollup.onBaseBar("EUR/USD", new BarDTO("EUR/USD", "1h", T0 + 21 * HOUR, 1.0, 1.1, 0.9, 1.2, 3.0));
+
+        ArgumentCaptor<BarDTO> captor = ArgumentCaptor.forClass(BarDTO.class);
+        verify(kLineManager).onBar(eq("EUR/USD"), captor.capture());
+        assertEquals("1d", captor.getValue().getPeriod());
+        assertEquals(T0 - 2 * HOUR, captor.getValue().getTime());
+        assertEquals(1.1, captor.getValue().getClose(), 1e-9);
+    }
+
+    @Test
+    public void testDerivablePeriods() {
+        assertEquals(List.of(Period.FIVE_MINS, Period.ONE_HOUR, Period.DAILY),
+                BarRollup.derivable(Period.ONE_MIN,
+                        List.of(Period.ONE_MIN, Period.FIVE_MINS, Period.ONE_HOUR, Period.DAILY, Period.MONTHLY,
+                                Period.TEN_SECS)));
+        assertEquals(List.of(), BarRollup.derivable(Period.FOUR_HOURS, List.of(Period.DAILY, Period.ONE_HOUR)));
+    }
+}
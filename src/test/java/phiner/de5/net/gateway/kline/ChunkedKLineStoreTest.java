@@ -0,0 +1,176 @@
+package phiner.de5.net.gateway.kline;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import phiner.de5.net.gateway.dto.BarDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChunkedKLineStoreTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long T0 = 1_700_000_000_000L;
+    private static final String KEY = "gateway:kline:chunks:EUR/USD:1m";
+
+    @Mock
+    private RedisTemplate<String, byte[]> redisTemplateBytes;
+
+    @Mock
+    private HashOperations<String, String, byte[]> hashOperations;
+
+    /** 模拟 Redis 中的 Hash。 */
+    private final Map<String, byte[]> hash = new HashMap<>();
+    private final List<Map<String, byte[]>> puts = new ArrayList<>();
+    private final List<List<String>> reads = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lenient().when(redisTemplateBytes.<String, byte[]>opsForHash()).thenReturn(hashOperations);
+        lenient().when(hashOperations.entries(KEY)).thenAnswer(inv -> new HashMap<>(hash));
+        lenient().doAnswer(inv -> {
+            Map<String, byte[]> values = inv.getArgument(1);
+            hash.putAll(values);
+            puts.add(new HashMap<>(values));
+            return null;
+        }).when(hashOperations).putAll(eq(KEY), anyMap());
+        lenient().when(hashOperations.delete(eq(KEY), any(Object[].class))).thenAnswer(inv -> {
+            Object[] arguments = inv.getArguments();
+            for (int i = 1; i < arguments.length; i++) {
+                if (arguments[i] instanceof Object[] fields) {
+                    for (Object field : fields) {
+                        hash.remove(field);
+                    }
+                } else {
+                    hash.remove(arguments[i]);
+                }
+            }
+            return (long) arguments.length - 1;
+        });
+        lenient().when(hashOperations.get(eq(KEY), anyString())).thenAnswer(inv -> hash.get(inv.getArgument(1)));
+        lenient().when(hashOperations.multiGet(eq(KEY), anyCollection())).thenAnswer(inv -> {
+            Collection<String> fields = inv.getArgument(1);
+            reads.add(new ArrayList<>(fields));
+            return fields.stream().map(hash::get).toList();
+        });
+    }
+
+    private ChunkedKLineStore store(int storageLimit) {
+        return new ChunkedKLineStore(redisTemplateBytes, storageLimit, "chunked", 4);
+    }
+
+    private static BarDTO bar(int minute, double close) {
+        return new BarDTO("EUR/USD", "1m", T0 + minute * MINUTE, 1.1, close, 1.0, 1.2, 1.5);
+    }
+
+    private static List<BarDTO> bars(int from, int to) {
+        List<BarDTO> bars = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            bars.add(bar(i, 1.1));
+        }
+        return bars;
+    }
+
+    private static List<Long> times(List<BarDTO> bars) {
+        return bars.stream().map(BarDTO::getTime).toList();
+    }
+
+    private static List<Long> minutes(int from, int to) {
+        List<Long> times = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            times.add(T0 + i * MINUTE);
+        }
+        return times;
+    }
+
+    private static String field(int minute) {
+        return Long.toString(T0 + minute * MINUTE);
+    }
+
+    @Test
+    public void testAppendSealsChunksAndTrimsOldest() {
+        ChunkedKLineStore store = store(8);
+
+        for (int i = 0; i <= 12; i++) {
+            assertEquals(1, store.write(List.of(bar(i, 1.1))));
+        }
+
+        // 每块 4 根：[0-3] 超出上限后整块删除，保留 [4-7] [8-11] [12]
+        assertEquals(Set.of(field(4), field(8), field(12)), hash.keySet());
+        assertEquals(minutes(4, 12), times(store.readAll("EUR/USD", "1m")));
+
+        // 新实例从 Redis 重新载入块索引后继续追加
+        ChunkedKLineStore reloaded = store(8);
+        reloaded.write(List.of(bar(13, 1.1)));
+        assertEquals(minutes(4, 13), times(reloaded.readAll("EUR/USD", "1m")));
+        assertArrayEquals(minutes(4, 13).stream().mapToLong(Long::longValue).toArray(),
+                reloaded.times("EUR/USD", "1m"));
+    }
+
+    @Test
+    public void testBackfillRewritesOnlyAffectedChunk() {
+        ChunkedKLineStore store = store(100);
+        store.write(bars(0, 11));
+        assertEquals(3, hash.size());
+
+        store.write(List.of(bar(5, 1.15)));
+
+        assertEquals(Set.of(field(4)), puts.get(puts.size() - 1).keySet());
+        assertEquals(1.15, store.readAll("EUR/USD", "1m").get(5).getClose());
+
+        // 早于第一块的 K 线并入第一块，超出块大小时从后往前切分
+        store.write(bars(-2, -1));
+
+        assertEquals(Set.of(field(-2), field(0), field(4), field(8)), hash.keySet());
+        assertEquals(minutes(-2, 11), times(store.readAll("EUR/USD", "1m")));
+    }
+
+    @Test
+    public void testUnsortedBatchKeepsLastValueForSameTime() {
+        ChunkedKLineStore store = store(100);
+
+        store.write(List.of(bar(1, 1.1), bar(0, 1.1), bar(1, 1.13)));
+
+        List<BarDTO> stored = store.readAll("EUR/USD", "1m");
+        assertEquals(minutes(0, 1), times(stored));
+        assertEquals(1.13, stored.get(1).getClose());
+    }
+
+    @Test
+    public void testRangeAndLatestReadOnlyNeededChunks() {
+        ChunkedKLineStore store = store(100);
+        store.write(bars(0, 11));
+
+        assertEquals(minutes(5, 6), times(store.range("EUR/USD", "1m", T0 + 5 * MINUTE, T0 + 6 * MINUTE, 10)));
+        assertEquals(List.of(field(4)), reads.get(reads.size() - 1));
+
+        assertEquals(minutes(2, 4), times(store.range("EUR/USD", "1m", T0 + 2 * MINUTE, T0 + 100 * MINUTE, 3)));
+
+        assertEquals(minutes(9, 11), times(store.latest("EUR/USD", "1m", T0 + 11 * MINUTE, 3)));
+        assertEquals(List.of(field(4), field(8)), reads.get(reads.size() - 1));
+
+        assertEquals(minutes(3, 6), times(store.latest("EUR/USD", "1m", T0 + 6 * MINUTE, 4)));
+    }
+
+    @Test
+    public void testEnabledOnlyForChunkedLayout() {
+        assertTrue(store(100).isEnabled());
+        assertFalse(new ChunkedKLineStore(redisTemplateBytes, 100, "zset", 256).isEnabled());
+        assertFalse(new ChunkedKLineStore(redisTemplateBytes, 100, null, 256).isEnabled());
+    }
+}
@@ -0,0 +1,121 @@
+package phiner.de5.net.gateway.kline;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import phiner.de5.net.gateway.config.ForexProperties;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.service.RedisService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FormingBarTrackerTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Mock
+    private RedisService redisService;
+
+    private FormingBarTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        ForexProperties properties = new ForexProperties();
+        properties.setPeriods(List.of("ONE_HOUR"));
+        tracker = new FormingBarTracker(redisService, properties, true, 250, "");
+    }
+
+    @Test
+    public void testPublishesOnlyOnChange() {
+        tracker.onTick("EUR/USD", HOUR + 1_000, 1.10000, 1.0);
+        tracker.onTick("EUR/USD", HOUR + 2_000, 1.10030, 2.0);
+
+        tracker.publishDirty();
+        tracker.publishDirty();
+
+        ArgumentCaptor<BarDTO> captor = ArgumentCaptor.forClass(BarDTO.class);
+        verify(redisService, times(1)).publishFormingBar(captor.capture());
+        verify(redisService, times(1)).addBarToKLine(captor.getValue());
+        BarDTO bar = captor.getValue();
+        assertEquals("1h", bar.getPeriod());
+        assertEquals(HOUR, bar.getTime());
+        assertEquals(1.10000, bar.getOpen());
+        assertEquals(1.10030, bar.getClose());
+        assertEquals(3.0, bar.getVolume(), 1e-9);
+    }
+
+    @Test
+    public void testClosedBarIsNotOverwritten() {
+        tracker.onTick("EUR/USD", HOUR + 1_000, 1.1, 1.0);
+
+        tracker.onBarClosed(new BarDTO("EUR/USD", "1h", HOUR, 1.1, 1.1, 1.1, 1.1, 1.0));
+        // 收盘后迟到的同一分桶 Tick 不再重建该 K 线
+        tracker.onTick("EUR/USD", HOUR + 2_000, 1.2, 1.0);
+        tracker.publishDirty();
+
+        verify(redisService, never()).publishFormingBar(any());
+
+        tracker.onTick("EUR/USD", 2 * HOUR + 5, 1.3, 1.0);
+        tracker.publishDirty();
+
+        ArgumentCaptor<BarDTO> captor = ArgumentCaptor.forClass(BarDTO.class);
+        verify(redisService).publishFormingBar(captor.capture());
+        assertEquals(2 * HOUR, captor.getValue().getTime());
+    }
+
+    @Test
+    public void testBarClosedDuringWriteIsRestored() throws Exception {
+        BarDTO closed = new BarDTO("EUR/USD", "1h", HOUR, 1.1, 1.2, 1.1, 1.2, 5.0);
+        tracker.onTick("EUR/USD", HOUR + 1_000, 1.1, 1.0);
+        doAnswer(invocation -> {
+            BarDTO written = invocation.getArgument(0);
+            if (written != closed) {
+                // 写 Redis 时不持有监视器：事件通道线程可以同时收盘该分桶并继续处理 Tick
+                Thread lane = new Thread(() -> {
+                    tracker.onBarClosed(closed);
+                    tracker.onTick("EUR/USD", 2 * HOUR + 5, 1.3, 1.0);
+                });
+                lane.start();
+                lane.join(TimeUnit.SECONDS.toMillis(5));
+                assertFalse(lane.isAlive(), "lane thread blocked by the publisher");
+            }
+            return null;
+        }).when(redisService).addBarToKLine(any());
+
+        tracker.publishDirty();
+
+        // 快照可能晚于收盘 K 线落盘，补写收盘 K 线且不再推送该快照
+        verify(redisService).addBarToKLine(closed);
+        verify(redisService, never()).publishFormingBar(any());
+    }
+
+    @Test
+    public void testResolvePeriodsSkipsWeeklyAndTickBars() {
+        Map<String, Long> periods = FormingBarTracker.resolvePeriods(
+                List.of("FIVE_MINS", "WEEKLY", "DAILY"), "10s,100t");
+
+        assertEquals(List.of("5m", "1d", "10s"), List.copyOf(periods.keySet()));
+        assertEquals(10_000L, periods.get("10s"));
+    }
+
+    @Test
+    public void testDisabledWithoutPeriods() {
+        FormingBarTracker disabled = new FormingBarTracker(redisService, new ForexProperties(), true, 250, "");
+
+        disabled.onTick("EUR/USD", 1L, 1.1, 1.0);
+        disabled.publishDirty();
+
+        assertFalse(disabled.isEnabled());
+        verifyNoInteractions(redisService);
+    }
+}
@@ -0,0 +1,214 @@
+package phiner.de5.net.gateway.kline;
+
+import com.dukascopy.api.Filter;
+import com.dukascopy.api.IHistory;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.LoadingDataListener;
+import com.dukascopy.api.LoadingProgressListener;
+import com.dukascopy.api.OfferSide;
+import com.dukascopy.api.Period;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import phiner.de5.net.gateway.KLineManager;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.service.RedisService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class HistoryPreloaderTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Mock
+    private IHistory history;
+
+    @Mock
+    private KLineManager kLineManager;
+
+    @Mock
+    private RedisService redisService;
+
+    @Test
+    public void testStreamsBarsInChunksAndNotifiesOnce() throws Exception {
+        when(history.getPreviousBarStart(Period.ONE_HOUR, 10 * HOUR + 5)).thenReturn(9 * HOUR);
+        when(history.getTimeForNBarsBack(eq(Period.ONE_HOUR), eq(9 * HOUR), anyInt())).thenReturn(4 * HOUR);
+        when(kLineManager.writeHistoryChunk(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        doAnswer(invocation -> {
+            LoadingDataListener data = invocation.getArgument(6);
+            LoadingProgressListener progress = invocation.getArgument(7);
+            for (int i = 5; i <= 9; i++) {
+                data.newBar(Instrument.EURUSD, Period.ONE_HOUR, OfferSide.BID, i * HOUR, 1.1, 1.2, 1.0, 1.3, i);
+            }
+            progress.loadingFinished(true, 4 * HOUR, 9 * HOUR, 9 * HOUR);
+            return null;
+        }).when(history).readBars(eq(Instrument.EURUSD), eq(Period.ONE_HOUR), eq(OfferSide.BID), eq(Filter.WEEKENDS),
+                eq(4 * HOUR), eq(9 * HOUR), any(LoadingDataListener.class), any(LoadingProgressListener.class));
+
+        HistoryPreloader preloader = new HistoryPreloader(history, kLineManager, redisService, 3, 2, 2, false, false, null, () -> true);
+        boolean finished = preloader.preload(List.of(Instrument.EURUSD), List.of(Period.ONE_HOUR), 10 * HOUR + 5,
+                1, TimeUnit.SECONDS);
+
+        assertTrue(finished);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BarDTO>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(kLineManager, times(3)).writeHistoryChunk(chunks.capture());
+        assertEquals(List.of(2, 2, 1), chunks.getAllValues().stream().map(List::size).toList());
+        assertEquals(5 * HOUR, chunks.getAllValues().get(0).get(0).getTime());
+        assertEquals("1h", chunks.getAllValues().get(0).get(0).getPeriod());
+        verify(kLineManager).onHistoryLoaded("EUR/USD", "1h", 5, 5 * HOUR, 9 * HOUR);
+        verify(redisService, times(2)).publishInfo(anyString());
+    }
+
+    @Test
+    public void testDualSideCombinesBidAndAskOfEachRange() throws Exception {
+        when(history.getPreviousBarStart(Period.ONE_HOUR, 10 * HOUR + 5)).thenReturn(9 * HOUR);
+        when(history.getTimeForNBarsBack(eq(Period.ONE_HOUR), eq(9 * HOUR), anyInt())).thenReturn(5 * HOUR);
+        when(kLineManager.writeHistoryChunk(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        doAnswer(invocation -> {
+            OfferSide side = invocation.getArgument(2);
+            LoadingDataListener data = invocation.getArgument(6);
+            LoadingProgressListener progress = invocation.getArgument(7);
+            // 买价 5..8 点，卖价 6..9 点
+            for (int i = side == OfferSide.BID ? 5 : 6; i <= (side == OfferSide.BID ? 8 : 9); i++) {
+                double offset = side == OfferSide.BID ? 0 : 0.0002;
+                data.newBar(Instrument.EURUSD, Period.ONE_HOUR, side, i * HOUR, 1.1 + offset, 1.2 + offset,
+                        1.0 + offset, 1.3 + offset, i);
+            }
+            progress.loadingFinished(true, 5 * HOUR, 9 * HOUR, 9 * HOUR);
+            return null;
+        }).when(history).readBars(eq(Instrument.EURUSD), eq(Period.ONE_HOUR), any(OfferSide.class), eq(Filter.WEEKENDS),
+                eq(5 * HOUR), eq(9 * HOUR), any(LoadingDataListener.class), any(LoadingProgressListener.class));
+
+        HistoryPreloader preloader = new HistoryPreloader(history, kLineManager, redisService, 10, 1, 10, false, true,
+                null, () -> true);
+        assertTrue(preloader.preload(List.of(Instrument.EURUSD), List.of(Period.ONE_HOUR), 10 * HOUR + 5,
+                1, TimeUnit.SECONDS));
+
+        InOrder inOrder = inOrder(history);
+        inOrder.verify(history).readBars(any(), any(), eq(OfferSide.BID), any(), anyLong(), anyLong(), any(), any());
+        inOrder.verify(history).readBars(any(), any(), eq(OfferSide.ASK), any(), anyLong(), anyLong(), any(), any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BarDTO>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(kLineManager).writeHistoryChunk(chunks.capture());
+        List<BarDTO> bars = chunks.getValue();
+        assertEquals(List.of(5 * HOUR, 6 * HOUR, 7 * HOUR, 8 * HOUR), bars.stream().map(BarDTO::getTime).toList());
+        assertFalse(bars.get(0).hasAsk());
+        assertEquals(1.2, bars.get(1).getClose());
+        assertEquals(1.2002, bars.get(1).getAskClose().doubleValue());
+        assertEquals(6.0, bars.get(1).getVolume());
+        verify(kLineManager).onHistoryLoaded("EUR/USD", "1h", 4, 5 * HOUR, 8 * HOUR);
+    }
+
+    @Test
+    public void testDualSideReadsRangeInBoundedWindows() throws Exception {
+        when(history.getPreviousBarStart(Period.ONE_HOUR, 10 * HOUR + 5)).thenReturn(9 * HOUR);
+        when(history.getTimeForNBarsBack(eq(Period.ONE_HOUR), eq(9 * HOUR), anyInt())).thenReturn(5 * HOUR);
+        when(kLineManager.writeHistoryChunk(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        doAnswer(invocation -> {
+            OfferSide side = invocation.getArgument(2);
+            long from = invocation.getArgument(4);
+            long to = invocation.getArgument(5);
+            LoadingDataListener data = invocation.getArgument(6);
+            LoadingProgressListener progress = invocation.getArgument(7);
+            double offset = side == OfferSide.BID ? 0 : 0.0002;
+            for (long time = from + Math.floorMod(-from, HOUR); time <= to; time += HOUR) {
+                data.newBar(Instrument.EURUSD, Period.ONE_HOUR, side, time, 1.1 + offset, 1.2 + offset,
+                        1.0 + offset, 1.3 + offset, 1);
+            }
+            progress.loadingFinished(true, from, to, to);
+            return null;
+        }).when(history).readBars(eq(Instrument.EURUSD), eq(Period.ONE_HOUR), any(OfferSide.class), eq(Filter.WEEKENDS),
+                anyLong(), anyLong(), any(LoadingDataListener.class), any(LoadingProgressListener.class));
+
+        HistoryPreloader preloader = new HistoryPreloader(history, kLineManager, redisService, 10, 1, 2, false, true,
+                null, () -> true);
+        assertTrue(preloader.preload(List.of(Instrument.EURUSD), List.of(Period.ONE_HOUR), 10 * HOUR + 5,
+                1, TimeUnit.SECONDS));
+
+        // 5..9 点按每窗口 2 根切分，每个窗口先买价后卖价
+        InOrder inOrder = inOrder(history);
+        long[][] windows = {{5 * HOUR, 7 * HOUR - 1}, {7 * HOUR, 9 * HOUR - 1}, {9 * HOUR, 9 * HOUR}};
+        for (long[] window : windows) {
+            for (OfferSide side : new OfferSide[] {OfferSide.BID, OfferSide.ASK}) {
+                inOrder.verify(history).readBars(any(), any(), eq(side), any(), eq(window[0]), eq(window[1]), any(), any());
+            }
+        }
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BarDTO>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(kLineManager, times(3)).writeHistoryChunk(chunks.capture());
+        List<BarDTO> bars = chunks.getAllValues().stream().flatMap(List::stream).toList();
+        assertTrue(chunks.getAllValues().stream().allMatch(chunk -> chunk.size() <= 2));
+        assertEquals(List.of(5 * HOUR, 6 * HOUR, 7 * HOUR, 8 * HOUR, 9 * HOUR), bars.stream().map(BarDTO::getTime).toList());
+        assertTrue(bars.stream().allMatch(BarDTO::hasAsk));
+        verify(kLineManager).onHistoryLoaded("EUR/USD", "1h", 5, 5 * HOUR, 9 * HOUR);
+    }
+
+    @Test
+    public void testIncrementalPreloadRequestsOnlyMissingRanges() throws Exception {
+        when(history.getPreviousBarStart(Period.ONE_HOUR, 10 * HOUR + 5)).thenReturn(9 * HOUR);
+        when(history.getTimeForNBarsBack(eq(Period.ONE_HOUR), eq(9 * HOUR), anyInt())).thenReturn(0L);
+        // 已存储 0..6 点（缺 3 点），最新部分从 6 点开始重新获取
+        when(redisService.getKLineTimes("EUR/USD", "1h"))
+                .thenReturn(new long[] {0, HOUR, 2 * HOUR, 4 * HOUR, 5 * HOUR, 6 * HOUR});
+        doAnswer(invocation -> {
+            LoadingProgressListener progress = invocation.getArgument(7);
+            progress.loadingFinished(true, invocation.getArgument(4), invocation.getArgument(5), 0);
+            return null;
+        }).when(history).readBars(any(), any(), any(), any(), anyLong(), anyLong(), any(), any());
+
+        HistoryPreloader preloader = new HistoryPreloader(history, kLineManager, redisService, 6, 1, true, false, null, () -> true);
+        assertTrue(preloader.preload(List.of(Instrument.EURUSD), List.of(Period.ONE_HOUR), 10 * HOUR + 5,
+                1, TimeUnit.SECONDS));
+
+        InOrder inOrder = inOrder(history);
+        inOrder.verify(history).readBars(eq(Instrument.EURUSD), eq(Period.ONE_HOUR), eq(OfferSide.BID),
+                eq(Filter.WEEKENDS), eq(6 * HOUR), eq(9 * HOUR), any(), any());
+        inOrder.verify(history).readBars(eq(Instrument.EURUSD), eq(Period.ONE_HOUR), eq(OfferSide.BID),
+                eq(Filter.WEEKENDS), eq(3 * HOUR), eq(3 * HOUR), any(), any());
+        verify(history, times(2)).readBars(any(), any(), any(), any(), anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    public void testFailedRequestDoesNotBlockCompletion() throws Exception {
+        when(history.getPreviousBarStart(any(), anyLong())).thenThrow(new IllegalStateException("not connected"));
+
+        HistoryPreloader preloader = new HistoryPreloader(history, kLineManager, redisService, 100, 1, true, false, null, () -> true);
+        boolean finished = preloader.preload(List.of(Instrument.EURUSD, Instrument.GBPUSD), List.of(Period.ONE_HOUR),
+                HOUR, 1, TimeUnit.SECONDS);
+
+        assertTrue(finished);
+        verify(kLineManager, never()).writeHistoryChunk(anyList());
+        verify(kLineManager, never()).onHistoryLoaded(anyString(), anyString(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testStopJobFollowsRunningFlag() throws Exception {
+        when(history.getPreviousBarStart(any(), anyLong())).thenReturn(HOUR);
+        when(history.getTimeForNBarsBack(any(), anyLong(), anyInt())).thenReturn(0L);
+        boolean[] running = {true};
+        doAnswer(invocation -> {
+            LoadingProgressListener progress = invocation.getArgument(7);
+            assertFalse(progress.stopJob());
+            running[0] = false;
+            assertTrue(progress.stopJob());
+            progress.loadingFinished(false, 0, HOUR, 0);
+            return null;
+        }).when(history).readBars(any(), any(), any(), any(), anyLong(), anyLong(), any(), any());
+
+        HistoryPreloader preloader = new HistoryPreloader(history, kLineManager, redisService, 10, 1, false, false, null,
+                () -> running[0]);
+        assertTrue(preloader.preload(List.of(Instrument.EURUSD), List.of(Period.ONE_HOUR), HOUR,
+                1, TimeUnit.SECONDS));
+        verify(kLineManager, never()).onHistoryLoaded(anyString(), anyString(), anyInt(), anyLong(), anyLong());
+    }
+}
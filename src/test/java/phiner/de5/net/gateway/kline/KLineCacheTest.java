@@ -0,0 +1,146 @@
+package phiner.de5.net.gateway.kline;
+
+import org.junit.jupiter.api.Test;
+import phiner.de5.net.gateway.dto.BarDTO;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KLineCacheTest {
+
+    private static BarDTO bar(long time, double close) {
+        return new BarDTO("EUR/USD", "1m", time, close, close, close, close, 1.0);
+    }
+
+    @Test
+    public void testNotServedUntilWarm() {
+        KLineCache cache = new KLineCache(10, true);
+        cache.put(bar(60_000, 1.1));
+
+        assertNull(cache.getBars("EUR/USD", "1m", 10));
+        assertFalse(cache.isWarm("EUR/USD", "1m"));
+
+        cache.seed("EUR/USD", "1m", List.of());
+
+        assertTrue(cache.isWarm("EUR/USD", "1m"));
+        assertEquals(1, cache.getBars("EUR/USD", "1m", 10).size());
+    }
+
+    @Test
+    public void testAppendEvictsOldestAtCapacity() {
+        KLineCache cache = new KLineCache(3, true);
+        cache.seed("EUR/USD", "1m", List.of());
+        for (int i = 1; i <= 5; i++) {
+            cache.put(bar(i * 60_000L, i));
+        }
+
+        List<BarDTO> bars = cache.getBars("EUR/USD", "1m", 10);
+
+        assertEquals(3, bars.size());
+        assertEquals(300_000L, bars.get(0).getTime());
+        assertEquals(180_000L, bars.get(2).getTime());
+        assertEquals("1m", bars.get(0).getPeriod());
+    }
+
+    @Test
+    public void testSameTimestampReplaces() {
+        KLineCache cache = new KLineCache(3, true);
+        cache.put(bar(60_000, 1.1));
+        cache.put(bar(60_000, 1.2));
+
+        KLineCache.Columns columns = new KLineCache.Columns();
+        assertEquals(1, cache.read("EUR/USD", "1m", 10, columns));
+        assertEquals(1.2, columns.getClose()[0]);
+    }
+
+    @Test
+    public void testOutOfOrderInsertKeepsTimeOrder() {
+        KLineCache cache = new KLineCache(4, true);
+        cache.put(bar(60_000, 1));
+        cache.put(bar(240_000, 4));
+        cache.putAll(List.of(bar(120_000, 2), bar(180_000, 3)));
+
+        KLineCache.Columns columns = new KLineCache.Columns();
+        cache.read("EUR/USD", "1m", 10, columns);
+
+        assertEquals(4, columns.size());
+        assertArrayEquals(new long[] {60_000, 120_000, 180_000, 240_000}, java.util.Arrays.copyOf(columns.getTimes(), 4));
+    }
+
+    @Test
+    public void testInsertIntoFullRingEvictsOldest() {
+        KLineCache cache = new KLineCache(3, true);
+        cache.put(bar(60_000, 1));
+        cache.put(bar(180_000, 3));
+        cache.put(bar(240_000, 4));
+        cache.put(bar(120_000, 2));
+        // 比最旧的还旧，写满时丢弃
+        cache.put(bar(0, 0));
+
+        KLineCache.Columns columns = new KLineCache.Columns();
+        cache.read("EUR/USD", "1m", 10, columns);
+
+        assertEquals(3, columns.size());
+        assertArrayEquals(new long[] {120_000, 180_000, 240_000}, java.util.Arrays.copyOf(columns.getTimes(), 3));
+    }
+
+    @Test
+    public void testSeedDoesNotOverwriteNewerCachedValues() {
+        KLineCache cache = new KLineCache(5, true);
+        cache.put(bar(120_000, 2.5));
+        cache.seed("EUR/USD", "1m", List.of(bar(120_000, 2.0), bar(60_000, 1.0)));
+
+        List<BarDTO> bars = cache.getBars("EUR/USD", "1m", 5);
+
+        assertEquals(2, bars.size());
+        assertEquals(2.5, bars.get(0).getClose());
+        assertEquals(1.0, bars.get(1).getClose());
+    }
+
+    @Test
+    public void testReadReturnsNewestInAscendingOrder() {
+        KLineCache cache = new KLineCache(10, true);
+        for (int i = 1; i <= 6; i++) {
+            cache.put(bar(i * 60_000L, i));
+        }
+
+        KLineCache.Columns columns = new KLineCache.Columns();
+        assertEquals(2, cache.read("EUR/USD", "1m", 2, columns));
+        assertEquals(5.0, columns.getClose()[0]);
+        assertEquals(6.0, columns.getClose()[1]);
+        assertEquals(0, cache.read("EUR/USD", "5m", 2, columns));
+    }
+
+    @Test
+    public void testDisabledCacheStoresNothing() {
+        KLineCache cache = new KLineCache(10, false);
+        cache.put(bar(60_000, 1));
+        cache.seed("EUR/USD", "1m", List.of());
+
+        assertNull(cache.getBars("EUR/USD", "1m", 10));
+        assertEquals(0, cache.size("EUR/USD", "1m"));
+    }
+
+    @Test
+    public void testRangeAndLatestQueries() {
+        KLineCache cache = new KLineCache(10, true);
+        assertNull(cache.range("EUR/USD", "1m", 0, Long.MAX_VALUE, 10));
+        cache.seed("EUR/USD", "1m", List.of());
+        for (int i = 1; i <= 6; i++) {
+            cache.put(bar(i * 60_000L, i));
+        }
+
+        List<BarDTO> range = cache.range("EUR/USD", "1m", 90_000, 300_000, 2);
+        assertEquals(2, range.size());
+        assertEquals(120_000L, range.get(0).getTime());
+        assertEquals(180_000L, range.get(1).getTime());
+        assertEquals(0, cache.range("EUR/USD", "1m", 400_000, Long.MAX_VALUE, 5).size());
+
+        List<BarDTO> latest = cache.latest("EUR/USD", "1m", 300_000, 3);
+        assertEquals(3, latest.size());
+        assertEquals(180_000L, latest.get(0).getTime());
+        assertEquals(300_000L, latest.get(2).getTime());
+        assertEquals(0, cache.latest("EUR/USD", "1m", 30_000, 3).size());
+    }
+}
@@ -0,0 +1,120 @@
+package phiner.de5.net.gateway.kline;
+
+import org.junit.jupiter.api.Test;
+import phiner.de5.net.gateway.dto.BarDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KLineChunkCodecTest {
+
+    private static List<BarDTO> bars(int count) {
+        List<BarDTO> bars = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double open = 1.08000 + (i % 7) * 0.00013;
+            bars.add(new BarDTO("EUR/USD", "1m", 1_700_000_000_000L + i * 60_000L, open, open + 0.00005,
+                    open - 0.00021, open + 0.00034, 12.5 + i));
+        }
+        return bars;
+    }
+
+    private static void assertSameBars(List<BarDTO> expected, List<BarDTO> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            BarDTO e = expected.get(i);
+            BarDTO a = actual.get(i);
+            assertEquals(e.getTime(), a.getTime());
+            assertEquals(e.getOpen(), a.getOpen());
+            assertEquals(e.getHigh(), a.getHigh());
+            assertEquals(e.getLow(), a.getLow());
+            assertEquals(e.getClose(), a.getClose());
+            assertEquals(e.getVolume(), a.getVolume(), 1e-9);
+            assertEquals("EUR/USD", a.getInstrument());
+            assertEquals("1m", a.getPeriod());
+        }
+    }
+
+    @Test
+    public void testRoundTripWithScaledPrices() {
+        List<BarDTO> bars = new ArrayList<>();
+        for (BarDTO bar : bars(256)) {
+            // 与写入路径一致，价格已按 5 位精度规整
+            bars.add(new BarDTO(bar.getInstrument(), bar.getPeriod(), bar.getTime(),
+                    Math.round(bar.getOpen() * 1e5) / 1e5, Math.round(bar.getClose() * 1e5) / 1e5,
+                    Math.round(bar.getLow() * 1e5) / 1e5, Math.round(bar.getHigh() * 1e5) / 1e5, bar.getVolume()));
+        }
+
+        byte[] chunk = KLineChunkCodec.encode(bars, 5);
+
+        assertEquals(5, chunk[1]);
+        assertSameBars(bars, KLineChunkCodec.decode(chunk, "EUR/USD", "1m"));
+        // 差分后每根 K 线只需十几个字节
+        assertTrue(chunk.length < 256 * 16, "chunk size " + chunk.length);
+    }
+
+    @Test
+    public void testFallsBackToRawPricesWhenNotRepresentable() {
+        List<BarDTO> bars = List.of(
+                new BarDTO("EUR/USD", "1m", 60_000L, 1.0500800000000001, 1.1, 1.0, 1.2, 1.0),
+                new BarDTO("EUR/USD", "1m", 120_000L, 1.1, 1.1, 1.1, 1.1, 0.0));
+
+        byte[] chunk = KLineChunkCodec.encode(bars, 5);
+
+        assertEquals((byte) KLineChunkCodec.RAW_PRICES, chunk[1]);
+        assertSameBars(bars, KLineChunkCodec.decode(chunk, "EUR/USD", "1m"));
+    }
+
+    @Test
+    public void testAskColumnsRoundTripForMixedChunk() {
+        List<BarDTO> bars = List.of(
+                new BarDTO("EUR/USD", "1m", 60_000L, 1.05008, 1.05010, 1.05001, 1.05020, 3.0),
+                new BarDTO("EUR/USD", "1m", 120_000L, 1.05010, 1.05012, 1.05005, 1.05015, 4.0)
+                        .withAsk(1.05011, 1.05013, 1.05007, 1.05019),
+                new BarDTO("EUR/USD", "1m", 180_000L, 1.05012, 1.04990, 1.04980, 1.05012, 5.0)
+                        .withAsk(1.05014, 1.04992, 1.04983, 1.05016));
+
+        byte[] scaled = KLineChunkCodec.encode(bars, 5);
+        byte[] raw = KLineChunkCodec.encode(List.of(bars.get(1).withAsk(1.050115, 1.1, 1.0, 1.2)), 5);
+
+        assertEquals(KLineChunkCodec.VERSION_ASK, scaled[0]);
+        assertEquals(5, scaled[1]);
+        List<BarDTO> decoded = KLineChunkCodec.decode(scaled, "EUR/USD", "1m");
+        assertSameBars(bars, decoded);
+        assertFalse(decoded.get(0).hasAsk());
+        for (int i = 1; i < 3; i++) {
+            assertEquals(bars.get(i).getAskOpen(), decoded.get(i).getAskOpen());
+            assertEquals(bars.get(i).getAskHigh(), decoded.get(i).getAskHigh());
+            assertEquals(bars.get(i).getAskLow(), decoded.get(i).getAskLow());
+            assertEquals(bars.get(i).getAskClose(), decoded.get(i).getAskClose());
+        }
+        assertArrayEquals(new long[] {60_000L, 120_000L, 180_000L}, KLineChunkCodec.decodeTimes(scaled));
+
+        assertEquals((byte) KLineChunkCodec.RAW_PRICES, raw[1]);
+        assertEquals(1.050115, KLineChunkCodec.decode(raw, "EUR/USD", "1m").get(0).getAskOpen().doubleValue());
+        // 单边块保持版本 1
+        assertEquals(KLineChunkCodec.VERSION, KLineChunkCodec.encode(bars.subList(0, 1), 5)[0]);
+    }
+
+    @Test
+    public void testTimesAndCountWithoutFullDecode() {
+        List<BarDTO> bars = bars(3);
+        byte[] chunk = KLineChunkCodec.encode(bars, 12);
+
+        assertEquals(3, KLineChunkCodec.count(chunk));
+        assertArrayEquals(new long[] {1_700_000_000_000L, 1_700_000_060_000L, 1_700_000_120_000L},
+                KLineChunkCodec.decodeTimes(chunk));
+    }
+
+    @Test
+    public void testRejectsUnknownVersionAndTruncatedData() {
+        byte[] chunk = KLineChunkCodec.encode(bars(4), 5);
+        byte[] truncated = java.util.Arrays.copyOf(chunk, chunk.length - 1);
+        byte[] unknown = chunk.clone();
+        unknown[0] = 99;
+
+        assertThrows(IllegalArgumentException.class, () -> KLineChunkCodec.decode(truncated, "EUR/USD", "1m"));
+        assertThrows(IllegalArgumentException.class, () -> KLineChunkCodec.count(unknown));
+    }
+}
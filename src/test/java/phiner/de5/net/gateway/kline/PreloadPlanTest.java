@@ -0,0 +1,109 @@
+package phiner.de5.net.gateway.kline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreloadPlanTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    // 2024-01-08 00:00 UTC，周一
+    private static final long MONDAY = 1_704_672_000_000L;
+
+    private static long[] grid(long from, long to, long interval) {
+        int count = (int) ((to - from) / interval) + 1;
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = from + i * interval;
+        }
+        return times;
+    }
+
+    @Test
+    public void testEmptyStoreLoadsFullRange() {
+        List<long[]> ranges = PreloadPlan.ranges(new long[0], HOUR, MONDAY, MONDAY + 10 * HOUR, 100);
+
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[] {MONDAY, MONDAY + 10 * HOUR}, ranges.get(0));
+    }
+
+    @Test
+    public void testUpToDateStoreOnlyRefreshesNewestBar() {
+        long[] stored = grid(MONDAY, MONDAY + 9 * HOUR, HOUR);
+
+        List<long[]> ranges = PreloadPlan.ranges(stored, HOUR, MONDAY, MONDAY + 9 * HOUR, 10);
+
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[] {MONDAY + 9 * HOUR, MONDAY + 9 * HOUR}, ranges.get(0));
+    }
+
+    @Test
+    public void testFetchesOnlyMissingHeadAfterOutage() {
+        long[] stored = grid(MONDAY, MONDAY + 5 * HOUR, HOUR);
+
+        List<long[]> ranges = PreloadPlan.ranges(stored, HOUR, MONDAY, MONDAY + 9 * HOUR, 6);
+
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[] {MONDAY + 5 * HOUR, MONDAY + 9 * HOUR}, ranges.get(0));
+    }
+
+    @Test
+    public void testDetectsInternalGap() {
+        long[] stored = {MONDAY, MONDAY + HOUR, MONDAY + 4 * HOUR, MONDAY + 5 * HOUR};
+
+        List<long[]> ranges = PreloadPlan.ranges(stored, HOUR, MONDAY, MONDAY + 5 * HOUR, 4);
+
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new long[] {MONDAY + 2 * HOUR, MONDAY + 3 * HOUR}, ranges.get(1));
+    }
+
+    @Test
+    public void testWeekendIsNotAGap() {
+        long fridayEvening = MONDAY - 3 * DAY + 20 * HOUR;
+        long[] stored = {fridayEvening, MONDAY - DAY + 23 * HOUR, MONDAY};
+
+        List<long[]> ranges = PreloadPlan.ranges(stored, HOUR, fridayEvening, MONDAY, 3);
+
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[] {MONDAY, MONDAY}, ranges.get(0));
+    }
+
+    @Test
+    public void testBackfillsOlderHistoryWhenBelowLimit() {
+        long[] stored = grid(MONDAY + 5 * HOUR, MONDAY + 9 * HOUR, HOUR);
+
+        List<long[]> ranges = PreloadPlan.ranges(stored, HOUR, MONDAY, MONDAY + 9 * HOUR, 10);
+
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new long[] {MONDAY, MONDAY + 4 * HOUR}, ranges.get(1));
+    }
+
+    @Test
+    public void testManyGapsAreMergedIntoOneRange() {
+        int bars = 2 * (PreloadPlan.MAX_GAP_RANGES + 2);
+        long[] stored = new long[bars / 2];
+        for (int i = 0; i < stored.length; i++) {
+            stored[i] = MONDAY + 2L * i * (5 * 60_000L);
+        }
+        long to = stored[stored.length - 1];
+
+        List<long[]> ranges = PreloadPlan.ranges(stored, 5 * 60_000L, MONDAY, to, stored.length);
+
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new long[] {MONDAY + 5 * 60_000L, to - 5 * 60_000L}, ranges.get(1));
+    }
+
+    @Test
+    public void testIsWeekend() {
+        long friday = MONDAY - 3 * DAY;
+        assertFalse(PreloadPlan.isWeekend(friday + 20 * HOUR));
+        assertTrue(PreloadPlan.isWeekend(friday + 21 * HOUR));
+        assertTrue(PreloadPlan.isWeekend(friday + DAY + 12 * HOUR));
+        assertTrue(PreloadPlan.isWeekend(MONDAY - DAY + 22 * HOUR));
+        assertFalse(PreloadPlan.isWeekend(MONDAY - DAY + 23 * HOUR));
+        assertFalse(PreloadPlan.isWeekend(MONDAY));
+    }
+}
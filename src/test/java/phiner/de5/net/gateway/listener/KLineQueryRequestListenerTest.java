@@ -0,0 +1,75 @@
+package phiner.de5.net.gateway.listener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import phiner.de5.net.gateway.MsgpackUtil;
+import phiner.de5.net.gateway.request.KLineQueryRequest;
+import phiner.de5.net.gateway.service.KLineQueryService;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.strategy.TradingStrategy;
+
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("null")
+public class KLineQueryRequestListenerTest {
+
+    @Mock
+    private TradingStrategy tradingStrategy;
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private KLineQueryService kLineQueryService;
+
+    private KLineQueryRequestListener listener;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        listener = new KLineQueryRequestListener(tradingStrategy, redisService, kLineQueryService);
+    }
+
+    @Test
+    public void testOnMessage_success() {
+        // Given
+        byte[] body = "test body".getBytes();
+        KLineQueryRequest request = new KLineQueryRequest();
+        Message message = new DefaultMessage("channel".getBytes(), body);
+
+        try (MockedStatic<MsgpackUtil> mockedUtil = mockStatic(MsgpackUtil.class)) {
+            mockedUtil.when(() -> MsgpackUtil.decode(body, KLineQueryRequest.class)).thenReturn(request);
+
+            // When
+            listener.onMessage(message, null);
+
+            // Then
+            verify(kLineQueryService).handle(request);
+            verifyNoInteractions(tradingStrategy);
+        }
+    }
+
+    @Test
+    public void testOnMessage_exception() {
+        // Given
+        byte[] body = "test body".getBytes();
+        Message message = new DefaultMessage("channel".getBytes(), body);
+
+        try (MockedStatic<MsgpackUtil> mockedUtil = mockStatic(MsgpackUtil.class)) {
+            mockedUtil.when(() -> MsgpackUtil.decode(body, KLineQueryRequest.class))
+                    .thenThrow(new RuntimeException("Test RuntimeException"));
+
+            // When
+            listener.onMessage(message, null);
+
+            // Then
+            verifyNoInteractions(kLineQueryService);
+            verify(redisService).publishError(anyString());
+        }
+    }
+}
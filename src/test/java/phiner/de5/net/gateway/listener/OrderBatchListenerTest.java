@@ -0,0 +1,73 @@
+package phiner.de5.net.gateway.listener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import phiner.de5.net.gateway.MsgpackUtil;
+import phiner.de5.net.gateway.request.BatchOrderRequest;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.strategy.TradingStrategy;
+
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("null")
+public class OrderBatchListenerTest {
+
+    @Mock
+    private TradingStrategy tradingStrategy;
+
+    @Mock
+    private RedisService redisService;
+
+    private OrderBatchListener listener;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        listener = new OrderBatchListener(tradingStrategy, redisService);
+    }
+
+    @Test
+    public void testOnMessage_success() throws Exception {
+        byte[] body = "test body".getBytes();
+        BatchOrderRequest request = new BatchOrderRequest();
+        Message message = new DefaultMessage("channel".getBytes(), body);
+
+        try (MockedStatic<MsgpackUtil> mockedUtil = mockStatic(MsgpackUtil.class)) {
+            mockedUtil.when(() -> MsgpackUtil.decode(body, BatchOrderRequest.class)).thenReturn(request);
+            listener.onMessage(message, null);
+            verify(tradingStrategy).submitOrderBatch(eq(request), anyLong());
+            verifyNoInteractions(redisService);
+        }
+    }
+
+    @Test
+    public void testOnMessage_exception() {
+        byte[] body = "test body".getBytes();
+        Message message = new DefaultMessage("channel".getBytes(), body);
+
+        try (MockedStatic<MsgpackUtil> mockedUtil = mockStatic(MsgpackUtil.class)) {
+            mockedUtil.when(() -> MsgpackUtil.decode(body, BatchOrderRequest.class)).thenThrow(new RuntimeException("Test RuntimeException"));
+            listener.onMessage(message, null);
+            verifyNoInteractions(tradingStrategy);
+            verify(redisService).publishError(anyString());
+        }
+    }
+
+    @Test
+    public void testOnMessage_nullRequest() {
+        byte[] body = "test body".getBytes();
+        Message message = new DefaultMessage("channel".getBytes(), body);
+
+        try (MockedStatic<MsgpackUtil> mockedUtil = mockStatic(MsgpackUtil.class)) {
+            mockedUtil.when(() -> MsgpackUtil.decode(body, BatchOrderRequest.class)).thenReturn(null);
+            listener.onMessage(message, null);
+            verifyNoInteractions(tradingStrategy);
+            verifyNoInteractions(redisService);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package phiner.de5.net.gateway.listener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import phiner.de5.net.gateway.service.RedisService;
+import phiner.de5.net.gateway.strategy.TradingStrategy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings({"null", "unchecked"})
+public class OrderStreamConsumerTest {
+
+    private static final String KEY = "gateway:order:stream";
+    private static final String GROUP = "gateway";
+
+    @Mock
+    private RedisTemplate<String, byte[]> redisTemplateBytes;
+
+    @Mock
+    private StreamOperations<String, String, byte[]> streamOperations;
+
+    @Mock
+    private TradingStrategy tradingStrategy;
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private OrderOpenListener orderOpenListener;
+
+    @Mock
+    private OrderSubmitListener orderSubmitListener;
+
+    @Mock
+    private OrderModifyListener orderModifyListener;
+
+    @Mock
+    private OrderCloseListener orderCloseListener;
+
+    @Mock
+    private OrderCancelListener orderCancelListener;
+
+    @Mock
+    private OrderBatchListener orderBatchListener;
+
+    private OrderStreamConsumer consumer;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplateBytes.<String, byte[]>opsForStream()).thenReturn(streamOperations);
+        consumer = new OrderStreamConsumer(redisTemplateBytes, tradingStrategy, redisService, orderOpenListener,
+                orderSubmitListener, orderModifyListener, orderCloseListener, orderCancelListener, orderBatchListener);
+        ReflectionTestUtils.setField(consumer, "streamKey", KEY);
+        ReflectionTestUtils.setField(consumer, "group", GROUP);
+        ReflectionTestUtils.setField(consumer, "consumerName", "gateway-1");
+        ReflectionTestUtils.setField(consumer, "batchSize", 2);
+        ReflectionTestUtils.setField(consumer, "blockMillis", 10L);
+        ReflectionTestUtils.setField(consumer, "reclaimMinIdleMillis", 60_000L);
+    }
+
+    private static MapRecord<String, String, byte[]> entry(String id, String type, byte[] body) {
+        return StreamRecords.newRecord().in(KEY).withId(RecordId.of(id))
+                .ofMap(Map.of(OrderStreamConsumer.FIELD_TYPE, type.getBytes(), OrderStreamConsumer.FIELD_DATA, body));
+    }
+
+    private static StreamOffset<String> offset(String offset) {
+        return argThat(streamOffset -> streamOffset != null && offset.equals(streamOffset.getOffset().getOffset()));
+    }
+
+    @Test
+    public void testPollDispatchesBatchAndAcksOnce() {
+        byte[] open = "open".getBytes();
+        byte[] cancel = "cancel".getBytes();
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), offset(">")))
+                .thenReturn(List.of(entry("1-0", "open", open), entry("2-0", "cancel", cancel)));
+
+        assertEquals(2, consumer.pollOnce());
+
+        verify(orderOpenListener).handle(open);
+        verify(orderCancelListener).handle(cancel);
+        verify(streamOperations, times(1)).acknowledge(KEY, GROUP, RecordId.of("1-0"), RecordId.of("2-0"));
+        verifyNoInteractions(redisService);
+    }
+
+    @Test
+    public void testUnknownTypeIsReportedAndAcked() {
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), offset(">")))
+                .thenReturn(List.of(entry("3-0", "unknown", new byte[]{1})));
+
+        assertEquals(1, consumer.pollOnce());
+
+        verify(redisService).publishError(contains("3-0"));
+        verify(streamOperations).acknowledge(KEY, GROUP, RecordId.of("3-0"));
+        verifyNoInteractions(orderOpenListener, orderSubmitListener, orderModifyListener, orderCloseListener,
+                orderCancelListener);
+    }
+
+    @Test
+    public void testEmptyReadAcksNothing() {
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), offset(">")))
+                .thenReturn(List.of());
+
+        assertEquals(0, consumer.pollOnce());
+
+        verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    public void testReclaimReplaysOwnPendingThenClaimsIdleEntriesOfOtherConsumers() {
+        byte[] modify = "modify".getBytes();
+        byte[] submit = "submit".getBytes();
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), offset("0")))
+                .thenReturn(List.of(entry("1-0", "modify", modify)), List.of());
+        PendingMessages pending = new PendingMessages(GROUP, List.of(
+                new PendingMessage(RecordId.of("2-0"), Consumer.from(GROUP, "gateway-2"), Duration.ofMinutes(5), 1),
+                new PendingMessage(RecordId.of("4-0"), Consumer.from(GROUP, "gateway-3"), Duration.ofSeconds(1), 1)));
+        when(streamOperations.pending(eq(KEY), eq(GROUP), any(Range.class), eq(2L)))
+                .thenReturn(pending, new PendingMessages(GROUP, List.of()));
+        when(streamOperations.claim(eq(KEY), eq(GROUP), eq("gateway-1"), any(Duration.class), eq(RecordId.of("2-0"))))
+                .thenReturn(List.of(entry("2-0", "submit", submit)));
+
+        assertEquals(2, consumer.reclaimPending());
+
+        verify(orderModifyListener).handle(modify);
+        verify(orderSubmitListener).handle(submit);
+        verify(streamOperations).acknowledge(KEY, GROUP, RecordId.of("1-0"));
+        verify(streamOperations).acknowledge(KEY, GROUP, RecordId.of("2-0"));
+    }
+
+    @Test
+    public void testExistingGroupIsReused() {
+        when(streamOperations.createGroup(eq(KEY), any(ReadOffset.class), eq(GROUP)))
+                .thenThrow(new IllegalStateException("BUSYGROUP Consumer Group name already exists"));
+
+        assertDoesNotThrow(() -> consumer.ensureGroup());
+    }
+}
@@ -40,7 +40,7 @@ public class OrderSubmitListenerTest {
         try (MockedStatic<MsgpackUtil> mockedUtil = mockStatic(MsgpackUtil.class)) {
             mockedUtil.when(() -> MsgpackUtil.decode(body, SubmitOrderRequest.class)).thenReturn(request);
             listener.onMessage(message, null);
-            verify(tradingStrategy).submitOrder(request);
+            verify(tradingStrategy).submitOrder(eq(request), anyLong());
             verifyNoInteractions(redisService);
         }
     }
@@ -0,0 +1,120 @@
+package phiner.de5.net.gateway.service;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ForexTickProducerTest {
+
+    @Mock
+    private RedisConnectionFactory connectionFactory;
+
+    @Mock
+    private RedisAsyncCommands<byte[], byte[]> asyncCommands;
+
+    @Mock
+    private RedisFuture<String> future;
+
+    private ForexTickProducer producer;
+
+    @BeforeEach
+    public void setUp() {
+        producer = new ForexTickProducer(connectionFactory);
+        when(asyncCommands.xadd(any(byte[].class), any(), anyMap())).thenReturn(future);
+    }
+
+    @Test
+    public void testSendTickAsync_autoFlushModeDoesNotFlushManually() {
+        producer.setAsyncCommandsForTest(asyncCommands);
+
+        producer.sendTickAsync("EUR/USD", 1L, 1.1, 1.2, 1.0, 1.0);
+
+        verify(asyncCommands).xadd(any(byte[].class), any(), anyMap());
+        verify(asyncCommands, never()).flushCommands();
+    }
+
+    @Test
+    public void testSendTickAsync_flushesWhenBatchIsFull() {
+        producer.setAsyncCommandsForTest(asyncCommands, 3);
+
+        producer.sendTickAsync("EUR/USD", 1L, 1.1, 1.2, 1.0, 1.0);
+        producer.sendTickAsync("EUR/USD", 2L, 1.1, 1.2, 1.0, 1.0);
+        verify(asyncCommands, never()).flushCommands();
+
+        producer.sendTickAsync("GBP/USD", 3L, 1.3, 1.4, 1.0, 1.0);
+
+        verify(asyncCommands, times(3)).xadd(any(byte[].class), any(), anyMap());
+        verify(asyncCommands, times(1)).flushCommands();
+        assertEquals(1, producer.getFlushSizeHistogram().getCount());
+        assertEquals(3, producer.getFlushSizeHistogram().getMax());
+    }
+
+    @Test
+    public void testFlushPending_writesPartialBatchOnce() {
+        producer.setAsyncCommandsForTest(asyncCommands, 64);
+
+        producer.sendTickAsync("EUR/USD", 1L, 1.1, 1.2, 1.0, 1.0);
+        producer.sendTickAsync("EUR/USD", 2L, 1.1, 1.2, 1.0, 1.0);
+        producer.flushPending();
+        producer.flushPending();
+
+        verify(asyncCommands, times(1)).flushCommands();
+        assertEquals(2, producer.getFlushSizeHistogram().getMax());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConflation_keepsLatestQuoteAndDrainsWhenWriterCatchesUp() {
+        List<BiFunction<Object, Throwable, Object>> completions = new ArrayList<>();
+        when(future.handle(any())).thenAnswer(invocation -> {
+            completions.add(invocation.getArgument(0));
+            return null;
+        });
+        producer.setAsyncCommandsForTest(asyncCommands);
+        producer.enableConflationForTest(2, 4);
+
+        producer.sendTickAsync("EUR/USD", 1L, 1.1, 1.2, 1.0, 1.0);
+        producer.sendTickAsync("EUR/USD", 2L, 1.1, 1.2, 1.0, 1.0);
+        // 两条写入未完成，达到积压阈值：后续 Tick 只保留最新一笔
+        producer.sendTickAsync("EUR/USD", 3L, 1.1, 1.2, 1.0, 1.0);
+        producer.sendTickAsync("EUR/USD", 4L, 1.3, 1.4, 1.0, 1.0);
+
+        verify(asyncCommands, times(2)).xadd(any(byte[].class), any(), anyMap());
+        TickConflator conflator = producer.getConflator();
+        assertEquals(2, conflator.getDeferredTickCount());
+        assertEquals(1, conflator.getConflatedTickCount());
+        assertEquals(1, conflator.getPendingCount());
+
+        // 第一条写入完成后积压回落到阈值一半：应答回调运行在 IO 线程上，只唤醒刷新线程，不直接写入
+        completions.get(0).apply("1-0", null);
+        verify(asyncCommands, times(2)).xadd(any(byte[].class), any(), anyMap());
+        assertEquals(1, conflator.getPendingCount());
+
+        // 刷新线程补发暂存的最新报价
+        producer.drainConflated();
+
+        ArgumentCaptor<Map<byte[], byte[]>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(asyncCommands, times(3)).xadd(any(byte[].class), any(), captor.capture());
+        byte[] time = captor.getValue().get(TickStreamEncoder.FIELD_T);
+        assertEquals("4", new String(time, StandardCharsets.UTF_8));
+        assertEquals(0, conflator.getPendingCount());
+    }
+}
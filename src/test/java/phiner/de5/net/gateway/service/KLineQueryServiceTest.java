@@ -0,0 +1,166 @@
+package phiner.de5.net.gateway.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import phiner.de5.net.gateway.dto.BarDTO;
+import phiner.de5.net.gateway.dto.KLinePageDTO;
+import phiner.de5.net.gateway.kline.BarArchive;
+import phiner.de5.net.gateway.request.KLineQueryRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class KLineQueryServiceTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private BarArchive barArchive;
+
+    private KLineQueryService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = new KLineQueryService(redisService, barArchive, 100);
+    }
+
+    private static List<BarDTO> bars(long fromMinute, int count) {
+        List<BarDTO> bars = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long time = (fromMinute + i) * MINUTE;
+            bars.add(new BarDTO("EUR/USD", "1m", time, 1.1, 1.1, 1.1, 1.1, 1));
+        }
+        return bars;
+    }
+
+    private List<KLinePageDTO> publishedPages(int expected) {
+        ArgumentCaptor<KLinePageDTO> captor = ArgumentCaptor.forClass(KLinePageDTO.class);
+        verify(redisService, times(expected)).publishKLinePage(captor.capture(), eq("req-1"));
+        return captor.getAllValues();
+    }
+
+    @Test
+    public void testRangeQueryIsReadPageByPage() {
+        when(redisService.getKLineRange("EUR/USD", "1m", 0L, 10 * MINUTE, 3)).thenReturn(bars(0, 3));
+        when(redisService.getKLineRange("EUR/USD", "1m", MINUTE + 1, 10 * MINUTE, 3)).thenReturn(bars(2, 2));
+
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "ONE_MIN", 0L, 10 * MINUTE, null, null, 2, null));
+
+        List<KLinePageDTO> pages = publishedPages(2);
+        assertEquals(2, pages.get(0).getBars().size());
+        assertFalse(pages.get(0).isLast());
+        assertEquals(Long.valueOf(MINUTE), pages.get(0).getNextCursor());
+        assertEquals(2, pages.get(1).getBars().size());
+        assertTrue(pages.get(1).isLast());
+        assertEquals(Long.valueOf(3 * MINUTE), pages.get(1).getNextCursor());
+        assertEquals("1m", pages.get(1).getPeriod());
+    }
+
+    @Test
+    public void testCursorExcludesAlreadyDeliveredBars() {
+        when(redisService.getKLineRange("EUR/USD", "1m", 5 * MINUTE + 1, Long.MAX_VALUE, 101)).thenReturn(bars(6, 1));
+
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", null, null, null, 5 * MINUTE, 500, null));
+
+        KLinePageDTO page = publishedPages(1).get(0);
+        assertTrue(page.isLast());
+        assertEquals(Long.valueOf(6 * MINUTE), page.getNextCursor());
+    }
+
+    @Test
+    public void testLatestCountIsPaged() {
+        when(redisService.getLatestKLine("EUR/USD", "1m", Long.MAX_VALUE, 5)).thenReturn(bars(10, 5));
+
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", null, null, 5, null, 2, null));
+
+        List<KLinePageDTO> pages = publishedPages(3);
+        assertEquals(List.of(2, 2, 1), pages.stream().map(page -> page.getBars().size()).toList());
+        assertTrue(pages.get(2).isLast());
+        assertEquals(Long.valueOf(14 * MINUTE), pages.get(2).getNextCursor());
+        verify(redisService, never()).getKLineRange(anyString(), anyString(), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testEmptyResultStillSendsLastPage() {
+        when(redisService.getKLineRange(anyString(), anyString(), anyLong(), anyLong(), anyInt())).thenReturn(List.of());
+
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", 0L, MINUTE, null, null, null, null));
+
+        KLinePageDTO page = publishedPages(1).get(0);
+        assertTrue(page.isLast());
+        assertTrue(page.getBars().isEmpty());
+        assertNull(page.getError());
+    }
+
+    @Test
+    public void testInvalidRequestRepliesWithError() {
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", 10L, 5L, null, null, null, null));
+
+        KLinePageDTO page = publishedPages(1).get(0);
+        assertTrue(page.isLast());
+        assertNotNull(page.getError());
+        verify(redisService, never()).getKLineRange(anyString(), anyString(), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testArchiveRangeIsNotCappedByStorageLimit() {
+        when(barArchive.isEnabled()).thenReturn(true);
+        when(barArchive.range("EUR/USD", "1m", 0L, Long.MAX_VALUE, 101)).thenReturn(bars(0, 101));
+        when(barArchive.range("EUR/USD", "1m", 99 * MINUTE + 1, Long.MAX_VALUE, 51)).thenReturn(bars(100, 50));
+
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", 0L, null, 150, null, 100, "archive"));
+
+        List<KLinePageDTO> pages = publishedPages(2);
+        assertEquals(100, pages.get(0).getBars().size());
+        assertEquals(50, pages.get(1).getBars().size());
+        assertTrue(pages.get(1).isLast());
+        verify(redisService, never()).getKLineRange(anyString(), anyString(), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testArchiveLatestCountIsReadAsRange() {
+        when(barArchive.isEnabled()).thenReturn(true);
+        when(barArchive.firstTimeOfLatest("EUR/USD", "1m", Long.MAX_VALUE, 3)).thenReturn(7 * MINUTE);
+        when(barArchive.range("EUR/USD", "1m", 7 * MINUTE, Long.MAX_VALUE, 4)).thenReturn(bars(7, 3));
+
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", null, null, 3, null, 3, " ARCHIVE "));
+
+        KLinePageDTO page = publishedPages(1).get(0);
+        assertTrue(page.isLast());
+        assertEquals(Long.valueOf(9 * MINUTE), page.getNextCursor());
+        verify(redisService, never()).getLatestKLine(anyString(), anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testArchiveSourceRejectedWhenDisabled() {
+        when(barArchive.isEnabled()).thenReturn(false);
+
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", 0L, null, null, null, null, "archive"));
+        service.handle(new KLineQueryRequest("req-1", "EUR/USD", "1m", 0L, null, null, null, null, "disk"));
+
+        List<KLinePageDTO> pages = publishedPages(2);
+        assertEquals("K-line archive is disabled", pages.get(0).getError());
+        assertEquals("source must be redis or archive", pages.get(1).getError());
+        verify(barArchive, never()).range(anyString(), anyString(), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testMissingRequestIdPublishesError() {
+        service.handle(new KLineQueryRequest(null, "EUR/USD", "1m", null, null, 10, null, null, null));
+
+        verify(redisService).publishError(anyString());
+        verify(redisService, never()).publishKLinePage(any(), anyString());
+    }
+}
@@ -8,6 +8,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.HashOperations;
@@ -15,9 +20,12 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.test.util.ReflectionTestUtils;
 import phiner.de5.net.gateway.MsgpackUtil;
 import phiner.de5.net.gateway.dto.*;
+import phiner.de5.net.gateway.kline.ChunkedKLineStore;
+import phiner.de5.net.gateway.kline.KLineCache;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -49,11 +57,15 @@ public class RedisServiceTest {
 
     private RedisService redisService;
 
+    private KLineCache kLineCache;
+
     private MockedStatic<MsgpackUtil> mockedUtil;
 
     @BeforeEach
     public void setUp() {
-        redisService = new RedisService(redisTemplateBytes, redisTemplateString);
+        kLineCache = new KLineCache(100, true);
+        redisService = new RedisService(redisTemplateBytes, redisTemplateString, kLineCache,
+                new ChunkedKLineStore(redisTemplateBytes, 100, "zset", 256));
         ReflectionTestUtils.setField(redisService, "klineStorageLimit", 100);
         mockedUtil = Mockito.mockStatic(MsgpackUtil.class);
     }
@@ -65,10 +77,6 @@ public class RedisServiceTest {
 
     @Test
     public void testAddBarToKLine_Success() {
-        when(redisTemplateBytes.opsForZSet()).thenReturn(zSetOperationsBytes);
-        // Mock type check to not be LIST
-        when(redisTemplateBytes.type(anyString())).thenReturn(org.springframework.data.redis.connection.DataType.NONE);
-
         BarDTO bar = new BarDTO("EUR/USD", "ONE_MIN", iBar);
         byte[] barData = "mocked-bar-data".getBytes();
         String expectedKey = "gateway:kline:EUR/USD:1m";
@@ -76,13 +84,90 @@ public class RedisServiceTest {
 
         redisService.addBarToKLine(bar);
 
-        double score = bar.getTime();
-        // 1. Verify removeRangeByScore for deduplication
-        verify(zSetOperationsBytes).removeRangeByScore(expectedKey, score, score);
-        // 2. Verify add to ZSET
-        verify(zSetOperationsBytes).add(expectedKey, barData, score);
-        // 3. Verify trim (removeRange)
-        verify(zSetOperationsBytes).removeRange(expectedKey, 0, -101);
+        // 迁移检查、去重替换与修剪通过一次脚本调用完成
+        verify(redisTemplateBytes).execute(
+                eq(RedisService.UPSERT_BAR_SCRIPT),
+                eq(Collections.singletonList(expectedKey)),
+                aryEq(barData),
+                aryEq(String.valueOf(bar.getTime()).getBytes()),
+                aryEq("100".getBytes()));
+        verify(redisTemplateBytes, never()).opsForZSet();
+        verify(redisTemplateBytes, never()).type(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddBarsToKLine_singlePipelinedTransaction() {
+        BarDTO bar1 = new BarDTO("EUR/USD", "5m", 1_000L, 1.1, 1.2, 1.0, 1.3, 10);
+        BarDTO bar2 = new BarDTO("EUR/USD", "5m", 301_000L, 1.2, 1.3, 1.1, 1.4, 12);
+        mockedUtil.when(() -> MsgpackUtil.encode(bar1)).thenReturn("bar-1".getBytes());
+        mockedUtil.when(() -> MsgpackUtil.encode(bar2)).thenReturn("bar-2".getBytes());
+        when(redisTemplateBytes.type("gateway:kline:EUR/USD:5m")).thenReturn(DataType.ZSET);
+        kLineCache.seed("EUR/USD", "5m", Collections.emptyList());
+
+        int written = redisService.addBarsToKLine(List.of(bar1, bar2));
+
+        assertEquals(2, written);
+        ArgumentCaptor<RedisCallback<Object>> callbackCaptor = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplateBytes).executePipelined(callbackCaptor.capture());
+        verify(redisTemplateBytes, never()).convertAndSend(anyString(), any());
+
+        // 在模拟连接上执行管道回调，验证命令序列
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisZSetCommands zSetCommands = mock(RedisZSetCommands.class);
+        when(connection.zSetCommands()).thenReturn(zSetCommands);
+        callbackCaptor.getValue().doInRedis(connection);
+
+        byte[] rawKey = "gateway:kline:EUR/USD:5m".getBytes();
+        ArgumentCaptor<Set<Tuple>> tuplesCaptor = ArgumentCaptor.forClass(Set.class);
+        InOrder inOrder = inOrder(connection, zSetCommands);
+        inOrder.verify(connection).multi();
+        // 只移除本批次的时间戳，不删除两者之间已存储的其他 K 线
+        inOrder.verify(zSetCommands).zRemRangeByScore(aryEq(rawKey), eq(1_000.0), eq(1_000.0));
+        inOrder.verify(zSetCommands).zRemRangeByScore(aryEq(rawKey), eq(301_000.0), eq(301_000.0));
+        inOrder.verify(zSetCommands).zAdd(aryEq(rawKey), tuplesCaptor.capture());
+        inOrder.verify(zSetCommands).zRemRange(aryEq(rawKey), eq(0L), eq(-101L));
+        inOrder.verify(connection).exec();
+        assertEquals(2, tuplesCaptor.getValue().size());
+        verify(zSetCommands, never()).zRemRangeByScore(any(byte[].class), eq(1_000.0), eq(301_000.0));
+        assertEquals(2, kLineCache.getBars("EUR/USD", "5m", 10).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddBarsToKLine_failedTransactionLeavesCacheUntouched() {
+        BarDTO bar = new BarDTO("EUR/USD", "5m", 1_000L, 1.1, 1.2, 1.0, 1.3, 10);
+        mockedUtil.when(() -> MsgpackUtil.encode(bar)).thenReturn("bar-1".getBytes());
+        when(redisTemplateBytes.type("gateway:kline:EUR/USD:5m")).thenReturn(DataType.ZSET);
+        when(redisTemplateBytes.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RuntimeException("EXEC failed"));
+        kLineCache.seed("EUR/USD", "5m", Collections.emptyList());
+
+        assertEquals(0, redisService.addBarsToKLine(List.of(bar)));
+        assertTrue(kLineCache.getBars("EUR/USD", "5m", 10).isEmpty());
+    }
+
+    @Test
+    public void testGetKLineTimes_parsesScoresOnly() {
+        String key = "gateway:kline:EUR/USD:5m";
+        when(redisTemplateBytes.execute(eq(RedisService.KLINE_TIMES_SCRIPT), eq(Collections.singletonList(key))))
+                .thenReturn("1000,301000".getBytes());
+
+        assertArrayEquals(new long[] {1_000L, 301_000L}, redisService.getKLineTimes("EUR/USD", "5m"));
+    }
+
+    @Test
+    public void testGetKLineTimes_failureFallsBackToEmpty() {
+        when(redisTemplateBytes.execute(eq(RedisService.KLINE_TIMES_SCRIPT), anyList()))
+                .thenThrow(new RuntimeException("connection refused"));
+
+        assertEquals(0, redisService.getKLineTimes("EUR/USD", "5m").length);
+    }
+
+    @Test
+    public void testAddBarsToKLine_emptyListIsNoop() {
+        assertEquals(0, redisService.addBarsToKLine(Collections.emptyList()));
+        verifyNoInteractions(redisTemplateBytes);
     }
 
     @Test
@@ -129,6 +214,48 @@ public class RedisServiceTest {
         assertEquals(expectedBar, result.get(0));
     }
 
+    @Test
+    public void testGetKLine_servedFromCacheOnceWarm() {
+        String expectedKey = "gateway:kline:EUR/USD:5m";
+        byte[] barData = "mocked-bar-data".getBytes();
+        BarDTO stored = new BarDTO("EUR/USD", "5m", 1_000L, 1.1, 1.2, 1.0, 1.3, 10);
+        when(redisTemplateBytes.opsForZSet()).thenReturn(zSetOperationsBytes);
+        when(zSetOperationsBytes.reverseRange(expectedKey, 0, -1))
+                .thenReturn(new java.util.LinkedHashSet<>(Collections.singletonList(barData)));
+        mockedUtil.when(() -> MsgpackUtil.decode(barData, BarDTO.class)).thenReturn(stored);
+
+        assertEquals(1, redisService.getKLine("EUR/USD", "5m").size());
+
+        // 预热后新写入的 K 线同时进入缓存，读取不再访问 Redis
+        BarDTO live = new BarDTO("EUR/USD", "5m", 301_000L, 1.2, 1.3, 1.1, 1.4, 12);
+        mockedUtil.when(() -> MsgpackUtil.encode(live)).thenReturn("live".getBytes());
+        redisService.addBarToKLine(live);
+        List<BarDTO> result = redisService.getKLine("EUR/USD", "5m");
+
+        verify(zSetOperationsBytes, times(1)).reverseRange(expectedKey, 0, -1);
+        assertEquals(2, result.size());
+        assertEquals(301_000L, result.get(0).getTime());
+        assertEquals(1_000L, result.get(1).getTime());
+        assertEquals(1.3, result.get(1).getHigh());
+    }
+
+    @Test
+    public void testGetKLineRange_usesLimitedRangeByScoreWhenCacheCold() {
+        String expectedKey = "gateway:kline:EUR/USD:5m";
+        byte[] barData = "mocked-bar-data".getBytes();
+        BarDTO stored = new BarDTO("EUR/USD", "5m", 1_000L, 1.1, 1.2, 1.0, 1.3, 10);
+        when(redisTemplateBytes.opsForZSet()).thenReturn(zSetOperationsBytes);
+        when(zSetOperationsBytes.rangeByScore(expectedKey, 0.0, 5_000.0, 0L, 10L))
+                .thenReturn(new java.util.LinkedHashSet<>(Collections.singletonList(barData)));
+        mockedUtil.when(() -> MsgpackUtil.decode(barData, BarDTO.class)).thenReturn(stored);
+
+        List<BarDTO> result = redisService.getKLineRange("EUR/USD", "5m", 0L, 5_000L, 10);
+
+        assertEquals(1, result.size());
+        assertSame(stored, result.get(0));
+        verify(zSetOperationsBytes, never()).reverseRange(anyString(), anyLong(), anyLong());
+    }
+
     @Test
     public void testGetKLine_EmptyList() {
         String instrument = "EUR/USD";
@@ -157,6 +284,17 @@ public class RedisServiceTest {
         verify(redisTemplateBytes).convertAndSend(expectedChannel, barData);
     }
 
+    @Test
+    public void testPublishFormingBar() {
+        BarDTO bar = new BarDTO("GBP/USD", "1h", 3_600_000L, 1.25, 1.26, 1.24, 1.27, 10.0);
+        byte[] barData = "mocked-forming-bar-data".getBytes();
+        mockedUtil.when(() -> MsgpackUtil.encode(bar)).thenReturn(barData);
+
+        redisService.publishFormingBar(bar);
+
+        verify(redisTemplateBytes).convertAndSend("gateway:kline:forming:GBP/USD:1h", barData);
+    }
+
     @Test
     public void testPublishAccountStatus() {
         double balance = 10000.0;
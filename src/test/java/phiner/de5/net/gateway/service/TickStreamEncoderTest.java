@@ -0,0 +1,102 @@
+package phiner.de5.net.gateway.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TickStreamEncoderTest {
+
+    @Test
+    public void testEncodeMatchesLegacyTextFormat() {
+        TickStreamEncoder encoder = new TickStreamEncoder();
+
+        Map<byte[], byte[]> fields = encoder.encode(1700000000000L, 1.05008, 1.05012, 2.5, 1.5, 5);
+
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) {
+            keys.add(new String(entry.getKey(), StandardCharsets.UTF_8));
+            values.add(new String(entry.getValue(), StandardCharsets.UTF_8));
+        }
+        assertEquals(List.of("t", "b", "a", "bv", "av"), keys);
+        assertEquals(List.of("1700000000000", "1.05008", "1.05012", "2.5", "1.5"), values);
+    }
+
+    @Test
+    public void testEncodeUsesInstrumentPriceScale() {
+        TickStreamEncoder encoder = new TickStreamEncoder();
+
+        Map<byte[], byte[]> fields = encoder.encode(1L, 151.235, 151.242, 1.0, 1.0, 3);
+
+        assertEquals("151.235", new String(fields.get(TickStreamEncoder.FIELD_B), StandardCharsets.UTF_8));
+        assertEquals("151.242", new String(fields.get(TickStreamEncoder.FIELD_A), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFieldMapReusedButValuesIndependent() {
+        TickStreamEncoder encoder = new TickStreamEncoder();
+
+        Map<byte[], byte[]> first = encoder.encode(1L, 1.1, 1.2, 1.0, 1.0, 5);
+        byte[] firstBid = first.get(TickStreamEncoder.FIELD_B);
+        Map<byte[], byte[]> second = encoder.encode(2L, 1.3, 1.4, 1.0, 1.0, 5);
+
+        assertSame(first, second);
+        // 已交给 Lettuce 的值数组不能被后续编码覆盖
+        assertEquals("1.10000", new String(firstBid, StandardCharsets.UTF_8));
+        assertEquals("1.30000", new String(second.get(TickStreamEncoder.FIELD_B), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEncodeBinaryLayout() {
+        TickStreamEncoder encoder = new TickStreamEncoder();
+
+        Map<byte[], byte[]> fields = encoder.encodeBinary(1700000000000L, 1.05008, 1.05012, 2.5, 1.5, 5);
+
+        assertEquals(1, fields.size());
+        byte[] record = fields.get(TickStreamEncoder.FIELD_D);
+        int[] position = {2};
+        assertEquals(TickStreamEncoder.BINARY_VERSION, record[0]);
+        assertEquals(5, record[1]);
+        assertEquals(1700000000000L, readVarLong(record, position));
+        assertEquals(105008L, zigZagDecode(readVarLong(record, position)));
+        assertEquals(4L, zigZagDecode(readVarLong(record, position)));
+        assertEquals(2500000L, zigZagDecode(readVarLong(record, position)));
+        assertEquals(1500000L, zigZagDecode(readVarLong(record, position)));
+        assertEquals(record.length, position[0]);
+    }
+
+    @Test
+    public void testEncodeBinaryUsesInstrumentScale() {
+        TickStreamEncoder encoder = new TickStreamEncoder();
+
+        byte[] record = encoder.encodeBinary(1L, 151.235, 151.242, 0, 0, 3).get(TickStreamEncoder.FIELD_D);
+        int[] position = {2};
+        readVarLong(record, position);
+
+        assertEquals(3, record[1]);
+        assertEquals(151235L, zigZagDecode(readVarLong(record, position)));
+        assertEquals(7L, zigZagDecode(readVarLong(record, position)));
+    }
+
+    private static long readVarLong(byte[] buffer, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,109 @@
+package phiner.de5.net.gateway.strategy;
+
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+import org.junit.jupiter.api.Test;
+import phiner.de5.net.gateway.dto.OrderLatencyDTO;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OrderLatencyTrackerTest {
+
+    private final OrderLatencyTracker tracker = new OrderLatencyTracker();
+
+    private static IMessage message(IMessage.Type type, String label) {
+        IOrder order = mock(IOrder.class);
+        when(order.getLabel()).thenReturn(label);
+        IMessage message = mock(IMessage.class);
+        when(message.getOrder()).thenReturn(order);
+        when(message.getType()).thenReturn(type);
+        return message;
+    }
+
+    private OrderLatencyTracker.Trace submit(String requestId, String label) {
+        long received = System.nanoTime();
+        OrderLatencyTracker.Trace trace = tracker.begin(requestId, received, received + 1_000);
+        tracker.dequeued(trace);
+        tracker.bind(trace, label);
+        tracker.submitted(trace);
+        return trace;
+    }
+
+    @Test
+    public void testSubmitAndFillAreJoinedByLabel() {
+        submit("req-1", "L1");
+
+        IMessage submitOk = message(IMessage.Type.ORDER_SUBMIT_OK, "L1");
+        tracker.onMessage(submitOk);
+        OrderLatencyDTO acked = tracker.breakdown(submitOk);
+        assertEquals("req-1", acked.getRequestId());
+        assertEquals(Long.valueOf(1), acked.getDecodeMicros());
+        assertNotNull(acked.getQueueMicros());
+        assertNotNull(acked.getSubmitMicros());
+        assertNotNull(acked.getAckMicros());
+        assertNull(acked.getFillMicros());
+        assertNull(acked.getTotalMicros());
+
+        IMessage fillOk = message(IMessage.Type.ORDER_FILL_OK, "L1");
+        tracker.onMessage(fillOk);
+        OrderLatencyDTO filled = tracker.breakdown(fillOk);
+        assertNotNull(filled.getFillMicros());
+        assertTrue(filled.getTotalMicros() >= filled.getAckMicros());
+
+        // 成交后结束追踪
+        assertEquals(0, tracker.getTracedOrderCount());
+        assertNull(tracker.breakdown(fillOk));
+        for (OrderLatencyTracker.Stage stage : OrderLatencyTracker.Stage.values()) {
+            assertEquals(1, tracker.getHistogram(stage).getCount(), stage.name());
+        }
+    }
+
+    @Test
+    public void testRequestsWithoutIdAreNotTracked() {
+        assertNull(tracker.begin(null, 1, 2));
+        tracker.dequeued(null);
+        tracker.bind(null, "L2");
+        tracker.submitted(null);
+
+        IMessage submitOk = message(IMessage.Type.ORDER_SUBMIT_OK, "L2");
+        tracker.onMessage(submitOk);
+        assertNull(tracker.breakdown(submitOk));
+        assertEquals(0, tracker.getHistogram(OrderLatencyTracker.Stage.ACK).getCount());
+    }
+
+    @Test
+    public void testRejectionAndFailedSubmitEndTracking() {
+        submit("req-3", "L3");
+        IMessage rejected = message(IMessage.Type.ORDER_SUBMIT_REJECTED, "L3");
+        tracker.onMessage(rejected);
+        OrderLatencyDTO breakdown = tracker.breakdown(rejected);
+        assertEquals("req-3", breakdown.getRequestId());
+        assertNull(breakdown.getAckMicros());
+        assertEquals(0, tracker.getTracedOrderCount());
+
+        OrderLatencyTracker.Trace trace = submit("req-4", "L4");
+        tracker.unbind(trace, "L4");
+        assertNull(tracker.breakdown(message(IMessage.Type.ORDER_FILL_OK, "L4")));
+    }
+
+    @Test
+    public void testCancelledPendingOrderEndsTracking() {
+        submit("req-5", "L5");
+        IMessage submitOk = message(IMessage.Type.ORDER_SUBMIT_OK, "L5");
+        tracker.onMessage(submitOk);
+        tracker.breakdown(submitOk);
+
+        IMessage closed = message(IMessage.Type.ORDER_CLOSE_OK, "L5");
+        tracker.onMessage(closed);
+        OrderLatencyDTO breakdown = tracker.breakdown(closed);
+        assertEquals("req-5", breakdown.getRequestId());
+        assertNotNull(breakdown.getAckMicros());
+        assertNull(breakdown.getFillMicros());
+        assertEquals(0, tracker.getTracedOrderCount());
+
+        submit("req-6", "L6");
+        assertNotNull(tracker.breakdown(message(IMessage.Type.ORDER_CLOSE_REJECTED, "L6")));
+        assertEquals(0, tracker.getTracedOrderCount());
+    }
+}
@@ -0,0 +1,104 @@
+package phiner.de5.net.gateway.strategy;
+
+import com.dukascopy.api.Instrument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import phiner.de5.net.gateway.QuoteBoard;
+import phiner.de5.net.gateway.dto.ErrorDTO;
+import phiner.de5.net.gateway.request.MarketOrderType;
+import phiner.de5.net.gateway.request.OpenMarketOrderRequest;
+import phiner.de5.net.gateway.request.SubmitOrderRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreTradeValidatorTest {
+
+    private final QuoteBoard quoteBoard = new QuoteBoard();
+    private final PreTradeValidator validator = new PreTradeValidator(quoteBoard);
+
+    @BeforeEach
+    public void setUp() {
+        validator.register(Instrument.EURUSD);
+        validator.register(Instrument.GBPUSD);
+        quoteBoard.update("EUR/USD", 1L, 1.1000, 1.1002, 1.0, 1.0);
+    }
+
+    private static OpenMarketOrderRequest market(MarketOrderType type, double amount, Double stopLoss, Double takeProfit) {
+        return new OpenMarketOrderRequest("EUR/USD", amount, type, "L1", 5.0, stopLoss, takeProfit);
+    }
+
+    private static SubmitOrderRequest order(String instrument, String command, Double amount, Double price) {
+        SubmitOrderRequest request = new SubmitOrderRequest();
+        request.setInstrument(instrument);
+        request.setOrderCommand(command);
+        request.setAmount(amount);
+        request.setPrice(price);
+        return request;
+    }
+
+    @Test
+    public void testInstrumentCommandAndAmountAreChecked() {
+        ErrorDTO unknown = validator.validate(order("FOO/BAR", "BUY", 0.1, null), "L2");
+        assertEquals("UNKNOWN_INSTRUMENT", unknown.getCode());
+        assertEquals("VALIDATION_ERROR", unknown.getType());
+        assertEquals("FOO/BAR", unknown.getInstrument());
+        assertEquals("L2", unknown.getLabel());
+
+        assertEquals("INVALID_ORDER_COMMAND", validator.validate(order("EUR/USD", "HOLD", 0.1, null), "L2").getCode());
+        assertEquals("INVALID_AMOUNT", validator.validate(order("EUR/USD", "BUY", null, null), "L2").getCode());
+        assertEquals("INVALID_AMOUNT", validator.validate(order("EUR/USD", "BUY", Double.NaN, null), "L2").getCode());
+        assertEquals("INVALID_AMOUNT", validator.validate(market(MarketOrderType.SELL, 0.0, null, null)).getCode());
+
+        // 缺少方向不按卖出处理：否则这笔多单的止损止盈会被判为空单的“正确一侧”
+        ErrorDTO noType = validator.validate(market(null, 0.1, 1.0950, 1.1050));
+        assertEquals("INVALID_ORDER_TYPE", noType.getCode());
+        assertEquals("L1", noType.getLabel());
+    }
+
+    @Test
+    public void testAmountBelowInstrumentMinimumIsRejected() {
+        // EUR/USD 最小交易量 1000 单位，即 0.001 百万
+        double minimum = Instrument.EURUSD.getMinTradeAmount() / 1_000_000d;
+        assertEquals("AMOUNT_BELOW_MINIMUM",
+                validator.validate(market(MarketOrderType.BUY, minimum / 2, null, null)).getCode());
+        assertNull(validator.validate(market(MarketOrderType.BUY, minimum, null, null)));
+    }
+
+    @Test
+    public void testMarketOrderProtectionIsCheckedAgainstLatestQuote() {
+        // 多单以买价 1.1000 为参考
+        assertNull(validator.validate(market(MarketOrderType.BUY, 0.1, 1.0950, 1.1050)));
+        assertEquals("INVALID_STOP_LOSS",
+                validator.validate(market(MarketOrderType.BUY, 0.1, 1.1010, null)).getCode());
+        assertEquals("INVALID_TAKE_PROFIT",
+                validator.validate(market(MarketOrderType.BUY, 0.1, null, 1.0990)).getCode());
+
+        // 空单以卖价 1.1002 为参考
+        assertNull(validator.validate(market(MarketOrderType.SELL, 0.1, 1.1050, 1.0950)));
+        assertEquals("INVALID_STOP_LOSS",
+                validator.validate(market(MarketOrderType.SELL, 0.1, 1.1001, null)).getCode());
+        assertEquals("INVALID_TAKE_PROFIT",
+                validator.validate(market(MarketOrderType.SELL, 0.1, null, 1.1010)).getCode());
+    }
+
+    @Test
+    public void testPendingOrderUsesOrderPriceAndMissingQuoteSkipsSideCheck() {
+        SubmitOrderRequest buyLimit = order("EUR/USD", "BUYLIMIT", 0.1, 1.0900);
+        buyLimit.setStopLossPrice(1.0950);
+        assertEquals("INVALID_STOP_LOSS", validator.validate(buyLimit, "L3").getCode());
+        buyLimit.setStopLossPrice(1.0850);
+        buyLimit.setTakeProfitPrice(1.0950);
+        assertNull(validator.validate(buyLimit, "L3"));
+
+        // GBP/USD 尚无报价，市价单不做方向校验
+        SubmitOrderRequest noQuote = order("GBP/USD", "BUY", 0.1, null);
+        noQuote.setStopLossPrice(9.0);
+        assertNull(validator.validate(noQuote, "L4"));
+
+        // 可解析但未订阅的品种只做基本校验
+        SubmitOrderRequest unsubscribed = order("USD/JPY", "SELL", 0.1, null);
+        unsubscribed.setTakeProfitPrice(999.0);
+        assertFalse(validator.isRegistered("USD/JPY"));
+        assertNull(validator.validate(unsubscribed, "L5"));
+    }
+}
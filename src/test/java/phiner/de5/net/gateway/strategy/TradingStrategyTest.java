@@ -79,6 +79,68 @@ public class TradingStrategyTest {
     }
   }
 
+  @Test
+  public void testOnTick_dispatchedThroughRingBuffer() {
+    // Given
+    ITick tick = mock(ITick.class);
+    when(tick.getTime()).thenReturn(1700000000000L);
+    when(tick.getBid()).thenReturn(1.10001);
+    when(tick.getAsk()).thenReturn(1.10011);
+    when(tick.getBidVolume()).thenReturn(1.5);
+    when(tick.getAskVolume()).thenReturn(2.5);
+
+    // When
+    tradingStrategy.onTick(Instrument.EURUSD, tick);
+
+    // Then - 由事件处理线程异步驱动 TickManager
+    verify(tickManager, timeout(1000)).onTick("EUR/USD", 1700000000000L, 1.10001, 1.10011, 1.5, 2.5);
+  }
+
+  @Test
+  public void testOnBar_dispatchedThroughRingBuffer() {
+    // Given
+    IBar bidBar = mock(IBar.class);
+    when(bidBar.getTime()).thenReturn(1700000000000L);
+    when(bidBar.getOpen()).thenReturn(1.1);
+    when(bidBar.getClose()).thenReturn(1.2);
+    when(bidBar.getLow()).thenReturn(1.0);
+    when(bidBar.getHigh()).thenReturn(1.3);
+
+    // When
+    tradingStrategy.onBar(Instrument.EURUSD, Period.FIVE_MINS, mock(IBar.class), bidBar);
+
+    // Then
+    ArgumentCaptor<BarDTO> barCaptor = ArgumentCaptor.forClass(BarDTO.class);
+    verify(kLineManager, timeout(1000)).onBar(eq("EUR/USD"), barCaptor.capture());
+    org.junit.jupiter.api.Assertions.assertEquals("5m", barCaptor.getValue().getPeriod());
+    org.junit.jupiter.api.Assertions.assertEquals(1.2, barCaptor.getValue().getClose());
+  }
+
+  @Test
+  public void testOnBar_dualSideCarriesAskOfSameTime() {
+    // Given
+    org.springframework.test.util.ReflectionTestUtils.setField(tradingStrategy, "klineDualSide", true);
+    IBar bidBar = mock(IBar.class);
+    when(bidBar.getTime()).thenReturn(1700000000000L);
+    when(bidBar.getClose()).thenReturn(1.2);
+    IBar askBar = mock(IBar.class);
+    when(askBar.getTime()).thenReturn(1700000000000L);
+    when(askBar.getOpen()).thenReturn(1.1002);
+    when(askBar.getClose()).thenReturn(1.2002);
+    when(askBar.getLow()).thenReturn(1.0002);
+    when(askBar.getHigh()).thenReturn(1.3002);
+
+    // When
+    tradingStrategy.onBar(Instrument.EURUSD, Period.FIVE_MINS, askBar, bidBar);
+
+    // Then
+    ArgumentCaptor<BarDTO> barCaptor = ArgumentCaptor.forClass(BarDTO.class);
+    verify(kLineManager, timeout(1000)).onBar(eq("EUR/USD"), barCaptor.capture());
+    org.junit.jupiter.api.Assertions.assertEquals(1.2, barCaptor.getValue().getClose());
+    org.junit.jupiter.api.Assertions.assertEquals(1.2002, barCaptor.getValue().getAskClose().doubleValue());
+    org.junit.jupiter.api.Assertions.assertEquals(1.0002, barCaptor.getValue().getAskLow().doubleValue());
+  }
+
   @Test
   public void testHandleInstrumentInfoRequest_success() throws Exception {
     // Given
@@ -217,6 +279,25 @@ public class TradingStrategyTest {
     }
   }
 
+  @Test
+  public void testExecuteMarketOrder_belowMinimumRejectedBeforeStrategyThread() throws JFException {
+    // Given - EUR/USD 已在 onStart 中订阅，最小交易量 0.001
+    OpenMarketOrderRequest request = new OpenMarketOrderRequest(
+        "EUR/USD", 0.0001, MarketOrderType.BUY, "label-min", 5.0, null, null);
+    clearInvocations(context);
+
+    // When
+    tradingStrategy.executeMarketOrder(request);
+
+    // Then
+    verify(context, never()).executeTask(any());
+    verify(engine, never()).submitOrder(anyString(), any(), any(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any());
+    ArgumentCaptor<ErrorDTO> errorCaptor = ArgumentCaptor.forClass(ErrorDTO.class);
+    verify(redisService).publishStructuredError(errorCaptor.capture());
+    org.junit.jupiter.api.Assertions.assertEquals("AMOUNT_BELOW_MINIMUM", errorCaptor.getValue().getCode());
+    org.junit.jupiter.api.Assertions.assertEquals("label-min", errorCaptor.getValue().getLabel());
+  }
+
   @Test
   public void testCloseMarketOrder_orderFound() throws JFException {
     // Given
@@ -272,6 +353,118 @@ public class TradingStrategyTest {
       }
   }
 
+  private static SubmitOrderRequest batchItem(String instrument, String command, double amount, String label) {
+      SubmitOrderRequest item = new SubmitOrderRequest();
+      item.setInstrument(instrument);
+      item.setOrderCommand(command);
+      item.setAmount(amount);
+      item.setLabel(label);
+      return item;
+  }
+
+  @Test
+  public void testSubmitOrderBatch_executedInOneTask() throws JFException {
+      // Given
+      org.springframework.test.util.ReflectionTestUtils.setField(tradingStrategy, "orderBatchMaxSize", 10);
+      Instrument mockInstrument = mock(Instrument.class);
+      IOrder submitted = mock(IOrder.class);
+      when(submitted.getId()).thenReturn("order-1");
+      when(engine.submitOrder(eq("leg_a"), any(), any(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any()))
+          .thenReturn(submitted);
+      when(engine.submitOrder(eq("leg_b"), any(), any(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any()))
+          .thenThrow(new JFException("Not enough margin"));
+      BatchOrderRequest request = new BatchOrderRequest();
+      request.setRequestId("batch-1");
+      request.setOrders(List.of(
+          batchItem("EUR/USD", "BUY", 0.1, "leg_a"),
+          batchItem("EUR/USD", "SELL", 0.2, "leg_b"),
+          batchItem("EUR/USD", "BUY", 0.3, null)));
+      clearInvocations(context);
+
+      try (MockedStatic<Instrument> mockedStatic = mockStatic(Instrument.class)) {
+        mockedStatic.when(() -> Instrument.fromString("EUR/USD")).thenReturn(mockInstrument);
+
+        // When
+        tradingStrategy.submitOrderBatch(request);
+
+        // Then - 三笔订单在同一个策略线程任务中依次提交，单笔失败不影响后续订单
+        verify(context, times(1)).executeTask(any());
+        verify(engine, times(3)).submitOrder(anyString(), eq(mockInstrument), any(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any());
+        ArgumentCaptor<OrderBatchResultDTO> resultCaptor = ArgumentCaptor.forClass(OrderBatchResultDTO.class);
+        verify(redisService).publishOrderBatchResult(resultCaptor.capture(), eq("batch-1"));
+        OrderBatchResultDTO result = resultCaptor.getValue();
+        org.junit.jupiter.api.Assertions.assertNull(result.getError());
+        org.junit.jupiter.api.Assertions.assertEquals(List.of("SUBMITTED", "FAILED", "SUBMITTED"),
+            result.getResults().stream().map(OrderBatchResultDTO.Item::getStatus).toList());
+        org.junit.jupiter.api.Assertions.assertEquals("order-1", result.getResults().get(0).getOrderId());
+        org.junit.jupiter.api.Assertions.assertEquals("Not enough margin", result.getResults().get(1).getError());
+        org.junit.jupiter.api.Assertions.assertTrue(result.getResults().get(2).getLabel().endsWith("_2"));
+      }
+  }
+
+  @Test
+  public void testSubmitOrderBatch_invalidItemRejectsWholeBatch() throws JFException {
+      // Given
+      org.springframework.test.util.ReflectionTestUtils.setField(tradingStrategy, "orderBatchMaxSize", 10);
+      Instrument mockInstrument = mock(Instrument.class);
+      BatchOrderRequest request = new BatchOrderRequest();
+      request.setRequestId("batch-2");
+      request.setOrders(List.of(
+          batchItem("EUR/USD", "BUY", 0.1, "leg_a"),
+          batchItem("EUR/USD", "HOLD", 0.1, "leg_b")));
+      clearInvocations(context);
+
+      try (MockedStatic<Instrument> mockedStatic = mockStatic(Instrument.class)) {
+        mockedStatic.when(() -> Instrument.fromString("EUR/USD")).thenReturn(mockInstrument);
+
+        // When
+        tradingStrategy.submitOrderBatch(request);
+
+        // Then
+        verify(context, never()).executeTask(any());
+        verify(engine, never()).submitOrder(anyString(), any(), any(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any());
+        ArgumentCaptor<OrderBatchResultDTO> resultCaptor = ArgumentCaptor.forClass(OrderBatchResultDTO.class);
+        verify(redisService).publishOrderBatchResult(resultCaptor.capture(), eq("batch-2"));
+        OrderBatchResultDTO result = resultCaptor.getValue();
+        org.junit.jupiter.api.Assertions.assertNotNull(result.getError());
+        org.junit.jupiter.api.Assertions.assertEquals(List.of("SKIPPED", "INVALID"),
+            result.getResults().stream().map(OrderBatchResultDTO.Item::getStatus).toList());
+      }
+  }
+
+  @Test
+  public void testSubmitOrderBatch_withoutContextFailsEveryItem() throws JFException {
+      // Given
+      org.springframework.test.util.ReflectionTestUtils.setField(tradingStrategy, "orderBatchMaxSize", 10);
+      Instrument mockInstrument = mock(Instrument.class);
+      BatchOrderRequest request = new BatchOrderRequest();
+      request.setRequestId("batch-3");
+      request.setOrders(List.of(
+          batchItem("EUR/USD", "BUY", 0.1, "leg_a"),
+          batchItem("EUR/USD", "SELL", 0.2, "leg_b")));
+      org.springframework.test.util.ReflectionTestUtils.setField(tradingStrategy, "context", null);
+
+      try (MockedStatic<Instrument> mockedStatic = mockStatic(Instrument.class)) {
+        mockedStatic.when(() -> Instrument.fromString("EUR/USD")).thenReturn(mockInstrument);
+
+        // When
+        tradingStrategy.submitOrderBatch(request);
+
+        // Then - 批量请求方仍在结果频道上收到逐笔失败
+        verify(engine, never()).submitOrder(anyString(), any(), any(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyLong(), any());
+        ArgumentCaptor<OrderBatchResultDTO> resultCaptor = ArgumentCaptor.forClass(OrderBatchResultDTO.class);
+        verify(redisService).publishOrderBatchResult(resultCaptor.capture(), eq("batch-3"));
+        OrderBatchResultDTO result = resultCaptor.getValue();
+        org.junit.jupiter.api.Assertions.assertNotNull(result.getError());
+        org.junit.jupiter.api.Assertions.assertEquals(List.of("FAILED", "FAILED"),
+            result.getResults().stream().map(OrderBatchResultDTO.Item::getStatus).toList());
+        org.junit.jupiter.api.Assertions.assertEquals(List.of("leg_a", "leg_b"),
+            result.getResults().stream().map(OrderBatchResultDTO.Item::getLabel).toList());
+      } finally {
+        org.springframework.test.util.ReflectionTestUtils.setField(tradingStrategy, "context", context);
+      }
+  }
+
   @Test
   public void testModifyOrder() throws JFException {
       // Given
@@ -0,0 +1,48 @@
+package phiner.de5.net.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FixedPointAsciiTest {
+
+    private final byte[] buffer = new byte[FixedPointAscii.MAX_LENGTH];
+
+    @Test
+    public void testWriteLong() {
+        assertEquals("0", text(FixedPointAscii.writeLong(buffer, 0, 0)));
+        assertEquals("1700000000000", text(FixedPointAscii.writeLong(buffer, 0, 1700000000000L)));
+        assertEquals("-42", text(FixedPointAscii.writeLong(buffer, 0, -42)));
+        assertEquals(String.valueOf(Long.MAX_VALUE), text(FixedPointAscii.writeLong(buffer, 0, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testWriteFixedPadsAndRounds() {
+        assertEquals("1.10000", text(FixedPointAscii.writeFixed(buffer, 0, 1.1, 5)));
+        assertEquals("1.05008", text(FixedPointAscii.writeFixed(buffer, 0, 1.05008, 5)));
+        assertEquals("151.235", text(FixedPointAscii.writeFixed(buffer, 0, 151.2349999, 3)));
+        assertEquals("0.00001", text(FixedPointAscii.writeFixed(buffer, 0, 0.00001, 5)));
+        assertEquals("-0.50000", text(FixedPointAscii.writeFixed(buffer, 0, -0.5, 5)));
+        assertEquals("2650", text(FixedPointAscii.writeFixed(buffer, 0, 2650.2, 0)));
+    }
+
+    @Test
+    public void testWriteDecimalTrimsTrailingZeros() {
+        assertEquals("2.5", text(FixedPointAscii.writeDecimal(buffer, 0, 2.5, 6)));
+        assertEquals("1.0", text(FixedPointAscii.writeDecimal(buffer, 0, 1.0, 6)));
+        assertEquals("0.75", text(FixedPointAscii.writeDecimal(buffer, 0, 0.75, 6)));
+        assertEquals("12.000001", text(FixedPointAscii.writeDecimal(buffer, 0, 12.000001, 6)));
+    }
+
+    @Test
+    public void testNonFiniteFallsBackToStringValue() {
+        assertEquals("NaN", text(FixedPointAscii.writeFixed(buffer, 0, Double.NaN, 5)));
+        assertEquals("Infinity", text(FixedPointAscii.writeDecimal(buffer, 0, Double.POSITIVE_INFINITY, 6)));
+    }
+
+    private String text(int length) {
+        return new String(buffer, 0, length, StandardCharsets.US_ASCII);
+    }
+}
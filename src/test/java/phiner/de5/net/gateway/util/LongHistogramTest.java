@@ -0,0 +1,55 @@
+package phiner.de5.net.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongHistogramTest {
+
+    @Test
+    public void testSmallValuesRecordedExactly() {
+        LongHistogram histogram = new LongHistogram();
+        for (long value = 1; value <= 4; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(4, histogram.getMax());
+        assertEquals(2.5, histogram.getMean(), 1e-9);
+        assertEquals(2, histogram.valueAtPercentile(50));
+        assertEquals(4, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void testPercentileWithinRelativeError() {
+        LongHistogram histogram = new LongHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+
+        long p99 = histogram.valueAtPercentile(99);
+        assertTrue(p99 >= 9_900 && p99 <= 9_900 * 1.125, "p99=" + p99);
+        assertEquals(10_000, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void testBucketBoundsAreContiguous() {
+        for (int index = 1; index < 400; index++) {
+            long lower = LongHistogram.bucketUpperBound(index - 1) + 1;
+            assertEquals(index, LongHistogram.bucketIndex(lower));
+            assertEquals(index, LongHistogram.bucketIndex(LongHistogram.bucketUpperBound(index)));
+        }
+    }
+
+    @Test
+    public void testReset() {
+        LongHistogram histogram = new LongHistogram();
+        histogram.record(64);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.valueAtPercentile(99));
+    }
+}
@@ -0,0 +1,35 @@
+package phiner.de5.net.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PriceCodecTest {
+
+    @Test
+    public void testRoundRemovesFloatingPointNoise() {
+        PriceCodec codec = new PriceCodec("EUR/USD", 5, 4);
+
+        assertEquals(1.05008, codec.round(1.0500800000000001), 0.0);
+        assertEquals(105008L, codec.toUnits(1.05008));
+        assertEquals(1.05008, codec.fromUnits(105008L), 0.0);
+    }
+
+    @Test
+    public void testWriteUsesTickScale() {
+        PriceCodec codec = new PriceCodec("USD/JPY", 3, 2);
+        byte[] buffer = new byte[FixedPointAscii.MAX_LENGTH];
+
+        int length = codec.write(buffer, 0, 151.2);
+
+        assertEquals("151.200", new String(buffer, 0, length, StandardCharsets.US_ASCII));
+        assertEquals(2, codec.getPipScale());
+    }
+
+    @Test
+    public void testNonFinitePriceLeftUnchanged() {
+        assertEquals(Double.NaN, PriceCodec.DEFAULT.round(Double.NaN), 0.0);
+    }
+}